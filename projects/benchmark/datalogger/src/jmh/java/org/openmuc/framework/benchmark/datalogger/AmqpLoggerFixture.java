@@ -0,0 +1,147 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.benchmark.datalogger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.qpid.server.SystemLauncher;
+import org.openmuc.framework.datalogger.amqp.AmqpLogger;
+import org.openmuc.framework.datalogger.amqp.Settings;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.lib.parser.openmuc.OpenmucParserServiceImpl;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+
+/**
+ * AMQP logger publishing to an embedded Qpid broker with in-memory virtual host. The queues of the channels are
+ * consumed by the fixture, records count as written when they were delivered to the consumer.
+ */
+class AmqpLoggerFixture extends LoggerFixture {
+
+    private static final String EXCHANGE = "benchmark";
+    private static final String USER = "guest";
+
+    private final AtomicLong delivered = new AtomicLong();
+    private SystemLauncher broker;
+    private AmqpLogger logger;
+    private Connection consumerConnection;
+
+    @Override
+    DataLoggerService start(Path directory, List<LogChannel> channels) throws Exception {
+        int port = getFreePort();
+        startBroker(directory, port);
+        startConsumers(port, channels);
+
+        logger = new AmqpLogger();
+        logger.addParser("openmuc", new OpenmucParserServiceImpl());
+        logger.setChannelsToLog(channels);
+
+        Map<String, String> values = new HashMap<>();
+        values.put(Settings.HOST, "127.0.0.1");
+        values.put(Settings.PORT, String.valueOf(port));
+        values.put(Settings.USERNAME, USER);
+        values.put(Settings.PASSWORD, USER);
+        values.put(Settings.EXCHANGE, EXCHANGE);
+        values.put(Settings.PERSISTENCE_DIR, directory.resolve("amqp").toString());
+        values.put(Settings.RECONNECTION_INTERVAL, "1");
+        logger.updated(createProperties(new Settings(), values));
+        return logger;
+    }
+
+    private void startBroker(Path directory, int port) throws Exception {
+        Map<String, String> context = new HashMap<>();
+        context.put("qpid.amqp_port", String.valueOf(port));
+        context.put("qpid.work_dir", directory.resolve("qpid").toString());
+
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("type", "Memory");
+        attributes.put("initialConfigurationLocation",
+                AmqpLoggerFixture.class.getResource("/qpid-broker.json").toExternalForm());
+        attributes.put("startupLoggedToSystemOut", false);
+        attributes.put("context", context);
+
+        broker = new SystemLauncher();
+        broker.startup(attributes);
+    }
+
+    private void startConsumers(int port, List<LogChannel> channels) throws Exception {
+        ConnectionFactory factory = new ConnectionFactory();
+        factory.setHost("127.0.0.1");
+        factory.setPort(port);
+        factory.setUsername(USER);
+        factory.setPassword(USER);
+        consumerConnection = factory.newConnection();
+
+        Channel channel = consumerConnection.createChannel();
+        channel.exchangeDeclare(EXCHANGE, "topic", true);
+        DefaultConsumer consumer = new DefaultConsumer(channel) {
+            @Override
+            public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties,
+                    byte[] body) {
+                delivered.incrementAndGet();
+            }
+        };
+        for (LogChannel logChannel : channels) {
+            String queue = getQueue(logChannel.getId());
+            channel.queueDeclare(queue, true, false, false, null);
+            channel.queueBind(queue, EXCHANGE, queue);
+            channel.basicConsume(queue, true, consumer);
+        }
+    }
+
+    private static String getQueue(String channelId) {
+        return "benchmark." + channelId;
+    }
+
+    @Override
+    String getLoggingSettings(String channelId) {
+        return "amqplogger:queue=" + getQueue(channelId);
+    }
+
+    @Override
+    long getWrittenRecords(long loggedRecords) {
+        return delivered.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (logger != null) {
+            logger.shutdown();
+        }
+        if (consumerConnection != null) {
+            consumerConnection.close();
+        }
+        if (broker != null) {
+            broker.shutdown();
+        }
+    }
+}
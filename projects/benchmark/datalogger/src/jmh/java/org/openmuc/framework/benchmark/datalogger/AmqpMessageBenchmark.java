@@ -0,0 +1,127 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.benchmark.datalogger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.amqp.AmqpLogMsgBuilder;
+import org.openmuc.framework.datalogger.amqp.Settings;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.openmuc.framework.lib.amqp.AmqpMessageTuple;
+import org.openmuc.framework.lib.osgi.config.ServiceProperty;
+import org.openmuc.framework.lib.parser.openmuc.OpenmucParserServiceImpl;
+import org.openmuc.framework.parser.spi.ParserService;
+import org.openmuc.framework.parser.spi.SerializationException;
+
+/**
+ * Measures the per record cost of building the AMQP messages of one tick, without a broker. {@code buildMessages}
+ * uses the channel table of {@link AmqpLogMsgBuilder}, {@code resolvePerRecord} repeats the parser and queue lookups
+ * the AMQP logger did for every record before the table was introduced and serves as baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(AmqpMessageBenchmark.CHANNEL_COUNT)
+public class AmqpMessageBenchmark {
+
+    static final int CHANNEL_COUNT = 100;
+    private static final String PARSER_ID = "openmuc";
+
+    @Param({ "DOUBLE", "STRING" })
+    public ValueType valueType;
+
+    // channels with an explicit queue in their logging settings or with the framework prefix as queue
+    @Param({ "true", "false" })
+    public boolean definedQueue;
+
+    private List<LoggingRecord> records;
+    private AmqpLogMsgBuilder msgBuilder;
+    private Map<String, LogChannel> channelsToLog;
+    private Map<String, ServiceProperty> properties;
+    private Map<String, ParserService> parsers;
+
+    @Setup
+    public void setup() {
+        List<LogChannel> channels = BenchmarkValues.createChannels(CHANNEL_COUNT, valueType,
+                id -> definedQueue ? "amqplogger:queue=benchmark." + id : "");
+        records = BenchmarkValues.createRecords(channels, 0);
+        ParserService parser = new OpenmucParserServiceImpl();
+        msgBuilder = new AmqpLogMsgBuilder(channels, parser, "benchmark.");
+
+        channelsToLog = new HashMap<>();
+        for (LogChannel channel : channels) {
+            channelsToLog.put(channel.getId(), channel);
+        }
+        properties = new Settings().getProperties();
+        properties.get(Settings.FRAMEWORK).update("benchmark.");
+        parsers = new HashMap<>();
+        parsers.put(PARSER_ID, parser);
+    }
+
+    @Benchmark
+    public List<AmqpMessageTuple> buildMessages() {
+        return msgBuilder.buildMessages(records);
+    }
+
+    @Benchmark
+    public List<AmqpMessageTuple> resolvePerRecord() throws SerializationException {
+        List<AmqpMessageTuple> messages = new ArrayList<>(records.size());
+        for (LoggingRecord loggingRecord : records) {
+            LogChannel logChannel = channelsToLog.get(loggingRecord.getChannelId());
+            byte[] message = parsers.get(properties.get(Settings.PARSER).getValue()).serialize(loggingRecord);
+            messages.add(new AmqpMessageTuple(getQueueName(logChannel), message));
+        }
+        return messages;
+    }
+
+    private String getQueueName(LogChannel logChannel) {
+        String logSettings = logChannel.getLoggingSettings();
+        if (logSettings == null || logSettings.isEmpty()) {
+            return properties.get(Settings.FRAMEWORK).getValue() + logChannel.getId();
+        }
+        String segment = Arrays.stream(logSettings.split(";"))
+                .filter(seg -> seg.contains("amqplogger"))
+                .map(seg -> seg.replace(':', ','))
+                .findFirst()
+                .orElseThrow(IllegalArgumentException::new);
+        return Arrays.stream(segment.split(","))
+                .filter(part -> part.contains("queue"))
+                .map(queue -> queue.split("=")[1])
+                .findFirst()
+                .orElseThrow(IllegalArgumentException::new);
+    }
+}
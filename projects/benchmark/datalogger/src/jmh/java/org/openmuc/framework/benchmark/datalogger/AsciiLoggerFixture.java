@@ -0,0 +1,43 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.benchmark.datalogger;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.openmuc.framework.datalogger.ascii.AsciiLogger;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+
+class AsciiLoggerFixture extends LoggerFixture {
+
+    @Override
+    DataLoggerService start(Path directory, List<LogChannel> channels) {
+        AsciiLogger logger = new AsciiLogger(directory.toString() + File.separator);
+        logger.setChannelsToLog(channels);
+        return logger;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.benchmark.datalogger;
+
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+
+/**
+ * Channel configuration passed to the data loggers by the benchmarks.
+ */
+public class BenchmarkLogChannel implements LogChannel {
+
+    private final String id;
+    private final ValueType valueType;
+    private final int loggingInterval;
+    private final String loggingSettings;
+
+    public BenchmarkLogChannel(String id, ValueType valueType, int loggingInterval, String loggingSettings) {
+        this.id = id;
+        this.valueType = valueType;
+        this.loggingInterval = loggingInterval;
+        this.loggingSettings = loggingSettings;
+    }
+
+    @Override
+    public String getLoggingSettings() {
+        return loggingSettings;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getDescription() {
+        return "";
+    }
+
+    @Override
+    public String getChannelAddress() {
+        return "";
+    }
+
+    @Override
+    public String getUnit() {
+        return "";
+    }
+
+    @Override
+    public ValueType getValueType() {
+        return valueType;
+    }
+
+    @Override
+    public Integer getValueTypeLength() {
+        return BenchmarkValues.STRING_LENGTH;
+    }
+
+    @Override
+    public Double getScalingFactor() {
+        return null;
+    }
+
+    @Override
+    public Double getValueOffset() {
+        return null;
+    }
+
+    @Override
+    public Boolean isListening() {
+        return false;
+    }
+
+    @Override
+    public Integer getSamplingInterval() {
+        return loggingInterval;
+    }
+
+    @Override
+    public Integer getSamplingTimeOffset() {
+        return 0;
+    }
+
+    @Override
+    public String getSamplingGroup() {
+        return "";
+    }
+
+    @Override
+    public Integer getLoggingInterval() {
+        return loggingInterval;
+    }
+
+    @Override
+    public Integer getLoggingTimeOffset() {
+        return 0;
+    }
+
+    @Override
+    public Boolean isDisabled() {
+        return false;
+    }
+
+    @Override
+    public Boolean isLoggingEvent() {
+        return false;
+    }
+}
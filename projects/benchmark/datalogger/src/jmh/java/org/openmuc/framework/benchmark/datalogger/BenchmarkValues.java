@@ -0,0 +1,99 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.benchmark.datalogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+/**
+ * Creates the channels and records logged by the benchmarks.
+ */
+final class BenchmarkValues {
+
+    static final int STRING_LENGTH = 24;
+    static final int LOGGING_INTERVAL = 1000;
+    // 2024-01-01 00:00:00 UTC, logging starts at a fixed point in time to get reproducible file layouts
+    static final long START_TIME = 1704067200000L;
+
+    private BenchmarkValues() {
+    }
+
+    static List<LogChannel> createChannels(int count, ValueType valueType, Function<String, String> loggingSettings) {
+        List<LogChannel> channels = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = "channel" + i;
+            channels.add(new BenchmarkLogChannel(id, valueType, LOGGING_INTERVAL, loggingSettings.apply(id)));
+        }
+        return channels;
+    }
+
+    /**
+     * Creates one record per channel for the given logging tick.
+     */
+    static List<LoggingRecord> createRecords(List<LogChannel> channels, long tick) {
+        long timestamp = getTimestamp(tick);
+        List<LoggingRecord> records = new ArrayList<>(channels.size());
+        for (int i = 0; i < channels.size(); i++) {
+            LogChannel channel = channels.get(i);
+            Value value = newValue(channel.getValueType(), tick * channels.size() + i);
+            records.add(new LoggingRecord(channel.getId(), new Record(value, timestamp, Flag.VALID)));
+        }
+        return records;
+    }
+
+    static long getTimestamp(long tick) {
+        return START_TIME + tick * LOGGING_INTERVAL;
+    }
+
+    static Value newValue(ValueType valueType, long n) {
+        switch (valueType) {
+        case BOOLEAN:
+            return new BooleanValue(n % 2 == 0);
+        case INTEGER:
+            return new IntValue((int) n);
+        case LONG:
+            return new LongValue(n);
+        case STRING:
+            String s = "v" + n;
+            StringBuilder sb = new StringBuilder(STRING_LENGTH);
+            for (int i = s.length(); i < STRING_LENGTH; i++) {
+                sb.append('0');
+            }
+            return new StringValue(sb.append(s).toString());
+        case DOUBLE:
+        default:
+            return new DoubleValue(n * 0.25);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.benchmark.datalogger;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openmuc.framework.data.ValueType;
+
+/**
+ * Measures event logging, one operation logs one event per channel. The ASCII logger does not support event logging
+ * and is left out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LoggerEventBenchmark {
+
+    @Param({ LoggerFixture.SLOTSDB, LoggerFixture.SQL, LoggerFixture.MQTT, LoggerFixture.AMQP })
+    public String logger;
+
+    @Param({ "10", "100" })
+    public int channelCount;
+
+    @Param({ "DOUBLE", "LONG", "BOOLEAN", "STRING" })
+    public ValueType valueType;
+
+    private LoggerHarness harness;
+
+    @Setup
+    public void setup() throws Exception {
+        harness = new LoggerHarness(logger, channelCount, valueType);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        harness.close();
+    }
+
+    @Benchmark
+    public void logEvent() {
+        harness.logEvent();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.benchmark.datalogger;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.lib.osgi.config.GenericSettings;
+import org.openmuc.framework.lib.osgi.config.ServiceProperty;
+
+/**
+ * Creates a data logger outside of the OSGi framework together with the database or broker it writes to. Databases
+ * and brokers are embedded in the benchmark process, so the benchmarks need no external infrastructure.
+ */
+abstract class LoggerFixture implements AutoCloseable {
+
+    static final String ASCII = "asciilogger";
+    static final String SLOTSDB = "slotsdb";
+    static final String SQL = "sqllogger";
+    static final String MQTT = "mqttlogger";
+    static final String AMQP = "amqplogger";
+
+    private static final long AWAIT_SLEEP_MILLIS = 1;
+
+    static LoggerFixture create(String loggerId) {
+        switch (loggerId) {
+        case ASCII:
+            return new AsciiLoggerFixture();
+        case SLOTSDB:
+            return new SlotsDbFixture();
+        case SQL:
+            return new SqlLoggerFixture();
+        case MQTT:
+            return new MqttLoggerFixture();
+        case AMQP:
+            return new AmqpLoggerFixture();
+        default:
+            throw new IllegalArgumentException("Unknown data logger " + loggerId);
+        }
+    }
+
+    /**
+     * Starts the logger, and the database or broker it needs, and passes the channels to it.
+     *
+     * @param directory
+     *            empty directory for the files of the logger
+     * @param channels
+     *            channels to log
+     * @return the started logger
+     * @throws Exception
+     *             if the logger could not be started
+     */
+    abstract DataLoggerService start(Path directory, List<LogChannel> channels) throws Exception;
+
+    /**
+     * Stops the logger and the database or broker it writes to.
+     *
+     * @throws IOException
+     *             if the logger or broker could not be stopped cleanly
+     */
+    @Override
+    public abstract void close() throws IOException;
+
+    /**
+     * @param channelId
+     *            id of a channel
+     * @return logging settings needed by the logger for the channel
+     */
+    String getLoggingSettings(String channelId) {
+        return "";
+    }
+
+    /**
+     * Returns the number of records the logger has written so far. Loggers that write synchronously return the given
+     * number of logged records.
+     *
+     * @param loggedRecords
+     *            number of records passed to the logger
+     * @return number of records written to the database or broker
+     */
+    long getWrittenRecords(long loggedRecords) {
+        return loggedRecords;
+    }
+
+    /**
+     * Blocks until at most the given number of records is still being written by the logger. This keeps benchmarks of
+     * loggers that write asynchronously from measuring only how fast records can be queued.
+     *
+     * @param loggedRecords
+     *            number of records passed to the logger
+     * @param maxPending
+     *            number of records that may still be pending
+     */
+    void awaitWritten(long loggedRecords, long maxPending) {
+        while (loggedRecords - getWrittenRecords(loggedRecords) > maxPending) {
+            sleep(AWAIT_SLEEP_MILLIS);
+        }
+    }
+
+    static Dictionary<String, String> createProperties(GenericSettings settings, Map<String, String> values) {
+        Dictionary<String, String> properties = new Hashtable<>();
+        for (ServiceProperty property : settings.getProperties().values()) {
+            String value = property.getDefaultValue();
+            properties.put(property.getKey(), value == null ? "" : value);
+        }
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            properties.put(entry.getKey(), entry.getValue());
+        }
+        return properties;
+    }
+
+    static int getFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
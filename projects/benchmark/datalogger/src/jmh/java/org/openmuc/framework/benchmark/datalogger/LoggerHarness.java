@@ -0,0 +1,111 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.benchmark.datalogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+/**
+ * Runs a data logger in a temporary directory and logs consecutive ticks of records to it. One tick contains one
+ * record per channel, the time stamps of consecutive ticks are one logging interval apart.
+ */
+class LoggerHarness {
+
+    // number of ticks an asynchronous logger may lag behind before logging blocks
+    private static final int MAX_PENDING_TICKS = 16;
+    private static final String FELIX_FILEINSTALL_DIR = "felix.fileinstall.dir";
+
+    private final LoggerFixture fixture;
+    private final Path directory;
+    private final List<LogChannel> channels;
+    private final DataLoggerService dataLogger;
+    private long tick = 0;
+    private long loggedRecords = 0;
+
+    LoggerHarness(String loggerId, int channelCount, ValueType valueType) throws Exception {
+        fixture = LoggerFixture.create(loggerId);
+        directory = Files.createTempDirectory("openmuc-benchmark-" + loggerId);
+        // the loggers store their configuration through the PropertyHandler, keep it out of the working directory
+        System.setProperty(FELIX_FILEINSTALL_DIR, directory.resolve("load").toString());
+        channels = BenchmarkValues.createChannels(channelCount, valueType, fixture::getLoggingSettings);
+        dataLogger = fixture.start(directory, channels);
+    }
+
+    DataLoggerService getDataLogger() {
+        return dataLogger;
+    }
+
+    List<LogChannel> getChannels() {
+        return channels;
+    }
+
+    long getTicks() {
+        return tick;
+    }
+
+    void log() {
+        List<LoggingRecord> records = BenchmarkValues.createRecords(channels, tick);
+        dataLogger.log(records, BenchmarkValues.getTimestamp(tick));
+        logged(records.size());
+    }
+
+    void logEvent() {
+        List<LoggingRecord> records = BenchmarkValues.createRecords(channels, tick);
+        dataLogger.logEvent(records, BenchmarkValues.getTimestamp(tick));
+        logged(records.size());
+    }
+
+    private void logged(int records) {
+        ++tick;
+        loggedRecords += records;
+        fixture.awaitWritten(loggedRecords, (long) MAX_PENDING_TICKS * channels.size());
+    }
+
+    /**
+     * Blocks until all logged records are written.
+     */
+    void awaitWritten() {
+        fixture.awaitWritten(loggedRecords, 0);
+    }
+
+    void close() throws IOException {
+        try {
+            fixture.close();
+        } finally {
+            deleteDirectory();
+        }
+    }
+
+    private void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
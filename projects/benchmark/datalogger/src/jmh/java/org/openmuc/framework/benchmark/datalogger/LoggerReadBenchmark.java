@@ -0,0 +1,105 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.benchmark.datalogger;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+
+/**
+ * Measures history queries of the loggers that support reading. Before the measurement a history of four times the
+ * range size is logged for every channel. Queries cycle through the channels and through start times spread over
+ * the history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LoggerReadBenchmark {
+
+    private static final int HISTORY_FACTOR = 4;
+    // prime step to spread the start times of consecutive queries over the history
+    private static final long START_STEP = 7919;
+
+    @Param({ LoggerFixture.ASCII, LoggerFixture.SLOTSDB, LoggerFixture.SQL })
+    public String logger;
+
+    @Param({ "10", "100" })
+    public int channelCount;
+
+    @Param({ "DOUBLE", "LONG", "BOOLEAN", "STRING" })
+    public ValueType valueType;
+
+    /**
+     * Number of records returned by one query.
+     */
+    @Param({ "60", "3600" })
+    public int rangeSize;
+
+    private LoggerHarness harness;
+    private List<LogChannel> channels;
+    private long queries = 0;
+
+    @Setup
+    public void setup() throws Exception {
+        harness = new LoggerHarness(logger, channelCount, valueType);
+        channels = harness.getChannels();
+        for (int i = 0; i < rangeSize * HISTORY_FACTOR; i++) {
+            harness.log();
+        }
+        harness.awaitWritten();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        harness.close();
+    }
+
+    @Benchmark
+    public List<Record> getRecords() throws IOException {
+        long query = queries++;
+        String channelId = channels.get((int) (query % channels.size())).getId();
+        long startTick = query * START_STEP % (harness.getTicks() - rangeSize + 1);
+
+        return harness.getDataLogger()
+                .getRecords(channelId, BenchmarkValues.getTimestamp(startTick),
+                        BenchmarkValues.getTimestamp(startTick + rangeSize - 1));
+    }
+
+    @Benchmark
+    public Record getLatestLogRecord() throws IOException {
+        long query = queries++;
+        String channelId = channels.get((int) (query % channels.size())).getId();
+        return harness.getDataLogger().getLatestLogRecord(channelId);
+    }
+}
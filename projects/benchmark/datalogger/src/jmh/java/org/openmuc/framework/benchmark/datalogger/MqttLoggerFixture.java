@@ -0,0 +1,142 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.benchmark.datalogger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openmuc.framework.datalogger.mqtt.MqttLogger;
+import org.openmuc.framework.datalogger.mqtt.MqttLoggerProperties;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.lib.parser.openmuc.OpenmucParserServiceImpl;
+
+import io.moquette.broker.Server;
+import io.moquette.broker.config.IConfig;
+import io.moquette.broker.config.MemoryConfig;
+import io.moquette.interception.AbstractInterceptHandler;
+import io.moquette.interception.messages.InterceptPublishMessage;
+
+/**
+ * MQTT logger publishing to an embedded Moquette broker. Records count as written when the broker received them.
+ */
+class MqttLoggerFixture extends LoggerFixture {
+
+    private static final long CONNECT_TIMEOUT = 30000;
+
+    private final AtomicLong published = new AtomicLong();
+    private Server broker;
+    private MqttLogger logger;
+    private long probes;
+
+    @Override
+    DataLoggerService start(Path directory, List<LogChannel> channels) throws Exception {
+        int port = getFreePort();
+
+        Properties brokerProperties = new Properties();
+        brokerProperties.setProperty(IConfig.HOST_PROPERTY_NAME, "127.0.0.1");
+        brokerProperties.setProperty(IConfig.PORT_PROPERTY_NAME, String.valueOf(port));
+        brokerProperties.setProperty(IConfig.ALLOW_ANONYMOUS_PROPERTY_NAME, "true");
+        brokerProperties.setProperty(IConfig.PERSISTENCE_ENABLED_PROPERTY_NAME, "false");
+        brokerProperties.setProperty(IConfig.DATA_PATH_PROPERTY_NAME,
+                Files.createDirectories(directory.resolve("moquette")).toString());
+        broker = new Server();
+        broker.startServer(new MemoryConfig(brokerProperties), Collections.singletonList(new PublishCounter()));
+
+        logger = new MqttLogger();
+        logger.addParser("openmuc", new OpenmucParserServiceImpl());
+        logger.setChannelsToLog(channels);
+
+        Map<String, String> values = new HashMap<>();
+        values.put("host", "127.0.0.1");
+        values.put("port", String.valueOf(port));
+        values.put("connectionRetryInterval", "1");
+        values.put("persistenceDirectory", directory.resolve("mqtt").toString());
+        logger.updated(createProperties(new MqttLoggerProperties(), values));
+
+        awaitConnected(channels);
+        return logger;
+    }
+
+    /**
+     * The logger connects asynchronously and skips records until it is connected, so records are logged until the
+     * first one reaches the broker.
+     */
+    private void awaitConnected(List<LogChannel> channels) throws TimeoutException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+        while (published.get() == 0) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new TimeoutException("MQTT logger did not connect to the embedded broker");
+            }
+            logger.log(BenchmarkValues.createRecords(channels.subList(0, 1), -1), BenchmarkValues.getTimestamp(-1));
+            ++probes;
+            sleep(100);
+        }
+        // probes logged before the connection was established might still be published from the buffer
+        sleep(500);
+        probes = published.get();
+    }
+
+    @Override
+    String getLoggingSettings(String channelId) {
+        return "mqttlogger:topic=benchmark/" + channelId;
+    }
+
+    @Override
+    long getWrittenRecords(long loggedRecords) {
+        return published.get() - probes;
+    }
+
+    @Override
+    public void close() {
+        if (logger != null) {
+            logger.shutdown();
+        }
+        if (broker != null) {
+            broker.stopServer();
+        }
+    }
+
+    private class PublishCounter extends AbstractInterceptHandler {
+
+        @Override
+        public String getID() {
+            return "benchmark-publish-counter";
+        }
+
+        @Override
+        public void onPublish(InterceptPublishMessage message) {
+            published.incrementAndGet();
+            super.onPublish(message);
+        }
+
+        @Override
+        public void onSessionLoopError(Throwable error) {
+        }
+    }
+}
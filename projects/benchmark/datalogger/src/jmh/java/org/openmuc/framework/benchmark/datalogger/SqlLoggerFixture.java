@@ -0,0 +1,65 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.benchmark.datalogger;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.sql.SqlLoggerService;
+import org.openmuc.framework.datalogger.sql.utils.Settings;
+
+/**
+ * SQL logger writing to an embedded H2 database file.
+ */
+class SqlLoggerFixture extends LoggerFixture {
+
+    private SqlLoggerService logger;
+    private int channelCount;
+
+    @Override
+    DataLoggerService start(Path directory, List<LogChannel> channels) {
+        channelCount = channels.size();
+        logger = new SqlLoggerService();
+        logger.setChannelsToLog(channels);
+
+        Map<String, String> values = new HashMap<>();
+        values.put(Settings.URL, "jdbc:h2:" + directory.resolve("h2").resolve("benchmark").toAbsolutePath()
+                + ";MODE=MYSQL");
+        logger.updated(createProperties(new Settings(), values));
+        return logger;
+    }
+
+    @Override
+    long getWrittenRecords(long loggedRecords) {
+        return loggedRecords - (long) logger.getWriteQueueLength() * channelCount;
+    }
+
+    @Override
+    public void close() {
+        if (logger != null) {
+            logger.shutdown();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.benchmark.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.openmuc.framework.lib.parser.binary.BinaryParserServiceImpl;
+import org.openmuc.framework.lib.parser.openmuc.OpenmucParserServiceImpl;
+import org.openmuc.framework.parser.spi.ParserService;
+import org.openmuc.framework.parser.spi.SerializationException;
+
+/**
+ * Compares the parser services on single records and on the lists of records published by the loggers. The
+ * allocation rate is measured by adding the GC profiler, e.g. with -prof gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParserBenchmark {
+
+    private static final int LIST_SIZE = 100;
+    private static final int STRING_LENGTH = 24;
+    private static final long TIMESTAMP = 1704067200000L;
+
+    @Param({ "openmuc", "binary", "gson" })
+    public String parser;
+
+    @Param({ "DOUBLE", "LONG", "STRING", "BYTE_ARRAY" })
+    public ValueType valueType;
+
+    private ParserService parserService;
+    private LoggingRecord record;
+    private List<LoggingRecord> records;
+    private byte[] serializedRecord;
+
+    @Setup
+    public void setup() throws SerializationException {
+        parserService = createParserService(parser);
+        records = new ArrayList<>(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            Record value = new Record(newValue(valueType, i), TIMESTAMP + i * 1000L, Flag.VALID);
+            records.add(new LoggingRecord("channel" + i, value));
+        }
+        record = records.get(LIST_SIZE / 2);
+        serializedRecord = parserService.serialize(record);
+    }
+
+    static ParserService createParserService(String parserId) {
+        switch (parserId) {
+        case "openmuc":
+            return new OpenmucParserServiceImpl();
+        case "binary":
+            return new BinaryParserServiceImpl();
+        case "gson":
+            return new GsonParserService();
+        default:
+            throw new IllegalArgumentException("Unknown parser " + parserId);
+        }
+    }
+
+    static Value newValue(ValueType valueType, long n) {
+        switch (valueType) {
+        case DOUBLE:
+            return new DoubleValue(n * 0.1);
+        case LONG:
+            return new LongValue(n * 1_000_003L);
+        case STRING:
+            StringBuilder sb = new StringBuilder(STRING_LENGTH).append('v').append(n);
+            while (sb.length() < STRING_LENGTH) {
+                sb.append('-');
+            }
+            return new StringValue(sb.toString());
+        case BYTE_ARRAY:
+            byte[] bytes = new byte[STRING_LENGTH];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) (n + i);
+            }
+            return new ByteArrayValue(bytes);
+        default:
+            throw new IllegalArgumentException("Unsupported value type " + valueType);
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize() throws SerializationException {
+        return parserService.serialize(record);
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws SerializationException {
+        return parserService.serialize(records);
+    }
+
+    @Benchmark
+    public Record deserialize() {
+        return parserService.deserialize(serializedRecord, valueType);
+    }
+}
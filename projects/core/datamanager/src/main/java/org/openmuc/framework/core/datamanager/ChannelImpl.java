@@ -58,6 +58,7 @@ import org.openmuc.framework.dataaccess.DeviceState;
 import org.openmuc.framework.dataaccess.ReadRecordContainer;
 import org.openmuc.framework.dataaccess.RecordListener;
 import org.openmuc.framework.dataaccess.WriteValueContainer;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
 import org.openmuc.framework.datalogger.spi.LogChannel;
 import org.openmuc.framework.driver.spi.ChannelRecordContainer;
 import org.slf4j.Logger;
@@ -75,6 +76,7 @@ public final class ChannelImpl implements Channel {
     private volatile Record latestRecord;
     private Timer timer = null;
     private List<FutureValue> futureValues;
+    private volatile LoggedRecordCache recordCache;
 
     public ChannelImpl(DataManager dataManager, ChannelConfigImpl config, ChannelState initState, Flag initFlag,
             long currentTime, List<LogChannel> logChannels) {
@@ -98,9 +100,11 @@ public final class ChannelImpl implements Channel {
         if (config.getLoggingInterval() != ChannelConfig.LOGGING_INTERVAL_DEFAULT) {
             dataManager.addToLoggingCollections(this, currentTime);
             logChannels.add(config);
+            recordCache = LoggedRecordCache.create(config, currentTime);
         }
         else if (config.getLoggingInterval() == ChannelConfig.LOGGING_INTERVAL_DEFAULT && config.isLoggingEvent()
                 && config.isListening()) {
+            // no record cache, event records are only persisted by some data loggers
             logChannels.add(config);
         }
     }
@@ -229,8 +233,7 @@ public final class ChannelImpl implements Channel {
 
     @Override
     public Record getLoggedRecord(long timestamp) throws DataLoggerNotAvailableException, IOException {
-        String reader = getValidReaderIdFromConfig();
-        List<Record> records = dataManager.getDataLogger(reader).getRecords(config.getId(), timestamp, timestamp);
+        List<Record> records = readLoggedRecords(timestamp, timestamp);
         if (!records.isEmpty()) {
             return records.get(0);
         }
@@ -241,15 +244,13 @@ public final class ChannelImpl implements Channel {
 
     @Override
     public List<Record> getLoggedRecords(long startTime) throws DataLoggerNotAvailableException, IOException {
-        String reader = getValidReaderIdFromConfig();
-        return dataManager.getDataLogger(reader).getRecords(config.getId(), startTime, System.currentTimeMillis());
+        return readLoggedRecords(startTime, System.currentTimeMillis());
     }
 
     @Override
     public List<Record> getLoggedRecords(long startTime, long endTime)
             throws DataLoggerNotAvailableException, IOException {
-        String reader = getValidReaderIdFromConfig();
-        List<Record> toReturn = dataManager.getDataLogger(reader).getRecords(config.getId(), startTime, endTime);
+        List<Record> toReturn = readLoggedRecords(startTime, endTime);
 
         // values in the future values list are sorted.
         Long currentTime = System.currentTimeMillis();
@@ -267,7 +268,64 @@ public final class ChannelImpl implements Channel {
         return toReturn;
     }
 
-    private String getValidReaderIdFromConfig() {
+    /**
+     * Reads logged records from the record cache as far as it covers the time range and from the data logger for the
+     * older part of the range.
+     */
+    private List<Record> readLoggedRecords(long startTime, long endTime)
+            throws DataLoggerNotAvailableException, IOException {
+        String reader = getValidReaderIdFromConfig();
+        DataLoggerService dataLogger = dataManager.getDataLogger(reader);
+
+        LoggedRecordCache cache = getRecordCache();
+        if (cache == null) {
+            return dataLogger.getRecords(config.getId(), startTime, endTime);
+        }
+
+        List<Record> cachedRecords = new ArrayList<>();
+        long coveredFrom = cache.getRecords(startTime, endTime, cachedRecords);
+        if (startTime >= coveredFrom) {
+            return cachedRecords;
+        }
+        if (endTime < coveredFrom) {
+            return dataLogger.getRecords(config.getId(), startTime, endTime);
+        }
+
+        List<Record> records = new ArrayList<>(dataLogger.getRecords(config.getId(), startTime, coveredFrom - 1));
+        records.addAll(cachedRecords);
+        return records;
+    }
+
+    /**
+     * Adds a record that was handed to the data logger this channel reads from to the record cache.
+     *
+     * @param record
+     *            the logged record
+     * @param timestamp
+     *            time stamp under which the record was logged
+     */
+    void cacheLoggedRecord(Record record, long timestamp) {
+        LoggedRecordCache cache = getRecordCache();
+        if (cache != null) {
+            cache.add(record, timestamp);
+        }
+    }
+
+    boolean hasRecordCache() {
+        return recordCache != null;
+    }
+
+    private LoggedRecordCache getRecordCache() {
+        LoggedRecordCache cache = recordCache;
+        if (cache != null && cache.getValueType() != config.getValueType()) {
+            // values of the old type can not be served anymore
+            cache = LoggedRecordCache.create(config, System.currentTimeMillis());
+            recordCache = cache;
+        }
+        return cache;
+    }
+
+    String getValidReaderIdFromConfig() {
         if (config.getReader().isEmpty() || config.getReader() == null) {
             return firstLoggerFromLogSettings();
         }
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.openmuc.framework.config.ChannelConfig;
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.TypeConversionException;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+
+/**
+ * Ring buffer of the records of an interval logged channel that were most recently handed to the data loggers. It is
+ * used to answer history queries for recent time ranges without accessing the data logger. Event logged channels have
+ * no cache, because not every data logger persists events.<br>
+ * <br>
+ * Time stamps, flags and numeric values are kept in primitive arrays, only string and byte array values are stored as
+ * objects. The cache knows the time from which on it holds every logged record of the channel, see
+ * {@link #getCoveredFrom()}. Older records are evicted when the configured duration or number of records is exceeded.
+ * <br>
+ * <br>
+ * The cache is configured with the system properties {@value #DURATION_PROPERTY} (ms) and
+ * {@value #MAX_RECORDS_PROPERTY}. It is disabled if neither of them is set.
+ */
+final class LoggedRecordCache {
+
+    static final String DURATION_PROPERTY = "org.openmuc.framework.core.datamanager.recordCache.duration";
+    static final String MAX_RECORDS_PROPERTY = "org.openmuc.framework.core.datamanager.recordCache.maxRecords";
+
+    static final int DEFAULT_MAX_RECORDS = 10000;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ValueType valueType;
+    private final long duration;
+    private final int maxRecords;
+
+    private long[] timestamps;
+    private long[] values;
+    private byte[] flags;
+    private boolean[] hasValue;
+    private Value[] objectValues;
+
+    private int head = 0;
+    private int size = 0;
+    private long coveredFrom;
+
+    /**
+     * @param valueType
+     *            value type of the channel, numeric values are stored and returned as this type
+     * @param duration
+     *            time span in ms that is kept in the cache, 0 for no time limit
+     * @param maxRecords
+     *            maximum number of records in the cache
+     * @param coveredFrom
+     *            time from which on all logged records are passed to the cache
+     */
+    LoggedRecordCache(ValueType valueType, long duration, int maxRecords, long coveredFrom) {
+        this.valueType = valueType;
+        this.duration = duration;
+        this.maxRecords = maxRecords;
+        this.coveredFrom = coveredFrom;
+
+        int capacity = Math.min(maxRecords, INITIAL_CAPACITY);
+        timestamps = new long[capacity];
+        values = new long[capacity];
+        flags = new byte[capacity];
+        hasValue = new boolean[capacity];
+    }
+
+    /**
+     * Creates a cache for a channel according to the system properties.
+     *
+     * @param config
+     *            configuration of the channel
+     * @param currentTime
+     *            current time in ms
+     * @return the cache or {@code null} if caching is disabled
+     */
+    static LoggedRecordCache create(ChannelConfig config, long currentTime) {
+        long duration = Math.max(0, Long.getLong(DURATION_PROPERTY, 0L));
+        int maxRecords = Math.max(0, Integer.getInteger(MAX_RECORDS_PROPERTY, 0));
+
+        if (duration == 0 && maxRecords == 0) {
+            return null;
+        }
+        if (maxRecords == 0) {
+            maxRecords = DEFAULT_MAX_RECORDS;
+        }
+
+        Integer loggingInterval = config.getLoggingInterval();
+        if (duration > 0 && loggingInterval != null && loggingInterval > 0) {
+            maxRecords = (int) Math.min(maxRecords, duration / loggingInterval + 2);
+        }
+
+        return new LoggedRecordCache(config.getValueType(), duration, maxRecords, currentTime);
+    }
+
+    ValueType getValueType() {
+        return valueType;
+    }
+
+    /**
+     * Adds a logged record. Records have to be added in the order of their time stamps. A record older than the newest
+     * one in the cache invalidates the cache content, since the cache can not tell anymore which records were logged.
+     *
+     * @param record
+     *            the logged record
+     * @param timestamp
+     *            time stamp under which the record was logged
+     */
+    synchronized void add(Record record, long timestamp) {
+
+        if (timestamp < coveredFrom) {
+            return;
+        }
+
+        if (size > 0) {
+            long newest = timestamps[index(size - 1)];
+            if (timestamp < newest) {
+                clear(newest + 1);
+                return;
+            }
+        }
+
+        if (duration > 0) {
+            evictOlderThan(timestamp - duration);
+        }
+        if (size == maxRecords) {
+            evictOldest();
+        }
+        if (size == timestamps.length) {
+            grow();
+        }
+
+        int i = index(size);
+        timestamps[i] = timestamp;
+        flags[i] = record.getFlag().getCode();
+        store(i, record.getValue());
+        ++size;
+    }
+
+    /**
+     * @return the time stamp from which on every logged record of the channel is in the cache
+     */
+    synchronized long getCoveredFrom() {
+        return coveredFrom;
+    }
+
+    /**
+     * Adds the cached records in the given time range to a list. Only the part of the range starting at
+     * {@link #getCoveredFrom()} can be served, the returned time stamp tells the caller which older part of the range
+     * has to be read from the data logger.
+     *
+     * @param startTime
+     *            start of the range in ms (inclusive)
+     * @param endTime
+     *            end of the range in ms (inclusive)
+     * @param records
+     *            list the records are added to, sorted by time stamp
+     * @return the time stamp from which on the range was served
+     */
+    synchronized long getRecords(long startTime, long endTime, List<Record> records) {
+
+        for (int n = firstIndexNotBefore(Math.max(startTime, coveredFrom)); n < size; ++n) {
+            int i = index(n);
+            if (timestamps[i] > endTime) {
+                break;
+            }
+            records.add(new Record(load(i), timestamps[i], Flag.newFlag(flags[i])));
+        }
+        return coveredFrom;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private int firstIndexNotBefore(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[index(mid)] < timestamp) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int index(int n) {
+        int i = head + n;
+        return i < timestamps.length ? i : i - timestamps.length;
+    }
+
+    private void evictOlderThan(long timestamp) {
+        while (size > 0 && timestamps[head] < timestamp) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        coveredFrom = Math.max(coveredFrom, timestamps[head] + 1);
+        if (objectValues != null) {
+            objectValues[head] = null;
+        }
+        head = index(1);
+        --size;
+    }
+
+    private void clear(long coveredFrom) {
+        this.coveredFrom = coveredFrom;
+        head = 0;
+        size = 0;
+        if (objectValues != null) {
+            Arrays.fill(objectValues, null);
+        }
+    }
+
+    private void grow() {
+        int oldCapacity = timestamps.length;
+        int capacity = (int) Math.min(maxRecords, Math.max(1L, oldCapacity * 2L));
+        timestamps = linearize(timestamps, new long[capacity], oldCapacity);
+        values = linearize(values, new long[capacity], oldCapacity);
+        flags = linearize(flags, new byte[capacity], oldCapacity);
+        hasValue = linearize(hasValue, new boolean[capacity], oldCapacity);
+        if (objectValues != null) {
+            objectValues = linearize(objectValues, new Value[capacity], oldCapacity);
+        }
+        head = 0;
+    }
+
+    private <T> T linearize(T source, T target, int oldCapacity) {
+        int firstPart = Math.min(size, oldCapacity - head);
+        System.arraycopy(source, head, target, 0, firstPart);
+        System.arraycopy(source, 0, target, firstPart, size - firstPart);
+        return target;
+    }
+
+    private void store(int i, Value value) {
+        hasValue[i] = value != null;
+        if (objectValues != null) {
+            objectValues[i] = null;
+        }
+        if (value == null) {
+            return;
+        }
+
+        try {
+            switch (valueType) {
+            case DOUBLE:
+            case FLOAT:
+                values[i] = Double.doubleToRawLongBits(value.asDouble());
+                return;
+            case LONG:
+            case INTEGER:
+            case SHORT:
+            case BYTE:
+                values[i] = value.asLong();
+                return;
+            case BOOLEAN:
+                values[i] = value.asBoolean() ? 1 : 0;
+                return;
+            default:
+                break;
+            }
+        } catch (TypeConversionException e) {
+            // stored as object below
+        }
+
+        if (objectValues == null) {
+            objectValues = new Value[timestamps.length];
+        }
+        objectValues[i] = value;
+    }
+
+    private Value load(int i) {
+        if (!hasValue[i]) {
+            return null;
+        }
+        if (objectValues != null && objectValues[i] != null) {
+            return objectValues[i];
+        }
+
+        long bits = values[i];
+        switch (valueType) {
+        case DOUBLE:
+            return new DoubleValue(Double.longBitsToDouble(bits));
+        case FLOAT:
+            return new FloatValue((float) Double.longBitsToDouble(bits));
+        case LONG:
+            return new LongValue(bits);
+        case INTEGER:
+            return new IntValue((int) bits);
+        case SHORT:
+            return new ShortValue((short) bits);
+        case BYTE:
+            return new ByteValue((byte) bits);
+        case BOOLEAN:
+            return new BooleanValue(bits != 0);
+        default:
+            return null;
+        }
+    }
+}
@@ -66,6 +66,7 @@ public class LoggingController {
                 }
                 else if (!channel.config.isDisabled()) {
                     fillLoggingRecordMapWithChannel(channel);
+                    cacheLoggedRecord(channel, currentAction.startTime);
                 }
             }
 
@@ -114,6 +115,34 @@ public class LoggingController {
         }
     }
 
+    /**
+     * Passes the record that was just added for the channel to the record cache of the channel, if the data logger the
+     * channel reads from received it.
+     */
+    private void cacheLoggedRecord(ChannelImpl channel, long timestamp) {
+        if (!channel.hasRecordCache()) {
+            return;
+        }
+
+        String readerId = channel.getValidReaderIdFromConfig();
+        if (readerId == null || readerId.isEmpty()) {
+            DataLoggerService firstLogger = activeDataLoggers.peekFirst();
+            if (firstLogger == null) {
+                return;
+            }
+            readerId = firstLogger.getId();
+        }
+
+        List<LoggingRecord> readerRecords = logContainerMap.get(readerId);
+        if (readerRecords == null || readerRecords.isEmpty()) {
+            return;
+        }
+        LoggingRecord lastRecord = readerRecords.get(readerRecords.size() - 1);
+        if (lastRecord.getChannelId().equals(channel.getId())) {
+            channel.cacheLoggedRecord(lastRecord.getRecord(), timestamp);
+        }
+    }
+
     private void addRecordToAllLoggerWhichNotRequiresSettings(Channel channel) {
         Record latestRecord = channel.getLatestRecord();
         logContainerMap.forEach((k, v) -> {
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.ValueType;
+
+public class LoggedRecordCacheTest {
+
+    @Test
+    public void testRecordsInRange() {
+        LoggedRecordCache cache = new LoggedRecordCache(ValueType.DOUBLE, 0, 1000, 0);
+        for (int i = 0; i < 200; i++) {
+            cache.add(new Record(new DoubleValue(i * 0.5), null), i * 1000L);
+        }
+
+        List<Record> records = new ArrayList<>();
+        long coveredFrom = cache.getRecords(10_000, 19_500, records);
+
+        assertEquals(0, coveredFrom);
+        assertEquals(10, records.size());
+        assertEquals(10_000L, records.get(0).getTimestamp());
+        assertEquals(5.0, records.get(0).getValue().asDouble(), 0.0);
+        assertEquals(19_000L, records.get(9).getTimestamp());
+        assertEquals(Flag.VALID, records.get(9).getFlag());
+    }
+
+    @Test
+    public void testEvictionByCount() {
+        LoggedRecordCache cache = new LoggedRecordCache(ValueType.INTEGER, 0, 100, 0);
+        for (int i = 0; i < 250; i++) {
+            cache.add(new Record(new IntValue(i), null), i);
+        }
+
+        List<Record> records = new ArrayList<>();
+        long coveredFrom = cache.getRecords(0, 1000, records);
+
+        assertEquals(100, cache.size());
+        assertEquals(150, coveredFrom);
+        assertEquals(100, records.size());
+        assertEquals(150, records.get(0).getValue().asInt());
+        assertEquals(249, records.get(99).getValue().asInt());
+    }
+
+    @Test
+    public void testEvictionByDuration() {
+        LoggedRecordCache cache = new LoggedRecordCache(ValueType.DOUBLE, 10_000, 1000, 0);
+        for (int i = 0; i < 60; i++) {
+            cache.add(new Record(new DoubleValue(i), null), i * 1000L);
+        }
+
+        assertEquals(11, cache.size());
+        assertEquals(48_001, cache.getCoveredFrom());
+    }
+
+    @Test
+    public void testOutOfOrderRecordInvalidatesCache() {
+        LoggedRecordCache cache = new LoggedRecordCache(ValueType.DOUBLE, 0, 1000, 0);
+        cache.add(new Record(new DoubleValue(1), null), 1000);
+        cache.add(new Record(new DoubleValue(2), null), 2000);
+        cache.add(new Record(new DoubleValue(1.5), null), 1500);
+        cache.add(new Record(new DoubleValue(3), null), 3000);
+
+        List<Record> records = new ArrayList<>();
+        long coveredFrom = cache.getRecords(0, 5000, records);
+
+        assertEquals(2001, coveredFrom);
+        assertEquals(1, records.size());
+        assertEquals(3000L, records.get(0).getTimestamp());
+    }
+
+    @Test
+    public void testObjectAndMissingValues() {
+        LoggedRecordCache cache = new LoggedRecordCache(ValueType.STRING, 0, 10, 0);
+        cache.add(new Record(new StringValue("a"), null), 1);
+        cache.add(new Record(null, null, Flag.DRIVER_ERROR_TIMEOUT), 2);
+
+        List<Record> records = new ArrayList<>();
+        cache.getRecords(0, 10, records);
+
+        assertEquals("a", records.get(0).getValue().asString());
+        assertNull(records.get(1).getValue());
+        assertEquals(Flag.DRIVER_ERROR_TIMEOUT, records.get(1).getFlag());
+    }
+
+    @Test
+    public void testCreateFromSystemProperties() {
+        ChannelConfigImpl config = new ChannelConfigImpl("channel", null);
+        assertNull(LoggedRecordCache.create(config, 0));
+
+        System.setProperty(LoggedRecordCache.DURATION_PROPERTY, "60000");
+        try {
+            config.setLoggingInterval(1000);
+            config.setValueType(ValueType.DOUBLE);
+            LoggedRecordCache cache = LoggedRecordCache.create(config, 0);
+            for (int i = 0; i < 100; i++) {
+                cache.add(new Record(new DoubleValue(i), null), i * 1000L);
+            }
+            assertTrue(cache.size() <= 62);
+        } finally {
+            System.clearProperty(LoggedRecordCache.DURATION_PROPERTY);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.config.ChannelConfig;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.dataaccess.ChannelState;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+public class LoggingControllerTest {
+
+    @Test
+    public void testEventLoggedRecordsAreNotCached() {
+        System.setProperty(LoggedRecordCache.DURATION_PROPERTY, "60000");
+        try {
+            ChannelConfigImpl config = new ChannelConfigImpl("event", null);
+            config.setDisabled(false);
+            config.setValueType(ValueType.DOUBLE);
+            config.setLoggingInterval(ChannelConfig.LOGGING_INTERVAL_DEFAULT);
+            config.setListening(true);
+            config.setLoggingEvent(true);
+            config.setLoggingSettings("");
+            config.setReader("");
+            ChannelImpl channel = new ChannelImpl(null, config, ChannelState.LISTENING, Flag.NO_VALUE_RECEIVED_YET, 0,
+                    new ArrayList<LogChannel>());
+            channel.setNewRecord(new Record(new DoubleValue(1.5), 1000L));
+
+            EventLogger eventLogger = new EventLogger();
+            LoggingController loggingController = new LoggingController(
+                    new LinkedList<DataLoggerService>(Arrays.asList(eventLogger)));
+            loggingController.deliverLogsToEventBasedLogServices(
+                    Collections.singletonList(new ChannelRecordContainerImpl(channel)));
+
+            assertEquals(1, eventLogger.events.size());
+            assertEquals(1000L, eventLogger.events.get(0).getRecord().getTimestamp());
+            assertFalse(channel.hasRecordCache());
+        } finally {
+            System.clearProperty(LoggedRecordCache.DURATION_PROPERTY);
+        }
+    }
+
+    /**
+     * Data logger which keeps the events in memory but doesn't serve them, like the ASCII logger which ignores events.
+     */
+    private static class EventLogger implements DataLoggerService {
+
+        private final List<LoggingRecord> events = new ArrayList<>();
+
+        @Override
+        public String getId() {
+            return "eventlogger";
+        }
+
+        @Override
+        public void setChannelsToLog(List<LogChannel> channels) {
+        }
+
+        @Override
+        public void log(List<LoggingRecord> containers, long timestamp) {
+        }
+
+        @Override
+        public void logEvent(List<LoggingRecord> containers, long timestamp) {
+            events.addAll(containers);
+        }
+
+        @Override
+        public boolean logSettingsRequired() {
+            return false;
+        }
+
+        @Override
+        public List<Record> getRecords(String channelId, long startTime, long endTime) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Record getLatestLogRecord(String channelId) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.amqp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.openmuc.framework.lib.amqp.AmqpMessageTuple;
+import org.openmuc.framework.parser.spi.ParserService;
+import org.openmuc.framework.parser.spi.SerializationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+
+/**
+ * Builds the AMQP messages of logging records. The queue of every channel is resolved once when the builder is
+ * created, the builder is immutable and is replaced whenever the channels, the parser or the configuration change.
+ */
+public class AmqpLogMsgBuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(AmqpLogMsgBuilder.class);
+    private static final Gson GSON = new Gson();
+
+    private final Map<String, String> queues;
+    private final ParserService parserService;
+
+    /**
+     * @param logChannels
+     *            channels configured for the AMQP logger
+     * @param parserService
+     *            parser used to serialize the records, if null the records are serialized with Gson
+     * @param framework
+     *            prefix of the queue of channels without logging settings
+     */
+    public AmqpLogMsgBuilder(List<LogChannel> logChannels, ParserService parserService, String framework) {
+        Map<String, String> queueMap = new HashMap<>();
+        for (LogChannel logChannel : logChannels) {
+            String queue = getQueueName(logChannel, framework);
+            if (queue != null) {
+                queueMap.put(logChannel.getId(), queue);
+            }
+        }
+        this.queues = queueMap;
+        this.parserService = parserService;
+    }
+
+    /**
+     * @return builder without channels, used until the logger is configured
+     */
+    public static AmqpLogMsgBuilder empty() {
+        return new AmqpLogMsgBuilder(Collections.emptyList(), null, null);
+    }
+
+    /**
+     * Builds one message per record of a configured channel, records of other channels and records that could not be
+     * serialized are skipped.
+     *
+     * @param loggingRecords
+     *            records to log
+     * @return messages in the order of the records
+     */
+    public List<AmqpMessageTuple> buildMessages(List<LoggingRecord> loggingRecords) {
+        List<AmqpMessageTuple> messages = new ArrayList<>(loggingRecords.size());
+        for (LoggingRecord loggingRecord : loggingRecords) {
+            String queue = queues.get(loggingRecord.getChannelId());
+            if (queue != null) {
+                byte[] message = serialize(loggingRecord);
+                if (message != null) {
+                    messages.add(new AmqpMessageTuple(queue, message));
+                }
+            }
+        }
+        return messages;
+    }
+
+    private byte[] serialize(LoggingRecord loggingRecord) {
+        if (parserService == null) {
+            return GSON.toJson(loggingRecord.getRecord()).getBytes();
+        }
+        try {
+            return parserService.serialize(loggingRecord);
+        } catch (SerializationException e) {
+            logger.error(e.getMessage());
+            return null;
+        }
+    }
+
+    private static String getQueueName(LogChannel logChannel, String framework) {
+        String logSettings = logChannel.getLoggingSettings();
+
+        if (logSettings == null || logSettings.isEmpty()) {
+            return framework + logChannel.getId();
+        }
+
+        String queue = parseDefinedQueue(logSettings);
+        if (queue == null) {
+            logger.warn("No queue defined in logging settings of channel {}, channel is not logged",
+                    logChannel.getId());
+        }
+        return queue;
+    }
+
+    private static String parseDefinedQueue(String logSettings) {
+        for (String segment : logSettings.split(";")) {
+            if (!segment.contains("amqplogger")) {
+                continue;
+            }
+            for (String part : segment.replace(':', ',').split(",")) {
+                if (part.contains("queue")) {
+                    String[] keyValue = part.split("=");
+                    return keyValue.length > 1 ? keyValue[1] : null;
+                }
+            }
+            return null;
+        }
+        return null;
+    }
+}
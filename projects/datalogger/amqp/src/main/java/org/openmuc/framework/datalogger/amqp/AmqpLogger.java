@@ -21,12 +21,10 @@
 
 package org.openmuc.framework.datalogger.amqp;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Dictionary;
-import java.util.HashMap;
 import java.util.List;
-
-import javax.management.openmbean.InvalidKeyException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
@@ -39,23 +37,22 @@ import org.openmuc.framework.lib.osgi.config.DictionaryPreprocessor;
 import org.openmuc.framework.lib.osgi.config.PropertyHandler;
 import org.openmuc.framework.lib.osgi.config.ServicePropertyException;
 import org.openmuc.framework.parser.spi.ParserService;
-import org.openmuc.framework.parser.spi.SerializationException;
 import org.openmuc.framework.security.SslManagerInterface;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.Gson;
-
 public class AmqpLogger implements DataLoggerService, ManagedService {
 
     private static final Logger logger = LoggerFactory.getLogger(AmqpLogger.class);
-    private final HashMap<String, LogChannel> channelsToLog = new HashMap<>();
-    private final HashMap<String, ParserService> parsers = new HashMap<>();
+    private final ConcurrentHashMap<String, ParserService> parsers = new ConcurrentHashMap<>();
+    // queues and parser resolved for the current channels, replaced as a whole so log() can run without lock
+    private volatile AmqpLogMsgBuilder msgBuilder = AmqpLogMsgBuilder.empty();
+    private List<LogChannel> channelsToLog = new ArrayList<>();
     private final PropertyHandler propertyHandler;
     private final Settings settings;
-    private AmqpWriter writer;
+    private volatile AmqpWriter writer;
     private AmqpConnection connection;
     private SslManagerInterface sslManager;
     private boolean configLoaded = false;
@@ -74,27 +71,36 @@ public class AmqpLogger implements DataLoggerService, ManagedService {
     }
 
     @Override
-    public void setChannelsToLog(List<LogChannel> logChannels) {
-        channelsToLog.clear();
+    public synchronized void setChannelsToLog(List<LogChannel> logChannels) {
+        channelsToLog = new ArrayList<>(logChannels);
+        rebuildMsgBuilder();
+    }
 
-        for (LogChannel logChannel : logChannels) {
-            String channelId = logChannel.getId();
-            channelsToLog.put(channelId, logChannel);
+    private synchronized void rebuildMsgBuilder() {
+        String framework = null;
+        ParserService parserService = null;
+        if (configLoaded) {
+            framework = propertyHandler.getString(Settings.FRAMEWORK);
+            String parserId = propertyHandler.getString(Settings.PARSER);
+            parserService = parserId == null ? null : parsers.get(parserId);
         }
+        msgBuilder = new AmqpLogMsgBuilder(channelsToLog, parserService, framework);
     }
 
     @Override
-    public synchronized void log(List<LoggingRecord> containers, long timestamp) {
+    public void log(List<LoggingRecord> containers, long timestamp) {
         if (!isLoggerReady()) {
             logger.warn("Skipped logging values, still loading");
             return;
         }
-        if (writer == null) {
+        AmqpWriter currentWriter = writer;
+        if (currentWriter == null) {
             logger.warn("AMQP connection is not established");
             return;
         }
 
-        iterateContainersToLog(containers);
+        // all records of this call are published as one batch, the writer confirms them asynchronously
+        currentWriter.write(msgBuilder.buildMessages(containers));
 
         // ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
         // Future future = executor.submit(() -> {
@@ -108,69 +114,6 @@ public class AmqpLogger implements DataLoggerService, ManagedService {
         // }, currentLoggingInterval, TimeUnit.SECONDS);
     }
 
-    private void iterateContainersToLog(List<LoggingRecord> containers) {
-        for (LoggingRecord loggingRecord : containers) {
-            String channelId = loggingRecord.getChannelId();
-            if (channelsToLog.containsKey(channelId)) {
-                executeLog(loggingRecord);
-            }
-        }
-    }
-
-    private void executeLog(LoggingRecord loggingRecord) {
-        String channelId = loggingRecord.getChannelId();
-        byte[] message;
-
-        if (parsers.containsKey(propertyHandler.getString(Settings.PARSER))) {
-            message = parseMessage(loggingRecord);
-        }
-        else {
-            Gson gson = new Gson();
-            message = gson.toJson(loggingRecord.getRecord()).getBytes();
-        }
-
-        if (message == null) {
-            return;
-        }
-
-        writer.write(getQueueName(channelId), message);
-    }
-
-    private byte[] parseMessage(LoggingRecord loggingRecord) {
-        try {
-            return parsers.get(propertyHandler.getString(Settings.PARSER)).serialize(loggingRecord);
-        } catch (SerializationException e) {
-            logger.error(e.getMessage());
-            return null;
-        }
-    }
-
-    private String getQueueName(String channelId) {
-        LogChannel logChannelMeta = channelsToLog.get(channelId);
-        String logSettings = logChannelMeta.getLoggingSettings();
-
-        if (logSettings == null || logSettings.isEmpty()) {
-            return propertyHandler.getString(Settings.FRAMEWORK) + channelId;
-        }
-        else {
-            return parseDefinedQueue(logSettings);
-        }
-    }
-
-    private String parseDefinedQueue(String logSettings) {
-        String amqpLoggerSegment = Arrays.stream(logSettings.split(";"))
-                .filter(seg -> seg.contains("amqplogger"))
-                .map(seg -> seg.replace(':', ','))
-                .findFirst()
-                .orElseThrow(() -> new InvalidKeyException());
-
-        return Arrays.stream(amqpLoggerSegment.split(","))
-                .filter(part -> part.contains("queue"))
-                .map(queue -> queue.split("=")[1])
-                .findFirst()
-                .orElseThrow(() -> new InvalidKeyException());
-    }
-
     @Override
     public void logEvent(List<LoggingRecord> loggingRecords, long timestamp) {
         log(loggingRecords, timestamp);
@@ -213,6 +156,7 @@ public class AmqpLogger implements DataLoggerService, ManagedService {
 
     private void applyConfigChanges() {
         configLoaded = true;
+        rebuildMsgBuilder();
         logger.info("Configuration changed - new configuration {}", propertyHandler.toString());
         if (writer != null) {
             shutdown();
@@ -276,10 +220,12 @@ public class AmqpLogger implements DataLoggerService, ManagedService {
 
     public void addParser(String parserId, ParserService parserService) {
         parsers.put(parserId, parserService);
+        rebuildMsgBuilder();
     }
 
     public void removeParser(String parserId) {
         parsers.remove(parserId);
+        rebuildMsgBuilder();
     }
 
     public void shutdown() {
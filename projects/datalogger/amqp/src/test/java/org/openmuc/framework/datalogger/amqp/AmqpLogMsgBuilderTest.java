@@ -0,0 +1,96 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.amqp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.openmuc.framework.lib.amqp.AmqpMessageTuple;
+
+public class AmqpLogMsgBuilderTest {
+
+    private static final String FRAMEWORK = "openmuc.";
+
+    @Test
+    void queuesAreParsedFromLoggingSettings() {
+        AmqpLogMsgBuilder builder = new AmqpLogMsgBuilder(Arrays.asList(channel("noSettings", null),
+                channel("emptySettings", ""), channel("queue", "amqplogger:queue=my.queue"),
+                channel("otherLoggerFirst", "mqttlogger:topic=my/topic;amqplogger:queue=second.queue")), null,
+                FRAMEWORK);
+
+        List<AmqpMessageTuple> messages = builder.buildMessages(
+                records("noSettings", "emptySettings", "queue", "otherLoggerFirst"));
+
+        assertEquals(Arrays.asList(FRAMEWORK + "noSettings", FRAMEWORK + "emptySettings", "my.queue", "second.queue"),
+                routingKeys(messages));
+    }
+
+    @Test
+    void channelsWithoutQueueAreSkipped() {
+        AmqpLogMsgBuilder builder = new AmqpLogMsgBuilder(Arrays.asList(channel("otherLogger", "mqttlogger:topic=a"),
+                channel("noQueue", "amqplogger:exchange=b"), channel("emptyQueue", "amqplogger:queue="),
+                channel("logged", "amqplogger:queue=logged.queue")), null, FRAMEWORK);
+
+        List<AmqpMessageTuple> messages = builder.buildMessages(
+                records("otherLogger", "noQueue", "emptyQueue", "unknown", "logged"));
+
+        assertEquals(Arrays.asList("logged.queue"), routingKeys(messages));
+    }
+
+    @Test
+    void emptyBuilderSkipsAllRecords() {
+        assertEquals(0, AmqpLogMsgBuilder.empty().buildMessages(records("channel")).size());
+    }
+
+    private static LogChannel channel(String id, String loggingSettings) {
+        LogChannel channel = mock(LogChannel.class);
+        when(channel.getId()).thenReturn(id);
+        when(channel.getLoggingSettings()).thenReturn(loggingSettings);
+        return channel;
+    }
+
+    private static List<LoggingRecord> records(String... channelIds) {
+        List<LoggingRecord> records = new ArrayList<>();
+        for (String channelId : channelIds) {
+            records.add(new LoggingRecord(channelId, new Record(new DoubleValue(1.0), 1000L)));
+        }
+        return records;
+    }
+
+    private static List<String> routingKeys(List<AmqpMessageTuple> messages) {
+        List<String> routingKeys = new ArrayList<>();
+        for (AmqpMessageTuple message : messages) {
+            routingKeys.add(message.getRoutingKey());
+        }
+        return routingKeys;
+    }
+}
@@ -23,7 +23,8 @@ package org.openmuc.framework.datalogger.ascii;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
@@ -33,10 +34,18 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.datalogger.ascii.utils.BufferedLineReader;
 import org.openmuc.framework.datalogger.ascii.utils.Const;
 import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
+import org.openmuc.framework.datalogger.ascii.utils.ReverseLineReader;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
 import org.openmuc.framework.datalogger.spi.LogChannel;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
@@ -56,8 +65,19 @@ public class AsciiLogger implements DataLoggerService {
     private static HashMap<String, Long> lastLoggedLineList = new HashMap<>();
     private final String loggerDirectory;
     private final HashMap<String, LogChannel> logChannelList = new HashMap<>();
+    private final HashMap<List<Integer>, LogFileWriter> logFileWriters = new HashMap<>();
+    private final HashMap<List<Integer>, BinaryLogFileWriter> binaryFileWriters = new HashMap<>();
+    private final Map<String, LatestValue> latestValues = new ConcurrentHashMap<>();
     private boolean isFillUpFiles = true;
-    private static final long MS_PER_DAY = 86400000;
+    private boolean isBinaryFormat = false;
+    private long syncInterval = DEFAULT_SYNC_INTERVAL;
+    private long lastSyncTimestamp = 0;
+    private int queryThreads = DEFAULT_QUERY_THREADS;
+    private ThreadPoolExecutor queryExecutor;
+    private static final long DEFAULT_SYNC_INTERVAL = 10000;
+    private static final int DEFAULT_QUERY_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private static final long QUERY_THREAD_KEEP_ALIVE = 60000;
+    private static final String FORMAT_BINARY = "binary";
 
     public AsciiLogger() {
 
@@ -96,10 +116,9 @@ public class AsciiLogger implements DataLoggerService {
 
         String filename = LoggerUtils.buildFilename(loggerInterval_loggerTimeOffset, calendar);
         File file = new File(directoryPath + filename);
-        RandomAccessFile raf = LoggerUtils.getRandomAccessFile(file, "r");
         PrintWriter out = null;
 
-        String firstLogLine = "";
+        String firstLogLine = null;
         String lastLogLine = "";
         long loggingInterval = 0;
 
@@ -112,89 +131,74 @@ public class AsciiLogger implements DataLoggerService {
 
         long lastLogLineTimeStamp = 0;
 
-        if (raf != null) {
-            try {
-                String line = raf.readLine();
-                if (line != null) {
+        if (!file.exists()) {
+            logger.warn("Requested logfile: '{}' not found.", file.getAbsolutePath());
+            return lastLogLineTimeStamp;
+        }
 
-                    while (line.startsWith(Const.COMMENT_SIGN)) {
-                        // do nothing with this data, only for finding the begin of logging
-                        line = raf.readLine();
-                    }
-                    firstLogLine = raf.readLine();
+        try {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                BufferedLineReader reader = new BufferedLineReader(channel, 0);
+                String line = reader.readLine();
+                while (line != null && line.startsWith(Const.COMMENT_SIGN)) {
+                    // do nothing with this data, only for finding the begin of logging
+                    line = reader.readLine();
                 }
-
-                // read last line backwards and read last line
-                byte[] readedByte = new byte[1];
-                long filePosition = file.length() - 2;
-                String charString;
-                while (lastLogLine.isEmpty() && filePosition > 0) {
-
-                    raf.seek(filePosition);
-                    int readedBytes = raf.read(readedByte);
-                    if (readedBytes == 1) {
-                        charString = new String(readedByte, Const.CHAR_SET);
-
-                        if (charString.equals(Const.LINESEPARATOR_STRING)) {
-                            lastLogLine = raf.readLine();
-                        }
-                        else {
-                            filePosition -= 1;
-                        }
-                    }
-                    else {
-                        filePosition = -1; // leave the while loop
-                    }
+                if (line != null) {
+                    firstLogLine = reader.readLine();
                 }
-                raf.close();
 
-                int firstLogLineLength = firstLogLine.length();
+                // read last line backwards from the end of the file
+                lastLogLine = BufferedLineReader.readLastLine(channel);
+            }
 
-                int lastLogLineLength = lastLogLine.length();
+            if (firstLogLine == null) {
+                logger.debug("No values in file " + file.getAbsolutePath() + ", nothing to fill up.");
+                return lastLogLineTimeStamp;
+            }
 
-                if (firstLogLineLength != lastLogLineLength) {
-                    /**
-                     * TODO: different size of logging lines, probably the last one is corrupted we have to fill it up
-                     * restOfLastLine = completeLastLine(firstLogLine, lastLogLine); raf.writeChars(restOfLastLine);
-                     */
-                    // File is corrupted rename to old
-                    LoggerUtils.renameFileToOld(directoryPath, loggerInterval_loggerTimeOffset, calendar);
-                    logger.error("File is coruppted, could not fill up, renamed it. " + file.getAbsolutePath());
-                    return 0l;
-                }
-                else {
+            int firstLogLineLength = firstLogLine.length();
+
+            int lastLogLineLength = lastLogLine.length();
+
+            if (firstLogLineLength != lastLogLineLength) {
+                /**
+                 * TODO: different size of logging lines, probably the last one is corrupted we have to fill it up
+                 * restOfLastLine = completeLastLine(firstLogLine, lastLogLine); raf.writeChars(restOfLastLine);
+                 */
+                // File is corrupted rename to old
+                LoggerUtils.renameFileToOld(directoryPath, loggerInterval_loggerTimeOffset, calendar);
+                logger.error("File is coruppted, could not fill up, renamed it. " + file.getAbsolutePath());
+                return 0l;
+            }
+            else {
 
-                    String lastLogLineArray[] = lastLogLine.split(Const.SEPARATOR);
+                String lastLogLineArray[] = lastLogLine.split(Const.SEPARATOR);
 
-                    StringBuilder errorValues = LoggerUtils.getErrorValues(lastLogLineArray);
-                    lastLogLineTimeStamp = (long) (Double.parseDouble(lastLogLineArray[2]) * 1000.);
+                StringBuilder errorValues = LoggerUtils.getErrorValues(lastLogLineArray);
+                lastLogLineTimeStamp = (long) (Double.parseDouble(lastLogLineArray[2]) * 1000.);
 
-                    out = LoggerUtils.getPrintWriter(file, true);
+                out = LoggerUtils.getPrintWriter(file, true);
 
-                    long numberOfFillUpLines = LoggerUtils.getNumberOfFillUpLines(lastLogLineTimeStamp,
-                            loggingInterval);
+                long numberOfFillUpLines = LoggerUtils.getNumberOfFillUpLines(lastLogLineTimeStamp, loggingInterval);
 
-                    while (numberOfFillUpLines > 0) {
+                while (numberOfFillUpLines > 0) {
 
-                        lastLogLineTimeStamp = LoggerUtils.fillUp(out, lastLogLineTimeStamp, loggingInterval,
-                                numberOfFillUpLines, errorValues);
-                        numberOfFillUpLines = LoggerUtils.getNumberOfFillUpLines(lastLogLineTimeStamp, loggingInterval);
-                    }
-                    out.close();
-                    AsciiLogger.setLastLoggedLineTimeStamp(loggerInterval_loggerTimeOffset, lastLogLineTimeStamp);
-                }
-            } catch (IOException e) {
-                logger.error("Could not read file " + file.getAbsolutePath(), e);
-                LoggerUtils.renameFileToOld(directoryPath, loggerInterval_loggerTimeOffset, calendar);
-            } finally {
-                try {
-                    raf.close();
-                    if (out != null) {
-                        out.close();
-                    }
-                } catch (IOException e) {
-                    logger.error("Could not close file " + file.getAbsolutePath());
+                    lastLogLineTimeStamp = LoggerUtils.fillUp(out, lastLogLineTimeStamp, loggingInterval,
+                            numberOfFillUpLines, errorValues);
+                    numberOfFillUpLines = LoggerUtils.getNumberOfFillUpLines(lastLogLineTimeStamp, loggingInterval);
                 }
+                out.close();
+                out = null;
+                LogFileIndex.update(file);
+                AsciiLogger.setLastLoggedLineTimeStamp(loggerInterval_loggerTimeOffset, lastLogLineTimeStamp);
+            }
+        } catch (IOException e) {
+            logger.error("Could not read file " + file.getAbsolutePath(), e);
+            LoggerUtils.renameFileToOld(directoryPath, loggerInterval_loggerTimeOffset, calendar);
+        } finally {
+            if (out != null) {
+                out.close();
             }
         }
         return lastLogLineTimeStamp;
@@ -211,6 +215,62 @@ public class AsciiLogger implements DataLoggerService {
     protected void deactivate(ComponentContext context) {
 
         logger.info("Deactivating Ascii Logger");
+        closeLogFileWriters();
+        synchronized (this) {
+            if (queryExecutor != null) {
+                queryExecutor.shutdownNow();
+                queryExecutor = null;
+            }
+        }
+    }
+
+    /**
+     * The threads reading the day files of history queries. Idle threads terminate after a while, so the executor is
+     * only using resources while queries are running.
+     */
+    private synchronized Executor getQueryExecutor() {
+
+        if (queryExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            queryExecutor = new ThreadPoolExecutor(queryThreads, queryThreads, QUERY_THREAD_KEEP_ALIVE,
+                    TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "AsciiLogger query " + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            queryExecutor.allowCoreThreadTimeOut(true);
+        }
+        return queryExecutor;
+    }
+
+    /**
+     * Syncs and closes all open log files. They are opened again with the next call of log.
+     */
+    private synchronized void closeLogFileWriters() {
+
+        for (LogFileWriter logFileWriter : logFileWriters.values()) {
+            logFileWriter.close();
+        }
+        logFileWriters.clear();
+        for (BinaryLogFileWriter binaryFileWriter : binaryFileWriters.values()) {
+            binaryFileWriter.close();
+        }
+        binaryFileWriters.clear();
+    }
+
+    private void syncLogFileWriters() {
+
+        long now = System.currentTimeMillis();
+        if (now - lastSyncTimestamp < syncInterval && now >= lastSyncTimestamp) {
+            return;
+        }
+        for (LogFileWriter logFileWriter : logFileWriters.values()) {
+            logFileWriter.sync();
+        }
+        for (BinaryLogFileWriter binaryFileWriter : binaryFileWriters.values()) {
+            binaryFileWriter.sync();
+        }
+        lastSyncTimestamp = now;
     }
 
     private void createDirectory(String loggerDirectory) {
@@ -237,6 +297,9 @@ public class AsciiLogger implements DataLoggerService {
         Calendar calendar = new GregorianCalendar(Locale.getDefault());
         logChannelList.clear();
 
+        // files might be filled up or renamed below
+        closeLogFileWriters();
+
         logger.trace("channels to log:");
         for (LogChannel logChannel : logChannels) {
 
@@ -246,6 +309,12 @@ public class AsciiLogger implements DataLoggerService {
             }
             logChannelList.put(logChannel.getId(), logChannel);
         }
+        latestValues.keySet().retainAll(logChannelList.keySet());
+
+        if (isBinaryFormat) {
+            // binary files are replaced on opening if their channels changed, missing rows stay empty
+            return;
+        }
 
         if (isFillUpFiles) {
             Map<String, Boolean> areHeaderIdentical = LoggerUtils.areHeadersIdentical(loggerDirectory, logChannels,
@@ -321,12 +390,44 @@ public class AsciiLogger implements DataLoggerService {
 
             logTimeArray = it.next().getKey();
             LogIntervalContainerGroup group = logIntervalGroups.get(logTimeArray);
-            LogFileWriter fileOutHandler = new LogFileWriter(loggerDirectory, isFillUpFiles);
-
             calendar.setTimeInMillis(timestamp);
 
+            if (isBinaryFormat) {
+                logBinary(group, logTimeArray, calendar);
+                continue;
+            }
+
+            LogFileWriter fileOutHandler = logFileWriters.get(logTimeArray);
+            if (fileOutHandler == null) {
+                fileOutHandler = new LogFileWriter(loggerDirectory, isFillUpFiles, true);
+                logFileWriters.put(logTimeArray, fileOutHandler);
+            }
+
             fileOutHandler.log(group, logTimeArray.get(0), logTimeArray.get(1), calendar, logChannelList);
             setLastLoggedLineTimeStamp(logTimeArray.get(0), logTimeArray.get(1), calendar.getTimeInMillis());
+
+            for (Entry<String, String> loggedValue : fileOutHandler.getLoggedValues().entrySet()) {
+                latestValues.put(loggedValue.getKey(),
+                        new LatestValue(loggedValue.getValue(), calendar.getTimeInMillis()));
+            }
+        }
+
+        syncLogFileWriters();
+    }
+
+    private void logBinary(LogIntervalContainerGroup group, List<Integer> logTimeArray, Calendar calendar) {
+
+        BinaryLogFileWriter binaryFileWriter = binaryFileWriters.get(logTimeArray);
+        if (binaryFileWriter == null) {
+            binaryFileWriter = new BinaryLogFileWriter(loggerDirectory);
+            binaryFileWriters.put(logTimeArray, binaryFileWriter);
+        }
+
+        binaryFileWriter.log(group, logTimeArray.get(0), logTimeArray.get(1), calendar, logChannelList);
+        setLastLoggedLineTimeStamp(logTimeArray.get(0), logTimeArray.get(1), calendar.getTimeInMillis());
+
+        for (Entry<String, Record> loggedRecord : binaryFileWriter.getLoggedRecords().entrySet()) {
+            latestValues.put(loggedRecord.getKey(), new LatestValue(loggedRecord.getValue()));
         }
     }
 
@@ -334,11 +435,15 @@ public class AsciiLogger implements DataLoggerService {
     public List<Record> getRecords(String channelId, long startTime, long endTime) throws IOException {
 
         LogChannel logChannel = logChannelList.get(channelId);
-        LogFileReader reader = null;
 
-        if (logChannel != null) {
-            reader = new LogFileReader(loggerDirectory, logChannel);
-            return reader.getValues(startTime, endTime).get(channelId);
+        if (logChannel != null && isBinaryFormat) {
+            return BinaryLogFile.getRecords(loggerDirectory, logChannel.getLoggingInterval(),
+                    logChannel.getLoggingTimeOffset(), channelId, startTime, endTime);
+        }
+        else if (logChannel != null) {
+            LogFileQuery query = new LogFileQuery(loggerDirectory, logChannel.getLoggingInterval(),
+                    logChannel.getLoggingTimeOffset(), getQueryExecutor(), 2 * queryThreads);
+            return query.getRecords(channelId, startTime, endTime);
         } // TODO: hier einfuegen, dass nach Logdateien gesucht werden soll, die vorhanden
           // sind, aber nicht geloggt
           // werden,
@@ -350,45 +455,132 @@ public class AsciiLogger implements DataLoggerService {
     }
 
     /**
-     * Get the latest logged Record for the given value. This is achieved by searching within a few times the
-     * loggingInterval from the current time for any record and then selecting the one with the highest timestamp
-     * 
+     * Get the latest logged Record of the given channel. The values written by this logger are kept in memory, so
+     * usually no file has to be read. Otherwise, e.g. after a restart, the log files of the channel's logging interval
+     * are read backwards from their end, starting with the latest file, until a line of the channel is found.
+     *
      * @param channelId
      *            to be searched
-     * @return latest Record
+     * @return latest Record or null if the channel has not been logged yet
      */
     @Override
     public Record getLatestLogRecord(String channelId) throws IOException {
         LogChannel logChannel = logChannelList.get(channelId);
-        LogFileReader reader = null;
 
         if (logChannel == null) {
             throw new IOException("ChannelID (" + channelId + ") not available. It's not a logging Channel.");
         }
-        reader = new LogFileReader(loggerDirectory, logChannel);
-        // attempt to find a record within the last day
-        long endTime = System.currentTimeMillis();
-        long startTime = endTime - MS_PER_DAY;
-        Map<String, List<Record>> recordsMap = reader.getValues(startTime, endTime);
-        Map<String, Record> latestRecordsMap = LoggerUtils.findLatestValue(recordsMap);
-        Record record = latestRecordsMap.get(channelId);
-        if (record != null) {
-            return record;
-        }
-
-        // Fallback: read all files and find the latest record within these
-        List<File> files = LoggerUtils.getAllDataFiles(loggerDirectory);
-        if (files == null) {
-            return null;
-        }
-        File file = LoggerUtils.getLatestFile(files);
-        if (file == null) {
-            return null;
-        }
-        recordsMap = reader.getValues(file.getPath());
-        latestRecordsMap = LoggerUtils.findLatestValue(recordsMap);
-        record = latestRecordsMap.get(channelId);
-        return record;
+
+        LatestValue latestValue = latestValues.get(channelId);
+        if (latestValue == null) {
+            latestValue = readLatestValue(logChannel);
+            if (latestValue == null) {
+                return null;
+            }
+            // a value logged in the meantime is newer
+            latestValue = latestValues.merge(channelId, latestValue,
+                    (logged, read) -> logged.timestamp >= read.timestamp ? logged : read);
+        }
+        return latestValue.toRecord();
+    }
+
+    private LatestValue readLatestValue(LogChannel logChannel) {
+
+        List<File> files = LoggerUtils.getDataFilesLatestFirst(loggerDirectory, logChannel.getLoggingInterval(),
+                logChannel.getLoggingTimeOffset(), isBinaryFormat ? Const.EXTENSION_BINARY : Const.EXTENSION);
+        for (File file : files) {
+            try {
+                LatestValue latestValue = isBinaryFormat ? readLatestBinaryValue(file, logChannel.getId())
+                        : readLatestValue(file, logChannel.getId());
+                if (latestValue != null) {
+                    return latestValue;
+                }
+            } catch (IOException e) {
+                logger.warn("Could not read file " + file.getAbsolutePath(), e);
+            }
+        }
+        return null;
+    }
+
+    private static LatestValue readLatestValue(File file, String channelId) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            BufferedLineReader headerReader = new BufferedLineReader(channel, 0, 4 * 1024);
+            int[] columnNumbers = null;
+            while (columnNumbers == null) {
+                String line = headerReader.readLine();
+                if (line == null || !headerReader.isLineTerminated()) {
+                    return null;
+                }
+                columnNumbers = LogFileHeader.getColumnNumbers(line, channelId, Const.TIMESTAMP_STRING);
+            }
+            int valueColumn = columnNumbers[0];
+            int timestampColumn = columnNumbers[1];
+            if (valueColumn == -1 || timestampColumn == -1) {
+                return null;
+            }
+
+            ReverseLineReader reader = new ReverseLineReader(channel, headerReader.getPosition());
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(Const.COMMENT_SIGN)) {
+                    continue;
+                }
+                String[] columns = line.split(Const.SEPARATOR);
+                if (columns.length <= Math.max(valueColumn, timestampColumn)) {
+                    continue;
+                }
+                String value = columns[valueColumn].trim();
+                if (value.isEmpty()) {
+                    continue;
+                }
+                try {
+                    long timestamp = (long) (Double.parseDouble(columns[timestampColumn].trim()) * 1000);
+                    return new LatestValue(value, timestamp);
+                } catch (NumberFormatException e) {
+                    logger.debug("It's not a timestamp: {}", columns[timestampColumn]);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static LatestValue readLatestBinaryValue(File file, String channelId) throws IOException {
+
+        try (BinaryLogFile logFile = BinaryLogFile.open(file, false)) {
+            Record record = logFile.readLatest(channelId);
+            return record == null ? null : new LatestValue(record);
+        }
+    }
+
+    /**
+     * The latest value of a channel as it is written to the log file: the text of the column or, in binary format,
+     * the record read back.
+     */
+    private static class LatestValue {
+
+        private final String value;
+        private final Record record;
+        private final long timestamp;
+
+        LatestValue(String value, long timestamp) {
+            this.value = value;
+            this.record = null;
+            this.timestamp = timestamp;
+        }
+
+        LatestValue(Record record) {
+            this.value = null;
+            this.record = record;
+            this.timestamp = record.getTimestamp();
+        }
+
+        Record toRecord() {
+            if (record != null) {
+                return record;
+            }
+            return LogFileReader.convertLogfileEntryToRecord(value.trim(), timestamp);
+        }
     }
 
     private void setSystemProperties() {
@@ -407,6 +599,43 @@ public class AsciiLogger implements DataLoggerService {
             logger.debug("Property: {} not found in system.properties. Using default value: true", fillUpPropertyStr);
             isFillUpFiles = true;
         }
+
+        String syncIntervalPropertyStr = AsciiLogger.class.getPackage().getName().toLowerCase() + ".syncInterval";
+        String syncIntervalProperty = System.getProperty(syncIntervalPropertyStr);
+
+        if (syncIntervalProperty != null) {
+            try {
+                syncInterval = Long.parseLong(syncIntervalProperty.trim());
+                logger.debug("Property: {} is set to {}", syncIntervalPropertyStr, syncInterval);
+            } catch (NumberFormatException e) {
+                logger.warn("Property: {} is not a number. Using default value: {}", syncIntervalPropertyStr,
+                        DEFAULT_SYNC_INTERVAL);
+                syncInterval = DEFAULT_SYNC_INTERVAL;
+            }
+        }
+        else {
+            syncInterval = DEFAULT_SYNC_INTERVAL;
+        }
+
+        String formatPropertyStr = AsciiLogger.class.getPackage().getName().toLowerCase() + ".format";
+        String formatProperty = System.getProperty(formatPropertyStr);
+
+        isBinaryFormat = formatProperty != null && FORMAT_BINARY.equalsIgnoreCase(formatProperty.trim());
+        logger.debug("Property: {} is set to {}", formatPropertyStr, isBinaryFormat ? FORMAT_BINARY : "ascii");
+
+        String queryThreadsPropertyStr = AsciiLogger.class.getPackage().getName().toLowerCase() + ".queryThreads";
+        String queryThreadsProperty = System.getProperty(queryThreadsPropertyStr);
+
+        queryThreads = DEFAULT_QUERY_THREADS;
+        if (queryThreadsProperty != null) {
+            try {
+                queryThreads = Math.max(1, Integer.parseInt(queryThreadsProperty.trim()));
+                logger.debug("Property: {} is set to {}", queryThreadsPropertyStr, queryThreads);
+            } catch (NumberFormatException e) {
+                logger.warn("Property: {} is not a number. Using default value: {}", queryThreadsPropertyStr,
+                        DEFAULT_QUERY_THREADS);
+            }
+        }
     }
 
     @Override
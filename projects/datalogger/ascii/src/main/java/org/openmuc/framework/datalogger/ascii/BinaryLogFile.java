@@ -0,0 +1,849 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.TypeConversionException;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.ascii.utils.Const;
+import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binary columnar log file, an alternative to the IES text format. Like a text file it holds one day of the channels
+ * with the same logging interval and time offset, e.g. 20240101_60000.bin.<br>
+ * <br>
+ * The rows of the whole day are reserved when the file is created, the row of a record follows from its time stamp:
+ * (time stamp - start of the day) / logging interval. Every channel has a column of fixed width cells, a flag byte
+ * followed by the value in binary form. Strings and byte arrays are stored with a length prefix in cells of the
+ * channel's value type length. An additional column holds the time stamp of every written row. A time span of a
+ * channel is therefore read with one contiguous read of its column, without touching the other channels.<br>
+ * <br>
+ * Layout, numbers are big endian, strings are written with {@link DataOutputStream#writeUTF(String)}:
+ *
+ * <pre>
+ * header:          int magic, int version, int logging interval, int logging time offset, long start of the day,
+ *                  int row count, int channel count,
+ *                  per channel: string id, string value type, int value type length, string unit
+ * time stamps:     per row: int ms since the start of the day + 1, 0 if the row was not written
+ * per channel:     per row: byte flag code, 0 if the cell was not written, followed by the value
+ * </pre>
+ */
+public class BinaryLogFile implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryLogFile.class);
+
+    private static final int MAGIC = 0x4F4D4C42; // "OMLB"
+    private static final int VERSION = 1;
+    // a day lasts up to 25 hours when daylight saving time ends
+    private static final long MAX_DAY_LENGTH = 25L * 60 * 60 * 1000;
+    private static final int TIMESTAMP_CELL_SIZE = 4;
+    private static final int ROWS_PER_READ = 4096;
+    private static final byte EMPTY = 0;
+
+    private final File file;
+    private final FileChannel channel;
+    private final int loggingInterval;
+    private final int logTimeOffset;
+    private final long dayStart;
+    private final int rowCount;
+    private final long timestampColumnStart;
+    private final List<Column> columns;
+    private final Map<String, Column> columnsById = new HashMap<>();
+    private final ByteBuffer timestampCell = ByteBuffer.allocate(TIMESTAMP_CELL_SIZE);
+    private ByteBuffer cell;
+
+    private BinaryLogFile(File file, FileChannel channel, int loggingInterval, int logTimeOffset, long dayStart,
+            int rowCount, List<Column> columns, long headerSize) {
+        this.file = file;
+        this.channel = channel;
+        this.loggingInterval = loggingInterval;
+        this.logTimeOffset = logTimeOffset;
+        this.dayStart = dayStart;
+        this.rowCount = rowCount;
+        this.columns = columns;
+
+        timestampColumnStart = headerSize;
+        long columnStart = timestampColumnStart + (long) rowCount * TIMESTAMP_CELL_SIZE;
+        int maxCellSize = 1;
+        for (Column column : columns) {
+            column.start = columnStart;
+            columnStart += (long) rowCount * column.cellSize;
+            maxCellSize = Math.max(maxCellSize, column.cellSize);
+            columnsById.put(column.id, column);
+        }
+        cell = ByteBuffer.allocate(maxCellSize);
+    }
+
+    /**
+     * Returns the name of the binary log file of a day.
+     *
+     * @param loggingInterval
+     *            logging interval
+     * @param logTimeOffset
+     *            logging time offset
+     * @param calendar
+     *            Calendar for the time of the file name
+     * @return the file name
+     */
+    public static String buildFilename(int loggingInterval, int logTimeOffset, Calendar calendar) {
+        String filename = LoggerUtils.buildFilename(loggingInterval, logTimeOffset, calendar);
+        return filename.substring(0, filename.length() - Const.EXTENSION.length()) + Const.EXTENSION_BINARY;
+    }
+
+    /**
+     * Reads the records of a channel from the binary log files of the days between start and end time stamp.
+     *
+     * @param directoryPath
+     *            directory of the log files
+     * @param loggingInterval
+     *            logging interval of the channel
+     * @param logTimeOffset
+     *            logging time offset of the channel
+     * @param channelId
+     *            the channel ID
+     * @param startTimestamp
+     *            start time stamp in ms
+     * @param endTimestamp
+     *            end time stamp in ms
+     * @return the records in time order
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static List<Record> getRecords(String directoryPath, int loggingInterval, int logTimeOffset,
+            String channelId, long startTimestamp, long endTimestamp) throws IOException {
+
+        List<Record> records = new ArrayList<>();
+        for (String filename : LoggerUtils.getFilenames(loggingInterval, logTimeOffset, startTimestamp,
+                endTimestamp)) {
+            File file = new File(directoryPath
+                    + filename.substring(0, filename.length() - Const.EXTENSION.length()) + Const.EXTENSION_BINARY);
+            if (!file.exists()) {
+                continue;
+            }
+            try (BinaryLogFile logFile = open(file, false)) {
+                records.addAll(logFile.read(channelId, startTimestamp, endTimestamp));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Creates a new file and reserves the rows of the whole day.
+     *
+     * @param file
+     *            the file, an existing file is replaced
+     * @param loggingInterval
+     *            logging interval of the channels
+     * @param logTimeOffset
+     *            logging time offset of the channels
+     * @param dayStart
+     *            start of the day in ms
+     * @param logChannels
+     *            the channels in column order
+     * @return the open file
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static BinaryLogFile create(File file, int loggingInterval, int logTimeOffset, long dayStart,
+            List<LogChannel> logChannels) throws IOException {
+
+        int rowCount = (int) ((MAX_DAY_LENGTH + loggingInterval - 1) / loggingInterval);
+        List<Column> columns = new ArrayList<>(logChannels.size());
+        for (LogChannel logChannel : logChannels) {
+            Integer valueTypeLength = logChannel.getValueTypeLength();
+            columns.add(new Column(logChannel.getId(), logChannel.getValueType(),
+                    valueTypeLength == null ? 0 : valueTypeLength, logChannel.getUnit()));
+        }
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(header);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(loggingInterval);
+        out.writeInt(logTimeOffset);
+        out.writeLong(dayStart);
+        out.writeInt(rowCount);
+        out.writeInt(columns.size());
+        for (Column column : columns) {
+            out.writeUTF(column.id);
+            out.writeUTF(column.valueType.name());
+            out.writeInt(column.valueTypeLength);
+            out.writeUTF(column.unit == null ? "" : column.unit);
+        }
+        out.flush();
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        BinaryLogFile logFile = new BinaryLogFile(file, channel, loggingInterval, logTimeOffset, dayStart, rowCount,
+                columns, header.size());
+        try {
+            writeFully(channel, ByteBuffer.wrap(header.toByteArray()), 0);
+            // writing the last byte reserves the rows, most file systems don't allocate the unwritten blocks
+            writeFully(channel, ByteBuffer.allocate(1), logFile.getFileSize() - 1);
+        } catch (IOException e) {
+            logFile.close();
+            throw e;
+        }
+        return logFile;
+    }
+
+    /**
+     * Opens an existing file.
+     *
+     * @param file
+     *            the file
+     * @param writable
+     *            if rows are written to the file
+     * @return the open file
+     * @throws IOException
+     *             if an I/O error occurs or the file is not a binary log file
+     */
+    public static BinaryLogFile open(File file, boolean writable) throws IOException {
+
+        FileChannel channel = writable
+                ? FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            // the stream is not closed, it would close the channel
+            CountingInputStream counter = new CountingInputStream(Channels.newInputStream(channel));
+            DataInputStream in = new DataInputStream(counter);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a binary log file: " + file.getAbsolutePath());
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of binary log file " + file.getName());
+            }
+            int loggingInterval = in.readInt();
+            int logTimeOffset = in.readInt();
+            long dayStart = in.readLong();
+            int rowCount = in.readInt();
+            int channelCount = in.readInt();
+            List<Column> columns = new ArrayList<>(channelCount);
+            for (int i = 0; i < channelCount; ++i) {
+                String id = in.readUTF();
+                ValueType valueType = ValueType.valueOf(in.readUTF());
+                int valueTypeLength = in.readInt();
+                String unit = in.readUTF();
+                columns.add(new Column(id, valueType, valueTypeLength, unit));
+            }
+
+            BinaryLogFile logFile = new BinaryLogFile(file, channel, loggingInterval, logTimeOffset, dayStart,
+                    rowCount, columns, counter.count);
+            if (channel.size() < logFile.getFileSize()) {
+                throw new IOException("Binary log file is truncated: " + file.getAbsolutePath());
+            }
+            return logFile;
+        } catch (IOException | IllegalArgumentException e) {
+            channel.close();
+            throw e instanceof IOException ? (IOException) e
+                    : new IOException("Invalid binary log file: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private long getFileSize() {
+        if (columns.isEmpty()) {
+            return timestampColumnStart + (long) rowCount * TIMESTAMP_CELL_SIZE;
+        }
+        Column last = columns.get(columns.size() - 1);
+        return last.start + (long) rowCount * last.cellSize;
+    }
+
+    /**
+     * Checks if the file has a column of the same type for every channel and no others.
+     *
+     * @param logChannels
+     *            the channels
+     * @return true if the channels match the columns of this file
+     */
+    public boolean hasColumnsOf(List<LogChannel> logChannels) {
+
+        if (logChannels.size() != columns.size()) {
+            return false;
+        }
+        for (LogChannel logChannel : logChannels) {
+            Column column = columnsById.get(logChannel.getId());
+            Integer valueTypeLength = logChannel.getValueTypeLength();
+            if (column == null || column.valueType != logChannel.getValueType() || (column.isVariableLength()
+                    && column.valueTypeLength != (valueTypeLength == null ? 0 : valueTypeLength))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the records of one logging time stamp. Records of channels without column are ignored.
+     *
+     * @param timestamp
+     *            the logging time stamp
+     * @param loggingRecords
+     *            the records
+     * @return the written records as they are read back, by channel ID
+     * @throws IOException
+     *             if an I/O error occurs or the time stamp is not part of the day of this file
+     */
+    public Map<String, Record> write(long timestamp, List<LoggingRecord> loggingRecords) throws IOException {
+
+        int row = getRow(timestamp);
+        if (row < 0 || row >= rowCount) {
+            throw new IOException("Time stamp " + timestamp + " is not part of " + file.getName());
+        }
+
+        Map<String, Record> written = new HashMap<>();
+        for (LoggingRecord loggingRecord : loggingRecords) {
+            Column column = columnsById.get(loggingRecord.getChannelId());
+            if (column == null) {
+                continue;
+            }
+            Record record = encode(column, loggingRecord.getRecord(), timestamp);
+            cell.flip();
+            writeFully(channel, cell, column.start + (long) row * column.cellSize);
+            written.put(column.id, record);
+        }
+
+        // the time stamp is written last, a reader only considers rows with time stamp
+        timestampCell.clear();
+        timestampCell.putInt((int) (timestamp - dayStart + 1));
+        timestampCell.flip();
+        writeFully(channel, timestampCell, timestampColumnStart + (long) row * TIMESTAMP_CELL_SIZE);
+        return written;
+    }
+
+    private int getRow(long timestamp) {
+        long msOfDay = timestamp - dayStart;
+        if (msOfDay < 0 || msOfDay >= MAX_DAY_LENGTH) {
+            return -1;
+        }
+        return (int) (msOfDay / loggingInterval);
+    }
+
+    private Record encode(Column column, Record record, long timestamp) {
+
+        cell.clear();
+        Arrays.fill(cell.array(), 0, column.cellSize, EMPTY);
+        cell.limit(column.cellSize);
+        cell.position(1);
+
+        Flag flag;
+        Value value = null;
+        if (record == null) {
+            flag = Flag.UNKNOWN_ERROR;
+        }
+        else if (record.getFlag() != Flag.VALID) {
+            flag = record.getFlag();
+        }
+        else if (record.getValue() == null) {
+            flag = Flag.CANNOT_WRITE_NULL_VALUE;
+        }
+        else {
+            value = encodeValue(column, record.getValue());
+            flag = value == null ? Flag.UNKNOWN_ERROR : Flag.VALID;
+        }
+
+        cell.put(0, flag.getCode());
+        cell.position(column.cellSize);
+        return new Record(value, timestamp, flag);
+    }
+
+    /**
+     * @return the value as it is read back or null if it cannot be stored
+     */
+    private Value encodeValue(Column column, Value value) {
+
+        try {
+            switch (column.valueType) {
+            case BOOLEAN:
+                cell.put((byte) (value.asBoolean() ? 1 : 0));
+                return new BooleanValue(value.asBoolean());
+            case BYTE:
+                cell.put(value.asByte());
+                return new ByteValue(value.asByte());
+            case SHORT:
+                cell.putShort(value.asShort());
+                return new ShortValue(value.asShort());
+            case INTEGER:
+                cell.putInt(value.asInt());
+                return new IntValue(value.asInt());
+            case FLOAT:
+                cell.putFloat(value.asFloat());
+                return new FloatValue(value.asFloat());
+            case LONG:
+                cell.putLong(value.asLong());
+                return new LongValue(value.asLong());
+            case DOUBLE:
+                cell.putDouble(value.asDouble());
+                return new DoubleValue(value.asDouble());
+            case BYTE_ARRAY:
+                byte[] byteArray = value.asByteArray();
+                if (!putVariableLength(column, byteArray)) {
+                    return null;
+                }
+                return new ByteArrayValue(byteArray, true);
+            case STRING:
+                String string = value.asString();
+                if (!putVariableLength(column, string.getBytes(StandardCharsets.UTF_8))) {
+                    return null;
+                }
+                return new StringValue(string);
+            default:
+                throw new IllegalStateException("unsupported valueType " + column.valueType);
+            }
+        } catch (TypeConversionException e) {
+            logger.error("Could not convert value of channel {} to {}", column.id, column.valueType);
+            return null;
+        }
+    }
+
+    private boolean putVariableLength(Column column, byte[] bytes) {
+        if (bytes.length > column.getMaxLength()) {
+            logger.error("The value of channel {} is too big, length is {} but max. length allowed is {}", column.id,
+                    bytes.length, column.getMaxLength());
+            return false;
+        }
+        cell.putShort((short) bytes.length);
+        cell.put(bytes);
+        return true;
+    }
+
+    /**
+     * Reads the records of a channel between start time stamp and end time stamp.
+     *
+     * @param channelId
+     *            the channel ID
+     * @param startTimestamp
+     *            start time stamp in ms
+     * @param endTimestamp
+     *            end time stamp in ms
+     * @return the records in time order, empty if the channel has no column in this file
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public List<Record> read(String channelId, long startTimestamp, long endTimestamp) throws IOException {
+
+        Column column = columnsById.get(channelId);
+        long first = Math.max(startTimestamp, dayStart);
+        long last = Math.min(endTimestamp, dayStart + MAX_DAY_LENGTH - 1);
+        if (column == null || first > last) {
+            return Collections.emptyList();
+        }
+
+        List<Record> records = new ArrayList<>();
+        int lastRow = Math.min(getRow(last), rowCount - 1);
+        for (int row = getRow(first); row <= lastRow; row += ROWS_PER_READ) {
+            int rows = Math.min(ROWS_PER_READ, lastRow - row + 1);
+            ByteBuffer timestamps = readColumn(timestampColumnStart, TIMESTAMP_CELL_SIZE, row, rows);
+            ByteBuffer cells = readColumn(column.start, column.cellSize, row, rows);
+            for (int i = 0; i < rows; ++i) {
+                Record record = decode(column, timestamps, cells, i);
+                if (record != null && record.getTimestamp() >= startTimestamp
+                        && record.getTimestamp() <= endTimestamp) {
+                    records.add(record);
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Reads the latest record of a channel, scanning the rows backwards from the end of the day.
+     *
+     * @param channelId
+     *            the channel ID
+     * @return the latest record or null if the channel has no record in this file
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public Record readLatest(String channelId) throws IOException {
+
+        Column column = columnsById.get(channelId);
+        if (column == null) {
+            return null;
+        }
+
+        for (int end = rowCount; end > 0; end -= ROWS_PER_READ) {
+            int row = Math.max(0, end - ROWS_PER_READ);
+            int rows = end - row;
+            ByteBuffer timestamps = readColumn(timestampColumnStart, TIMESTAMP_CELL_SIZE, row, rows);
+            ByteBuffer cells = readColumn(column.start, column.cellSize, row, rows);
+            for (int i = rows - 1; i >= 0; --i) {
+                Record record = decode(column, timestamps, cells, i);
+                if (record != null) {
+                    return record;
+                }
+            }
+        }
+        return null;
+    }
+
+    private ByteBuffer readColumn(long columnStart, int cellSize, int row, int rows) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(rows * cellSize);
+        readFully(channel, buffer, columnStart + (long) row * cellSize);
+        buffer.flip();
+        return buffer;
+    }
+
+    private Record decode(Column column, ByteBuffer timestamps, ByteBuffer cells, int index) {
+
+        int msOfDay = timestamps.getInt(index * TIMESTAMP_CELL_SIZE);
+        int offset = index * column.cellSize;
+        byte flagCode = cells.get(offset);
+        if (msOfDay == 0 || flagCode == EMPTY) {
+            return null;
+        }
+        long timestamp = dayStart + msOfDay - 1;
+
+        Flag flag;
+        try {
+            flag = Flag.newFlag(flagCode);
+        } catch (IllegalArgumentException e) {
+            return new Record(null, timestamp, Flag.UNKNOWN_ERROR);
+        }
+        if (flag != Flag.VALID) {
+            return new Record(null, timestamp, flag);
+        }
+
+        ++offset;
+        Value value;
+        switch (column.valueType) {
+        case BOOLEAN:
+            value = new BooleanValue(cells.get(offset) != 0);
+            break;
+        case BYTE:
+            value = new ByteValue(cells.get(offset));
+            break;
+        case SHORT:
+            value = new ShortValue(cells.getShort(offset));
+            break;
+        case INTEGER:
+            value = new IntValue(cells.getInt(offset));
+            break;
+        case FLOAT:
+            value = new FloatValue(cells.getFloat(offset));
+            break;
+        case LONG:
+            value = new LongValue(cells.getLong(offset));
+            break;
+        case DOUBLE:
+            value = new DoubleValue(cells.getDouble(offset));
+            break;
+        case BYTE_ARRAY:
+            value = new ByteArrayValue(getVariableLength(column, cells, offset), true);
+            break;
+        case STRING:
+            value = new StringValue(new String(getVariableLength(column, cells, offset), StandardCharsets.UTF_8));
+            break;
+        default:
+            return new Record(null, timestamp, Flag.UNKNOWN_ERROR);
+        }
+        return new Record(value, timestamp, Flag.VALID);
+    }
+
+    private static byte[] getVariableLength(Column column, ByteBuffer cells, int offset) {
+        int length = Math.min(cells.getShort(offset) & 0xFFFF, column.getMaxLength());
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            bytes[i] = cells.get(offset + 2 + i);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the channels of this file in column order, they only provide ID, unit, value type, value type length
+     *         and logging interval and offset
+     */
+    public List<LogChannel> getLogChannels() {
+        List<LogChannel> logChannels = new ArrayList<>(columns.size());
+        for (Column column : columns) {
+            logChannels.add(new ColumnChannel(column, loggingInterval, logTimeOffset));
+        }
+        return logChannels;
+    }
+
+    /**
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return start of the day of this file in ms
+     */
+    public long getDayStart() {
+        return dayStart;
+    }
+
+    /**
+     * @return the logging interval of the channels in ms
+     */
+    public int getLoggingInterval() {
+        return loggingInterval;
+    }
+
+    /**
+     * @return the logging time offset of the channels in ms
+     */
+    public int getLoggingTimeOffset() {
+        return logTimeOffset;
+    }
+
+    /**
+     * Forces all written rows to the storage device.
+     */
+    public void sync() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            logger.warn("Could not sync file " + file.getAbsolutePath(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer bb, long position) throws IOException {
+        while (bb.hasRemaining()) {
+            int read = channel.read(bb, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file.");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer bb, long position) throws IOException {
+        while (bb.hasRemaining()) {
+            position += channel.write(bb, position);
+        }
+    }
+
+    private static class Column {
+
+        private final String id;
+        private final ValueType valueType;
+        private final int valueTypeLength;
+        private final String unit;
+        private final int cellSize;
+        private long start;
+
+        Column(String id, ValueType valueType, int valueTypeLength, String unit) {
+            this.id = id;
+            this.valueType = valueType;
+            this.valueTypeLength = valueTypeLength;
+            this.unit = unit;
+            cellSize = 1 + getValueSize();
+        }
+
+        boolean isVariableLength() {
+            return valueType == ValueType.BYTE_ARRAY || valueType == ValueType.STRING;
+        }
+
+        int getMaxLength() {
+            return Math.max(1, Math.min(valueTypeLength, 0xFFFF));
+        }
+
+        private int getValueSize() {
+            switch (valueType) {
+            case BOOLEAN:
+            case BYTE:
+                return 1;
+            case SHORT:
+                return 2;
+            case INTEGER:
+            case FLOAT:
+                return 4;
+            case LONG:
+            case DOUBLE:
+                return 8;
+            default:
+                // length prefix and the bytes
+                return 2 + getMaxLength();
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                ++count;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Channel description restored from the header of a file.
+     */
+    private static class ColumnChannel implements LogChannel {
+
+        private final Column column;
+        private final int loggingInterval;
+        private final int logTimeOffset;
+
+        ColumnChannel(Column column, int loggingInterval, int logTimeOffset) {
+            this.column = column;
+            this.loggingInterval = loggingInterval;
+            this.logTimeOffset = logTimeOffset;
+        }
+
+        @Override
+        public String getLoggingSettings() {
+            return "";
+        }
+
+        @Override
+        public String getId() {
+            return column.id;
+        }
+
+        @Override
+        public String getDescription() {
+            return "";
+        }
+
+        @Override
+        public String getChannelAddress() {
+            return "";
+        }
+
+        @Override
+        public String getUnit() {
+            return column.unit;
+        }
+
+        @Override
+        public ValueType getValueType() {
+            return column.valueType;
+        }
+
+        @Override
+        public Integer getValueTypeLength() {
+            return column.valueTypeLength;
+        }
+
+        @Override
+        public Double getScalingFactor() {
+            return null;
+        }
+
+        @Override
+        public Double getValueOffset() {
+            return null;
+        }
+
+        @Override
+        public Boolean isListening() {
+            return false;
+        }
+
+        @Override
+        public Integer getSamplingInterval() {
+            return 0;
+        }
+
+        @Override
+        public Integer getSamplingTimeOffset() {
+            return 0;
+        }
+
+        @Override
+        public String getSamplingGroup() {
+            return "";
+        }
+
+        @Override
+        public Integer getLoggingInterval() {
+            return loggingInterval;
+        }
+
+        @Override
+        public Integer getLoggingTimeOffset() {
+            return logTimeOffset;
+        }
+
+        @Override
+        public Boolean isDisabled() {
+            return false;
+        }
+
+        @Override
+        public Boolean isLoggingEvent() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+/**
+ * Exports {@link BinaryLogFile}s to the IES text format, e.g. for tools that read the text files. Cells without record
+ * are written with the flag {@link Flag#NO_VALUE_RECEIVED_YET}.<br>
+ * <br>
+ * Usage: {@code java org.openmuc.framework.datalogger.ascii.BinaryLogFileConverter <binary file> [target directory]}
+ */
+public class BinaryLogFileConverter {
+
+    // time span read at once, limits the records held in memory
+    private static final long WINDOW = 60L * 60 * 1000;
+
+    private BinaryLogFileConverter() {
+    }
+
+    /**
+     * Writes the content of a binary log file to a text log file.
+     *
+     * @param binaryFile
+     *            the binary log file
+     * @param targetDirectory
+     *            directory of the text log file, ending with a file separator
+     * @return the text log file
+     * @throws IOException
+     *             if an I/O error occurs or the text log file already exists
+     */
+    public static File convertToAscii(File binaryFile, String targetDirectory) throws IOException {
+
+        try (BinaryLogFile logFile = BinaryLogFile.open(binaryFile, false)) {
+
+            int loggingInterval = logFile.getLoggingInterval();
+            int logTimeOffset = logFile.getLoggingTimeOffset();
+            File textFile = new File(targetDirectory
+                    + LoggerUtils.getFilename(loggingInterval, logTimeOffset, logFile.getDayStart()));
+            if (textFile.exists()) {
+                throw new IOException("File already exists: " + textFile.getAbsolutePath());
+            }
+
+            List<LogChannel> logChannels = logFile.getLogChannels();
+            Map<String, LogChannel> logChannelList = new HashMap<>();
+            for (LogChannel logChannel : logChannels) {
+                logChannelList.put(logChannel.getId(), logChannel);
+            }
+
+            LogFileWriter writer = new LogFileWriter(targetDirectory, false, true);
+            Calendar calendar = new GregorianCalendar(Locale.getDefault());
+            Calendar dayEnd = new GregorianCalendar(Locale.getDefault());
+            dayEnd.setTimeInMillis(logFile.getDayStart());
+            dayEnd.add(Calendar.DATE, 1);
+
+            try {
+                for (long start = logFile.getDayStart(); start < dayEnd.getTimeInMillis(); start += WINDOW) {
+
+                    Map<Long, Map<String, Record>> rows = new TreeMap<>();
+                    for (LogChannel logChannel : logChannels) {
+                        for (Record record : logFile.read(logChannel.getId(), start, start + WINDOW - 1)) {
+                            rows.computeIfAbsent(record.getTimestamp(), timestamp -> new LinkedHashMap<>())
+                                    .put(logChannel.getId(), record);
+                        }
+                    }
+
+                    for (Entry<Long, Map<String, Record>> row : rows.entrySet()) {
+                        LogIntervalContainerGroup group = new LogIntervalContainerGroup();
+                        for (LogChannel logChannel : logChannels) {
+                            Record record = row.getValue().get(logChannel.getId());
+                            if (record == null) {
+                                record = new Record(null, row.getKey(), Flag.NO_VALUE_RECEIVED_YET);
+                            }
+                            group.add(new LoggingRecord(logChannel.getId(), record));
+                        }
+                        calendar.setTimeInMillis(row.getKey());
+                        writer.log(group, loggingInterval, logTimeOffset, calendar, logChannelList);
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+            return textFile;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: BinaryLogFileConverter <binary file> [target directory]");
+            System.exit(1);
+        }
+
+        File binaryFile = new File(args[0]);
+        String targetDirectory = args.length == 2 ? args[1]
+                : binaryFile.getAbsoluteFile().getParentFile().getPath();
+        if (!targetDirectory.endsWith(File.separator)) {
+            targetDirectory += File.separator;
+        }
+        System.out.println(convertToAscii(binaryFile, targetDirectory).getPath());
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.datalogger.ascii.utils.Const;
+import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the records of one logging interval and time offset to {@link BinaryLogFile}s, one file per day. The file of
+ * the day stays open between calls and is replaced at midnight.
+ */
+public class BinaryLogFileWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryLogFileWriter.class);
+
+    private final String directoryPath;
+    private BinaryLogFile logFile;
+    private Map<String, Record> loggedRecords = Collections.emptyMap();
+
+    public BinaryLogFileWriter(String directoryPath) {
+        this.directoryPath = directoryPath;
+    }
+
+    /**
+     * Writes the records of a group to the file of the day.
+     *
+     * @param group
+     *            records of channels with the same logging interval and time offset
+     * @param loggingInterval
+     *            logging interval
+     * @param logTimeOffset
+     *            logging time offset
+     * @param calendar
+     *            time of the records
+     * @param logChannelList
+     *            all logged channels, the file has a column for every channel of the interval and time offset
+     */
+    public void log(LogIntervalContainerGroup group, int loggingInterval, int logTimeOffset, Calendar calendar,
+            Map<String, LogChannel> logChannelList) {
+
+        loggedRecords = Collections.emptyMap();
+
+        if (!openFile(loggingInterval, logTimeOffset, calendar, logChannelList)) {
+            return;
+        }
+
+        try {
+            loggedRecords = logFile.write(calendar.getTimeInMillis(), group.getList());
+        } catch (IOException e) {
+            logger.error("Could not write to file " + logFile.getFile().getAbsolutePath(), e);
+            closeFile(false);
+        }
+    }
+
+    /**
+     * @return the records written by the last call of log, as they are read back from the file, by channel ID
+     */
+    public Map<String, Record> getLoggedRecords() {
+        return loggedRecords;
+    }
+
+    /**
+     * Forces the written records to the storage device.
+     */
+    public void sync() {
+        if (logFile != null) {
+            logFile.sync();
+        }
+    }
+
+    /**
+     * Syncs and closes the open log file.
+     */
+    public void close() {
+        closeFile(true);
+    }
+
+    private void closeFile(boolean sync) {
+
+        if (logFile == null) {
+            return;
+        }
+        if (sync) {
+            logFile.sync();
+        }
+        try {
+            logFile.close();
+        } catch (IOException e) {
+            logger.error("Could not close file " + logFile.getFile().getAbsolutePath(), e);
+        }
+        logFile = null;
+    }
+
+    private boolean openFile(int loggingInterval, int logTimeOffset, Calendar calendar,
+            Map<String, LogChannel> logChannelList) {
+
+        File file = new File(directoryPath + BinaryLogFile.buildFilename(loggingInterval, logTimeOffset, calendar));
+        if (logFile != null) {
+            if (file.equals(logFile.getFile()) && file.exists()) {
+                return true;
+            }
+            closeFile(true);
+        }
+
+        List<LogChannel> logChannels = getLogChannels(loggingInterval, logTimeOffset, logChannelList);
+        try {
+            if (file.exists()) {
+                try {
+                    logFile = BinaryLogFile.open(file, true);
+                    if (logFile.hasColumnsOf(logChannels)) {
+                        return true;
+                    }
+                    logger.info("Channels of {} changed, creating a new file.", file.getName());
+                } catch (IOException e) {
+                    logger.error("Could not open file " + file.getAbsolutePath() + ", creating a new file.", e);
+                }
+                closeFile(false);
+                renameFileToOld(file);
+            }
+
+            long dayStart = LoggerUtils.getCalendarTodayZero(calendar).getTimeInMillis();
+            logFile = BinaryLogFile.create(file, loggingInterval, logTimeOffset, dayStart, logChannels);
+        } catch (IOException e) {
+            logger.error("Could not create file " + file.getAbsolutePath(), e);
+            closeFile(false);
+            return false;
+        }
+        return true;
+    }
+
+    private static List<LogChannel> getLogChannels(int loggingInterval, int logTimeOffset,
+            Map<String, LogChannel> logChannelList) {
+
+        List<LogChannel> logChannels = new ArrayList<>();
+        for (LogChannel logChannel : logChannelList.values()) {
+            if (logChannel.getLoggingInterval() == loggingInterval
+                    && logChannel.getLoggingTimeOffset() == logTimeOffset) {
+                logChannels.add(logChannel);
+            }
+        }
+        logChannels.sort(Comparator.comparing(LogChannel::getId));
+        return logChannels;
+    }
+
+    private static void renameFileToOld(File file) {
+
+        int i = 0;
+        File oldFile;
+        do {
+            oldFile = new File(file.getPath() + Const.EXTENSION_OLD + i++);
+        } while (oldFile.exists());
+
+        if (!file.renameTo(oldFile)) {
+            logger.error("Could not rename file to " + oldFile.getAbsolutePath());
+        }
+    }
+}
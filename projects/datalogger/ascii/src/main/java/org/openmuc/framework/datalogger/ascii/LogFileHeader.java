@@ -20,6 +20,7 @@
  */
 package org.openmuc.framework.datalogger.ascii;
 
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.Iterator;
@@ -121,6 +122,37 @@ public class LogFileHeader {
         return sb0.toString();
     }
 
+    /**
+     * Determines the columns of the given names in the column names line of a log file, i.e. the first line after the
+     * comments.
+     *
+     * @param columnNamesLine
+     *            the column names line
+     * @param names
+     *            the column names to search for, e.g. channel IDs or {@link Const#TIMESTAMP_STRING}
+     * @return the column numbers in the order of the names, -1 for a name that is not part of the line, or null if
+     *         the line is a comment
+     */
+    public static int[] getColumnNumbers(String columnNamesLine, String... names) {
+
+        if (columnNamesLine.startsWith(Const.COMMENT_SIGN)) {
+            return null;
+        }
+
+        int[] columnNumbers = new int[names.length];
+        Arrays.fill(columnNumbers, -1);
+
+        String[] columns = columnNamesLine.split(Const.SEPARATOR);
+        for (int i = 0; i < columns.length; ++i) {
+            for (int j = 0; j < names.length; ++j) {
+                if (columnNumbers[j] == -1 && columns[i].equals(names[j])) {
+                    columnNumbers[j] = i;
+                }
+            }
+        }
+        return columnNumbers;
+    }
+
     /**
      * Appends channel specific comments to a StringBuilder
      *
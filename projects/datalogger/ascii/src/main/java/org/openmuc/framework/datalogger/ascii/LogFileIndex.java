@@ -0,0 +1,359 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.openmuc.framework.datalogger.ascii.utils.BufferedLineReader;
+import org.openmuc.framework.datalogger.ascii.utils.Const;
+import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
+
+/**
+ * Sidecar index of an ASCII log file. For every {@value #LINES_PER_ENTRY}th data line the time stamp and the byte
+ * offset of the line are stored in a binary file next to the log file, e.g. 20240101_60000.idx for
+ * 20240101_60000.dat.<br>
+ * <br>
+ * The index only covers complete lines and is extended incrementally: the logger updates it after every write and
+ * readers update it before using it, so log files without index (e.g. of older versions) are indexed on first read.
+ * If the index does not match the log file anymore, it is rebuilt.
+ */
+public class LogFileIndex {
+
+    private static final int VERSION = 1;
+    private static final int LINES_PER_ENTRY = 64;
+
+    // version, lines per entry, time stamp column, data start, indexed length, line count
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8 + 8;
+    // time stamp, offset
+    private static final int ENTRY_SIZE = 8 + 8;
+    private static final int ENTRIES_PER_WRITE = 256;
+    private static final int CHECK_BUFFER_SIZE = 1024;
+
+    private int linesPerEntry = LINES_PER_ENTRY;
+    private int timestampColumn = -1;
+    private long dataStart = -1;
+    private long indexedLength = 0;
+    private long lineCount = 0;
+    private int entryCount = 0;
+    private long[] timestamps = new long[0];
+    private long[] offsets = new long[0];
+
+    private LogFileIndex() {
+    }
+
+    /**
+     * Returns the index file of a log file.
+     *
+     * @param dataFile
+     *            the log file
+     * @return the index file
+     */
+    public static File getIndexFile(File dataFile) {
+        String name = dataFile.getName();
+        if (name.endsWith(Const.EXTENSION)) {
+            name = name.substring(0, name.length() - Const.EXTENSION.length());
+        }
+        return new File(dataFile.getParentFile(), name + Const.EXTENSION_INDEX);
+    }
+
+    /**
+     * Extends the index by all lines appended to the log file since the last update.
+     *
+     * @param dataFile
+     *            the log file
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static synchronized void update(File dataFile) throws IOException {
+        sync(dataFile, false);
+    }
+
+    /**
+     * Updates the index and loads all entries.
+     *
+     * @param dataFile
+     *            the log file
+     * @return the index or {@code null} if the log file does not exist
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static synchronized LogFileIndex load(File dataFile) throws IOException {
+        return sync(dataFile, true);
+    }
+
+    /**
+     * Deletes the index of a log file, e.g. because the log file is renamed.
+     *
+     * @param dataFile
+     *            the log file
+     */
+    public static synchronized void delete(File dataFile) {
+        File indexFile = getIndexFile(dataFile);
+        if (indexFile.exists() && !indexFile.delete()) {
+            indexFile.deleteOnExit();
+        }
+    }
+
+    private static LogFileIndex sync(File dataFile, boolean loadEntries) throws IOException {
+
+        if (!dataFile.exists()) {
+            return null;
+        }
+
+        LogFileIndex index = new LogFileIndex();
+
+        try (FileChannel data = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ);
+                FileChannel indexChannel = FileChannel.open(getIndexFile(dataFile).toPath(), StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+
+            long dataLength = data.size();
+            if (!index.readHeader(indexChannel) || !index.isConsistent(indexChannel, data, dataLength)) {
+                index = new LogFileIndex();
+                indexChannel.truncate(0);
+            }
+
+            if (index.indexedLength < dataLength) {
+                index.scan(data, indexChannel);
+            }
+
+            if (loadEntries) {
+                index.readEntries(indexChannel);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the offset of the last indexed line with a time stamp lower or equal to the given one. Reading the log
+     * file sequentially from this offset reaches all lines of the given time stamp and later.
+     *
+     * @param timestamp
+     *            time stamp in ms
+     * @return byte offset of the line, the start of the data lines if no such line is indexed or 0 if the header of the
+     *         log file is not complete
+     */
+    public long getOffset(long timestamp) {
+
+        int low = 0;
+        int high = entryCount - 1;
+        int found = -1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= timestamp) {
+                found = mid;
+                low = mid + 1;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+
+        if (found != -1) {
+            return offsets[found];
+        }
+        return Math.max(dataStart, 0);
+    }
+
+    /**
+     * @return byte offset of the first data line or -1 if the header of the log file is not complete
+     */
+    public long getDataStart() {
+        return dataStart;
+    }
+
+    /**
+     * @return number of data lines covered by the index
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    private boolean readHeader(FileChannel indexChannel) throws IOException {
+
+        long indexLength = indexChannel.size();
+        if (indexLength < HEADER_SIZE || (indexLength - HEADER_SIZE) % ENTRY_SIZE != 0) {
+            return false;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(indexChannel, header, 0);
+        header.flip();
+
+        if (header.getInt() != VERSION) {
+            return false;
+        }
+        linesPerEntry = header.getInt();
+        timestampColumn = header.getInt();
+        dataStart = header.getLong();
+        indexedLength = header.getLong();
+        lineCount = header.getLong();
+        entryCount = (int) ((indexLength - HEADER_SIZE) / ENTRY_SIZE);
+
+        return linesPerEntry > 0;
+    }
+
+    private void writeHeader(FileChannel indexChannel) throws IOException {
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(VERSION);
+        header.putInt(linesPerEntry);
+        header.putInt(timestampColumn);
+        header.putLong(dataStart);
+        header.putLong(indexedLength);
+        header.putLong(lineCount);
+        header.flip();
+        writeFully(indexChannel, header, 0);
+    }
+
+    /**
+     * Checks if the index still belongs to the log file. The log file might have been replaced by a new one with the
+     * same name, or the last update of the index might have been interrupted.
+     */
+    private boolean isConsistent(FileChannel indexChannel, FileChannel data, long dataLength) throws IOException {
+
+        if (indexedLength > dataLength || (dataStart < 0 && (entryCount > 0 || lineCount > 0))) {
+            return false;
+        }
+
+        if (indexedLength > 0) {
+            ByteBuffer lastByte = ByteBuffer.allocate(1);
+            readFully(data, lastByte, indexedLength - 1);
+            if (lastByte.get(0) != Const.LINESEPARATOR) {
+                return false;
+            }
+        }
+
+        if (entryCount > 0) {
+            ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+            readFully(indexChannel, entry, HEADER_SIZE + (long) (entryCount - 1) * ENTRY_SIZE);
+            long timestamp = entry.getLong(0);
+            long offset = entry.getLong(8);
+            if (offset < dataStart || offset >= indexedLength) {
+                return false;
+            }
+            String line = new BufferedLineReader(data, offset, CHECK_BUFFER_SIZE).readLine();
+            return line != null && parseTimestamp(line) == timestamp;
+        }
+        return true;
+    }
+
+    private void scan(FileChannel data, FileChannel indexChannel) throws IOException {
+
+        BufferedLineReader reader = new BufferedLineReader(data, indexedLength);
+        String line;
+
+        if (dataStart < 0) {
+            // skip comments and find the time stamp column in the column names line
+            while (true) {
+                line = reader.readLine();
+                if (line == null || !reader.isLineTerminated()) {
+                    return;
+                }
+                if (!line.startsWith(Const.COMMENT_SIGN)) {
+                    Integer column = LoggerUtils
+                            .getColumnNumbersByNames(line, new String[] { Const.TIMESTAMP_STRING })
+                            .get(Const.TIMESTAMP_STRING);
+                    timestampColumn = column != null ? column : Const.NUM_OF_TIME_TYPES_IN_HEADER - 1;
+                    dataStart = reader.getPosition();
+                    indexedLength = dataStart;
+                    break;
+                }
+            }
+        }
+
+        ByteBuffer entries = ByteBuffer.allocate(ENTRIES_PER_WRITE * ENTRY_SIZE);
+        long writePosition = HEADER_SIZE + (long) entryCount * ENTRY_SIZE;
+
+        while ((line = reader.readLine()) != null && reader.isLineTerminated()) {
+            if (lineCount % linesPerEntry == 0) {
+                long timestamp = parseTimestamp(line);
+                if (timestamp != Long.MIN_VALUE) {
+                    if (!entries.hasRemaining()) {
+                        writePosition = writeEntries(indexChannel, entries, writePosition);
+                    }
+                    entries.putLong(timestamp);
+                    entries.putLong(reader.getLineStart());
+                    ++entryCount;
+                }
+            }
+            ++lineCount;
+            indexedLength = reader.getPosition();
+        }
+
+        writeEntries(indexChannel, entries, writePosition);
+        writeHeader(indexChannel);
+    }
+
+    private static long writeEntries(FileChannel indexChannel, ByteBuffer entries, long position) throws IOException {
+        entries.flip();
+        int length = entries.remaining();
+        writeFully(indexChannel, entries, position);
+        entries.clear();
+        return position + length;
+    }
+
+    private void readEntries(FileChannel indexChannel) throws IOException {
+
+        ByteBuffer entries = ByteBuffer.allocate(entryCount * ENTRY_SIZE);
+        readFully(indexChannel, entries, HEADER_SIZE);
+        entries.flip();
+
+        timestamps = new long[entryCount];
+        offsets = new long[entryCount];
+        for (int i = 0; i < entryCount; ++i) {
+            timestamps[i] = entries.getLong();
+            offsets[i] = entries.getLong();
+        }
+    }
+
+    private long parseTimestamp(String line) {
+        String[] columns = line.split(Const.SEPARATOR);
+        if (timestampColumn < 0 || timestampColumn >= columns.length) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return (long) (Double.parseDouble(columns[timestampColumn].trim()) * 1000);
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer bb, long position) throws IOException {
+        while (bb.hasRemaining()) {
+            int read = channel.read(bb, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file.");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer bb, long position) throws IOException {
+        while (bb.hasRemaining()) {
+            position += channel.write(bb, position);
+        }
+    }
+}
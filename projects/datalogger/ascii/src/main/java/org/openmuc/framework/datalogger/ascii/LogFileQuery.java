@@ -0,0 +1,382 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.BiConsumer;
+
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.datalogger.ascii.utils.BufferedLineReader;
+import org.openmuc.framework.datalogger.ascii.utils.Const;
+import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the records of one or more channels with the same logging interval and time offset from the log files.<br>
+ * <br>
+ * The day files of the requested time span are read in parallel by the given executor. Of every line only the time
+ * stamp column and the columns of the requested channels are parsed, the remaining columns are skipped. The records
+ * are passed on day by day in time order, while at most a fixed number of days is read ahead, so that long time spans
+ * do not have to be held in memory completely.
+ */
+public class LogFileQuery {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogFileQuery.class);
+
+    private final String path;
+    private final int loggingInterval;
+    private final int logTimeOffset;
+    private final Executor executor;
+    private final int maxPendingFiles;
+
+    /**
+     * @param path
+     *            the directory of the log files
+     * @param loggingInterval
+     *            logging interval of the channels in ms
+     * @param logTimeOffset
+     *            logging time offset of the channels in ms
+     * @param executor
+     *            executor reading the day files
+     * @param maxPendingFiles
+     *            maximum number of day files that are read ahead of the day passed on to the caller
+     */
+    public LogFileQuery(String path, int loggingInterval, int logTimeOffset, Executor executor, int maxPendingFiles) {
+        this.path = path.endsWith(File.separator) ? path : path + File.separator;
+        this.loggingInterval = loggingInterval;
+        this.logTimeOffset = logTimeOffset;
+        this.executor = executor;
+        this.maxPendingFiles = Math.max(1, maxPendingFiles);
+    }
+
+    /**
+     * Get the records of a channel between start time stamp and end time stamp.
+     *
+     * @param channelId
+     *            the channel ID
+     * @param startTimestamp
+     *            start time stamp in ms
+     * @param endTimestamp
+     *            end time stamp in ms
+     * @return the records in time order
+     * @throws IOException
+     *             if the query was interrupted
+     */
+    public List<Record> getRecords(String channelId, long startTimestamp, long endTimestamp) throws IOException {
+        return getRecords(Collections.singletonList(channelId), startTimestamp, endTimestamp).get(channelId);
+    }
+
+    /**
+     * Get the records of several channels between start time stamp and end time stamp.
+     *
+     * @param channelIds
+     *            the channel IDs
+     * @param startTimestamp
+     *            start time stamp in ms
+     * @param endTimestamp
+     *            end time stamp in ms
+     * @return the records of every channel in time order, the list of a channel without records is empty
+     * @throws IOException
+     *             if the query was interrupted
+     */
+    public Map<String, List<Record>> getRecords(Collection<String> channelIds, long startTimestamp, long endTimestamp)
+            throws IOException {
+
+        Map<String, List<Record>> recordsMap = new LinkedHashMap<>();
+        for (String channelId : channelIds) {
+            recordsMap.put(channelId, new ArrayList<>());
+        }
+        stream(channelIds, startTimestamp, endTimestamp, (channelId, records) -> {
+            recordsMap.get(channelId).addAll(records);
+        });
+        return recordsMap;
+    }
+
+    /**
+     * Reads the records of several channels between start time stamp and end time stamp and passes them to the
+     * consumer. The consumer is called in the calling thread once per day file and channel with records, in time
+     * order.
+     *
+     * @param channelIds
+     *            the channel IDs
+     * @param startTimestamp
+     *            start time stamp in ms
+     * @param endTimestamp
+     *            end time stamp in ms
+     * @param consumer
+     *            receives the channel ID and the records of this channel of one day
+     * @throws IOException
+     *             if the query was interrupted
+     */
+    public void stream(Collection<String> channelIds, long startTimestamp, long endTimestamp,
+            BiConsumer<String, List<Record>> consumer) throws IOException {
+
+        if (startTimestamp > endTimestamp || channelIds.isEmpty()) {
+            return;
+        }
+
+        String[] ids = channelIds.toArray(new String[channelIds.size()]);
+        List<String> filenames = LoggerUtils.getFilenames(loggingInterval, logTimeOffset, startTimestamp,
+                endTimestamp);
+
+        ArrayDeque<Future<Map<String, List<Record>>>> pending = new ArrayDeque<>();
+        int next = 0;
+        try {
+            while (next < filenames.size() || !pending.isEmpty()) {
+                while (next < filenames.size() && pending.size() < maxPendingFiles) {
+                    File file = new File(path + filenames.get(next));
+                    // the index only helps in the first file, all following files are read from their start
+                    FutureTask<Map<String, List<Record>>> task = new FutureTask<>(
+                            new DayFileTask(file, ids, startTimestamp, endTimestamp, next == 0));
+                    executor.execute(task);
+                    pending.add(task);
+                    ++next;
+                }
+
+                for (Entry<String, List<Record>> entry : pending.remove().get().entrySet()) {
+                    if (!entry.getValue().isEmpty()) {
+                        consumer.accept(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the log files.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Reading the log files failed.", e.getCause());
+        } finally {
+            for (Future<?> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Reads the requested columns of one day file.
+     */
+    private static class DayFileTask implements Callable<Map<String, List<Record>>> {
+
+        private final File file;
+        private final String[] ids;
+        private final long startTimestamp;
+        private final long endTimestamp;
+        private final boolean useIndex;
+
+        DayFileTask(File file, String[] ids, long startTimestamp, long endTimestamp, boolean useIndex) {
+            this.file = file;
+            this.ids = ids;
+            this.startTimestamp = startTimestamp;
+            this.endTimestamp = endTimestamp;
+            this.useIndex = useIndex;
+        }
+
+        @Override
+        public Map<String, List<Record>> call() {
+
+            Map<String, List<Record>> recordsMap = new HashMap<>();
+            if (!file.exists()) {
+                logger.warn("Requested logfile: '{}' not found.", file.getAbsolutePath());
+                return recordsMap;
+            }
+
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                read(channel, recordsMap);
+            } catch (IOException e) {
+                logger.error("Could not read file " + file.getAbsolutePath(), e);
+            }
+            return recordsMap;
+        }
+
+        private void read(FileChannel channel, Map<String, List<Record>> recordsMap) throws IOException {
+
+            BufferedLineReader reader = new BufferedLineReader(channel, 0);
+
+            // the time stamp column is looked up together with the channels
+            String[] names = Arrays.copyOf(ids, ids.length + 1);
+            names[ids.length] = Const.TIMESTAMP_STRING;
+
+            int[] columnNumbers = null;
+            while (columnNumbers == null) {
+                String line = reader.readLine();
+                if (line == null) {
+                    return; // header incomplete, no values logged yet
+                }
+                columnNumbers = LogFileHeader.getColumnNumbers(line, names);
+            }
+
+            int timestampColumn = columnNumbers[ids.length];
+            if (timestampColumn == -1) {
+                return;
+            }
+
+            ColumnSelection selection = new ColumnSelection(timestampColumn, Arrays.copyOf(columnNumbers, ids.length));
+            if (selection.isEmpty()) {
+                return; // none of the requested channels is logged in this file
+            }
+
+            List<List<Record>> lists = new ArrayList<>(ids.length);
+            for (int i = 0; i < ids.length; ++i) {
+                lists.add(columnNumbers[i] == -1 ? null : new ArrayList<>());
+            }
+
+            long dataStart = reader.getPosition();
+            if (useIndex) {
+                LogFileIndex index = LogFileIndex.load(file);
+                if (index != null) {
+                    reader.seek(Math.max(dataStart, index.getOffset(startTimestamp)));
+                }
+            }
+
+            String[] values = new String[ids.length];
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(Const.COMMENT_SIGN)) {
+                    continue;
+                }
+                String timestampString = selection.extract(line, values);
+                if (timestampString == null) {
+                    continue; // incomplete line
+                }
+
+                long timestamp;
+                try {
+                    timestamp = (long) (Double.parseDouble(timestampString) * 1000);
+                } catch (NumberFormatException e) {
+                    logger.warn("It's not a timestamp: {}", timestampString);
+                    continue;
+                }
+
+                if (timestamp < startTimestamp) {
+                    continue;
+                }
+                if (timestamp > endTimestamp) {
+                    break;
+                }
+
+                for (int i = 0; i < ids.length; ++i) {
+                    if (values[i] != null && !values[i].isEmpty()) {
+                        lists.get(i).add(LogFileReader.convertLogfileEntryToRecord(values[i], timestamp));
+                    }
+                }
+            }
+
+            for (int i = 0; i < ids.length; ++i) {
+                if (lists.get(i) != null) {
+                    recordsMap.put(ids[i], lists.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Extracts the time stamp column and the requested value columns of a line without splitting the whole line.
+     */
+    private static class ColumnSelection {
+
+        private final int timestampColumn;
+        // requested columns in ascending order and the index of the requested ID of every column
+        private final int[] columns;
+        private final int[] idIndices;
+        private final int lastColumn;
+
+        ColumnSelection(int timestampColumn, int[] columnNumbers) {
+            this.timestampColumn = timestampColumn;
+
+            int count = 0;
+            for (int columnNumber : columnNumbers) {
+                if (columnNumber != -1) {
+                    ++count;
+                }
+            }
+            long[] sorted = new long[count];
+            int j = 0;
+            for (int i = 0; i < columnNumbers.length; ++i) {
+                if (columnNumbers[i] != -1) {
+                    sorted[j++] = ((long) columnNumbers[i] << 32) | i;
+                }
+            }
+            Arrays.sort(sorted);
+
+            columns = new int[count];
+            idIndices = new int[count];
+            for (int i = 0; i < count; ++i) {
+                columns[i] = (int) (sorted[i] >>> 32);
+                idIndices[i] = (int) sorted[i];
+            }
+            lastColumn = Math.max(timestampColumn, count == 0 ? -1 : columns[count - 1]);
+        }
+
+        boolean isEmpty() {
+            return columns.length == 0;
+        }
+
+        /**
+         * @param line
+         *            the line
+         * @param values
+         *            receives the trimmed value of every requested ID at its index
+         * @return the trimmed time stamp column or null if the line does not contain all requested columns
+         */
+        String extract(String line, String[] values) {
+
+            String timestamp = null;
+            int next = 0;
+            int start = 0;
+            for (int column = 0; column <= lastColumn; ++column) {
+                int end = line.indexOf(Const.SEPARATOR, start);
+                if (end == -1) {
+                    end = line.length();
+                    if (column < lastColumn) {
+                        return null;
+                    }
+                }
+
+                if (column == timestampColumn) {
+                    timestamp = line.substring(start, end).trim();
+                }
+                while (next < columns.length && columns[next] == column) {
+                    values[idIndices[next++]] = line.substring(start, end).trim();
+                }
+                start = end + Const.SEPARATOR.length();
+            }
+            return timestamp;
+        }
+    }
+}
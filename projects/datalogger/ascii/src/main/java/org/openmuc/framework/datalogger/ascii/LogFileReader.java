@@ -22,7 +22,8 @@ package org.openmuc.framework.datalogger.ascii;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -35,6 +36,7 @@ import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.datalogger.ascii.utils.BufferedLineReader;
 import org.openmuc.framework.datalogger.ascii.utils.Const;
 import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
 import org.openmuc.framework.datalogger.spi.LogChannel;
@@ -176,7 +178,8 @@ public class LogFileReader {
     }
 
     /**
-     * Reads the file line by line
+     * Reads the file line by line. If the requested interval starts within the file, the log file index is used to
+     * seek close to the first requested line instead of reading the file from the beginning.
      *
      * @param filepath
      *            file path
@@ -187,54 +190,55 @@ public class LogFileReader {
     private Map<String, List<Record>> processFile(Map<String, List<Record>> recordsMap, String filepath,
             Boolean nextFile) {
 
-        String line = null;
-        long currentPosition = 0;
-        long rowSize;
-        long firstTimestamp = 0;
-        String firstValueLine = null;
-        long currentTimestamp = 0;
-
-        RandomAccessFile raf = LoggerUtils.getRandomAccessFile(new File(filepath), "r");
-        if (raf == null) {
+        File file = new File(filepath);
+        if (!file.exists()) {
+            logger.warn("Requested logfile: '{}' not found.", file.getAbsolutePath());
             return null;
         }
-        try {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            BufferedLineReader reader = new BufferedLineReader(channel, 0);
+
+            String line = null;
             Map<String, Integer> channelsColumnsMap = null;
             while (channelsColumnsMap == null) {
-                line = raf.readLine();
+                line = reader.readLine();
+                if (line == null) {
+                    return recordsMap; // header incomplete, no values logged yet
+                }
                 channelsColumnsMap = LoggerUtils.getColumnNumbersByNames(line, ids);
             }
-            unixTimestampColumn = channelsColumnsMap.get(Const.TIMESTAMP_STRING);
-            firstValueLine = raf.readLine();
 
-            rowSize = firstValueLine.length() + 1l; // +1 because of "\n"
+            Integer timestampColumn = channelsColumnsMap.get(Const.TIMESTAMP_STRING);
+            if (timestampColumn == null) {
+                return null; // because the column of the time stamp was not identified
+            }
+            unixTimestampColumn = timestampColumn;
 
-            // rewind the position to the start of the firstValue line
-            currentPosition = raf.getFilePointer() - rowSize;
+            long dataStart = reader.getPosition();
+            String firstValueLine = reader.readLine();
+            if (firstValueLine == null) {
+                return recordsMap;
+            }
 
-            firstTimestamp = (long) (Double.valueOf((firstValueLine.split(Const.SEPARATOR))[unixTimestampColumn])
+            long firstTimestamp = (long) (Double.valueOf((firstValueLine.split(Const.SEPARATOR))[unixTimestampColumn])
                     * 1000);
 
             if (nextFile || startTimestamp < firstTimestamp) {
                 startTimestamp = firstTimestamp;
             }
 
-            if (startTimestamp >= firstTimestamp) {
-                long filepos = getFilePosition(loggingInterval, startTimestamp, firstTimestamp, currentPosition,
-                        rowSize);
-                raf.seek(filepos);
-
-                currentTimestamp = startTimestamp;
-
-                while ((line = raf.readLine()) != null && currentTimestamp <= endTimestamp) {
-
-                    processLine(line, channelsColumnsMap, recordsMap);
-                    currentTimestamp += loggingInterval;
-                }
-                raf.close();
+            if (startTimestamp > firstTimestamp) {
+                reader.seek(getFilePosition(file, dataStart));
             }
             else {
-                recordsMap = null; // because the column of the channel was not identified
+                reader.seek(dataStart);
+            }
+
+            while ((line = reader.readLine()) != null) {
+                if (!processLine(line, channelsColumnsMap, recordsMap)) {
+                    break;
+                }
             }
         } catch (IOException e) {
             logger.error(e.getMessage());
@@ -250,13 +254,15 @@ public class LogFileReader {
      *            the line to process
      * @param recordsMap
      *            list of records
+     * @return false if the line is after the requested interval, otherwise true
      */
-    private void processLine(String line, Map<String, Integer> channelsColumnsMap,
+    private boolean processLine(String line, Map<String, Integer> channelsColumnsMap,
             Map<String, List<Record>> recordsMap) {
 
         if (!line.startsWith(Const.COMMENT_SIGN)) {
-            readRecordsFromLine(line, channelsColumnsMap, recordsMap);
+            return readRecordsFromLine(line, channelsColumnsMap, recordsMap);
         }
+        return true;
     }
 
     /**
@@ -264,9 +270,9 @@ public class LogFileReader {
      *
      * @param line
      *            to read
-     * @return Records read from line
+     * @return false if the line is after the requested interval, otherwise true
      */
-    private void readRecordsFromLine(String line, Map<String, Integer> channelsColumnsMap,
+    private boolean readRecordsFromLine(String line, Map<String, Integer> channelsColumnsMap,
             Map<String, List<Record>> recordsMap) {
 
         String columnValue[] = line.split(Const.SEPARATOR);
@@ -292,12 +298,14 @@ public class LogFileReader {
                     SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss.SSS");
                     logger.trace("timestampMS: " + sdf.format(timestampMS) + " " + timestampMS);
                 }
+                return timestampMS <= endTimestamp;
             }
         } catch (NumberFormatException e) {
             logger.warn("It's not a timestamp.\n", e.getMessage());
         } catch (ArrayIndexOutOfBoundsException e) {
             logger.error("Array Index Out Of Bounds Exception. ", e);
         }
+        return true;
     }
 
     /**
@@ -322,28 +330,26 @@ public class LogFileReader {
     }
 
     /**
-     * Get the position of the startTimestamp, without Header.
+     * Get the position to start reading the values of the startTimestamp from, without Header. The position is looked
+     * up in the log file index, if the index is not available the file is read from the first value on.
      *
-     * @param loggingInterval
-     *            logging interval
-     * @param startTimestamp
-     *            start time stamp
-     * @return the position of the start timestamp as long.
+     * @param file
+     *            the log file
+     * @param dataStart
+     *            position of the first value line
+     * @return the position as long.
      */
-    private long getFilePosition(int loggingInterval, long startTimestamp, long firstTimestampOfFile,
-            long firstValuePos, long rowSize) {
+    private long getFilePosition(File file, long dataStart) {
 
-        long timeOffsetMs = startTimestamp - firstTimestampOfFile;
-        long numberOfLinesToSkip = timeOffsetMs / loggingInterval;
-
-        // if offset isn't a multiple of loggingInterval add an additional line
-        if (timeOffsetMs % loggingInterval != 0) {
-            ++numberOfLinesToSkip;
+        try {
+            LogFileIndex index = LogFileIndex.load(file);
+            if (index != null) {
+                return Math.max(dataStart, index.getOffset(startTimestamp));
+            }
+        } catch (IOException e) {
+            logger.debug("Could not use index of " + file.getName() + ", reading the whole file.", e);
         }
-
-        long pos = numberOfLinesToSkip * rowSize + firstValuePos;
-
-        return pos;
+        return dataStart;
     }
 
     // TODO support ints, booleans, ...
@@ -357,7 +363,7 @@ public class LogFileReader {
      *            time stamp
      * @return the converted logfile entry.
      */
-    private Record convertLogfileEntryToRecord(String strValue, long timestamp) {
+    static Record convertLogfileEntryToRecord(String strValue, long timestamp) {
 
         Record record = null;
         if (isNumber(strValue)) {
@@ -379,7 +385,7 @@ public class LogFileReader {
      *            time stamp
      * @return the value in a record.
      */
-    private Record getRecordFromNonNumberValue(String strValue, long timestamp) {
+    private static Record getRecordFromNonNumberValue(String strValue, long timestamp) {
 
         Record record = null;
 
@@ -413,7 +419,7 @@ public class LogFileReader {
      *            string value
      * @return True on success, otherwise false
      */
-    private boolean isNumber(String strValue) {
+    private static boolean isNumber(String strValue) {
 
         boolean isDecimalSeparatorFound = false;
 
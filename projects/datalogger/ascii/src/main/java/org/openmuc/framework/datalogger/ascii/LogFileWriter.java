@@ -21,12 +21,13 @@
 package org.openmuc.framework.datalogger.ascii;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -51,13 +52,34 @@ public class LogFileWriter {
     private final StringBuilder sb = new StringBuilder();
     private final StringBuilder sbValue = new StringBuilder();
     private final String directoryPath;
+    private final StringBuilder sbLines = new StringBuilder();
+    private final Map<String, String> loggedValues = new HashMap<>();
     private final boolean isFillUpFiles;
+    private final boolean keepFileOpen;
     private File actualFile;
+    private FileChannel channel;
 
     public LogFileWriter(String directoryPath, boolean isFillUpFiles) {
 
+        this(directoryPath, isFillUpFiles, false);
+    }
+
+    /**
+     * LogFileWriter Constructor
+     *
+     * @param directoryPath
+     *            the directory of the log files
+     * @param isFillUpFiles
+     *            if gaps since the last logged line should be filled up with error lines
+     * @param keepFileOpen
+     *            if true the log file stays open between calls of log until the day changes or {@link #close()} is
+     *            called, otherwise it is closed after every call of log
+     */
+    public LogFileWriter(String directoryPath, boolean isFillUpFiles, boolean keepFileOpen) {
+
         this.isFillUpFiles = isFillUpFiles;
         this.directoryPath = directoryPath;
+        this.keepFileOpen = keepFileOpen;
     }
 
     /**
@@ -77,9 +99,7 @@ public class LogFileWriter {
     public void log(LogIntervalContainerGroup group, int loggingInterval, int logTimeOffset, Calendar calendar,
             Map<String, LogChannel> logChannelList) {
 
-        PrintStream out = getStream(group, loggingInterval, logTimeOffset, calendar, logChannelList);
-
-        if (out == null) {
+        if (!openFile(group, loggingInterval, logTimeOffset, calendar, logChannelList)) {
             return;
         }
 
@@ -87,19 +107,99 @@ public class LogFileWriter {
 
         // TODO match column with container id, so that they don't get mixed up
 
+        loggedValues.clear();
+        sbLines.setLength(0);
         if (isFillUpFiles) {
-            fillUpFile(loggingInterval, logTimeOffset, calendar, logChannelList, logRecordContainer, out);
+            fillUpFile(loggingInterval, logTimeOffset, calendar, logChannelList, logRecordContainer, sbLines);
+        }
+
+        // no println because of println makes different newline char on different systems
+        sbLines.append(getLoggingLine(logRecordContainer, logChannelList, calendar, false));
+
+        try {
+            write(sbLines);
+        } catch (IOException e) {
+            logger.error("Could not write to file " + actualFile.getAbsolutePath(), e);
+            loggedValues.clear();
+            closeFile(false);
+            return;
         }
 
-        String logLine = getLoggingLine(logRecordContainer, logChannelList, calendar, false);
+        if (!keepFileOpen) {
+            closeFile(false);
+        }
+    }
+
+    /**
+     * Returns the values of the line written by the last call of {@link #log}, as they are written to the file
+     * without padding.
+     *
+     * @return the values by channel ID, empty if the last call did not write a line
+     */
+    public Map<String, String> getLoggedValues() {
+        return loggedValues;
+    }
+
+    /**
+     * Forces all written lines of the open log file to the storage device and updates the log file index.
+     */
+    public void sync() {
+
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            logger.warn("Could not sync file " + actualFile.getAbsolutePath(), e);
+        }
+        updateIndex();
+    }
+
+    /**
+     * Syncs and closes the open log file.
+     */
+    public void close() {
 
-        out.print(logLine); // print because of println makes different newline char on different systems
-        out.flush();
-        out.close();
+        closeFile(true);
+    }
+
+    private void closeFile(boolean sync) {
+
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (sync) {
+                channel.force(false);
+            }
+            channel.close();
+        } catch (IOException e) {
+            logger.error("Could not close file " + actualFile.getAbsolutePath(), e);
+        }
+        channel = null;
+        updateIndex();
+    }
+
+    private void updateIndex() {
+
+        try {
+            LogFileIndex.update(actualFile);
+        } catch (IOException e) {
+            logger.warn("Could not update index of " + actualFile.getAbsolutePath(), e);
+        }
+    }
+
+    private void write(CharSequence lines) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(Const.CHAR_SET));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
     }
 
     private void fillUpFile(int loggingInterval, int logTimeOffset, Calendar calendar,
-            Map<String, LogChannel> logChannelList, List<LoggingRecord> loggingRecords, PrintStream out) {
+            Map<String, LogChannel> logChannelList, List<LoggingRecord> loggingRecords, StringBuilder out) {
 
         Long lastLoglineTimestamp = AsciiLogger.getLastLoggedLineTimeStamp(loggingInterval, logTimeOffset);
 
@@ -118,7 +218,7 @@ public class LogFileWriter {
 
                     for (int i = 1; i < numOfErrorLines; ++i) {
                         errCalendar.setTimeInMillis(lastLoglineTimestamp + ((long) loggingInterval * i));
-                        out.print(getLoggingLine(loggingRecords, logChannelList, errCalendar, true));
+                        out.append(getLoggingLine(loggingRecords, logChannelList, errCalendar, true));
                     }
                 }
             }
@@ -242,6 +342,10 @@ public class LogFileWriter {
                 size = checkMinimalValueSize(getDataTypeSize(logChannel, i));
             }
 
+            if (!isError32) {
+                loggedValues.put(channelId, sbValue.toString());
+            }
+
             if (left) {
                 LoggerUtils.addSpaces(sbValue.length(), size, sb);
                 sb.append(sbValue);
@@ -291,41 +395,46 @@ public class LogFileWriter {
     }
 
     /**
-     * Returns the PrintStream for logging.
+     * Opens the log file of the given day. An already open file is kept if it is still the right one, otherwise it is
+     * closed first, e.g. at midnight or if the file was renamed in the meantime. A new file starts with the header.
      *
      * @param group
      * @param loggingInterval
-     * @param date
+     * @param logTimeOffset
+     * @param calendar
      * @param logChannelList
-     * @return the PrintStream for logging.
+     * @return true if the file is open for logging.
      */
-    private PrintStream getStream(LogIntervalContainerGroup group, int loggingInterval, int logTimeOffset,
+    private boolean openFile(LogIntervalContainerGroup group, int loggingInterval, int logTimeOffset,
             Calendar calendar, Map<String, LogChannel> logChannelList) {
 
         String filename = LoggerUtils.buildFilename(loggingInterval, logTimeOffset, calendar);
-
         File file = new File(directoryPath + filename);
+
+        if (channel != null) {
+            if (file.equals(actualFile) && file.exists()) {
+                return true;
+            }
+            closeFile(true);
+        }
+
         actualFile = file;
-        PrintStream out = null;
 
         try {
-            if (file.exists()) {
-                out = new PrintStream(new FileOutputStream(file, true), false, Const.CHAR_SET.toString());
-            }
-            else {
-                out = new PrintStream(new FileOutputStream(file, true), false, Const.CHAR_SET.toString());
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+
+            if (channel.size() == 0) {
                 String headerString = LogFileHeader.getIESDataFormatHeaderString(group, file.getName(), loggingInterval,
                         logChannelList);
-
-                out.print(headerString);
-                out.flush();
+                write(headerString);
             }
-        } catch (UnsupportedEncodingException e) {
-            logger.error("", e);
-        } catch (FileNotFoundException e) {
-            logger.error("", e);
+        } catch (IOException e) {
+            logger.error("Could not open file " + file.getAbsolutePath(), e);
+            closeFile(false);
+            return false;
         }
-        return out;
+        return true;
     }
 
     /**
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads lines of an ASCII log file through a FileChannel with a block buffer. In contrast to a BufferedReader the
+ * byte offset of every line is known, which is needed to seek with the help of the log file index.
+ */
+public class BufferedLineReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int TAIL_BLOCK_SIZE = 4 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final StringBuilder sb = new StringBuilder();
+    private long position;
+    private long lineStart;
+    private boolean lineTerminated;
+
+    /**
+     * @param channel
+     *            channel to read from, it is not closed by this reader
+     * @param position
+     *            byte offset of the first line to read
+     */
+    public BufferedLineReader(FileChannel channel, long position) {
+        this(channel, position, BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel
+     *            channel to read from, it is not closed by this reader
+     * @param position
+     *            byte offset of the first line to read
+     * @param bufferSize
+     *            size of the read buffer in bytes
+     */
+    public BufferedLineReader(FileChannel channel, long position, int bufferSize) {
+        this.channel = channel;
+        buffer = ByteBuffer.allocate(bufferSize);
+        seek(position);
+    }
+
+    /**
+     * Sets the byte offset of the next line to read.
+     *
+     * @param position
+     *            byte offset of the next line
+     */
+    public void seek(long position) {
+        this.position = position;
+        buffer.clear();
+        buffer.limit(0);
+    }
+
+    /**
+     * Reads the next line without the line separator. The last line of the file is returned even if it is not
+     * terminated, use {@link #isLineTerminated()} to detect such an incomplete line.
+     *
+     * @return the line or {@code null} if the end of the file is reached
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public String readLine() throws IOException {
+        sb.setLength(0);
+        lineStart = position;
+        lineTerminated = false;
+
+        while (true) {
+            if (!buffer.hasRemaining() && !fill()) {
+                return sb.length() == 0 ? null : sb.toString();
+            }
+            byte b = buffer.get();
+            ++position;
+            if (b == Const.LINESEPARATOR) {
+                lineTerminated = true;
+                return sb.toString();
+            }
+            sb.append((char) (b & 0xFF));
+        }
+    }
+
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int read = channel.read(buffer, position);
+        buffer.flip();
+        return read > 0;
+    }
+
+    /**
+     * @return byte offset of the line returned by the last call of {@link #readLine()}
+     */
+    public long getLineStart() {
+        return lineStart;
+    }
+
+    /**
+     * @return byte offset of the next line to read
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return true if the line returned by the last call of {@link #readLine()} ended with a line separator
+     */
+    public boolean isLineTerminated() {
+        return lineTerminated;
+    }
+
+    /**
+     * Reads the last line of a file by scanning backwards from its end. A trailing line separator is ignored.
+     *
+     * @param channel
+     *            channel to read from
+     * @return the last line or an empty string if the file is empty
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static String readLastLine(FileChannel channel) throws IOException {
+
+        long end = channel.size();
+        if (end == 0) {
+            return "";
+        }
+
+        ByteBuffer block = ByteBuffer.allocate(1);
+        channel.read(block, end - 1);
+        if (block.get(0) == Const.LINESEPARATOR) {
+            --end;
+        }
+
+        block = ByteBuffer.allocate(TAIL_BLOCK_SIZE);
+        long start = 0;
+        long blockEnd = end;
+        search: while (blockEnd > 0) {
+            long blockStart = Math.max(0, blockEnd - TAIL_BLOCK_SIZE);
+            block.clear();
+            block.limit((int) (blockEnd - blockStart));
+            readFully(channel, block, blockStart);
+            for (int i = block.limit() - 1; i >= 0; --i) {
+                if (block.get(i) == Const.LINESEPARATOR) {
+                    start = blockStart + i + 1;
+                    break search;
+                }
+            }
+            blockEnd = blockStart;
+        }
+
+        ByteBuffer line = ByteBuffer.allocate((int) (end - start));
+        readFully(channel, line, start);
+        return new String(line.array(), Const.CHAR_SET);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer bb, long position) throws IOException {
+        while (bb.hasRemaining()) {
+            int read = channel.read(bb, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file.");
+            }
+            position += read;
+        }
+    }
+}
@@ -33,6 +33,8 @@ public class Const {
 
     public static final String EXTENSION = ".dat";
     public static final String EXTENSION_OLD = ".old";
+    public static final String EXTENSION_INDEX = ".idx";
+    public static final String EXTENSION_BINARY = ".bin";
 
     public static final String HEADER_SIGN = "##";
     public static final String COMMENT_SIGN = "#";
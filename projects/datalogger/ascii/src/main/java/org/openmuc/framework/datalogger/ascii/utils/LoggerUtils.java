@@ -23,13 +23,11 @@ package org.openmuc.framework.datalogger.ascii.utils;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.RandomAccessFile;
 import java.text.MessageFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -50,6 +48,7 @@ import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.ValueType;
 import org.openmuc.framework.datalogger.ascii.LogFileHeader;
+import org.openmuc.framework.datalogger.ascii.LogFileIndex;
 import org.openmuc.framework.datalogger.spi.LogChannel;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
 import org.slf4j.Logger;
@@ -219,6 +218,7 @@ public class LoggerUtils {
                     if (!file.renameTo(fileWithNewName)) {
                         logger.error("Could not rename file to ", newName);
                     }
+                    LogFileIndex.delete(file);
                 }
             }
         }
@@ -262,6 +262,7 @@ public class LoggerUtils {
             if (!file.renameTo(fileWithNewName)) {
                 logger.error("Could not rename file to " + newName);
             }
+            LogFileIndex.delete(file);
         }
     }
 
@@ -613,25 +614,6 @@ public class LoggerUtils {
         return sb.toString();
     }
 
-    /**
-     * Returns a RandomAccessFile of the specified file.
-     *
-     * @param file
-     *            file get the RandomAccessFile
-     * @param accessMode
-     *            access mode
-     * @return the RandomAccessFile of the specified file, {@code null} if an error occured.
-     */
-    public static RandomAccessFile getRandomAccessFile(File file, String accessMode) {
-        try {
-            return new RandomAccessFile(file, accessMode);
-        } catch (FileNotFoundException e) {
-            logger.warn("Requested logfile: '{}' not found.", file.getAbsolutePath());
-        }
-
-        return null;
-    }
-
     public static PrintWriter getPrintWriter(File file, boolean append) throws IOException {
 
         PrintWriter writer = null;
@@ -836,6 +818,62 @@ public class LoggerUtils {
         return files;
     }
 
+    /**
+     * Gets the data files of one logging interval and time offset, the latest file first.
+     *
+     * @param directoryPath
+     *            the directory of the log files
+     * @param loggingInterval
+     *            logging interval
+     * @param logTimeOffset
+     *            logging time offset
+     * @return the data files sorted by date in descending order, empty if there are none
+     */
+    public static List<File> getDataFilesLatestFirst(String directoryPath, int loggingInterval, int logTimeOffset) {
+        return getDataFilesLatestFirst(directoryPath, loggingInterval, logTimeOffset, Const.EXTENSION);
+    }
+
+    /**
+     * Returns the files with the given extension of a logging interval and time offset, the latest file first.
+     *
+     * @param directoryPath
+     *            directory of the log files
+     * @param loggingInterval
+     *            logging interval
+     * @param logTimeOffset
+     *            logging time offset
+     * @param extension
+     *            file extension, e.g. {@link Const#EXTENSION_BINARY}
+     * @return the files, sorted by date descending
+     */
+    public static List<File> getDataFilesLatestFirst(String directoryPath, int loggingInterval, int logTimeOffset,
+            String extension) {
+
+        StringBuilder suffix = new StringBuilder();
+        suffix.append(Const.TIME_SEPERATOR).append(loggingInterval);
+        if (logTimeOffset != 0) {
+            suffix.append(Const.TIME_SEPERATOR).append(logTimeOffset);
+        }
+        suffix.append(extension);
+        String fileNameEnd = suffix.toString();
+
+        List<File> files = new ArrayList<>();
+        File[] allFiles = new File(directoryPath).listFiles();
+        if (allFiles == null) {
+            return files;
+        }
+        for (File file : allFiles) {
+            String fileName = file.getName();
+            // yyyyMMdd followed by the interval and offset
+            if (fileName.length() == 8 + fileNameEnd.length() && fileName.endsWith(fileNameEnd)) {
+                files.add(file);
+            }
+        }
+        // the names start with the date, so they sort chronologically
+        files.sort((f1, f2) -> f2.getName().compareTo(f1.getName()));
+        return files;
+    }
+
     /**
      * Get the date of the file with given fileName by parsing. The file name must start with the date in YYYYMMDD
      * format.
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the lines of an ASCII log file backwards, from the end of the file towards a start offset. Only the blocks
+ * containing the returned lines are read, so the latest lines of a large file are found without reading the whole
+ * file. An incomplete last line, e.g. of an interrupted write, is skipped.
+ */
+public class ReverseLineReader {
+
+    private static final int BLOCK_SIZE = 4 * 1024;
+
+    private final FileChannel channel;
+    private final long start;
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+    private long blockStart = Long.MAX_VALUE;
+    private long blockEnd = Long.MIN_VALUE;
+    // exclusive end of the next line to return
+    private long position;
+    private boolean finished;
+
+    /**
+     * @param channel
+     *            channel to read from, it is not closed by this reader
+     * @param start
+     *            byte offset of the first line that may be returned, e.g. the start of the data lines
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public ReverseLineReader(FileChannel channel, long start) throws IOException {
+        this.channel = channel;
+        this.start = start;
+
+        long end = channel.size();
+        if (end <= start) {
+            finished = true;
+            return;
+        }
+        ByteBuffer lastByte = ByteBuffer.allocate(1);
+        channel.read(lastByte, end - 1);
+        if (lastByte.get(0) == Const.LINESEPARATOR) {
+            position = end - 1;
+        }
+        else {
+            position = end;
+            readLine(); // incomplete line
+        }
+    }
+
+    /**
+     * Reads the previous line without the line separator.
+     *
+     * @return the line or {@code null} if the start offset is reached
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public String readLine() throws IOException {
+
+        if (finished) {
+            return null;
+        }
+
+        long lineEnd = position;
+        long pos = position;
+        while (pos > start) {
+            if (pos <= blockStart) {
+                fill(pos);
+            }
+            if (block.get((int) (pos - 1 - blockStart)) == Const.LINESEPARATOR) {
+                position = pos - 1;
+                return readString(pos, lineEnd);
+            }
+            --pos;
+        }
+
+        finished = true;
+        if (lineEnd == start) {
+            return null;
+        }
+        return readString(start, lineEnd);
+    }
+
+    private void fill(long end) throws IOException {
+        blockStart = Math.max(start, end - BLOCK_SIZE);
+        blockEnd = end;
+        block.clear();
+        block.limit((int) (blockEnd - blockStart));
+        readFully(block, blockStart);
+    }
+
+    private String readString(long from, long to) throws IOException {
+        if (from >= blockStart && to <= blockEnd) {
+            return new String(block.array(), (int) (from - blockStart), (int) (to - from), Const.CHAR_SET);
+        }
+        // the line is longer than a block
+        ByteBuffer line = ByteBuffer.allocate((int) (to - from));
+        readFully(line, from);
+        return new String(line.array(), Const.CHAR_SET);
+    }
+
+    private void readFully(ByteBuffer bb, long position) throws IOException {
+        while (bb.hasRemaining()) {
+            int read = channel.read(bb, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file.");
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.ascii.AsciiLogger;
+import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+public class AsciiLoggerLatestRecordTest {
+
+    private static final int LOGGING_INTERVAL = 7000; // ms
+    private static final String DATE_FORMAT = "yyyyMMdd HH:mm:ss";
+
+    private static List<LogChannel> channels;
+    private static AsciiLogger asciiLogger;
+    private static long lastTimestamp;
+
+    @BeforeAll
+    public static void setup() {
+
+        TestUtils.createTestFolder();
+
+        channels = Arrays.asList(createChannel("power"), createChannel("state"), createChannel("unlogged"));
+        asciiLogger = new AsciiLogger(TestUtils.TESTFOLDERPATH);
+        asciiLogger.setChannelsToLog(channels);
+
+        // two days, the state channel fails at the end
+        Calendar calendar = TestUtils.stringToDate(DATE_FORMAT, "20970707 23:59:00");
+        for (int i = 0; i < 20; i++) {
+            List<LoggingRecord> loggingRecords = new ArrayList<>();
+            loggingRecords.add(new LoggingRecord("power", new Record(new DoubleValue(i), calendar.getTimeInMillis())));
+            Record state = i < 18 ? new Record(new DoubleValue(i * 10), calendar.getTimeInMillis())
+                    : new Record(null, calendar.getTimeInMillis(), Flag.DRIVER_ERROR_TIMEOUT);
+            loggingRecords.add(new LoggingRecord("state", state));
+            asciiLogger.log(loggingRecords, calendar.getTimeInMillis());
+            lastTimestamp = calendar.getTimeInMillis();
+            calendar.add(Calendar.MILLISECOND, LOGGING_INTERVAL);
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        TestUtils.deleteTestFolder();
+    }
+
+    private static LogChannelTestImpl createChannel(String channelId) {
+        return new LogChannelTestImpl(channelId, "", "dummy description", "kW", ValueType.DOUBLE, 0.0, 0.0, false,
+                1000, 0, "", LOGGING_INTERVAL, 0, false, false);
+    }
+
+    private static AsciiLogger createRestartedLogger() {
+        AsciiLogger restartedLogger = new AsciiLogger(TestUtils.TESTFOLDERPATH);
+        restartedLogger.setChannelsToLog(channels);
+        return restartedLogger;
+    }
+
+    @Test
+    public void tc800_latest_record_of_running_logger() throws IOException {
+
+        Record power = asciiLogger.getLatestLogRecord("power");
+        assertEquals(lastTimestamp, power.getTimestamp().longValue());
+        assertEquals(19.0, power.getValue().asDouble(), 0.0);
+        assertEquals(Flag.VALID, power.getFlag());
+
+        Record state = asciiLogger.getLatestLogRecord("state");
+        assertEquals(lastTimestamp, state.getTimestamp().longValue());
+        assertNull(state.getValue());
+        assertEquals(Flag.DRIVER_ERROR_TIMEOUT, state.getFlag());
+
+        assertNull(asciiLogger.getLatestLogRecord("unlogged"));
+    }
+
+    @Test
+    public void tc801_latest_record_after_restart_is_read_from_file_end() throws IOException {
+
+        AsciiLogger restartedLogger = createRestartedLogger();
+
+        for (String channelId : new String[] { "power", "state" }) {
+            Record expected = asciiLogger.getLatestLogRecord(channelId);
+            Record record = restartedLogger.getLatestLogRecord(channelId);
+            assertEquals(expected.getTimestamp(), record.getTimestamp());
+            assertEquals(expected.getFlag(), record.getFlag());
+            if (expected.getValue() != null) {
+                assertEquals(expected.getValue().asDouble(), record.getValue().asDouble(), 0.0);
+            }
+        }
+        assertNull(restartedLogger.getLatestLogRecord("unlogged"));
+    }
+
+    @Test
+    public void tc802_incomplete_last_line_is_ignored() throws IOException {
+
+        File file = new File(
+                TestUtils.TESTFOLDERPATH + LoggerUtils.getFilename(LOGGING_INTERVAL, 0, lastTimestamp + 1000));
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write("20970708;\t000".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        Record power = createRestartedLogger().getLatestLogRecord("power");
+        assertEquals(lastTimestamp, power.getTimestamp().longValue());
+        assertEquals(19.0, power.getValue().asDouble(), 0.0);
+    }
+}
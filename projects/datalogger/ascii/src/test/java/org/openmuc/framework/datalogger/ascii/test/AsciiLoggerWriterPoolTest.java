@@ -0,0 +1,212 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.ascii.AsciiLogger;
+import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+/**
+ * Tests the log files kept open by the writers of the AsciiLogger.
+ */
+public class AsciiLoggerWriterPoolTest {
+
+    private static final String DIRECTORY = TestUtils.TESTFOLDERPATH + "writerpool/";
+    private static final String DATE_FORMAT = "yyyyMMdd HH:mm:ss";
+    private static final String CHANNEL = "power";
+
+    private AsciiLogger asciiLogger;
+
+    @BeforeAll
+    public static void setup() {
+        TestUtils.createTestFolder();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        TestUtils.deleteTestFolder();
+    }
+
+    @BeforeEach
+    public void createLogger() {
+        asciiLogger = new AsciiLogger(DIRECTORY);
+    }
+
+    @AfterEach
+    public void closeWriters() {
+        // closes the open files
+        asciiLogger.setChannelsToLog(Collections.<LogChannel> emptyList());
+    }
+
+    @Test
+    public void dayChangeSwitchesFile() throws IOException {
+        int interval = 60000;
+        asciiLogger.setChannelsToLog(channels(interval, CHANNEL));
+
+        Calendar beforeMidnight = TestUtils.stringToDate(DATE_FORMAT, "20770707 23:59:00");
+        Calendar afterMidnight = TestUtils.stringToDate(DATE_FORMAT, "20770708 00:00:00");
+        log(beforeMidnight, CHANNEL, 1);
+        log(afterMidnight, CHANNEL, 2);
+
+        File firstDay = logFile(interval, beforeMidnight);
+        File secondDay = logFile(interval, afterMidnight);
+        assertTrue(firstDay.exists());
+        assertTrue(secondDay.exists());
+
+        List<Record> records = asciiLogger.getRecords(CHANNEL, beforeMidnight.getTimeInMillis(),
+                beforeMidnight.getTimeInMillis() + interval - 1);
+        assertEquals(1, records.size());
+        assertEquals(1, records.get(0).getValue().asDouble());
+
+        records = asciiLogger.getRecords(CHANNEL, afterMidnight.getTimeInMillis(), afterMidnight.getTimeInMillis());
+        assertEquals(1, records.size());
+        assertEquals(2, records.get(0).getValue().asDouble());
+        assertEquals(Collections.singletonList("235900"), timesOf(firstDay));
+        assertEquals(Collections.singletonList("000000"), timesOf(secondDay));
+    }
+
+    @Test
+    public void renamedFileIsReopened() throws IOException {
+        int interval = 120000;
+        asciiLogger.setChannelsToLog(channels(interval, CHANNEL));
+
+        Calendar calendar = TestUtils.stringToDate(DATE_FORMAT, "20770709 10:00:00");
+        log(calendar, CHANNEL, 1);
+
+        File file = logFile(interval, calendar);
+        File renamed = new File(DIRECTORY, file.getName() + ".moved");
+        assertTrue(file.renameTo(renamed));
+        long renamedLength = renamed.length();
+
+        calendar.add(Calendar.MILLISECOND, interval);
+        log(calendar, CHANNEL, 2);
+
+        assertEquals(renamedLength, renamed.length(), "renamed file is not written anymore");
+        assertTrue(file.exists());
+        assertEquals(Collections.singletonList("100200"), timesOf(file));
+        assertEquals(Collections.singletonList("100000"), timesOf(renamed));
+        assertTrue(Files.readAllLines(file.toPath(), StandardCharsets.ISO_8859_1).get(0).startsWith("#"),
+                "reopened file starts with header");
+    }
+
+    @Test
+    public void setChannelsToLogClosesFiles() throws IOException {
+        int interval = 180000;
+        asciiLogger.setChannelsToLog(channels(interval, CHANNEL));
+
+        Calendar calendar = new GregorianCalendar(Locale.getDefault());
+        calendar.setTimeInMillis(calendar.getTimeInMillis() / interval * interval);
+        log(calendar, CHANNEL, 1);
+        File file = logFile(interval, calendar);
+        assumeTrue(isOpenedByProcess(file) != null, "open files can't be listed on this platform");
+        assertTrue(isOpenedByProcess(file));
+
+        // changed header, so the file of today is renamed
+        asciiLogger.setChannelsToLog(channels(interval, CHANNEL, "energy"));
+
+        assertFalse(isOpenedByProcess(file));
+        assertFalse(file.exists());
+        File oldFile = new File(DIRECTORY + file.getName().replace(".dat", ".old0"));
+        assertTrue(oldFile.exists());
+        assertFalse(isOpenedByProcess(oldFile));
+    }
+
+    private void log(Calendar calendar, String channelId, double value) {
+        List<LoggingRecord> records = new ArrayList<>();
+        records.add(new LoggingRecord(channelId,
+                new Record(new DoubleValue(value), calendar.getTimeInMillis(), Flag.VALID)));
+        asciiLogger.log(records, calendar.getTimeInMillis());
+    }
+
+    private static List<LogChannel> channels(int interval, String... channelIds) {
+        List<LogChannel> channels = new ArrayList<>();
+        for (String channelId : channelIds) {
+            channels.add(new LogChannelTestImpl(channelId, "", "description", "kW", ValueType.DOUBLE, 0.0, 0.0, false,
+                    1000, 0, "", interval, 0, false, false));
+        }
+        return channels;
+    }
+
+    private static File logFile(int interval, Calendar calendar) {
+        return new File(DIRECTORY + LoggerUtils.buildFilename(interval, 0, calendar));
+    }
+
+    /*
+     * Returns the hhmmss column of all data lines, skipping the header and the column names.
+     */
+    private static List<String> timesOf(File file) throws IOException {
+        List<String> times = new ArrayList<>();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.ISO_8859_1)) {
+            if (!line.startsWith("#") && !line.startsWith("YYYYMMDD") && !line.trim().isEmpty()) {
+                times.add(line.split(";")[1].trim());
+            }
+        }
+        return times;
+    }
+
+    /*
+     * Returns null if the open files of the process can't be listed, i.e. on other platforms than Linux.
+     */
+    private static Boolean isOpenedByProcess(File file) throws IOException {
+        Path fdFolder = new File("/proc/self/fd").toPath();
+        if (!Files.isDirectory(fdFolder)) {
+            return null;
+        }
+        Path path = file.getCanonicalFile().toPath();
+        try (Stream<Path> descriptors = Files.list(fdFolder)) {
+            return descriptors.anyMatch(descriptor -> {
+                try {
+                    return Files.readSymbolicLink(descriptor).equals(path);
+                } catch (IOException | UnsupportedOperationException e) {
+                    return false;
+                }
+            });
+        }
+    }
+}
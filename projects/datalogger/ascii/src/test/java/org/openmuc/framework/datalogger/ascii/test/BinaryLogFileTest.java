@@ -0,0 +1,220 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii.test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.ascii.BinaryLogFile;
+import org.openmuc.framework.datalogger.ascii.BinaryLogFileConverter;
+import org.openmuc.framework.datalogger.ascii.BinaryLogFileWriter;
+import org.openmuc.framework.datalogger.ascii.LogFileReader;
+import org.openmuc.framework.datalogger.ascii.LogIntervalContainerGroup;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+public class BinaryLogFileTest {
+
+    private static final int LOGGING_INTERVAL = 5000; // ms
+    private static final int NUMBER_OF_ROWS = 100;
+    private static final String DATE_FORMAT = "yyyyMMdd HH:mm:ss";
+
+    private static Map<String, LogChannel> logChannelList = new HashMap<>();
+    private static File binaryFile;
+    private static long startTimestamp;
+
+    @BeforeAll
+    public static void setup() {
+
+        TestUtils.createTestFolder();
+
+        addChannel("power", ValueType.DOUBLE, 0);
+        addChannel("counter", ValueType.LONG, 0);
+        addChannel("level", ValueType.INTEGER, 0);
+        addChannel("switch", ValueType.BOOLEAN, 0);
+        addChannel("state", ValueType.STRING, 5);
+        addChannel("raw", ValueType.BYTE_ARRAY, 2);
+
+        Calendar calendar = TestUtils.stringToDate(DATE_FORMAT, "20660909 10:00:00");
+        startTimestamp = calendar.getTimeInMillis();
+
+        BinaryLogFileWriter writer = new BinaryLogFileWriter(TestUtils.TESTFOLDERPATH);
+        for (int i = 0; i < NUMBER_OF_ROWS; i++) {
+            long timestamp = calendar.getTimeInMillis();
+            LogIntervalContainerGroup group = new LogIntervalContainerGroup();
+            group.add(new LoggingRecord("power", new Record(new DoubleValue(i * 1.5), timestamp)));
+            group.add(new LoggingRecord("counter", new Record(new LongValue(10000000000L + i), timestamp)));
+            group.add(new LoggingRecord("level", new Record(new IntValue(-i), timestamp)));
+            group.add(new LoggingRecord("switch", new Record(new BooleanValue(i % 2 == 0), timestamp)));
+            // too long in the last row
+            String state = i < NUMBER_OF_ROWS - 1 ? "s" + i : "too long";
+            group.add(new LoggingRecord("state", new Record(new StringValue(state), timestamp)));
+            // the raw channel fails in the second half
+            Record raw = i < NUMBER_OF_ROWS / 2 ? new Record(new ByteArrayValue(new byte[] { 1, (byte) i }), timestamp)
+                    : new Record(null, timestamp, Flag.DRIVER_ERROR_TIMEOUT);
+            group.add(new LoggingRecord("raw", raw));
+            writer.log(group, LOGGING_INTERVAL, 0, calendar, logChannelList);
+            calendar.add(Calendar.MILLISECOND, LOGGING_INTERVAL);
+        }
+        writer.close();
+
+        binaryFile = new File(TestUtils.TESTFOLDERPATH + "20660909_" + LOGGING_INTERVAL + ".bin");
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        TestUtils.deleteTestFolder();
+    }
+
+    private static void addChannel(String id, ValueType valueType, int valueLength) {
+        logChannelList.put(id, new LogChannelTestImpl(id, "", "dummy description", "kW", valueType, 0.0, 0.0, false,
+                1000, 0, "", LOGGING_INTERVAL, 0, false, valueLength, false));
+    }
+
+    private static List<Record> getRecords(String channelId, long start, long end) throws IOException {
+        return BinaryLogFile.getRecords(TestUtils.TESTFOLDERPATH, LOGGING_INTERVAL, 0, channelId, start, end);
+    }
+
+    @Test
+    public void tc900_read_all_value_types() throws IOException {
+
+        assertTrue(binaryFile.exists());
+
+        long end = startTimestamp + (NUMBER_OF_ROWS - 1) * LOGGING_INTERVAL;
+        List<Record> power = getRecords("power", startTimestamp, end);
+        assertEquals(NUMBER_OF_ROWS, power.size());
+        assertEquals(startTimestamp, power.get(0).getTimestamp());
+        assertEquals(3.0, power.get(2).getValue().asDouble(), 0.0);
+        assertEquals(end, power.get(NUMBER_OF_ROWS - 1).getTimestamp());
+
+        assertEquals(10000000042L, getRecords("counter", startTimestamp, end).get(42).getValue().asLong());
+        assertEquals(-7, getRecords("level", startTimestamp, end).get(7).getValue().asInt());
+        assertFalse(getRecords("switch", startTimestamp, end).get(3).getValue().asBoolean());
+        assertEquals("s12", getRecords("state", startTimestamp, end).get(12).getValue().asString());
+        assertArrayEquals(new byte[] { 1, 5 }, getRecords("raw", startTimestamp, end).get(5).getValue().asByteArray());
+    }
+
+    @Test
+    public void tc901_read_time_range_and_flags() throws IOException {
+
+        long t1 = startTimestamp + 70 * LOGGING_INTERVAL;
+        long t2 = startTimestamp + 79 * LOGGING_INTERVAL;
+
+        List<Record> power = getRecords("power", t1 - 1, t2 + 1);
+        assertEquals(10, power.size());
+        assertEquals(t1, power.get(0).getTimestamp());
+        assertEquals(105.0, power.get(0).getValue().asDouble(), 0.0);
+
+        List<Record> raw = getRecords("raw", t1, t1);
+        assertEquals(1, raw.size());
+        assertEquals(Flag.DRIVER_ERROR_TIMEOUT, raw.get(0).getFlag());
+        assertNull(raw.get(0).getValue());
+
+        assertTrue(getRecords("unknown", t1, t2).isEmpty());
+        assertTrue(getRecords("power", t2 + LOGGING_INTERVAL * 1000L, t2 + LOGGING_INTERVAL * 2000L).isEmpty());
+    }
+
+    @Test
+    public void tc902_read_latest() throws IOException {
+
+        long last = startTimestamp + (NUMBER_OF_ROWS - 1) * LOGGING_INTERVAL;
+        try (BinaryLogFile logFile = BinaryLogFile.open(binaryFile, false)) {
+            Record power = logFile.readLatest("power");
+            assertEquals(last, power.getTimestamp());
+            assertEquals((NUMBER_OF_ROWS - 1) * 1.5, power.getValue().asDouble(), 0.0);
+
+            // the value of the last row is too long for the column
+            Record state = logFile.readLatest("state");
+            assertEquals(last, state.getTimestamp());
+            assertEquals(Flag.UNKNOWN_ERROR, state.getFlag());
+
+            assertNull(logFile.readLatest("unknown"));
+        }
+    }
+
+    @Test
+    public void tc903_convert_to_ascii() throws IOException {
+
+        File textFile = BinaryLogFileConverter.convertToAscii(binaryFile, TestUtils.TESTFOLDERPATH);
+        assertTrue(textFile.exists());
+
+        LogFileReader reader = new LogFileReader(TestUtils.TESTFOLDERPATH, logChannelList.get("power"));
+        List<Record> power = reader.getValues(startTimestamp, startTimestamp + 9 * LOGGING_INTERVAL).get("power");
+        assertEquals(10, power.size());
+        assertEquals(13.5, power.get(9).getValue().asDouble(), 0.0);
+
+        reader = new LogFileReader(TestUtils.TESTFOLDERPATH, logChannelList.get("raw"));
+        long t = startTimestamp + 60 * LOGGING_INTERVAL;
+        List<Record> raw = reader.getValues(t, t).get("raw");
+        assertEquals(Flag.DRIVER_ERROR_TIMEOUT, raw.get(0).getFlag());
+    }
+
+    @Test
+    public void tc904_changed_channels_create_new_file() throws IOException {
+
+        Map<String, LogChannel> channels = new HashMap<>();
+        channels.put("other", new LogChannelTestImpl("other", "", "", "", ValueType.DOUBLE, 0.0, 0.0, false, 1000, 0,
+                "", LOGGING_INTERVAL, 0, false, false));
+
+        Calendar calendar = TestUtils.stringToDate(DATE_FORMAT, "20660910 00:00:05");
+        long timestamp = calendar.getTimeInMillis();
+        File file = new File(TestUtils.TESTFOLDERPATH + "20660910_" + LOGGING_INTERVAL + ".bin");
+
+        BinaryLogFileWriter writer = new BinaryLogFileWriter(TestUtils.TESTFOLDERPATH);
+        LogIntervalContainerGroup group = new LogIntervalContainerGroup();
+        group.add(new LoggingRecord("power", new Record(new DoubleValue(1), timestamp)));
+        writer.log(group, LOGGING_INTERVAL, 0, calendar, logChannelList);
+        writer.close();
+
+        group = new LogIntervalContainerGroup();
+        group.add(new LoggingRecord("other", new Record(new DoubleValue(2), timestamp)));
+        writer.log(group, LOGGING_INTERVAL, 0, calendar, channels);
+        writer.close();
+
+        assertTrue(new File(file.getPath() + ".old0").exists());
+        assertTrue(getRecords("power", timestamp, timestamp).isEmpty());
+        List<Record> other = BinaryLogFile.getRecords(TestUtils.TESTFOLDERPATH, LOGGING_INTERVAL, 0, "other",
+                timestamp, timestamp);
+        assertEquals(2.0, other.get(0).getValue().asDouble(), 0.0);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.ascii.LogFileIndex;
+import org.openmuc.framework.datalogger.ascii.LogFileReader;
+import org.openmuc.framework.datalogger.ascii.LogFileWriter;
+import org.openmuc.framework.datalogger.ascii.LogIntervalContainerGroup;
+import org.openmuc.framework.datalogger.ascii.utils.BufferedLineReader;
+import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+public class LogFileIndexTest {
+
+    static String fileDate = "20670707";
+    static int loggingInterval = 1000; // ms
+    static int numberOfLines = 1000;
+    static String channelName = "power";
+    static String dateFormat = "yyyyMMdd HH:mm:ss";
+    static File dataFile;
+    static long startTimestamp;
+
+    LogChannelTestImpl channelTestImpl = new LogChannelTestImpl(channelName, "", "Comment", "W", ValueType.DOUBLE, 0.0,
+            0.0, false, 1000, 0, "", loggingInterval, 0, false, false);
+
+    @BeforeAll
+    public static void setup() {
+
+        TestUtils.createTestFolder();
+
+        HashMap<String, LogChannel> logChannelList = new HashMap<>();
+        LogChannelTestImpl ch1 = new LogChannelTestImpl(channelName, "", "dummy description", "kW", ValueType.DOUBLE,
+                0.0, 0.0, false, 1000, 0, "", loggingInterval, 0, false, false);
+        logChannelList.put(channelName, ch1);
+
+        Calendar calendar = TestUtils.stringToDate(dateFormat, fileDate + " 10:00:00");
+        startTimestamp = calendar.getTimeInMillis();
+
+        for (int i = 0; i < numberOfLines; i++) {
+            LogIntervalContainerGroup group = new LogIntervalContainerGroup();
+            group.add(new LoggingRecord(channelName, new Record(new DoubleValue(i), calendar.getTimeInMillis())));
+
+            LogFileWriter lfw = new LogFileWriter(TestUtils.TESTFOLDERPATH, false);
+            lfw.log(group, loggingInterval, 0, calendar, logChannelList);
+
+            calendar.add(Calendar.MILLISECOND, loggingInterval);
+        }
+
+        dataFile = new File(TestUtils.TESTFOLDERPATH + LoggerUtils.getFilename(loggingInterval, 0, startTimestamp));
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        TestUtils.deleteTestFolder();
+    }
+
+    @Test
+    public void tc600_index_is_written_by_logger() throws IOException {
+
+        assertTrue(LogFileIndex.getIndexFile(dataFile).exists());
+
+        LogFileIndex index = LogFileIndex.load(dataFile);
+        assertEquals(numberOfLines, index.getLineCount());
+        assertEquals(index.getDataStart(), index.getOffset(startTimestamp - 1));
+
+        long timestamp = startTimestamp + 500 * loggingInterval;
+        assertLineAtOffsetIsNotAfter(index.getOffset(timestamp), timestamp);
+    }
+
+    @Test
+    public void tc601_read_with_index() {
+
+        long t1 = startTimestamp + 700 * loggingInterval;
+        long t2 = startTimestamp + 709 * loggingInterval;
+
+        List<Record> records = new LogFileReader(TestUtils.TESTFOLDERPATH, channelTestImpl).getValues(t1, t2)
+                .get(channelName);
+
+        assertEquals(10, records.size());
+        assertEquals(t1, records.get(0).getTimestamp());
+        assertEquals(700.0, records.get(0).getValue().asDouble(), 0.0);
+        assertEquals(t2, records.get(9).getTimestamp());
+    }
+
+    @Test
+    public void tc602_missing_index_is_rebuilt() throws IOException {
+
+        File indexFile = LogFileIndex.getIndexFile(dataFile);
+        assertTrue(indexFile.delete());
+
+        long t1 = startTimestamp + 300 * loggingInterval;
+        List<Record> records = new LogFileReader(TestUtils.TESTFOLDERPATH, channelTestImpl).getValues(t1, t1)
+                .get(channelName);
+
+        assertEquals(1, records.size());
+        assertEquals(300.0, records.get(0).getValue().asDouble(), 0.0);
+        assertTrue(indexFile.exists());
+        assertEquals(numberOfLines, LogFileIndex.load(dataFile).getLineCount());
+    }
+
+    @Test
+    public void tc603_incomplete_line_is_not_indexed() throws IOException {
+
+        File file = new File(TestUtils.TESTFOLDERPATH + "20670708_" + loggingInterval + ".dat");
+        String header = "#comment\nyyyymmdd;\thhmmss;\tunixtimestamp;\tpower\n";
+        String line = "20670708;\t100000;\t3076128000.000;\t1.0\n";
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write((header + line + "20670708;\t1000").getBytes(StandardCharsets.US_ASCII));
+        }
+
+        LogFileIndex index = LogFileIndex.load(file);
+        assertEquals(1, index.getLineCount());
+        assertEquals(header.length(), index.getDataStart());
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            assertEquals("20670708;\t1000", BufferedLineReader.readLastLine(channel));
+        }
+    }
+
+    private static void assertLineAtOffsetIsNotAfter(long offset, long timestamp) throws IOException {
+        try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            BufferedLineReader reader = new BufferedLineReader(channel, offset);
+            String line = reader.readLine();
+            assertTrue(reader.isLineTerminated());
+            assertFalse(line.startsWith("#"));
+            long lineTimestamp = (long) (Double.parseDouble(line.split(";\t")[2]) * 1000);
+            assertTrue(lineTimestamp <= timestamp);
+            assertTrue(timestamp - lineTimestamp < 64L * loggingInterval);
+        }
+    }
+}
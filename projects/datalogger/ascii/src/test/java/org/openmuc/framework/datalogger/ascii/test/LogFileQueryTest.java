@@ -0,0 +1,172 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.ascii.LogFileQuery;
+import org.openmuc.framework.datalogger.ascii.LogFileReader;
+import org.openmuc.framework.datalogger.ascii.LogFileWriter;
+import org.openmuc.framework.datalogger.ascii.LogIntervalContainerGroup;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+public class LogFileQueryTest {
+
+    private static final String[] CHANNEL_IDS = new String[] { "power", "energy", "voltage" };
+    private static final int LOGGING_INTERVAL = 60000; // ms
+    private static final int NUMBER_OF_LINES = 3 * 24 * 60 - 120;
+    private static final String DATE_FORMAT = "yyyyMMdd HH:mm:ss";
+
+    private static long startTimestamp;
+    private static ExecutorService executor;
+
+    @BeforeAll
+    public static void setup() {
+
+        TestUtils.createTestFolder();
+        executor = Executors.newFixedThreadPool(3);
+
+        HashMap<String, LogChannel> logChannelList = new HashMap<>();
+        for (String channelId : CHANNEL_IDS) {
+            logChannelList.put(channelId, createChannel(channelId));
+        }
+
+        Calendar calendar = TestUtils.stringToDate(DATE_FORMAT, "20870707 01:00:00");
+        startTimestamp = calendar.getTimeInMillis();
+
+        LogFileWriter lfw = new LogFileWriter(TestUtils.TESTFOLDERPATH, false);
+        for (int i = 0; i < NUMBER_OF_LINES; i++) {
+            LogIntervalContainerGroup group = new LogIntervalContainerGroup();
+            for (int j = 0; j < CHANNEL_IDS.length; j++) {
+                group.add(new LoggingRecord(CHANNEL_IDS[j],
+                        new Record(new DoubleValue(i * (j + 1)), calendar.getTimeInMillis())));
+            }
+            lfw.log(group, LOGGING_INTERVAL, 0, calendar, logChannelList);
+            calendar.add(Calendar.MILLISECOND, LOGGING_INTERVAL);
+        }
+        lfw.close();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        executor.shutdownNow();
+        TestUtils.deleteTestFolder();
+    }
+
+    private static LogChannelTestImpl createChannel(String channelId) {
+        return new LogChannelTestImpl(channelId, "", "dummy description", "kW", ValueType.DOUBLE, 0.0, 0.0, false,
+                1000, 0, "", LOGGING_INTERVAL, 0, false, false);
+    }
+
+    private static LogFileQuery createQuery(int maxPendingFiles) {
+        return new LogFileQuery(TestUtils.TESTFOLDERPATH, LOGGING_INTERVAL, 0, executor, maxPendingFiles);
+    }
+
+    @Test
+    public void tc700_same_records_as_sequential_reader() throws IOException {
+
+        long t1 = startTimestamp + 100L * LOGGING_INTERVAL;
+        long t2 = startTimestamp + (NUMBER_OF_LINES - 100L) * LOGGING_INTERVAL;
+
+        List<Record> expected = new LogFileReader(TestUtils.TESTFOLDERPATH, createChannel("energy")).getValues(t1, t2)
+                .get("energy");
+        List<Record> records = createQuery(2).getRecords("energy", t1, t2);
+
+        assertEquals(NUMBER_OF_LINES - 199, records.size());
+        assertEquals(expected.size(), records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(expected.get(i).getTimestamp(), records.get(i).getTimestamp());
+            assertEquals(expected.get(i).getValue().asDouble(), records.get(i).getValue().asDouble(), 0.0);
+            assertEquals(expected.get(i).getFlag(), records.get(i).getFlag());
+        }
+    }
+
+    @Test
+    public void tc701_multiple_channels() throws IOException {
+
+        long t1 = startTimestamp + 1000L * LOGGING_INTERVAL;
+        long t2 = startTimestamp + 3000L * LOGGING_INTERVAL;
+
+        Map<String, List<Record>> recordsMap = createQuery(1).getRecords(Arrays.asList("voltage", "power"), t1, t2);
+
+        assertEquals(2, recordsMap.size());
+        List<Record> power = recordsMap.get("power");
+        List<Record> voltage = recordsMap.get("voltage");
+        assertEquals(2001, power.size());
+        assertEquals(2001, voltage.size());
+        for (int i = 0; i < power.size(); i++) {
+            long timestamp = t1 + (long) i * LOGGING_INTERVAL;
+            assertEquals(timestamp, power.get(i).getTimestamp());
+            assertEquals(timestamp, voltage.get(i).getTimestamp());
+            assertEquals(1000 + i, power.get(i).getValue().asDouble(), 0.0);
+            assertEquals(3 * (1000 + i), voltage.get(i).getValue().asDouble(), 0.0);
+        }
+    }
+
+    @Test
+    public void tc702_records_are_streamed_in_time_order() throws IOException {
+
+        long t1 = startTimestamp - 24L * 3600 * 1000;
+        long t2 = startTimestamp + 5L * 24 * 3600 * 1000;
+
+        List<Long> timestamps = new ArrayList<>();
+        createQuery(4).stream(Arrays.asList("power"), t1, t2, (channelId, records) -> {
+            assertEquals("power", channelId);
+            for (Record record : records) {
+                timestamps.add(record.getTimestamp());
+            }
+        });
+
+        assertEquals(NUMBER_OF_LINES, timestamps.size());
+        for (int i = 0; i < timestamps.size(); i++) {
+            assertEquals(startTimestamp + (long) i * LOGGING_INTERVAL, timestamps.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void tc703_unknown_channel_and_empty_interval() throws IOException {
+
+        long t1 = startTimestamp;
+        long t2 = startTimestamp + 10L * LOGGING_INTERVAL;
+
+        assertTrue(createQuery(2).getRecords("current", t1, t2).isEmpty());
+        assertTrue(createQuery(2).getRecords("power", t2, t1).isEmpty());
+        assertEquals(1, createQuery(2).getRecords("power", t2, t2).size());
+    }
+}
@@ -54,6 +54,7 @@ public class MqttLogger implements DataLoggerService, ManagedService {
     protected final PropertyHandler propertyHandler;
     private String parser;
     private boolean isLogMultiple;
+    private boolean isCompressed;
     private MqttWriter mqttWriter;
     private SslManagerInterface sslManager;
     private boolean configLoaded = false;
@@ -142,7 +143,8 @@ public class MqttLogger implements DataLoggerService, ManagedService {
         // 2. better testability: MqttLogMsgBuilder can be easily created in a test and the output of
         // MqttLogMsgBuilder.build() can be verified. It takes the input from logger.log() method, processes it
         // and creates ready to use messages for the mqttWriter
-        MqttLogMsgBuilder logMsgBuilder = new MqttLogMsgBuilder(channelsToLog, availableParsers.get(parser));
+        MqttLogMsgBuilder logMsgBuilder = new MqttLogMsgBuilder(channelsToLog, availableParsers.get(parser),
+                isCompressed);
         List<MqttLogMsg> logMessages = logMsgBuilder.buildLogMsg(logRecordsForMqttLogger, isLogMultiple);
         for (MqttLogMsg msg : logMessages) {
             logTraceMqttMessage(msg);
@@ -218,6 +220,7 @@ public class MqttLogger implements DataLoggerService, ManagedService {
     private void tryProcessConfig(DictionaryPreprocessor newConfig) {
         try {
             propertyHandler.processConfig(newConfig);
+            MqttLoggerProperties.validate(propertyHandler);
 
             if (!propertyHandler.configChanged() && propertyHandler.isDefaultConfig()) {
                 // tells us:
@@ -240,22 +243,27 @@ public class MqttLogger implements DataLoggerService, ManagedService {
     private void applyConfigChanges() {
         configLoaded = true;
         logger.info("Configuration changed - new configuration {}", propertyHandler.toString());
-        parser = MqttLoggerProperties.parse(propertyHandler).getParser();
-        isLogMultiple = MqttLoggerProperties.parse(propertyHandler).getMultiple();
+        MqttLoggerSettings settings = MqttLoggerProperties.parse(propertyHandler);
+        parser = settings.getParser();
+        isLogMultiple = settings.getMultiple();
+        isCompressed = settings.isCompressed();
         shutdown();
         connect();
     }
 
     public void shutdown() {
+        // the writer reports itself as disconnected after its shutdown
+        boolean connected = mqttWriter.isConnected();
+
         // Saves RAM buffer to file and terminates running reconnects
         mqttWriter.shutdown();
 
-        if (!mqttWriter.isConnected() && mqttWriter.isInitialConnect()) {
+        if (!connected && mqttWriter.isInitialConnect()) {
             return;
         }
 
         logger.info("closing MQTT connection");
-        if (mqttWriter.isConnected()) {
+        if (connected) {
             mqttWriter.getConnection().disconnect();
         }
 
@@ -29,6 +29,7 @@ import static org.openmuc.framework.lib.mqtt.MqttSettings.ProxySettings.PROXY_SO
 import org.openmuc.framework.lib.osgi.config.GenericSettings;
 import org.openmuc.framework.lib.osgi.config.PropertyHandler;
 import org.openmuc.framework.lib.osgi.config.ServiceProperty;
+import org.openmuc.framework.lib.osgi.config.ServicePropertyException;
 
 /**
  * Holds default values that are written into the property file, if it does not exist.
@@ -44,6 +45,7 @@ public class MqttLoggerProperties extends GenericSettings {
     static final String PASSWORD = "password";
     static final String PARSER = "parser";
     static final String MULTIPLE = "multiple";
+    static final String COMPRESSION = "compression";
     static final String MAX_FILE_COUNT = "maxFileCount";
     static final String MAX_FILE_SIZE = "maxFileSize";
     static final String MAX_BUFFER_SIZE = "maxBufferSize";
@@ -60,6 +62,9 @@ public class MqttLoggerProperties extends GenericSettings {
     static final String WEB_SOCKET = "webSocket";
     static final String PROXY_CONFIG = "proxyConfiguration";
 
+    static final String COMPRESSION_NONE = "none";
+    static final String COMPRESSION_GZIP = "gzip";
+
     public MqttLoggerProperties() {
         super();
         // properties for connection
@@ -83,7 +88,10 @@ public class MqttLoggerProperties extends GenericSettings {
         properties.put(PERSISTENCE_DIRECTORY, new ServiceProperty(PERSISTENCE_DIRECTORY,
                 "directory for file buffered messages", "data/logger/mqtt", false));
         properties.put(MULTIPLE, new ServiceProperty(MULTIPLE,
-                "if true compose log records of different channels to one mqtt message", "false", true));
+                "if true compose log records of different channels to one mqtt message per topic", "false", true));
+        properties.put(COMPRESSION, new ServiceProperty(COMPRESSION,
+                "compression of the mqtt message payloads: " + COMPRESSION_NONE + " or " + COMPRESSION_GZIP,
+                COMPRESSION_NONE, false));
         properties.put(MAX_FILE_COUNT,
                 new ServiceProperty(MAX_FILE_COUNT, "file buffering: number of files to be created", "2", true));
         properties.put(MAX_FILE_SIZE,
@@ -112,6 +120,22 @@ public class MqttLoggerProperties extends GenericSettings {
                         "", false));
     }
 
+    /**
+     * Checks values which are not validated by the {@link PropertyHandler}.
+     *
+     * @param propertyHandler
+     *            handler holding the processed configuration
+     * @throws ServicePropertyException
+     *             if the compression is neither none nor gzip
+     */
+    static void validate(PropertyHandler propertyHandler) throws ServicePropertyException {
+        String compression = propertyHandler.getString(COMPRESSION);
+        if (!COMPRESSION_NONE.equalsIgnoreCase(compression) && !COMPRESSION_GZIP.equalsIgnoreCase(compression)) {
+            throw new ServicePropertyException("Unknown " + COMPRESSION + " '" + compression + "', use "
+                    + COMPRESSION_NONE + " or " + COMPRESSION_GZIP);
+        }
+    }
+
     public static MqttLoggerSettings parse(PropertyHandler propertyHandler) {
         // @formatter:off
         // do not use retained messages for logging (reason: caused the logger not to log anymore on first try, also
@@ -142,7 +166,8 @@ public class MqttLoggerProperties extends GenericSettings {
                 noRetainedMessagesSupportedForLogging,
                 propertyHandler.getString(MqttLoggerProperties.PROXY_CONFIG),
                 propertyHandler.getString(MqttLoggerProperties.PARSER),
-                propertyHandler.getBoolean(MqttLoggerProperties.MULTIPLE));
+                propertyHandler.getBoolean(MqttLoggerProperties.MULTIPLE),
+                COMPRESSION_GZIP.equalsIgnoreCase(propertyHandler.getString(MqttLoggerProperties.COMPRESSION)));
         // @formatter:on
     }
 }
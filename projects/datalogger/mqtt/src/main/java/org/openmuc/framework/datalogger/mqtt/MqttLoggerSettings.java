@@ -29,18 +29,20 @@ import org.openmuc.framework.lib.osgi.config.PropertyHandler;
 public class MqttLoggerSettings extends MqttSettings {
 
     private final boolean multiple;
+    private final boolean compressed;
 
     public MqttLoggerSettings(String host, int port, int localPort, String localAddress, String username,
             String password, boolean ssl, long maxBufferSize, long maxFileSize, int maxFileCount,
             int connectionRetryInterval, int connectionAliveInterval, String persistenceDirectory, String lastWillTopic,
             byte[] lastWillPayload, boolean lastWillAlways, String firstWillTopic, byte[] firstWillPayload,
             int recoveryChunkSize, int recoveryDelay, boolean webSocket, boolean retainedMessages,
-            String httpProxyConfig, String parser, boolean multiple) {
+            String httpProxyConfig, String parser, boolean multiple, boolean compressed) {
         super(host, port, localPort, localAddress, username, password, ssl, maxBufferSize, maxFileSize, maxFileCount,
                 connectionRetryInterval, connectionAliveInterval, persistenceDirectory, lastWillTopic, lastWillPayload,
                 lastWillAlways, firstWillTopic, firstWillPayload, recoveryChunkSize, recoveryDelay, webSocket,
                 retainedMessages, httpProxyConfig, parser);
         this.multiple = multiple;
+        this.compressed = compressed;
     }
 
     /**
@@ -49,4 +51,11 @@ public class MqttLoggerSettings extends MqttSettings {
     public boolean getMultiple() {
         return multiple;
     }
+
+    /**
+     * if true the payloads of the mqtt messages are compressed with gzip
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
 }
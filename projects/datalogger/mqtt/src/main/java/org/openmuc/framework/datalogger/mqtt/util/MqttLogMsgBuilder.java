@@ -21,10 +21,15 @@
 
 package org.openmuc.framework.datalogger.mqtt.util;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 import org.openmuc.framework.datalogger.mqtt.dto.MqttLogChannel;
 import org.openmuc.framework.datalogger.mqtt.dto.MqttLogMsg;
@@ -40,10 +45,25 @@ public class MqttLogMsgBuilder {
 
     private final HashMap<String, MqttLogChannel> channelsToLog;
     private final ParserService parserService;
+    private final boolean compress;
 
     public MqttLogMsgBuilder(HashMap<String, MqttLogChannel> channelsToLog, ParserService parserService) {
+        this(channelsToLog, parserService, false);
+    }
+
+    /**
+     * @param channelsToLog
+     *            channels configured for the MQTT logger
+     * @param parserService
+     *            parser used to serialize the records
+     * @param compress
+     *            if true every payload is compressed with gzip
+     */
+    public MqttLogMsgBuilder(HashMap<String, MqttLogChannel> channelsToLog, ParserService parserService,
+            boolean compress) {
         this.channelsToLog = channelsToLog;
         this.parserService = parserService;
+        this.compress = compress;
     }
 
     public List<MqttLogMsg> buildLogMsg(List<LoggingRecord> loggingRecordList, boolean isLogMultiple) {
@@ -62,7 +82,7 @@ public class MqttLogMsgBuilder {
         for (LoggingRecord loggingRecord : loggingRecords) {
             try {
                 String topic = channelsToLog.get(loggingRecord.getChannelId()).topic;
-                byte[] message = parserService.serialize(loggingRecord);
+                byte[] message = compress(parserService.serialize(loggingRecord));
                 logMessages.add(new MqttLogMsg(loggingRecord.getChannelId(), message, topic));
             } catch (SerializationException e) {
                 logger.error("failed to parse records {}", e.getMessage());
@@ -72,53 +92,46 @@ public class MqttLogMsgBuilder {
         return logMessages;
     }
 
+    /**
+     * Groups the records by topic, in the order the topics first occur, and composes one message per topic.
+     */
     private List<MqttLogMsg> logMultiple(List<LoggingRecord> loggingRecords) {
 
-        List<MqttLogMsg> logMessages = new ArrayList<>();
-
-        if (hasDifferentTopics()) {
-
-            throw new UnsupportedOperationException(
-                    "logMultiple feature is an experimental feature: logMultiple=true is not possible with "
-                            + "different topics in logSettings. Set logMultiple=false OR leave it true "
-                            + "and assign same topic to all channels.");
-
-            // TODO make improvement: check only for given channels
-
-            // TODO make improvement:
-            // CASE A - OK
-            // ch1, ch2, ch3 = 5 s - topic1
-            // CASE B - NOT SUPPORTED YET
-            // ch1, ch2 logInterval = 5 s - topic1
-            // ch3, ch3 logInterval = 10 s - topic2
-            // ch4 logInterval 20 s - topic 3
-            // if isLogMultiple=true, then group channels per topic
-            // or default: log warning and use logSingle instead
-
+        Map<String, List<LoggingRecord>> recordsByTopic = new LinkedHashMap<>();
+        for (LoggingRecord loggingRecord : loggingRecords) {
+            String topic = channelsToLog.get(loggingRecord.getChannelId()).topic;
+            recordsByTopic.computeIfAbsent(topic, t -> new ArrayList<>()).add(loggingRecord);
         }
-        else {
+
+        List<MqttLogMsg> logMessages = new ArrayList<>(recordsByTopic.size());
+        for (Map.Entry<String, List<LoggingRecord>> entry : recordsByTopic.entrySet()) {
+            List<LoggingRecord> records = entry.getValue();
             try {
-                // since all topics are the same, get the topic of
-                String topic = channelsToLog.get(loggingRecords.get(0).getChannelId()).topic;
-                byte[] message = parserService.serialize(loggingRecords);
-                String channelIds = loggingRecords.stream()
+                byte[] message = compress(parserService.serialize(records));
+                String channelIds = records.stream()
                         .map(record -> record.getChannelId())
                         .collect(Collectors.toList())
                         .toString();
-                logMessages.add(new MqttLogMsg(channelIds, message, topic));
+                logMessages.add(new MqttLogMsg(channelIds, message, entry.getKey()));
             } catch (SerializationException e) {
                 logger.error("failed to parse records {}", e.getMessage());
             }
-
         }
 
         return logMessages;
     }
 
-    private boolean hasDifferentTopics() {
-        long distinct = channelsToLog.values().stream().map(channel -> channel.topic).distinct().count();
-        // If the count of this stream is smaller or equal to 1, then all the elements are equal. so > 1 means unequal
-        return distinct > 1;
+    private byte[] compress(byte[] payload) throws SerializationException {
+        if (!compress) {
+            return payload;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(payload);
+        } catch (IOException e) {
+            throw new SerializationException("failed to compress payload", e);
+        }
+        return out.toByteArray();
     }
 
 }
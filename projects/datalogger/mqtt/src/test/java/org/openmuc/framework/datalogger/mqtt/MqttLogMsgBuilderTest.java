@@ -23,11 +23,14 @@ package org.openmuc.framework.datalogger.mqtt;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
-import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -237,11 +240,64 @@ public class MqttLogMsgBuilderTest {
 
         // 4. equal to calling logger.log(..) method
         MqttLogMsgBuilder builder = new MqttLogMsgBuilder(channelsToLog, parser);
+        List<MqttLogMsg> messages = builder.buildLogMsg(records, isLogMultiple);
+
+        printDebug(isDebugEnabled, messages);
+
+        // expected size = 2 since records are composed per topic
+        assertEquals(2, messages.size());
+        assertEquals(TOPIC_1, messages.get(0).topic);
+        assertEquals("{\"timestamp\":" + TIMESTAMP + ",\"flag\":\"VALID\",\"value\":3.0}\n",
+                new String(messages.get(0).message));
+        assertEquals(TOPIC_2, messages.get(1).topic);
+        assertEquals("{\"timestamp\":" + TIMESTAMP + ",\"flag\":\"VALID\",\"value\":7.0}\n",
+                new String(messages.get(1).message));
+    }
+
+    @Test
+    public void test_logThreeChannels_twoTopics_multipleTrue_compressed() throws IOException {
+
+        // 1. prepare channels to log - equal to logger.setChannelsToLog(...) call
+        HashMap<String, MqttLogChannel> channelsToLog = new HashMap<>();
+        channelsToLog.put(logChannelMockA.getId(), new MqttLogChannel(logChannelMockA));
+        channelsToLog.put(logChannelMockB.getId(), new MqttLogChannel(logChannelMockB));
+        channelsToLog.put(logChannelMockC.getId(), new MqttLogChannel(logChannelMockC));
+
+        // 2. apply settings to logger
+        boolean isLogMultiple = true;
 
-        Assertions.assertThrows(UnsupportedOperationException.class, () -> {
-            List<MqttLogMsg> messages = builder.buildLogMsg(records, isLogMultiple);
-        });
+        // 3. prepare records which should be logged
+        List<LoggingRecord> records = new ArrayList<>();
+        records.add(new LoggingRecord(logChannelMockC.getId(), record7));
+        records.add(new LoggingRecord(logChannelMockA.getId(), record3));
+        records.add(new LoggingRecord(logChannelMockB.getId(), record5));
 
+        // 4. equal to calling logger.log(..) method
+        MqttLogMsgBuilder builder = new MqttLogMsgBuilder(channelsToLog, parser, true);
+        List<MqttLogMsg> messages = builder.buildLogMsg(records, isLogMultiple);
+
+        // topics in the order of their first record
+        assertEquals(2, messages.size());
+        assertEquals(TOPIC_2, messages.get(0).topic);
+        assertEquals("[ChannelC]", messages.get(0).channelId);
+        assertEquals(TOPIC_1, messages.get(1).topic);
+        assertEquals("[ChannelA, ChannelB]", messages.get(1).channelId);
+
+        String expected = "{\"timestamp\":" + TIMESTAMP + ",\"flag\":\"VALID\",\"value\":3.0}\n"
+                + "{\"timestamp\":" + TIMESTAMP + ",\"flag\":\"VALID\",\"value\":5.0}\n";
+        assertEquals(expected, gunzip(messages.get(1).message));
+    }
+
+    private static String gunzip(byte[] compressed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[256];
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                out.write(buffer, 0, length);
+            }
+        }
+        return new String(out.toByteArray());
     }
 
     private void printDebug(boolean isEnabled, List<MqttLogMsg> messages) {
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Catalog of all day folders (yyyyMMdd) of a SlotsDB and the number of bytes stored in each of them.<br>
+ * <br>
+ * The directory tree is walked only once when the catalog is loaded. Afterwards sizes are maintained incrementally
+ * by the FileObjectProxy on append, on creation of new files and on deletion of folders. The oldest day and the
+ * total size are therefore available without any disk access.
+ */
+public final class DayFolderCatalog {
+
+    private final TreeMap<String, Long> sizesByDay = new TreeMap<>();
+    private long totalSize = 0;
+
+    /**
+     * Loads all day folders below the root folder and determines their size.
+     *
+     * @param rootNode
+     *            root folder of the database
+     */
+    public synchronized void load(File rootNode) {
+        sizesByDay.clear();
+        totalSize = 0;
+        File[] folders = rootNode.listFiles();
+        if (folders == null) {
+            return;
+        }
+        for (File folder : folders) {
+            if (folder.isDirectory() && isDayFolder(folder.getName())) {
+                long size = folderSize(folder);
+                sizesByDay.put(folder.getName(), size);
+                totalSize += size;
+            }
+        }
+    }
+
+    private static boolean isDayFolder(String name) {
+        if (name.length() != 8) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long folderSize(File folder) {
+        long size = 0;
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                size += f.isDirectory() ? folderSize(f) : f.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Adds the given number of bytes to the size of a day. The day is added to the catalog if it is unknown.
+     *
+     * @param day
+     *            day folder in yyyyMMdd format
+     * @param bytes
+     *            number of bytes written
+     */
+    public synchronized void addSize(String day, long bytes) {
+        Long size = sizesByDay.get(day);
+        sizesByDay.put(day, size == null ? bytes : size + bytes);
+        totalSize += bytes;
+    }
+
+    /**
+     * Removes a day from the catalog.
+     *
+     * @param day
+     *            day folder in yyyyMMdd format
+     * @return the number of bytes that were stored in this day
+     */
+    public synchronized long removeDay(String day) {
+        Long size = sizesByDay.remove(day);
+        if (size == null) {
+            return 0;
+        }
+        totalSize -= size;
+        return size;
+    }
+
+    /**
+     * @return the oldest day folder or null if the catalog is empty
+     */
+    public synchronized String getOldestDay() {
+        Map.Entry<String, Long> entry = sizesByDay.firstEntry();
+        return entry == null ? null : entry.getKey();
+    }
+
+    /**
+     * @return the total number of bytes stored in all day folders
+     */
+    public synchronized long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * @return the number of day folders
+     */
+    public synchronized int size() {
+        return sizesByDay.size();
+    }
+}
@@ -0,0 +1,452 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.Value;
+
+/**
+ * Append-only file for event based (irregular) values of one channel and one day.<br>
+ * <br>
+ * Layout of the data file:<br>
+ * byte 0-7: timestamp of the first event, byte 8-15: index interval (rows per index entry)<br>
+ * followed by rows of (timestamp: long, value, flag: byte). The value is stored as defined by the {@link SlotType} of
+ * the file.<br>
+ * <br>
+ * Every index interval rows the timestamp and row number are stored in a sparse index file next to the data file. The
+ * index is kept in memory and binary searched to find the first row of a range read.
+ */
+public final class EventFileObject {
+
+    static final int HEADER_SIZE = 16;
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final int DEFAULT_INDEX_INTERVAL = 128;
+    private static final int BUFFERED_ROWS = 256;
+
+    private final File dataFile;
+    private final File indexFile;
+    private final SlotType slotType;
+    private final int rowSize;
+    private SlotHeap heap;
+    private FileChannel dataChannel;
+    private FileChannel indexChannel;
+
+    private long startTimeStamp; // byte 0-7 in file (cached)
+    private long indexInterval = DEFAULT_INDEX_INTERVAL; // byte 8-15 in file (cached)
+    private long rowCount = 0;
+    private long persistedRowCount = 0;
+    private long latestTimestamp;
+
+    private long[] indexTimestamps = new long[16];
+    private long[] indexRows = new long[16];
+    private int indexSize = 0;
+    private int persistedIndexSize = 0;
+
+    private final ByteBuffer writeBuffer;
+
+    public EventFileObject(File dataFile) throws IOException {
+        this.dataFile = dataFile;
+        String name = dataFile.getName();
+        indexFile = new File(dataFile.getParentFile(),
+                name.substring(0, name.length() - SlotsDb.EVENT_FILE_EXTENSION.length())
+                        + SlotsDb.EVENT_INDEX_EXTENSION);
+        slotType = SlotType.forFileName(name, SlotsDb.EVENT_FILE_EXTENSION);
+        rowSize = 8 + slotType.getSlotSize();
+        writeBuffer = ByteBuffer.allocate(rowSize * BUFFERED_ROWS);
+        if (slotType.usesHeap()) {
+            heap = new SlotHeap(SlotHeap.heapFileFor(dataFile, SlotsDb.EVENT_FILE_EXTENSION));
+        }
+
+        long length = dataFile.length();
+        if (dataFile.exists() && length >= HEADER_SIZE) {
+            openChannels();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(dataChannel, header, 0);
+            header.flip();
+            startTimeStamp = header.getLong();
+            indexInterval = header.getLong();
+
+            /*
+             * A torn row at the end of the file (e.g. after power loss) is ignored and overwritten by the next append.
+             */
+            rowCount = (length - HEADER_SIZE) / rowSize;
+            persistedRowCount = rowCount;
+            if (rowCount > 0) {
+                latestTimestamp = readTimestamp(rowCount - 1);
+            }
+            loadIndex();
+        }
+    }
+
+    public EventFileObject(String filename) throws IOException {
+        this(new File(filename));
+    }
+
+    private void openChannels() throws IOException {
+        if (dataChannel == null) {
+            dataChannel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE);
+        }
+        if (indexChannel == null) {
+            indexChannel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE);
+        }
+    }
+
+    /*
+     * Loads the sparse index. Entries pointing behind the end of the data file are dropped, a missing or inconsistent
+     * index is rebuilt from the data file.
+     */
+    private void loadIndex() throws IOException {
+        long expectedEntries = rowCount == 0 ? 0 : (rowCount - 1) / indexInterval + 1;
+        long entriesOnDisk = indexChannel.size() / INDEX_ENTRY_SIZE;
+
+        if (entriesOnDisk >= expectedEntries) {
+            ByteBuffer bb = ByteBuffer.allocate((int) (expectedEntries * INDEX_ENTRY_SIZE));
+            readFully(indexChannel, bb, 0);
+            bb.flip();
+            for (int i = 0; i < expectedEntries; i++) {
+                addIndexEntry(bb.getLong(), bb.getLong());
+            }
+            if (indexSize == 0 || indexRows[indexSize - 1] == (expectedEntries - 1) * indexInterval) {
+                indexChannel.truncate(expectedEntries * INDEX_ENTRY_SIZE);
+                persistedIndexSize = indexSize;
+                return;
+            }
+        }
+
+        indexSize = 0;
+        for (long row = 0; row < rowCount; row += indexInterval) {
+            addIndexEntry(readTimestamp(row), row);
+        }
+        indexChannel.truncate(0);
+        persistedIndexSize = 0;
+        writeIndex();
+    }
+
+    private void addIndexEntry(long timestamp, long row) {
+        if (indexSize == indexTimestamps.length) {
+            indexTimestamps = Arrays.copyOf(indexTimestamps, indexSize * 2);
+            indexRows = Arrays.copyOf(indexRows, indexSize * 2);
+        }
+        indexTimestamps[indexSize] = timestamp;
+        indexRows[indexSize] = row;
+        indexSize++;
+    }
+
+    /**
+     * creates the file, if it doesn't exist.
+     *
+     * @param startTimeStamp
+     *            for file header
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void createFileAndHeader(long startTimeStamp) throws IOException {
+        if (!dataFile.exists() || dataFile.length() < HEADER_SIZE) {
+            dataFile.getParentFile().mkdirs();
+            close();
+            openChannels();
+            dataChannel.truncate(0);
+            indexChannel.truncate(0);
+
+            this.startTimeStamp = startTimeStamp;
+            indexInterval = DEFAULT_INDEX_INTERVAL;
+            rowCount = 0;
+            persistedRowCount = 0;
+            indexSize = 0;
+            persistedIndexSize = 0;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(startTimeStamp);
+            header.putLong(indexInterval);
+            header.flip();
+            writeFully(dataChannel, header, 0);
+        }
+    }
+
+    /**
+     * Appends an event. Events must be appended in chronological order, older events are rejected.
+     *
+     * @param value
+     *            the value
+     * @param timestamp
+     *            the timestamp of the event
+     * @param flag
+     *            the flag
+     * @return true if the event was appended, false if it is older than the latest stored event
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public boolean append(Value value, long timestamp, byte flag) throws IOException {
+        if (rowCount > 0 && timestamp < latestTimestamp) {
+            return false;
+        }
+        if (!writeBuffer.hasRemaining()) {
+            flush();
+        }
+        if (rowCount % indexInterval == 0) {
+            addIndexEntry(timestamp, rowCount);
+        }
+        writeBuffer.putLong(timestamp);
+        slotType.write(writeBuffer, value, flag, heap);
+        rowCount++;
+        latestTimestamp = timestamp;
+        /*
+         * Data will be written to disk after calling flush() method.
+         */
+        return true;
+    }
+
+    public File getFile() {
+        return dataFile;
+    }
+
+    public SlotType getSlotType() {
+        return slotType;
+    }
+
+    public long getStartTimeStamp() {
+        return startTimeStamp;
+    }
+
+    public long getTimestampForLatestValue() {
+        return latestTimestamp;
+    }
+
+    public long size() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of bytes of this event file including its index and heap. Events which are not flushed yet
+     * are included.
+     *
+     * @return size in bytes
+     */
+    public long getSize() {
+        if (!dataFile.exists()) {
+            return 0;
+        }
+        long size = HEADER_SIZE + rowCount * rowSize + (long) indexSize * INDEX_ENTRY_SIZE;
+        return heap == null ? size : size + heap.getLength();
+    }
+
+    /**
+     * Returns the record with exactly the given timestamp or null if there is no such event.
+     *
+     * @param timestamp
+     *            the timestamp
+     * @return the record or null
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public Record read(long timestamp) throws IOException {
+        List<Record> records = read(timestamp, timestamp);
+        if (records.isEmpty()) {
+            return null;
+        }
+        return records.get(0);
+    }
+
+    /**
+     * Returns a List of Records of all events between provided start and end timestamp (both inclusive)
+     *
+     * @param start
+     *            start timestamp
+     * @param end
+     *            end timestamp
+     * @return a list of records
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public List<Record> read(long start, long end) throws IOException {
+        List<Record> toReturn = new ArrayList<>();
+        if (rowCount == 0 || start > end || end < startTimeStamp || start > latestTimestamp) {
+            return toReturn;
+        }
+        openChannels();
+        flush();
+
+        long row = findFirstRow(start);
+        ByteBuffer bb = ByteBuffer.allocate(rowSize * BUFFERED_ROWS);
+        while (row < rowCount) {
+            int rows = (int) Math.min(BUFFERED_ROWS, rowCount - row);
+            bb.clear();
+            bb.limit(rows * rowSize);
+            readFully(dataChannel, bb, HEADER_SIZE + row * rowSize);
+            bb.flip();
+            for (int i = 0; i < rows; i++) {
+                long timestamp = bb.getLong();
+                if (timestamp > end) {
+                    return toReturn;
+                }
+                if (timestamp < start) {
+                    bb.position(bb.position() + rowSize - 8);
+                    continue;
+                }
+                Record record = slotType.read(bb, timestamp, heap);
+                if (record != null) {
+                    toReturn.add(record);
+                }
+            }
+            row += rows;
+        }
+        return toReturn;
+    }
+
+    public List<Record> readFully() throws IOException {
+        return read(startTimeStamp, latestTimestamp);
+    }
+
+    /**
+     * Returns the latest event with a valid value or null if there is none.
+     *
+     * @return the latest record
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public Record readLatest() throws IOException {
+        if (rowCount == 0) {
+            return null;
+        }
+        openChannels();
+        flush();
+        ByteBuffer bb = ByteBuffer.allocate(rowSize);
+        for (long row = rowCount - 1; row >= 0; row--) {
+            bb.clear();
+            readFully(dataChannel, bb, HEADER_SIZE + row * rowSize);
+            bb.flip();
+            Record record = slotType.read(bb, bb.getLong(), heap);
+            if (record != null) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Binary search on the sparse index: returns the first row of the block which may contain the start timestamp.
+     */
+    private long findFirstRow(long start) {
+        int low = 0;
+        int high = indexSize - 1;
+        int block = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (indexTimestamps[mid] < start) {
+                block = mid;
+                low = mid + 1;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return indexRows[block];
+    }
+
+    private long readTimestamp(long row) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(8);
+        readFully(dataChannel, bb, HEADER_SIZE + row * rowSize);
+        bb.flip();
+        return bb.getLong();
+    }
+
+    private void writeIndex() throws IOException {
+        if (persistedIndexSize == indexSize) {
+            return;
+        }
+        ByteBuffer bb = ByteBuffer.allocate((indexSize - persistedIndexSize) * INDEX_ENTRY_SIZE);
+        for (int i = persistedIndexSize; i < indexSize; i++) {
+            bb.putLong(indexTimestamps[i]);
+            bb.putLong(indexRows[i]);
+        }
+        bb.flip();
+        writeFully(indexChannel, bb, (long) persistedIndexSize * INDEX_ENTRY_SIZE);
+        persistedIndexSize = indexSize;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer bb, long position) throws IOException {
+        while (bb.hasRemaining()) {
+            int read = channel.read(bb, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file.");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer bb, long position) throws IOException {
+        while (bb.hasRemaining()) {
+            position += channel.write(bb, position);
+        }
+    }
+
+    /**
+     * Writes buffered events and new index entries to disk.
+     *
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void flush() throws IOException {
+        if (writeBuffer.position() == 0 && persistedIndexSize == indexSize) {
+            return;
+        }
+        openChannels();
+        writeBuffer.flip();
+        int rows = writeBuffer.remaining() / rowSize;
+        writeFully(dataChannel, writeBuffer, HEADER_SIZE + persistedRowCount * rowSize);
+        writeBuffer.clear();
+        persistedRowCount += rows;
+        writeIndex();
+    }
+
+    /**
+     * Flushes and closes the underlying file channels
+     *
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void close() throws IOException {
+        if (dataChannel != null) {
+            flush();
+            dataChannel.close();
+            dataChannel = null;
+        }
+        if (indexChannel != null) {
+            indexChannel.close();
+            indexChannel = null;
+        }
+        if (heap != null) {
+            heap.close();
+        }
+    }
+}
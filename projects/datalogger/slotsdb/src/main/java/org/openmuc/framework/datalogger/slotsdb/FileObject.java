@@ -33,15 +33,19 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Vector;
 
-import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.Value;
 
 public final class FileObject {
 
     private long startTimeStamp; // byte 0-7 in file (cached)
     private long storagePeriod; // byte 8-15 in file (cached)
     private final File dataFile;
+    private final SlotType slotType;
+    private final int slotSize;
+    private final ByteBuffer slotBuffer;
+    private SlotHeap heap;
     private DataOutputStream dos;
     private BufferedOutputStream bos;
     private FileOutputStream fos;
@@ -58,6 +62,12 @@ public final class FileObject {
         canWrite = false;
         canRead = false;
         dataFile = new File(filename);
+        slotType = SlotType.forFileName(dataFile.getName(), SlotsDb.FILE_EXTENSION);
+        slotSize = slotType.getSlotSize();
+        slotBuffer = ByteBuffer.allocate(slotSize);
+        if (slotType.usesHeap()) {
+            heap = new SlotHeap(SlotHeap.heapFileFor(dataFile, SlotsDb.FILE_EXTENSION));
+        }
         length = dataFile.length();
         if (dataFile.exists() && length >= 16) {
             /*
@@ -96,6 +106,12 @@ public final class FileObject {
         canWrite = false;
         canRead = false;
         dataFile = file;
+        slotType = SlotType.forFileName(dataFile.getName(), SlotsDb.FILE_EXTENSION);
+        slotSize = slotType.getSlotSize();
+        slotBuffer = ByteBuffer.allocate(slotSize);
+        if (slotType.usesHeap()) {
+            heap = new SlotHeap(SlotHeap.heapFileFor(dataFile, SlotsDb.FILE_EXTENSION));
+        }
         length = dataFile.length();
         if (dataFile.exists() && length >= 16) {
             /*
@@ -186,6 +202,15 @@ public final class FileObject {
         return startTimeStamp;
     }
 
+    /**
+     * Returns the storage type of the values in this File.
+     * 
+     * @return the slot type
+     */
+    public SlotType getSlotType() {
+        return slotType;
+    }
+
     /**
      * Returns the step frequency in seconds.
      * 
@@ -231,7 +256,7 @@ public final class FileObject {
         }
     }
 
-    public void append(double value, long timestamp, byte flag) throws IOException {
+    public void append(Value value, long timestamp, byte flag) throws IOException {
         long writePosition = getBytePosition(timestamp);
         if (writePosition == length) {
             /*
@@ -241,9 +266,7 @@ public final class FileObject {
                 enableOutput();
             }
 
-            dos.writeDouble(value);
-            dos.writeByte(flag);
-            length += 9;
+            writeSlot(value, flag);
         }
         else {
             if (length > writePosition) {
@@ -253,28 +276,19 @@ public final class FileObject {
             }
             else {
                 /*
-                 * there are missing some values missing -> fill up with NaN!
+                 * there are missing some values missing -> fill up with empty slots!
                  */
                 if (!canWrite) {
                     enableOutput();
                 }
-                long rowsToFillWithNan = (writePosition - length) / 9;// TODO:
-                                                                      // stimmt
-                                                                      // Berechnung?
-                for (int i = 0; i < rowsToFillWithNan; i++) {
-                    dos.writeDouble(Double.NaN); // TODO: festlegen welcher Wert
-                                                 // undefined sein soll NaN
-                                                 // ok?
-                    dos.writeByte(Flag.NO_VALUE_RECEIVED_YET.getCode()); // TODO:
-                                                                         // festlegen
-                    // welcher Wert
-                    // undefined sein
-                    // soll 00 ok?
-                    length += 9;
+                long rowsToFill = (writePosition - length) / slotSize;
+                for (int i = 0; i < rowsToFill; i++) {
+                    slotBuffer.clear();
+                    slotType.writeEmpty(slotBuffer, Flag.NO_VALUE_RECEIVED_YET.getCode());
+                    dos.write(slotBuffer.array(), 0, slotSize);
+                    length += slotSize;
                 }
-                dos.writeDouble(value);
-                dos.writeByte(flag);
-                length += 9;
+                writeSlot(value, flag);
             }
         }
         /*
@@ -283,8 +297,24 @@ public final class FileObject {
          */
     }
 
+    private void writeSlot(Value value, byte flag) throws IOException {
+        slotBuffer.clear();
+        slotType.write(slotBuffer, value, flag, heap);
+        dos.write(slotBuffer.array(), 0, slotSize);
+        length += slotSize;
+    }
+
+    /**
+     * Returns the number of bytes of this File including its heap. Values which are not flushed yet are included.
+     * 
+     * @return size in bytes
+     */
+    public long getSize() {
+        return heap == null ? length : length + heap.getLength();
+    }
+
     public long getTimestampForLatestValue() {
-        return startTimeStamp + (((length - 16) / 9) - 1) * storagePeriod;
+        return startTimeStamp + (((length - 16) / slotSize) - 1) * storagePeriod;
     }
 
     /**
@@ -299,7 +329,7 @@ public final class FileObject {
 
             /*
              * get position for timestamp 117 000: 117 000 - 100 000 = 17 000 17 * 000 / 5 000 = 3.4 Math.round(3.4) = 3
-             * 3*(8+1) = 27 27 + 16 = 43 = position to store to!
+             * 3*slotSize(8+1 for doubles) = 27 27 + 16 = 43 = position to store to!
              */
             // long pos = (Math.round((double) (timestamp - startTimeStamp) /
             // storagePeriod) * 9) + 16; /* slower */
@@ -308,7 +338,7 @@ public final class FileObject {
             if (pos % 1 != 0) { /* faster */
                 pos = Math.round(pos);
             }
-            return (long) (pos * 9 + 16);
+            return (long) (pos * slotSize + 16);
         }
         else {
             // not in file! should never happen...
@@ -340,10 +370,9 @@ public final class FileObject {
                 enableInput();
             }
             fis.getChannel().position(getBytePosition(timestamp));
-            Double toReturn = dis.readDouble();
-            if (!Double.isNaN(toReturn)) {
-                return new Record(new DoubleValue(toReturn), timestamp, Flag.newFlag(dis.readByte()));
-            }
+            byte[] b = new byte[slotSize];
+            dis.readFully(b);
+            return slotType.read(ByteBuffer.wrap(b), timestamp, heap); // null for empty slots
         }
         return null;
     }
@@ -386,16 +415,15 @@ public final class FileObject {
 
             fis.getChannel().position(startPos);
 
-            byte[] b = new byte[(int) (endPos - startPos) + 9];
-            dis.read(b, 0, b.length);
+            byte[] b = new byte[(int) (endPos - startPos) + slotSize];
+            dis.readFully(b, 0, b.length);
             ByteBuffer bb = ByteBuffer.wrap(b);
             bb.rewind();
 
-            for (int i = 0; i <= (endPos - startPos) / 9; i++) {
-                double d = bb.getDouble();
-                Flag s = Flag.newFlag(bb.get());
-                if (!Double.isNaN(d)) {
-                    toReturn.add(new Record(new DoubleValue(d), timestampcounter, s));
+            for (int i = 0; i <= (endPos - startPos) / slotSize; i++) {
+                Record record = slotType.read(bb, timestampcounter, heap);
+                if (record != null) {
+                    toReturn.add(record);
                 }
                 timestampcounter += storagePeriod;
             }
@@ -439,6 +467,9 @@ public final class FileObject {
             fis.close();
             fis = null;
         }
+        if (heap != null) {
+            heap.close();
+        }
     }
 
     /**
@@ -89,12 +89,13 @@ public final class FileObjectList {
         files = new Vector<>(1);
         if (folder.isDirectory()) {
             for (File file : folder.listFiles()) {
+                String[] split = file.getName().split("\\.");
+                if (!("." + split[split.length - 1]).equals(SlotsDb.FILE_EXTENSION)) {
+                    continue; // e.g. event files, handled by EventFileObject
+                }
                 if (file.length() >= 16) { // otherwise is corrupted or empty
                                            // file.
-                    String[] split = file.getName().split("\\.");
-                    if (("." + split[split.length - 1]).equals(SlotsDb.FILE_EXTENSION)) {
-                        files.add(new FileObject(file));
-                    }
+                    files.add(new FileObject(file));
                 }
                 else {
                     file.delete();
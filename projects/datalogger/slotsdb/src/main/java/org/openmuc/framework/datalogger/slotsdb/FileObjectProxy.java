@@ -27,19 +27,22 @@ import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.Vector;
 
+import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,14 +50,19 @@ public final class FileObjectProxy {
 
     private static final Logger logger = LoggerFactory.getLogger(FileObjectProxy.class);
 
+    /*
+     * Upper bound for the end of read requests, to prevent overflows in cases of multiplication.
+     */
+    private static final long MAX_READ_TIMESTAMP = 50000000000000L;
+
     private final File rootNode;
     private HashMap<String, FileObjectList> openFilesHM;
+    private HashMap<String, EventFileObject> openEventFilesHM;
     private final HashMap<String, String> encodedLabels;
     private final SimpleDateFormat sdf;
     private final Date date;
     private final Timer timer;
-    private List<File> days;
-    private long size;
+    private final DayFolderCatalog days;
 
     /*
      * Flush Period in Seconds. if flush_period == 0 -> write directly to disk.
@@ -88,9 +96,12 @@ public final class FileObjectProxy {
         rootNode = new File(rootNodePath);
         rootNode.mkdirs();
         openFilesHM = new HashMap<>();
+        openEventFilesHM = new HashMap<>();
         encodedLabels = new HashMap<>();
 
-        loadDays();
+        days = new DayFolderCatalog();
+        days.load(rootNode);
+        logger.info("Found " + days.size() + " day folders with " + (days.getTotalSize() / 1000000) + " MB.");
 
         if (SlotsDb.FLUSH_PERIOD != null) {
             flush_period = Integer.parseInt(SlotsDb.FLUSH_PERIOD);
@@ -132,36 +143,6 @@ public final class FileObjectProxy {
         }
     }
 
-    /*
-     * loads a sorted list of all days in SLOTSDB. Necessary for search- and delete jobs.
-     */
-    private void loadDays() {
-        days = new Vector<>();
-        for (File f : rootNode.listFiles()) {
-            if (f.isDirectory()) {
-                days.add(f);
-            }
-        }
-        days = sortFolders(days);
-    }
-
-    private List<File> sortFolders(List<File> days) {
-        Collections.sort(days, new Comparator<File>() {
-
-            @Override
-            public int compare(File f1, File f2) {
-                int i = 0;
-                try {
-                    i = Long.valueOf(sdf.parse(f1.getName()).getTime()).compareTo(sdf.parse(f2.getName()).getTime());
-                } catch (ParseException e) {
-                    logger.error("Error during sorting Files: Folder doesn't match yyyymmdd Format?");
-                }
-                return i;
-            }
-        });
-        return days;
-    }
-
     /**
      * Creates a Thread, that causes Data Streams to be flushed every x-seconds.<br>
      * Define flush-period in seconds with JVM flag: org.openmuc.mux.dbprovider.slotsdb.flushperiod
@@ -196,28 +177,26 @@ public final class FileObjectProxy {
                 logger.error("Deleting old Data failed in IOException: " + e.getMessage());
             }
         }
+    }
 
-        private void deleteFoldersOlderThen(int limit_days) throws IOException {
-            Calendar limit = Calendar.getInstance();
-            limit.setTimeInMillis(System.currentTimeMillis() - (86400000L * limit_days));
-            try {
-                for (File curElement : days) {
-                    if (sdf.parse(curElement.getName()).getTime() + 86400000 < limit
-                            .getTimeInMillis()) { /*
-                                                   * compare folder 's oldest value to limit
-                                                   */
-                        logger.info("Folder: " + curElement.getName() + " is older then " + limit_days
-                                + " Days. Will be deleted.");
-                        deleteRecursiveFolder(curElement);
-                    }
-                    else {
-                        /* oldest existing Folder is not to be deleted yet */
-                        break;
-                    }
-                }
-                loadDays();
-            } catch (ParseException e) {
-                logger.error("Error during sorting Files: Any Folder doesn't match yyyymmdd Format?");
+    /*
+     * Deletes the day folders which ended more than limit_days ago. Synchronized because sdf is shared with the logging
+     * thread.
+     */
+    synchronized void deleteFoldersOlderThen(int limit_days) throws IOException {
+        long limit = System.currentTimeMillis() - (86400000L * limit_days);
+        String oldestDay;
+        while ((oldestDay = days.getOldestDay()) != null) {
+            /*
+             * compare folder 's oldest value to limit
+             */
+            if (getFolderTimestamp(oldestDay) + 86400000 < limit) {
+                logger.info("Folder: " + oldestDay + " is older then " + limit_days + " Days. Will be deleted.");
+                deleteDay(oldestDay);
+            }
+            else {
+                /* oldest existing Folder is not to be deleted yet */
+                break;
             }
         }
     }
@@ -231,26 +210,54 @@ public final class FileObjectProxy {
         @Override
         public void run() {
             try {
-                while ((getDiskUsage(rootNode) / 1000000 > limit_size)
-                        && (days.size() >= 2)) { /*
-                                                  * avoid deleting current folder
-                                                  */
-                    deleteOldestFolder();
-                }
+                deleteFoldersAboveSize(limit_size * 1000000L);
             } catch (IOException e) {
                 logger.error("Deleting old Data failed in IOException: " + e.getMessage());
             }
         }
+    }
+
+    /*
+     * Deletes the oldest day folders until the database is not larger than limitBytes. The newest folder is never
+     * deleted.
+     */
+    synchronized void deleteFoldersAboveSize(long limitBytes) throws IOException {
+        String oldestDay;
+        while ((days.getTotalSize() > limitBytes) && (days.size() >= 2)
+                && (oldestDay = days.getOldestDay()) != null) {
+            logger.info("Exceeded Maximum Database Size: " + (limitBytes / 1000000) + " MB. Current size: "
+                    + (days.getTotalSize() / 1000000) + " MB. Deleting: " + oldestDay);
+            deleteDay(oldestDay);
+        }
+    }
+
+    DayFolderCatalog getDayFolderCatalog() {
+        return days;
+    }
 
-        private void deleteOldestFolder() throws IOException {
-            if (days.size() >= 2) {
-                logger.info("Exceeded Maximum Database Size: " + limit_size + " MB. Current size: " + (size / 1000000)
-                        + " MB. Deleting: " + days.get(0).getCanonicalPath());
-                deleteRecursiveFolder(days.get(0));
-                days.remove(0);
-                clearOpenFilesHashMap();
+    /*
+     * Deletes the folder of a day. Only files opened for this day are closed, files of other days stay open.
+     */
+    private synchronized void deleteDay(String strDate) throws IOException {
+        Iterator<Map.Entry<String, FileObjectList>> itr = openFilesHM.entrySet().iterator();
+        while (itr.hasNext()) {
+            Map.Entry<String, FileObjectList> entry = itr.next();
+            if (entry.getKey().endsWith(strDate)) {
+                entry.getValue().closeAllFiles();
+                itr.remove();
+            }
+        }
+        Iterator<Map.Entry<String, EventFileObject>> eventItr = openEventFilesHM.entrySet().iterator();
+        while (eventItr.hasNext()) {
+            Map.Entry<String, EventFileObject> entry = eventItr.next();
+            if (entry.getKey().endsWith(strDate)) {
+                entry.getValue().close();
+                eventItr.remove();
             }
         }
+
+        deleteRecursiveFolder(new File(rootNode.getPath() + "/" + strDate));
+        days.removeDay(strDate);
     }
 
     private synchronized void deleteRecursiveFolder(File folder) {
@@ -270,24 +277,6 @@ public final class FileObjectProxy {
         }
     }
 
-    /*
-     * recursive function to get the size of a folder. sums up all files. needs an initial LONG to store size to.
-     */
-    private long getDiskUsage(File folder) throws IOException {
-        size = 0;
-        recursive_size_walker(folder);
-        return size;
-    }
-
-    private void recursive_size_walker(File folder) throws IOException {
-        for (File f : folder.listFiles()) {
-            size += f.length();
-            if (f.isDirectory()) {
-                recursive_size_walker(f);
-            }
-        }
-    }
-
     /**
      * Appends a new Value to Slots Database.
      * 
@@ -304,8 +293,32 @@ public final class FileObjectProxy {
      * @throws IOException
      *             if an I/O error occurs.
      */
-    public synchronized void appendValue(String id, double value, long timestamp, byte state, long storingPeriod)
+    public void appendValue(String id, double value, long timestamp, byte state, long storingPeriod)
             throws IOException {
+        appendValue(id, new DoubleValue(value), timestamp, state, storingPeriod, SlotType.DOUBLE);
+    }
+
+    /**
+     * Appends a new Value to Slots Database. The value is stored with the given slot type, a new file is created if
+     * the slot type of the current file differs.
+     * 
+     * @param id
+     *            ID
+     * @param value
+     *            Value, may be null
+     * @param timestamp
+     *            time stamp
+     * @param state
+     *            State
+     * @param storingPeriod
+     *            storing period
+     * @param slotType
+     *            storage type of the value
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public synchronized void appendValue(String id, Value value, long timestamp, byte state, long storingPeriod,
+            SlotType slotType) throws IOException {
         FileObject toStoreIn = null;
 
         id = encodeLabel(id);
@@ -329,10 +342,13 @@ public final class FileObjectProxy {
              */
             if (first.size() == 0) {
                 toStoreIn = new FileObject(
-                        rootNode.getPath() + "/" + strDate + "/" + id + "/" + timestamp + SlotsDb.FILE_EXTENSION);
+                        rootNode.getPath() + "/" + strDate + "/" + id + "/" + timestamp
+                                + slotType.getFileExtension(SlotsDb.FILE_EXTENSION));
+                long sizeBefore = toStoreIn.getSize();
                 toStoreIn.createFileAndHeader(timestamp, storingPeriod);
                 toStoreIn.append(value, timestamp, state);
                 toStoreIn.close(); /* close() also calls flush(). */
+                days.addSize(strDate, toStoreIn.getSize() - sizeBefore);
                 openFilesHM.get(id + strDate).reLoadFolder();
                 return;
             }
@@ -357,11 +373,14 @@ public final class FileObjectProxy {
         }
 
         /*
-         * The storing Period may have changed. In this case, a new FileObject must be created.
+         * The storing Period or the value type may have changed. In this case, a new FileObject must be created.
          */
-        if (toStoreIn.getStoringPeriod() == storingPeriod || toStoreIn.getStoringPeriod() == 0) {
+        if ((toStoreIn.getStoringPeriod() == storingPeriod || toStoreIn.getStoringPeriod() == 0)
+                && toStoreIn.getSlotType() == slotType) {
             toStoreIn = openFilesHM.get(id + strDate).getCurrentFileObject();
+            long sizeBefore = toStoreIn.getSize();
             toStoreIn.append(value, timestamp, state);
+            days.addSize(strDate, toStoreIn.getSize() - sizeBefore);
             if (flush_period == 0) {
                 toStoreIn.flush();
             }
@@ -375,9 +394,12 @@ public final class FileObjectProxy {
              */
             if (toStoreIn.getTimestampForLatestValue() < timestamp) {
                 toStoreIn = new FileObject(
-                        rootNode.getPath() + "/" + strDate + "/" + id + "/" + timestamp + SlotsDb.FILE_EXTENSION);
+                        rootNode.getPath() + "/" + strDate + "/" + id + "/" + timestamp
+                                + slotType.getFileExtension(SlotsDb.FILE_EXTENSION));
+                long sizeBefore = toStoreIn.getSize();
                 toStoreIn.createFileAndHeader(timestamp, storingPeriod);
                 toStoreIn.append(value, timestamp, state);
+                days.addSize(strDate, toStoreIn.getSize() - sizeBefore);
                 if (flush_period == 0) {
                     toStoreIn.flush();
                 }
@@ -386,6 +408,140 @@ public final class FileObjectProxy {
         }
     }
 
+    /**
+     * Appends a new event to Slots Database. Events are stored with their own timestamp in an append-only event file
+     * per day, so that no fixed storing period is required.
+     * 
+     * @param id
+     *            ID
+     * @param value
+     *            Value, may be null
+     * @param timestamp
+     *            time stamp of the event
+     * @param state
+     *            State
+     * @param slotType
+     *            storage type of the value
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public synchronized void appendEvent(String id, Value value, long timestamp, byte state, SlotType slotType)
+            throws IOException {
+        id = encodeLabel(id);
+
+        String strDate = getStrDate(timestamp);
+
+        EventFileObject toStoreIn = openEventFilesHM.get(id + strDate);
+        if (toStoreIn != null && toStoreIn.getSlotType() != slotType) {
+            /*
+             * Value type changed -> continue in the event file of the new type.
+             */
+            openEventFilesHM.remove(id + strDate).close();
+            toStoreIn = null;
+        }
+        if (toStoreIn == null) {
+            closeEventFileFromLastDay(timestamp, id);
+            controlHashtableSize();
+
+            toStoreIn = new EventFileObject(getEventFileName(strDate, id, slotType));
+            long sizeBefore = toStoreIn.getSize();
+            toStoreIn.createFileAndHeader(timestamp);
+            openEventFilesHM.put(id + strDate, toStoreIn);
+            days.addSize(strDate, toStoreIn.getSize() - sizeBefore);
+        }
+
+        long sizeBefore = toStoreIn.getSize();
+        if (!toStoreIn.append(value, timestamp, state)) {
+            logger.debug("Event for " + id + " at " + timestamp + " is older than the latest stored event. Dropped.");
+            return;
+        }
+        days.addSize(strDate, toStoreIn.getSize() - sizeBefore);
+        if (flush_period == 0) {
+            toStoreIn.flush();
+        }
+    }
+
+    private String getEventFileName(String strDate, String encodedLabel, SlotType slotType) {
+        return rootNode.getPath() + "/" + strDate + "/" + encodedLabel + "/" + SlotsDb.EVENT_FILE_NAME
+                + slotType.getFileExtension(SlotsDb.EVENT_FILE_EXTENSION);
+    }
+
+    private void closeEventFileFromLastDay(long timestamp, String label) throws IOException {
+        String strDate = getStrDate(timestamp - 86400000);
+        EventFileObject lastDay = openEventFilesHM.remove(label + strDate);
+        if (lastDay != null) {
+            lastDay.close();
+        }
+    }
+
+    /*
+     * Returns the event files (one per value type) of the given day. Files which are not currently open for appending
+     * are opened and must be closed by the caller via closeIfNotOpen.
+     */
+    private List<EventFileObject> getEventFiles(String strDate, String encodedLabel) throws IOException {
+        List<EventFileObject> toReturn = new ArrayList<>(1);
+        File[] files = new File(rootNode.getPath() + "/" + strDate + "/" + encodedLabel).listFiles();
+        if (files == null) {
+            return toReturn;
+        }
+        EventFileObject openFile = openEventFilesHM.get(encodedLabel + strDate);
+        for (File file : files) {
+            if (file.getName().endsWith(SlotsDb.EVENT_FILE_EXTENSION)) {
+                if (openFile != null && openFile.getFile().equals(file)) {
+                    toReturn.add(openFile);
+                }
+                else {
+                    toReturn.add(new EventFileObject(file));
+                }
+            }
+        }
+        return toReturn;
+    }
+
+    private void closeIfNotOpen(EventFileObject eventFile, String strDate, String encodedLabel) throws IOException {
+        if (openEventFilesHM.get(encodedLabel + strDate) != eventFile) {
+            eventFile.close();
+        }
+    }
+
+    private List<Record> readEvents(String encodedLabel, long start, long end) throws IOException {
+        List<Record> toReturn = new ArrayList<>();
+
+        List<String> strDates = new ArrayList<>();
+        for (File folder : rootNode.listFiles()) {
+            if (folder.isDirectory() && isFolderBetweenStartAndEnd(folder.getName(), start, end)) {
+                strDates.add(folder.getName());
+            }
+        }
+        Collections.sort(strDates); // yyyyMMdd sorts chronologically
+
+        boolean sorted = true;
+        for (String strDate : strDates) {
+            List<EventFileObject> eventFiles = getEventFiles(strDate, encodedLabel);
+            for (EventFileObject eventFile : eventFiles) {
+                toReturn.addAll(eventFile.read(start, end));
+                closeIfNotOpen(eventFile, strDate, encodedLabel);
+            }
+            if (eventFiles.size() > 1) {
+                sorted = false; // value type changed during the day
+            }
+        }
+        if (!sorted) {
+            sortByTimestamp(toReturn);
+        }
+        return toReturn;
+    }
+
+    private void sortByTimestamp(List<Record> records) {
+        Collections.sort(records, new Comparator<Record>() {
+
+            @Override
+            public int compare(Record r1, Record r2) {
+                return r1.getTimestamp().compareTo(r2.getTimestamp());
+            }
+        });
+    }
+
     private String encodeLabel(String label) throws IOException {
         String encodedLabel = encodedLabels.get(label);
         if (encodedLabel == null) {
@@ -410,10 +566,20 @@ public final class FileObjectProxy {
         }
         FileObject toReadFrom = openFilesHM.get(label + strDate).getFileObjectForTimestamp(timestamp);
         if (toReadFrom != null) {
-            return toReadFrom.read(timestamp); // null if no value for timestamp
-                                               // is available
+            Record record = toReadFrom.read(timestamp);
+            if (record != null) {
+                return record;
+            }
+        }
+
+        Record record = null;
+        for (EventFileObject eventFile : getEventFiles(strDate, label)) {
+            if (record == null) {
+                record = eventFile.read(timestamp); // null if no event for timestamp
+            }
+            closeIfNotOpen(eventFile, strDate, label);
         }
-        return null;
+        return record;
     }
 
     public synchronized List<Record> read(String label, long start, long end) throws IOException {
@@ -421,6 +587,27 @@ public final class FileObjectProxy {
             logger.trace("Called: read(" + label + ", " + start + ", " + end + ")");
         }
 
+        List<Record> toReturn = readSlots(label, start, end);
+
+        if (start >= end) {
+            return toReturn; // single timestamp already handled, including events
+        }
+
+        List<Record> events = readEvents(encodeLabel(label), start, Math.min(end, MAX_READ_TIMESTAMP));
+        if (!events.isEmpty()) {
+            if (toReturn.isEmpty()) {
+                return events;
+            }
+            /*
+             * Channel was logged periodically and event based within the requested range -> merge by timestamp.
+             */
+            toReturn.addAll(events);
+            sortByTimestamp(toReturn);
+        }
+        return toReturn;
+    }
+
+    private List<Record> readSlots(String label, long start, long end) throws IOException {
         List<Record> toReturn = new Vector<>();
 
         if (start > end) {
@@ -433,10 +620,8 @@ public final class FileObjectProxy {
             toReturn.removeAll(Collections.singleton(null));
             return toReturn;
         }
-        if (end > 50000000000000L) { /*
-                                      * to prevent buffer overflows. in cases of multiplication
-                                      */
-            end = 50000000000000L;
+        if (end > MAX_READ_TIMESTAMP) {
+            end = MAX_READ_TIMESTAMP;
         }
 
         // label = URLEncoder.encode(label,Charset.defaultCharset().toString());
@@ -579,10 +764,22 @@ public final class FileObjectProxy {
         /*
          * For each file get the latest Record and compare those
          */
-        List<FileObject> toRead = new Vector<>();
-        toRead = fileObjects.getAllFileObjects();
         long latestTimestamp = 0;
         Record latestRecord = null;
+
+        for (EventFileObject eventFile : getEventFiles(latestFolder.getName(), label)) {
+            Record record = eventFile.readLatest();
+            if (record != null && record.getTimestamp() > latestTimestamp) {
+                latestRecord = record;
+                latestTimestamp = record.getTimestamp();
+            }
+            closeIfNotOpen(eventFile, latestFolder.getName(), label);
+        }
+
+        if (fileObjects == null) {
+            return latestRecord;
+        }
+        List<FileObject> toRead = fileObjects.getAllFileObjects();
         for (FileObject file : toRead) {
             long timestamp = file.getTimestampForLatestValue();
             if (timestamp > latestTimestamp) {
@@ -676,8 +873,6 @@ public final class FileObjectProxy {
             clearOpenFilesHashMap();
             logger.info(
                     "Started logging to a new Day. <" + strDate + "> Folder has been closed and flushed completely.");
-            /* reload days */
-            loadDays();
         }
     }
 
@@ -687,6 +882,11 @@ public final class FileObjectProxy {
             itr.next().closeAllFiles();
         }
         openFilesHM = new HashMap<>();
+
+        for (EventFileObject eventFile : openEventFilesHM.values()) {
+            eventFile.close();
+        }
+        openEventFilesHM = new HashMap<>();
     }
 
     private void controlHashtableSize() throws IOException {
@@ -713,6 +913,15 @@ public final class FileObjectProxy {
                 itr.remove();
             }
         }
+        if (openEventFilesHM.size() > max_open_files) {
+            logger.debug("More then " + max_open_files
+                    + " event files are opened. Flushing and closing some to not exceed OS-Limit.");
+            Iterator<EventFileObject> itr = openEventFilesHM.values().iterator();
+            for (int i = 0; i < (max_open_files / 5); i++) {
+                itr.next().close();
+                itr.remove();
+            }
+        }
     }
 
     /**
@@ -727,7 +936,11 @@ public final class FileObjectProxy {
         while (itr.hasNext()) {
             itr.next().flush();
         }
+        for (EventFileObject eventFile : openEventFilesHM.values()) {
+            eventFile.flush();
+        }
 
-        logger.info("Data from " + openFilesHM.size() + " Folders flushed to disk.");
+        logger.info("Data from " + openFilesHM.size() + " Folders and " + openEventFilesHM.size()
+                + " event files flushed to disk.");
     }
 }
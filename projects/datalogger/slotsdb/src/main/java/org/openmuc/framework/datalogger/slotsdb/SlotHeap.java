@@ -0,0 +1,136 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Heap file for variable length values (strings and byte arrays). Every entry is stored as (length: int, data) and
+ * referenced by its offset from the slots of the data file.<br>
+ * <br>
+ * Entries are written to the heap before the referencing slot is written to the data file. So a slot never points to
+ * missing heap data, even if the data file is flushed later.
+ */
+public final class SlotHeap {
+
+    private final File heapFile;
+    private FileChannel channel;
+    private long length;
+
+    public SlotHeap(File heapFile) {
+        this.heapFile = heapFile;
+        length = heapFile.length();
+    }
+
+    /**
+     * Returns the heap file for the given data file, e.g. 1298734198000.string.slotsheap for
+     * 1298734198000.string.slots
+     *
+     * @param dataFile
+     *            the data file
+     * @param extension
+     *            extension of the data file
+     * @return the heap file
+     */
+    public static File heapFileFor(File dataFile, String extension) {
+        String name = dataFile.getName();
+        return new File(dataFile.getParentFile(),
+                name.substring(0, name.length() - extension.length()) + SlotsDb.HEAP_FILE_EXTENSION);
+    }
+
+    private void open() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(heapFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE);
+            length = channel.size();
+        }
+    }
+
+    /**
+     * Appends an entry to the heap.
+     *
+     * @param data
+     *            the data
+     * @return the offset of the entry
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public long append(byte[] data) throws IOException {
+        open();
+        long offset = length;
+        ByteBuffer bb = ByteBuffer.allocate(4 + data.length);
+        bb.putInt(data.length);
+        bb.put(data);
+        bb.flip();
+        while (bb.hasRemaining()) {
+            length += channel.write(bb, length);
+        }
+        return offset;
+    }
+
+    /**
+     * Reads the entry at the given offset.
+     *
+     * @param offset
+     *            offset of the entry
+     * @return the data
+     * @throws IOException
+     *             if an I/O error occurs or there is no entry at the offset.
+     */
+    public byte[] read(long offset) throws IOException {
+        open();
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        readFully(lengthBuffer, offset);
+        int entryLength = lengthBuffer.getInt(0);
+        if (entryLength < 0 || offset + 4 + entryLength > length) {
+            throw new IOException("Corrupted heap entry at offset " + offset + " in " + heapFile.getName());
+        }
+        ByteBuffer data = ByteBuffer.allocate(entryLength);
+        readFully(data, offset + 4);
+        return data.array();
+    }
+
+    private void readFully(ByteBuffer bb, long position) throws IOException {
+        while (bb.hasRemaining()) {
+            int read = channel.read(bb, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of heap file " + heapFile.getName());
+            }
+            position += read;
+        }
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
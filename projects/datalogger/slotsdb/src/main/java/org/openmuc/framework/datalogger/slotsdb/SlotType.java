@@ -0,0 +1,284 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.TypeConversionException;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+
+/**
+ * Storage type of the values in a SlotsDB file. Every value is stored with its native width followed by one flag
+ * byte. Strings and byte arrays are stored in a heap file next to the data file, the slot itself contains the offset
+ * into the heap.<br>
+ * <br>
+ * The type is part of the file name, e.g. 1298734198000.long.slots. Files without type (1298734198000.slots) contain
+ * doubles, which keeps files of older versions readable.<br>
+ * <br>
+ * Doubles mark missing values with NaN. All other types set the highest bit of the flag byte instead.
+ */
+public enum SlotType {
+
+    DOUBLE(ValueType.DOUBLE, "", 8),
+    FLOAT(ValueType.FLOAT, ".float", 4),
+    LONG(ValueType.LONG, ".long", 8),
+    INTEGER(ValueType.INTEGER, ".int", 4),
+    SHORT(ValueType.SHORT, ".short", 2),
+    BYTE(ValueType.BYTE, ".byte", 1),
+    BOOLEAN(ValueType.BOOLEAN, ".boolean", 1),
+    BYTE_ARRAY(ValueType.BYTE_ARRAY, ".bytes", 8),
+    STRING(ValueType.STRING, ".string", 8);
+
+    private static final byte NO_VALUE = (byte) 0x80;
+
+    private final ValueType valueType;
+    private final String infix;
+    private final int valueSize;
+
+    private SlotType(ValueType valueType, String infix, int valueSize) {
+        this.valueType = valueType;
+        this.infix = infix;
+        this.valueSize = valueSize;
+    }
+
+    public static SlotType forValueType(ValueType valueType) {
+        if (valueType == null) {
+            return DOUBLE;
+        }
+        for (SlotType slotType : values()) {
+            if (slotType.valueType == valueType) {
+                return slotType;
+            }
+        }
+        return DOUBLE;
+    }
+
+    /**
+     * Returns the slot type of a file with the given name and extension, e.g. LONG for "1298734198000.long.slots"
+     *
+     * @param fileName
+     *            name of the file
+     * @param extension
+     *            extension of the file, e.g. {@link SlotsDb#FILE_EXTENSION}
+     * @return the slot type
+     */
+    public static SlotType forFileName(String fileName, String extension) {
+        String name = fileName.substring(0, fileName.length() - extension.length());
+        for (SlotType slotType : values()) {
+            if (!slotType.infix.isEmpty() && name.endsWith(slotType.infix)) {
+                return slotType;
+            }
+        }
+        return DOUBLE;
+    }
+
+    public ValueType getValueType() {
+        return valueType;
+    }
+
+    /**
+     * Returns the extension of files with this slot type, e.g. ".long.slots"
+     *
+     * @param extension
+     *            the base extension, e.g. {@link SlotsDb#FILE_EXTENSION}
+     * @return the extension including the type
+     */
+    public String getFileExtension(String extension) {
+        return infix + extension;
+    }
+
+    /**
+     * @return size of a value including its flag in bytes
+     */
+    public int getSlotSize() {
+        return valueSize + 1;
+    }
+
+    public boolean usesHeap() {
+        return this == BYTE_ARRAY || this == STRING;
+    }
+
+    /**
+     * Writes a value and its flag to the buffer. If the value is null or can not be converted to this type an empty
+     * slot is written.
+     *
+     * @param bb
+     *            the buffer
+     * @param value
+     *            the value, may be null
+     * @param flag
+     *            the flag
+     * @param heap
+     *            heap for strings and byte arrays, null for other types
+     * @throws IOException
+     *             if writing to the heap fails
+     */
+    public void write(ByteBuffer bb, Value value, byte flag, SlotHeap heap) throws IOException {
+        if (value != null) {
+            try {
+                putValue(bb, value, heap);
+                bb.put(flag);
+                return;
+            } catch (TypeConversionException e) {
+                // write empty slot
+            }
+        }
+        writeEmpty(bb, flag);
+    }
+
+    /**
+     * Writes an empty slot, i.e. a slot without value.
+     *
+     * @param bb
+     *            the buffer
+     * @param flag
+     *            the flag
+     */
+    public void writeEmpty(ByteBuffer bb, byte flag) {
+        switch (this) {
+        case DOUBLE:
+            bb.putDouble(Double.NaN);
+            bb.put(flag);
+            return;
+        case BYTE_ARRAY:
+        case STRING:
+            bb.putLong(-1);
+            break;
+        default:
+            for (int i = 0; i < valueSize; i++) {
+                bb.put((byte) 0);
+            }
+        }
+        bb.put((byte) (flag | NO_VALUE));
+    }
+
+    private void putValue(ByteBuffer bb, Value value, SlotHeap heap) throws IOException {
+        switch (this) {
+        case DOUBLE:
+            bb.putDouble(value.asDouble());
+            break;
+        case FLOAT:
+            bb.putFloat(value.asFloat());
+            break;
+        case LONG:
+            bb.putLong(value.asLong());
+            break;
+        case INTEGER:
+            bb.putInt(value.asInt());
+            break;
+        case SHORT:
+            bb.putShort(value.asShort());
+            break;
+        case BYTE:
+            bb.put(value.asByte());
+            break;
+        case BOOLEAN:
+            bb.put(value.asBoolean() ? (byte) 1 : (byte) 0);
+            break;
+        case BYTE_ARRAY:
+            bb.putLong(heap.append(value.asByteArray()));
+            break;
+        case STRING:
+            bb.putLong(heap.append(value.asString().getBytes(StandardCharsets.UTF_8)));
+            break;
+        }
+    }
+
+    /**
+     * Reads a slot from the buffer.
+     *
+     * @param bb
+     *            the buffer
+     * @param timestamp
+     *            timestamp of the slot
+     * @param heap
+     *            heap for strings and byte arrays, null for other types
+     * @return the record or null if the slot is empty
+     * @throws IOException
+     *             if reading from the heap fails
+     */
+    public Record read(ByteBuffer bb, long timestamp, SlotHeap heap) throws IOException {
+        if (this == DOUBLE) {
+            double d = bb.getDouble();
+            byte flag = bb.get();
+            if (Double.isNaN(d)) {
+                return null;
+            }
+            return new Record(new DoubleValue(d), timestamp, Flag.newFlag(flag));
+        }
+
+        int valuePosition = bb.position();
+        bb.position(valuePosition + valueSize);
+        byte flag = bb.get();
+        if ((flag & NO_VALUE) != 0) {
+            return null;
+        }
+        int end = bb.position();
+        bb.position(valuePosition);
+
+        Value value;
+        switch (this) {
+        case FLOAT:
+            value = new FloatValue(bb.getFloat());
+            break;
+        case LONG:
+            value = new LongValue(bb.getLong());
+            break;
+        case INTEGER:
+            value = new IntValue(bb.getInt());
+            break;
+        case SHORT:
+            value = new ShortValue(bb.getShort());
+            break;
+        case BYTE:
+            value = new ByteValue(bb.get());
+            break;
+        case BOOLEAN:
+            value = new BooleanValue(bb.get() != 0);
+            break;
+        case BYTE_ARRAY:
+            value = new ByteArrayValue(heap.read(bb.getLong()));
+            break;
+        case STRING:
+            value = new StringValue(new String(heap.read(bb.getLong()), StandardCharsets.UTF_8));
+            break;
+        default:
+            throw new IllegalStateException("Unknown slot type " + this);
+        }
+        bb.position(end);
+        return new Record(value, timestamp, Flag.newFlag(flag));
+    }
+}
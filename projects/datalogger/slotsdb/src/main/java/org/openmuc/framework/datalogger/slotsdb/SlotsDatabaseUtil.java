@@ -21,11 +21,10 @@
 
 package org.openmuc.framework.datalogger.slotsdb;
 
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 
+import org.openmuc.framework.data.Record;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,21 +33,23 @@ public final class SlotsDatabaseUtil {
     private static final Logger logger = LoggerFactory.getLogger(SlotsDatabaseUtil.class);
 
     public static void printWholeFile(File file) throws IOException {
-        if (!file.getName().contains(SlotsDb.FILE_EXTENSION)) {
+        if (!file.getName().endsWith(SlotsDb.FILE_EXTENSION)) {
             System.err.println(file.getName() + " is not a \"" + SlotsDb.FILE_EXTENSION + "\" file.");
             return;
         }
         else {
-            DataInputStream dis = new DataInputStream(new FileInputStream(file));
+            FileObject fileObject = new FileObject(file);
             try {
                 if (file.length() >= 16) {
-                    logger.debug("StartTimestamp: " + dis.readLong() + "  -  StepIntervall: " + dis.readLong());
-                    while (dis.available() >= 9) {
-                        logger.debug(dis.readDouble() + "  -\t  Flag: " + dis.readByte());
+                    logger.debug("StartTimestamp: " + fileObject.getStartTimeStamp() + "  -  StepIntervall: "
+                            + fileObject.getStoringPeriod() + "  -  Type: " + fileObject.getSlotType());
+                    for (Record record : fileObject.readFully()) {
+                        logger.debug(record.getTimestamp() + ": " + record.getValue() + "  -\t  Flag: "
+                                + record.getFlag().getCode());
                     }
                 }
             } finally {
-                dis.close();
+                fileObject.close();
             }
         }
     }
@@ -26,7 +26,6 @@ import java.util.HashMap;
 import java.util.List;
 
 import org.openmuc.framework.data.Record;
-import org.openmuc.framework.data.TypeConversionException;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
 import org.openmuc.framework.datalogger.spi.LogChannel;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
@@ -44,6 +43,16 @@ public final class SlotsDb implements DataLoggerService {
      * File extension for SlotsDB files. Only these Files will be loaded.
      */
     public static final String FILE_EXTENSION = ".slots";
+    /*
+     * File name and extensions for event (irregular timestamp) files and their sparse time index.
+     */
+    public static final String EVENT_FILE_NAME = "events";
+    public static final String EVENT_FILE_EXTENSION = ".slotsev";
+    public static final String EVENT_INDEX_EXTENSION = ".slotsidx";
+    /*
+     * Extension of the heap files storing strings and byte arrays.
+     */
+    public static final String HEAP_FILE_EXTENSION = ".slotsheap";
     /*
      * Root folder for SlotsDB files
      */
@@ -97,8 +106,22 @@ public final class SlotsDb implements DataLoggerService {
     public static final int DATA_EXPIRATION_CHECK_INTERVAL = 5000;
     private static final Logger logger = LoggerFactory.getLogger(SlotsDb.class);
     private final HashMap<String, Integer> loggingIntervalsById = new HashMap<>();
+    private final HashMap<String, SlotType> slotTypesById = new HashMap<>();
     private FileObjectProxy fileObjectProxy;
 
+    public SlotsDb() {
+    }
+
+    /**
+     * Creates a SlotsDB outside of the OSGi framework that stores its files below the given folder.
+     *
+     * @param rootFolder
+     *            root folder of the database
+     */
+    public SlotsDb(String rootFolder) {
+        fileObjectProxy = new FileObjectProxy(rootFolder);
+    }
+
     @Activate
     protected void activate(ComponentContext context) {
         String rootFolder = SlotsDb.DB_ROOT_FOLDER;
@@ -132,35 +155,21 @@ public final class SlotsDb implements DataLoggerService {
     @Override
     public void setChannelsToLog(List<LogChannel> channels) {
         loggingIntervalsById.clear();
+        slotTypesById.clear();
         for (LogChannel channel : channels) {
             loggingIntervalsById.put(channel.getId(), channel.getLoggingInterval());
+            slotTypesById.put(channel.getId(), SlotType.forValueType(channel.getValueType()));
         }
     }
 
     @Override
     public void log(List<LoggingRecord> containers, long timestamp) {
         for (LoggingRecord container : containers) {
-            Double value;
-            if (container.getRecord().getValue() == null) {
-                value = Double.NaN;
-            }
-            else {
-                try {
-                    value = container.getRecord().getValue().asDouble();
-                } catch (TypeConversionException e) {
-                    value = Double.NaN;
-                }
-            }
-
-            // Long timestamp = container.getRecord().getTimestamp();
-            // if (timestamp == null) {
-            // timestamp = 0L;
-            // }
-
+            Record record = container.getRecord();
+            String channelId = container.getChannelId();
             try {
-                String channelId = container.getChannelId();
-                fileObjectProxy.appendValue(channelId, value, timestamp, container.getRecord().getFlag().getCode(),
-                        loggingIntervalsById.get(channelId));
+                fileObjectProxy.appendValue(channelId, record.getValue(), timestamp, record.getFlag().getCode(),
+                        loggingIntervalsById.get(channelId), getSlotType(channelId, record));
             } catch (IOException e) {
                 logger.error("error logging records", e);
             }
@@ -169,7 +178,35 @@ public final class SlotsDb implements DataLoggerService {
 
     @Override
     public void logEvent(List<LoggingRecord> containers, long timestamp) {
-        logger.warn("Event logging is not implemented, yet.");
+        for (LoggingRecord container : containers) {
+            Record record = container.getRecord();
+            String channelId = container.getChannelId();
+
+            /*
+             * Events are stored with their own timestamp, the logging timestamp is only used as fallback.
+             */
+            long eventTimestamp = record.getTimestamp() != null ? record.getTimestamp() : timestamp;
+
+            try {
+                fileObjectProxy.appendEvent(channelId, record.getValue(), eventTimestamp, record.getFlag().getCode(),
+                        getSlotType(channelId, record));
+            } catch (IOException e) {
+                logger.error("error logging events", e);
+            }
+        }
+    }
+
+    /*
+     * The value type of the channel configuration defines the storage type. Falls back to the type of the value for
+     * channels which are not configured (yet).
+     */
+    private SlotType getSlotType(String channelId, Record record) {
+        SlotType slotType = slotTypesById.get(channelId);
+        if (slotType == null) {
+            slotType = record.getValue() != null ? SlotType.forValueType(record.getValue().getValueType())
+                    : SlotType.DOUBLE;
+        }
+        return slotType;
     }
 
     @Override
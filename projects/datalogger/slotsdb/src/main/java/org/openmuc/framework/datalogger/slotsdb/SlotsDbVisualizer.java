@@ -101,7 +101,7 @@ public final class SlotsDbVisualizer extends JFrame {
 
                         // tblData[i][0] = (new SimpleDateFormat("yyyy-MM-dd HH:mm:ss")).format(cal.getTime());
                         tblData[i][0] = res.get(i).getTimestamp().toString();
-                        tblData[i][1] = Double.toString(res.get(i).getValue().asDouble());
+                        tblData[i][1] = res.get(i).getValue().toString();
                         tblData[i][2] = Integer.toString(res.get(i).getFlag().getCode());
                     }
                     table = new JTable(tblData, columnNames);
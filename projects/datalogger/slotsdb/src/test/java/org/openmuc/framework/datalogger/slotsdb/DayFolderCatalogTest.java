@@ -0,0 +1,150 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.StringValue;
+
+public class DayFolderCatalogTest {
+
+    private static final byte VALID = Flag.VALID.getCode();
+    private static final long DAY = 86400000L;
+    private static final long PERIOD = 1000;
+
+    @TempDir
+    File folder;
+
+    @Test
+    void trackedSizeMatchesFolderSize() throws IOException {
+        long day = FileObjectProxyTest.startOfDay(2020, Calendar.SEPTEMBER, 13);
+        FileObjectProxy proxy = new FileObjectProxy(folder.getPath());
+        fillDay(proxy, day);
+        fillDay(proxy, day + DAY);
+        proxy.flush();
+
+        DayFolderCatalog tracked = proxy.getDayFolderCatalog();
+        assertEquals(2, tracked.size());
+        assertEquals(folderSize(folder), tracked.getTotalSize());
+
+        DayFolderCatalog loaded = new DayFolderCatalog();
+        loaded.load(folder);
+        assertEquals(tracked.getTotalSize(), loaded.getTotalSize());
+        assertEquals("20200913", loaded.getOldestDay());
+    }
+
+    @Test
+    void catalogIsUpdatedOnRemove() {
+        DayFolderCatalog catalog = new DayFolderCatalog();
+        catalog.addSize("20200914", 100);
+        catalog.addSize("20200913", 30);
+        catalog.addSize("20200913", 20);
+
+        assertEquals(150, catalog.getTotalSize());
+        assertEquals("20200913", catalog.getOldestDay());
+        assertEquals(50, catalog.removeDay("20200913"));
+        assertEquals(100, catalog.getTotalSize());
+        assertEquals("20200914", catalog.getOldestDay());
+        assertEquals(0, catalog.removeDay("20200913"));
+        assertEquals(100, catalog.removeDay("20200914"));
+        assertEquals(0, catalog.getTotalSize());
+        assertNull(catalog.getOldestDay());
+    }
+
+    @Test
+    void foldersOlderThanLimitAreDeleted() throws IOException {
+        long today = startOfToday();
+        FileObjectProxy proxy = new FileObjectProxy(folder.getPath());
+        fillDay(proxy, today - 10 * DAY);
+        fillDay(proxy, today - 5 * DAY);
+        fillDay(proxy, today);
+
+        proxy.deleteFoldersOlderThen(7);
+
+        assertFalse(dayFolder(today - 10 * DAY).exists());
+        assertTrue(dayFolder(today - 5 * DAY).exists());
+        assertTrue(dayFolder(today).exists());
+        assertEquals(2, proxy.getDayFolderCatalog().size());
+        assertEquals(folderSize(folder), proxy.getDayFolderCatalog().getTotalSize());
+    }
+
+    @Test
+    void oldestFoldersAreDeletedAboveSizeLimit() throws IOException {
+        long day = FileObjectProxyTest.startOfDay(2020, Calendar.SEPTEMBER, 13);
+        FileObjectProxy proxy = new FileObjectProxy(folder.getPath());
+        for (int i = 0; i < 3; i++) {
+            fillDay(proxy, day + i * DAY);
+        }
+        long newestDaySize = folderSize(dayFolder(day + 2 * DAY));
+
+        proxy.deleteFoldersAboveSize(0);
+
+        assertFalse(dayFolder(day).exists());
+        assertFalse(dayFolder(day + DAY).exists());
+        assertTrue(dayFolder(day + 2 * DAY).exists(), "the newest folder is kept");
+        assertEquals(1, proxy.getDayFolderCatalog().size());
+        assertEquals(newestDaySize, proxy.getDayFolderCatalog().getTotalSize());
+    }
+
+    private static void fillDay(FileObjectProxy proxy, long day) throws IOException {
+        for (int i = 0; i < 10; i++) {
+            long timestamp = day + 3600000L + i * PERIOD;
+            proxy.appendValue("power", new DoubleValue(i), timestamp, VALID, PERIOD, SlotType.DOUBLE);
+            proxy.appendValue("state", new StringValue("state " + i), timestamp, VALID, PERIOD, SlotType.STRING);
+            proxy.appendEvent("switch", new DoubleValue(i % 2), timestamp + 7, VALID, SlotType.DOUBLE);
+        }
+    }
+
+    private File dayFolder(long day) {
+        return new File(folder, new SimpleDateFormat("yyyyMMdd").format(new Date(day)));
+    }
+
+    private static long startOfToday() {
+        Calendar calendar = Calendar.getInstance();
+        return FileObjectProxyTest.startOfDay(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH),
+                calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    private static long folderSize(File file) {
+        if (file.isFile()) {
+            return file.length();
+        }
+        long size = 0;
+        for (File child : file.listFiles()) {
+            size += folderSize(child);
+        }
+        return size;
+    }
+}
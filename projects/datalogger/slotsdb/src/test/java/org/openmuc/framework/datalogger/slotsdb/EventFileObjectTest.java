@@ -0,0 +1,193 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.StringValue;
+
+public class EventFileObjectTest {
+
+    private static final long START = 1_600_000_000_000L;
+    private static final byte VALID = Flag.VALID.getCode();
+    // more rows than one index interval, so range reads use the sparse index
+    private static final int EVENTS = 300;
+
+    @TempDir
+    File folder;
+
+    private File dataFile;
+
+    @BeforeEach
+    void setup() {
+        dataFile = new File(folder, SlotsDb.EVENT_FILE_NAME + SlotsDb.EVENT_FILE_EXTENSION);
+    }
+
+    @Test
+    void eventsAreReadBackByTimeRange() throws IOException {
+        EventFileObject eventFile = createWithEvents();
+
+        List<Record> records = eventFile.read(timestamp(10), timestamp(20));
+        assertEquals(11, records.size(), "start and end are inclusive");
+        assertEquals(timestamp(10), records.get(0).getTimestamp());
+        assertEquals(10, records.get(0).getValue().asDouble());
+        assertEquals(timestamp(20), records.get(10).getTimestamp());
+
+        // timestamps between two events
+        records = eventFile.read(timestamp(199) + 1, timestamp(201) - 1);
+        assertEquals(1, records.size());
+        assertEquals(timestamp(200), records.get(0).getTimestamp());
+
+        assertEquals(EVENTS, eventFile.readFully().size());
+        assertTrue(eventFile.read(START - 1000, START - 1).isEmpty());
+        assertTrue(eventFile.read(timestamp(EVENTS - 1) + 1, Long.MAX_VALUE).isEmpty());
+        assertEquals(timestamp(EVENTS - 1), eventFile.read(timestamp(EVENTS - 1)).getTimestamp());
+        assertNull(eventFile.read(timestamp(5) + 1));
+        eventFile.close();
+    }
+
+    @Test
+    void olderEventsAreRejected() throws IOException {
+        EventFileObject eventFile = createWithEvents();
+
+        assertFalse(eventFile.append(new DoubleValue(1), timestamp(10), VALID));
+        assertTrue(eventFile.append(new DoubleValue(1), timestamp(EVENTS - 1), VALID), "equal timestamp is kept");
+        assertEquals(EVENTS + 1, eventFile.size());
+        eventFile.close();
+    }
+
+    @Test
+    void eventsAreReadAfterReopen() throws IOException {
+        createWithEvents().close();
+
+        EventFileObject eventFile = new EventFileObject(dataFile);
+        assertEquals(EVENTS, eventFile.size());
+        assertEquals(START, eventFile.getStartTimeStamp());
+        assertEquals(timestamp(EVENTS - 1), eventFile.getTimestampForLatestValue());
+        assertEquals(150, eventFile.read(timestamp(150)).getValue().asDouble());
+
+        eventFile.append(new DoubleValue(EVENTS), timestamp(EVENTS), VALID);
+        eventFile.close();
+
+        eventFile = new EventFileObject(dataFile);
+        assertEquals(EVENTS + 1, eventFile.readFully().size());
+        assertEquals(EVENTS, eventFile.readLatest().getValue().asDouble());
+        eventFile.close();
+    }
+
+    @Test
+    void missingIndexIsRebuilt() throws IOException {
+        createWithEvents().close();
+        File indexFile = new File(folder, SlotsDb.EVENT_FILE_NAME + SlotsDb.EVENT_INDEX_EXTENSION);
+        assertTrue(indexFile.delete());
+
+        EventFileObject eventFile = new EventFileObject(dataFile);
+        List<Record> records = eventFile.read(timestamp(250), timestamp(260));
+        assertEquals(11, records.size());
+        assertEquals(250, records.get(0).getValue().asDouble());
+        eventFile.close();
+        assertTrue(indexFile.length() > 0);
+    }
+
+    @Test
+    void tornTrailingEventIsIgnored() throws IOException {
+        createWithEvents().close();
+        long completeLength = dataFile.length();
+        try (RandomAccessFile file = new RandomAccessFile(dataFile, "rw")) {
+            // a partially written event, e.g. after a power loss
+            file.setLength(completeLength + 5);
+        }
+
+        EventFileObject eventFile = new EventFileObject(dataFile);
+        assertEquals(EVENTS, eventFile.size());
+        assertEquals(timestamp(EVENTS - 1), eventFile.readLatest().getTimestamp());
+
+        // the next event overwrites the torn one
+        assertTrue(eventFile.append(new DoubleValue(-1), timestamp(EVENTS), VALID));
+        eventFile.close();
+        assertEquals(completeLength + 8 + SlotType.DOUBLE.getSlotSize(), dataFile.length());
+
+        eventFile = new EventFileObject(dataFile);
+        assertEquals(EVENTS + 1, eventFile.size());
+        assertEquals(-1, eventFile.readLatest().getValue().asDouble());
+        eventFile.close();
+    }
+
+    @Test
+    void truncatedEventIsDropped() throws IOException {
+        createWithEvents().close();
+        try (RandomAccessFile file = new RandomAccessFile(dataFile, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        EventFileObject eventFile = new EventFileObject(dataFile);
+        assertEquals(EVENTS - 1, eventFile.size());
+        assertEquals(timestamp(EVENTS - 2), eventFile.getTimestampForLatestValue());
+        assertEquals(EVENTS - 1, eventFile.read(START, Long.MAX_VALUE).size());
+        eventFile.close();
+    }
+
+    @Test
+    void stringEventsAreStoredInHeap() throws IOException {
+        File stringFile = new File(folder,
+                SlotsDb.EVENT_FILE_NAME + SlotType.STRING.getFileExtension(SlotsDb.EVENT_FILE_EXTENSION));
+        EventFileObject eventFile = new EventFileObject(stringFile);
+        eventFile.createFileAndHeader(START);
+        eventFile.append(new StringValue("on"), START, VALID);
+        eventFile.append(new StringValue("a longer state text"), START + 10, VALID);
+        eventFile.close();
+
+        eventFile = new EventFileObject(stringFile);
+        List<Record> records = eventFile.readFully();
+        assertEquals("on", records.get(0).getValue().asString());
+        assertEquals("a longer state text", records.get(1).getValue().asString());
+        eventFile.close();
+    }
+
+    private EventFileObject createWithEvents() throws IOException {
+        EventFileObject eventFile = new EventFileObject(dataFile);
+        eventFile.createFileAndHeader(START);
+        for (int i = 0; i < EVENTS; i++) {
+            assertTrue(eventFile.append(new DoubleValue(i), timestamp(i), VALID));
+        }
+        return eventFile;
+    }
+
+    private static long timestamp(int event) {
+        // irregular distances between the events
+        return START + event * 1000L + (event % 7) * 13;
+    }
+}
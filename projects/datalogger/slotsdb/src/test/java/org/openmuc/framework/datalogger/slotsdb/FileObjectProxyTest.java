@@ -0,0 +1,209 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+
+public class FileObjectProxyTest {
+
+    private static final String CHANNEL = "power";
+    private static final byte VALID = Flag.VALID.getCode();
+    private static final long HOUR = 3600000L;
+    private static final long PERIOD = 1000;
+    // not representable as double
+    private static final long LARGE_LONG = (1L << 53) + 1;
+
+    @TempDir
+    File folder;
+
+    @Test
+    void eventsAreReadAcrossDays() throws IOException {
+        long day = startOfDay(2020, Calendar.SEPTEMBER, 13);
+        FileObjectProxy proxy = new FileObjectProxy(folder.getPath());
+        proxy.appendEvent(CHANNEL, new DoubleValue(1), day + HOUR, VALID, SlotType.DOUBLE);
+        proxy.appendEvent(CHANNEL, new DoubleValue(2), day + 23 * HOUR, VALID, SlotType.DOUBLE);
+        proxy.appendEvent(CHANNEL, new DoubleValue(3), day + 25 * HOUR, VALID, SlotType.DOUBLE);
+
+        List<Record> records = proxy.read(CHANNEL, day + HOUR, day + 25 * HOUR);
+        assertEquals(3, records.size());
+        assertEquals(day + HOUR, records.get(0).getTimestamp());
+        assertEquals(3, records.get(2).getValue().asDouble());
+
+        assertEquals(1, proxy.read(CHANNEL, day + HOUR + 1, day + 24 * HOUR).size());
+        assertEquals(2, proxy.read(CHANNEL, day + 23 * HOUR, day + 23 * HOUR).get(0).getValue().asDouble());
+        assertNull(proxy.read(CHANNEL, day + 2 * HOUR));
+        assertEquals(3, proxy.readLatest(CHANNEL).getValue().asDouble());
+    }
+
+    @Test
+    void eventsAreReadAfterRestart() throws IOException {
+        long day = startOfDay(2020, Calendar.SEPTEMBER, 13);
+        FileObjectProxy proxy = new FileObjectProxy(folder.getPath());
+        proxy.appendEvent(CHANNEL, new DoubleValue(1), day + HOUR, VALID, SlotType.DOUBLE);
+        proxy.appendEvent(CHANNEL, new DoubleValue(2), day + 2 * HOUR, VALID, SlotType.DOUBLE);
+        proxy.flush();
+
+        FileObjectProxy restarted = new FileObjectProxy(folder.getPath());
+        restarted.appendEvent(CHANNEL, new DoubleValue(3), day + 3 * HOUR, VALID, SlotType.DOUBLE);
+
+        List<Record> records = restarted.read(CHANNEL, day, day + 4 * HOUR);
+        assertEquals(3, records.size());
+        assertEquals(2, records.get(1).getValue().asDouble());
+        assertEquals(day + 3 * HOUR, records.get(2).getTimestamp());
+    }
+
+    @Test
+    void valuesOfAllTypesAreReadBack() throws IOException {
+        long start = startOfDay(2020, Calendar.SEPTEMBER, 13) + HOUR;
+        Map<ValueType, Value[]> valuesByType = valuesByType();
+
+        FileObjectProxy proxy = new FileObjectProxy(folder.getPath());
+        for (Map.Entry<ValueType, Value[]> entry : valuesByType.entrySet()) {
+            Value[] values = entry.getValue();
+            for (int i = 0; i < values.length; i++) {
+                proxy.appendValue(entry.getKey().name(), values[i], start + i * PERIOD, VALID, PERIOD,
+                        SlotType.forValueType(entry.getKey()));
+            }
+        }
+        assertValues(proxy, start, valuesByType);
+
+        // files are read again after a restart
+        FileObjectProxy restarted = new FileObjectProxy(folder.getPath());
+        assertValues(restarted, start, valuesByType);
+
+        File stringFolder = new File(folder, "20200913/" + ValueType.STRING.name());
+        assertTrue(Arrays.stream(stringFolder.list()).anyMatch(name -> name.endsWith(SlotsDb.HEAP_FILE_EXTENSION)),
+                "strings are stored in the heap");
+    }
+
+    @Test
+    void valuesAreAppendedAfterRestart() throws IOException {
+        long start = startOfDay(2020, Calendar.SEPTEMBER, 13) + HOUR;
+        FileObjectProxy proxy = new FileObjectProxy(folder.getPath());
+        proxy.appendValue(CHANNEL, new LongValue(LARGE_LONG), start, VALID, PERIOD, SlotType.LONG);
+        proxy.appendValue(CHANNEL, new LongValue(2), start + PERIOD, VALID, PERIOD, SlotType.LONG);
+        proxy.flush();
+
+        FileObjectProxy restarted = new FileObjectProxy(folder.getPath());
+        restarted.appendValue(CHANNEL, new LongValue(LARGE_LONG + 2), start + 2 * PERIOD, VALID, PERIOD,
+                SlotType.LONG);
+
+        List<Record> records = restarted.read(CHANNEL, start, start + 2 * PERIOD);
+        assertEquals(3, records.size());
+        assertEquals(LARGE_LONG, records.get(0).getValue().asLong());
+        assertEquals(LARGE_LONG + 2, records.get(2).getValue().asLong());
+        assertEquals(LARGE_LONG + 2, restarted.readLatest(CHANNEL).getValue().asLong());
+    }
+
+    @Test
+    void typeChangeStartsNewFile() throws IOException {
+        long start = startOfDay(2020, Calendar.SEPTEMBER, 13) + HOUR;
+        FileObjectProxy proxy = new FileObjectProxy(folder.getPath());
+        proxy.appendValue(CHANNEL, new DoubleValue(0.5), start, VALID, PERIOD, SlotType.DOUBLE);
+        proxy.appendValue(CHANNEL, new DoubleValue(1.5), start + PERIOD, VALID, PERIOD, SlotType.DOUBLE);
+        proxy.appendValue(CHANNEL, new StringValue("on"), start + 2 * PERIOD, VALID, PERIOD, SlotType.STRING);
+        proxy.appendValue(CHANNEL, new StringValue("off"), start + 3 * PERIOD, VALID, PERIOD, SlotType.STRING);
+
+        File channelFolder = new File(folder, "20200913/" + CHANNEL);
+        assertTrue(new File(channelFolder, start + SlotsDb.FILE_EXTENSION).exists());
+        assertTrue(new File(channelFolder, (start + 2 * PERIOD) + SlotType.STRING.getFileExtension(
+                SlotsDb.FILE_EXTENSION)).exists());
+
+        for (FileObjectProxy reader : Arrays.asList(proxy, new FileObjectProxy(folder.getPath()))) {
+            List<Record> records = reader.read(CHANNEL, start, start + 3 * PERIOD);
+            assertEquals(4, records.size());
+            assertEquals(0.5, records.get(0).getValue().asDouble());
+            assertEquals(1.5, records.get(1).getValue().asDouble());
+            assertEquals("on", records.get(2).getValue().asString());
+            assertEquals("off", records.get(3).getValue().asString());
+        }
+    }
+
+    private static Map<ValueType, Value[]> valuesByType() {
+        Map<ValueType, Value[]> valuesByType = new LinkedHashMap<>();
+        valuesByType.put(ValueType.DOUBLE, new Value[] { new DoubleValue(-1.25), new DoubleValue(Math.PI) });
+        valuesByType.put(ValueType.FLOAT, new Value[] { new FloatValue(0.5f), new FloatValue(-3.75f) });
+        valuesByType.put(ValueType.LONG, new Value[] { new LongValue(LARGE_LONG), new LongValue(Long.MIN_VALUE) });
+        valuesByType.put(ValueType.INTEGER,
+                new Value[] { new IntValue(Integer.MAX_VALUE), new IntValue(Integer.MIN_VALUE) });
+        valuesByType.put(ValueType.SHORT, new Value[] { new ShortValue((short) -300), new ShortValue((short) 42) });
+        valuesByType.put(ValueType.BYTE, new Value[] { new ByteValue((byte) -1), new ByteValue((byte) 127) });
+        valuesByType.put(ValueType.BOOLEAN, new Value[] { new BooleanValue(true), new BooleanValue(false) });
+        valuesByType.put(ValueType.BYTE_ARRAY,
+                new Value[] { new ByteArrayValue(new byte[] { 1, 2, 3 }), new ByteArrayValue(new byte[0]) });
+        valuesByType.put(ValueType.STRING, new Value[] { new StringValue("first"), new StringValue("") });
+        return valuesByType;
+    }
+
+    private static void assertValues(FileObjectProxy proxy, long start, Map<ValueType, Value[]> valuesByType)
+            throws IOException {
+        for (Map.Entry<ValueType, Value[]> entry : valuesByType.entrySet()) {
+            Value[] expected = entry.getValue();
+            List<Record> records = proxy.read(entry.getKey().name(), start, start + (expected.length - 1) * PERIOD);
+            assertEquals(expected.length, records.size(), entry.getKey().name());
+            for (int i = 0; i < expected.length; i++) {
+                Value value = records.get(i).getValue();
+                assertEquals(entry.getKey(), value.getValueType());
+                if (entry.getKey() == ValueType.BYTE_ARRAY) {
+                    assertArrayEquals(expected[i].asByteArray(), value.asByteArray());
+                }
+                else {
+                    assertEquals(expected[i].asString(), value.asString());
+                }
+            }
+        }
+    }
+
+    static long startOfDay(int year, int month, int dayOfMonth) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, dayOfMonth);
+        return calendar.getTimeInMillis();
+    }
+}
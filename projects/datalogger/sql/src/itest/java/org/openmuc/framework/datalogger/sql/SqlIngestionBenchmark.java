@@ -0,0 +1,151 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.openmuc.framework.datalogger.sql.utils.Settings;
+
+/**
+ * Compares the throughput of the ingestion modes of the SQL logger. Run with a JDBC URL of a PostgreSQL database to
+ * compare batched inserts with COPY, without arguments an in-memory H2 database is used, where the copy mode falls back
+ * to batched inserts.
+ *
+ * <pre>
+ * SqlIngestionBenchmark [url] [user] [password] [channels] [ticks]
+ * </pre>
+ */
+public class SqlIngestionBenchmark {
+
+    private static final int WARMUP_TICKS = 20;
+
+    public static void main(String[] args) throws SQLException {
+        String url = args.length > 0 ? args[0] : "jdbc:h2:mem:benchmark;MODE=MYSQL";
+        String user = args.length > 1 ? args[1] : "";
+        String password = args.length > 2 ? args[2] : "";
+        int numOfChannels = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int numOfTicks = args.length > 4 ? Integer.parseInt(args[4]) : 200;
+
+        try (Connection connection = DriverManager.getConnection(url, user, password)) {
+            for (String mode : new String[] { Settings.INGESTION_MODE_INSERT, Settings.INGESTION_MODE_COPY }) {
+                List<String> channelIds = createTables(connection, mode, numOfChannels);
+
+                DbAccess dbAccess = DbAccess.getTestInstance(new BenchmarkConnector(connection));
+                dbAccess.setIngestionMode(mode);
+                SqlWriter writer = new SqlWriter(dbAccess);
+
+                long timestamp = 1_600_000_000_000L;
+                for (int i = 0; i < WARMUP_TICKS; i++) {
+                    writer.writeRecordContainerToDb(createRecords(channelIds, i), timestamp);
+                    timestamp += 1000;
+                }
+
+                long start = System.nanoTime();
+                for (int i = 0; i < numOfTicks; i++) {
+                    writer.writeRecordContainerToDb(createRecords(channelIds, i), timestamp);
+                    timestamp += 1000;
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                long rows = (long) numOfTicks * numOfChannels;
+                System.out.printf("%-6s %d rows in %.3f s: %.0f rows/s%n", mode, rows, seconds, rows / seconds);
+                dropTables(connection, channelIds);
+            }
+        }
+    }
+
+    private static List<String> createTables(Connection connection, String prefix, int numOfChannels)
+            throws SQLException {
+        List<String> channelIds = new ArrayList<>();
+        try (Statement statement = connection.createStatement()) {
+            for (int i = 0; i < numOfChannels; i++) {
+                String channelId = "benchmark_" + prefix + "_" + i;
+                statement.execute("DROP TABLE IF EXISTS " + channelId);
+                statement.execute("CREATE TABLE " + channelId + " (time TIMESTAMP WITH TIME ZONE NOT NULL,"
+                        + "flag SMALLINT NOT NULL,\"VALUE\" DOUBLE PRECISION,PRIMARY KEY (time))");
+                channelIds.add(channelId);
+            }
+        }
+        return channelIds;
+    }
+
+    private static void dropTables(Connection connection, List<String> channelIds) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String channelId : channelIds) {
+                statement.execute("DROP TABLE " + channelId);
+            }
+        }
+    }
+
+    private static List<LoggingRecord> createRecords(List<String> channelIds, int tick) {
+        List<LoggingRecord> records = new ArrayList<>(channelIds.size());
+        for (String channelId : channelIds) {
+            records.add(new LoggingRecord(channelId, new Record(new DoubleValue(tick * 0.5), null)));
+        }
+        return records;
+    }
+
+    private static class BenchmarkConnector extends DbConnector {
+
+        private final Connection benchmarkConnection;
+
+        BenchmarkConnector(Connection connection) {
+            benchmarkConnection = connection;
+        }
+
+        @Override
+        protected String getUrlFromProperties() {
+            return "";
+        }
+
+        @Override
+        protected void initConnector() {
+        }
+
+        @Override
+        protected void getConnectionToDb() {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public Connection getConnection() {
+            return benchmarkConnection;
+        }
+
+        @Override
+        public Statement createStatementWithConnection() throws SQLException {
+            return benchmarkConnection.createStatement();
+        }
+    }
+}
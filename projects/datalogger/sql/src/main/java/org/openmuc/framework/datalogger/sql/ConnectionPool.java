@@ -0,0 +1,207 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of database connections created from a DataSource. Connections are opened on demand up to the maximum size of
+ * the pool and validated before they are handed out. Closing a borrowed connection returns it to the pool.
+ */
+public class ConnectionPool {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+    private final DataSource dataSource;
+    private final String name;
+    private final long borrowTimeout;
+    private final Semaphore permits;
+    private final BlockingDeque<Connection> idleConnections = new LinkedBlockingDeque<>();
+    private volatile boolean closed;
+
+    /**
+     * @param dataSource
+     *            data source to open the connections with
+     * @param name
+     *            name of the pool used in log messages
+     * @param maxSize
+     *            maximum number of borrowed connections
+     * @param borrowTimeout
+     *            maximum time in ms to wait for a free connection
+     */
+    public ConnectionPool(DataSource dataSource, String name, int maxSize, long borrowTimeout) {
+        this.dataSource = dataSource;
+        this.name = name;
+        this.borrowTimeout = borrowTimeout;
+        permits = new Semaphore(Math.max(1, maxSize), true);
+    }
+
+    /**
+     * Borrows a connection from the pool. The connection must be closed to return it to the pool.
+     *
+     * @return a valid connection
+     * @throws SQLException
+     *             if no connection is free within the borrow timeout or a new connection can't be opened
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool " + name + " is closed");
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timeout waiting for a connection of pool " + name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection of pool " + name, e);
+        }
+
+        try {
+            Connection connection = pollValidConnection();
+            if (connection == null) {
+                connection = dataSource.getConnection();
+                logger.debug("Opened new connection of pool {}", name);
+            }
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new PooledConnectionHandler(connection));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection pollValidConnection() {
+        Connection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            try {
+                if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    return connection;
+                }
+            } catch (SQLException e) {
+                logger.debug(e.getMessage());
+            }
+            closeQuietly(connection);
+        }
+        return null;
+    }
+
+    private void release(Connection connection) {
+        try {
+            if (closed || connection.isClosed()) {
+                closeQuietly(connection);
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            idleConnections.offerFirst(connection);
+        } catch (SQLException e) {
+            closeQuietly(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * @return number of open connections which are currently not borrowed
+     */
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    /**
+     * Closes all idle connections. Borrowed connections are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            closeQuietly(connection);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // ignore, the connection is discarded anyway
+        }
+    }
+
+    /**
+     * Forwards all calls to the pooled connection, except close which returns the connection to the pool.
+     */
+    private class PooledConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+        private boolean released;
+
+        PooledConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+            case "close":
+                if (!released) {
+                    released = true;
+                    release(connection);
+                }
+                return null;
+            case "isClosed":
+                return released || connection.isClosed();
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                break;
+            }
+
+            if (released) {
+                throw new SQLException("Connection has already been returned to pool " + name);
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
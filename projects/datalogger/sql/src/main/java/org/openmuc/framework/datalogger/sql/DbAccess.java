@@ -24,12 +24,19 @@ package org.openmuc.framework.datalogger.sql;
 import static org.openmuc.framework.datalogger.sql.utils.SqlValues.POSTGRESQL;
 import static org.openmuc.framework.datalogger.sql.utils.SqlValues.VALUE;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Consumer;
 
 import org.openmuc.framework.data.BooleanValue;
 import org.openmuc.framework.data.ByteArrayValue;
@@ -40,15 +47,25 @@ import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.data.ValueType;
 import org.openmuc.framework.datalogger.sql.utils.PropertyHandlerProvider;
 import org.openmuc.framework.datalogger.sql.utils.Settings;
+import org.openmuc.framework.datalogger.sql.utils.SqlValues;
 import org.openmuc.framework.lib.osgi.config.PropertyHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class DbAccess {
 
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+
     private final Logger logger = LoggerFactory.getLogger(DbAccess.class);
     private final String url;
     private final DbConnector dbConnector;
+    private final Map<String, PreparedStatement> insertStatements = new HashMap<>();
+    private Connection insertStatementsConnection;
+    private boolean copyIngestion;
+    private boolean copySupported;
+    private Connection copySupportedConnection;
+    private NarrowSchema narrowSchema;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
 
     public DbAccess() {
         dbConnector = new DbConnector();
@@ -57,6 +74,11 @@ public class DbAccess {
         if (url.contains("h2") && url.contains("tcp")) {
             dbConnector.startH2Server();
         }
+        setIngestionMode(propertyHandler.getString(Settings.INGESTION_MODE));
+        fetchSize = propertyHandler.getInt(Settings.FETCH_SIZE);
+        if (Settings.SCHEMA_NARROW.equalsIgnoreCase(propertyHandler.getString(Settings.SCHEMA).trim())) {
+            narrowSchema = new NarrowSchema(url);
+        }
     }
 
     private DbAccess(DbConnector connector) { // for testing
@@ -68,6 +90,42 @@ public class DbAccess {
         return new DbAccess(connector);
     }
 
+    /**
+     * Sets how records are inserted: "insert" for batched inserts, "copy" for COPY ... FROM STDIN. COPY is only
+     * supported by PostgreSQL, other databases fall back to batched inserts.
+     *
+     * @param ingestionMode
+     *            "insert" or "copy"
+     */
+    void setIngestionMode(String ingestionMode) {
+        copyIngestion = Settings.INGESTION_MODE_COPY.equalsIgnoreCase(ingestionMode.trim());
+        copySupportedConnection = null;
+    }
+
+    /**
+     * Stores the records of all channels in the tables of the narrow schema instead of one table per channel.
+     *
+     * @param narrowSchema
+     *            the narrow schema or null for one table per channel
+     */
+    void setNarrowSchema(NarrowSchema narrowSchema) {
+        this.narrowSchema = narrowSchema;
+    }
+
+    /**
+     * @return the URL of the database, empty for test instances
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the narrow schema or null if every channel has its own table
+     */
+    public NarrowSchema getNarrowSchema() {
+        return narrowSchema;
+    }
+
     /**
      * Converts StringBuilder to String
      *
@@ -95,6 +153,227 @@ public class DbAccess {
         }
     }
 
+    /**
+     * Inserts records into the tables of their channels. The records of each table are sent as one batch of a cached
+     * prepared statement, or copied with {@link PgCopyWriter} in copy ingestion mode, and all tables are committed in
+     * one transaction. If the transaction fails, e.g. because of a duplicate time stamp, the records are inserted one
+     * by one so that only the failing records are lost. With the {@link NarrowSchema} the records of all channels are
+     * written with a single batch.
+     *
+     * @param recordsByTable
+     *            records to insert, mapped by the name of their table (the channel ID)
+     * @return false if the records could not be written because there is no connection to the database
+     */
+    public boolean insertRecords(Map<String, List<Record>> recordsByTable) {
+        if (recordsByTable.isEmpty()) {
+            return true;
+        }
+        Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
+        if (!dbConnector.isConnected()) {
+            dbConnector.getConnectionToDb();
+        }
+        synchronized (dbConnector) {
+            Connection connection = dbConnector.getConnection();
+            if (connection == null) {
+                logger.warn("Unable to insert records, no connection to the database");
+                return false;
+            }
+            try {
+                insertRecordsInTransaction(connection, recordsByTable);
+            } catch (SQLException e) {
+                if (!isValid(connection)) {
+                    logger.warn(MessageFormat.format("Lost connection to the database: {0}", e.getMessage()));
+                    closeInsertStatements();
+                    dbConnector.invalidateConnection();
+                    return false;
+                }
+                logger.warn(MessageFormat.format("Batch insert failed, inserting records one by one: {0}",
+                        e.getMessage()));
+                insertRecordsOneByOne(connection, recordsByTable);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the time in ms until the next attempt to connect to the database
+     */
+    public long getReconnectDelay() {
+        return dbConnector.getReconnectDelay();
+    }
+
+    private void insertRecordsInTransaction(Connection connection, Map<String, List<Record>> recordsByTable)
+            throws SQLException {
+        long startTime = System.nanoTime();
+        int numOfRecords = 0;
+        try {
+            connection.setAutoCommit(false);
+            boolean copy = useCopy(connection);
+            if (narrowSchema != null) {
+                numOfRecords = insertNarrowRecords(connection, recordsByTable, copy);
+            }
+            else {
+                numOfRecords = insertRecordsPerTable(connection, recordsByTable, copy);
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackException) {
+                logger.debug(rollbackException.getMessage());
+            }
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(MessageFormat.format("Inserted {0} records into {1} tables, commit latency: {2} ms",
+                    numOfRecords, recordsByTable.size(), (System.nanoTime() - startTime) / 1_000_000.0));
+        }
+    }
+
+    private int insertRecordsPerTable(Connection connection, Map<String, List<Record>> recordsByTable, boolean copy)
+            throws SQLException {
+        int numOfRecords = 0;
+        for (Entry<String, List<Record>> entry : recordsByTable.entrySet()) {
+            if (copy) {
+                numOfRecords += PgCopyWriter.copyRecords(connection, entry.getKey(), entry.getValue());
+                continue;
+            }
+            PreparedStatement statement = getInsertStatement(connection, entry.getKey());
+            for (Record record : entry.getValue()) {
+                setInsertParameters(statement, record);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            numOfRecords += entry.getValue().size();
+        }
+        return numOfRecords;
+    }
+
+    private int insertNarrowRecords(Connection connection, Map<String, List<Record>> recordsByChannel, boolean copy)
+            throws SQLException {
+        if (copy) {
+            return (int) PgCopyWriter.copyRecords(connection, narrowSchema, recordsByChannel);
+        }
+        PreparedStatement statement = getInsertStatement(connection, NarrowSchema.RECORD_TABLE);
+        int numOfRecords = 0;
+        for (Entry<String, List<Record>> entry : recordsByChannel.entrySet()) {
+            Integer channelNumber = getChannelNumber(entry.getKey());
+            if (channelNumber == null) {
+                continue;
+            }
+            for (Record record : entry.getValue()) {
+                narrowSchema.setInsertParameters(statement, channelNumber, record);
+                statement.addBatch();
+                numOfRecords++;
+            }
+        }
+        if (numOfRecords > 0) {
+            statement.executeBatch();
+        }
+        return numOfRecords;
+    }
+
+    private Integer getChannelNumber(String channelId) {
+        Integer channelNumber = narrowSchema.getChannelNumber(channelId);
+        if (channelNumber == null) {
+            logger.warn("Channel {} is not registered in the channel dictionary, records are skipped", channelId);
+        }
+        return channelNumber;
+    }
+
+    private boolean useCopy(Connection connection) {
+        if (!copyIngestion) {
+            return false;
+        }
+        if (connection != copySupportedConnection) {
+            copySupportedConnection = connection;
+            copySupported = PgCopyWriter.isSupported(connection);
+            if (!copySupported) {
+                logger.info("COPY ingestion is only supported by PostgreSQL, using batched inserts");
+            }
+        }
+        return copySupported;
+    }
+
+    private void insertRecordsOneByOne(Connection connection, Map<String, List<Record>> recordsByTable) {
+        for (Entry<String, List<Record>> entry : recordsByTable.entrySet()) {
+            Integer channelNumber = narrowSchema != null ? getChannelNumber(entry.getKey()) : null;
+            if (narrowSchema != null && channelNumber == null) {
+                continue;
+            }
+            String table = narrowSchema != null ? NarrowSchema.RECORD_TABLE : entry.getKey();
+            for (Record record : entry.getValue()) {
+                try {
+                    PreparedStatement statement = getInsertStatement(connection, table);
+                    if (narrowSchema != null) {
+                        narrowSchema.setInsertParameters(statement, channelNumber, record);
+                    }
+                    else {
+                        setInsertParameters(statement, record);
+                    }
+                    statement.executeUpdate();
+                } catch (SQLException e) {
+                    logger.error(MessageFormat.format("Error inserting record into {0}: {1}", entry.getKey(), record),
+                            e.getMessage());
+                    logger.error(MessageFormat.format("SQLState:     {0}", e.getSQLState()));
+                    logger.error(MessageFormat.format("VendorError:  {0}", e.getErrorCode()));
+                }
+            }
+        }
+    }
+
+    private void setInsertParameters(PreparedStatement statement, Record record) throws SQLException {
+        statement.setTimestamp(1, new Timestamp(record.getTimestamp()));
+        statement.setShort(2, record.getFlag().getCode());
+        SqlValues.setValue(statement, 3, record.getValue());
+    }
+
+    /**
+     * Returns the cached insert statement of the table. The cache is dropped if the connection has changed, e.g. after
+     * a reconnect.
+     */
+    private PreparedStatement getInsertStatement(Connection connection, String table) throws SQLException {
+        if (connection != insertStatementsConnection) {
+            closeInsertStatements();
+            insertStatementsConnection = connection;
+        }
+        PreparedStatement statement = insertStatements.get(table);
+        if (statement == null || statement.isClosed()) {
+            if (narrowSchema != null) {
+                statement = connection.prepareStatement(narrowSchema.getInsertSql());
+            }
+            else {
+                statement = connection
+                        .prepareStatement("INSERT INTO " + table + " (time,flag,\"VALUE\") VALUES (?,?,?)");
+            }
+            insertStatements.put(table, statement);
+        }
+        return statement;
+    }
+
+    private void closeInsertStatements() {
+        for (PreparedStatement statement : insertStatements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // ignore, the connection is probably closed already
+            }
+        }
+        insertStatements.clear();
+        insertStatementsConnection = null;
+    }
+
     public ResultSet executeQuery(StringBuilder sb) throws SQLException {
         Statement statement = dbConnector.createStatementWithConnection();
         return statement.executeQuery(sb.toString());
@@ -149,47 +428,72 @@ public class DbAccess {
     }
 
     public void closeConnection() {
+        synchronized (dbConnector) {
+            closeInsertStatements();
+        }
         dbConnector.closeConnection();
     }
 
     /**
-     * Retrieves data from database and adds it to records
+     * Retrieves data from database and adds it to records. The query uses a connection of the read pool, so it does not
+     * delay inserts.
      */
 
     public List<Record> queryRecords(StringBuilder sb, ValueType valuetype) {
-        // retrieve numeric values from database and add them to the records list
         List<Record> records = new ArrayList<>();
-        if (!dbConnector.isConnected()) {
-            dbConnector.getConnectionToDb();
-        }
-        try (ResultSet resultSet = executeQuery(sb)) {
-            while (resultSet.next()) {
-                if (valuetype == ValueType.STRING) {
-                    Record rc = new Record(new StringValue(resultSet.getString(VALUE)),
-                            resultSet.getTimestamp("time").getTime(), Flag.VALID);
-                    records.add(rc);
-                }
-                else if (valuetype == ValueType.BYTE_ARRAY) {
-                    Record rc = new Record(new ByteArrayValue(resultSet.getBytes(VALUE)),
-                            resultSet.getTimestamp("time").getTime(), Flag.VALID);
-                    records.add(rc);
-                }
-                else if (valuetype == ValueType.BOOLEAN) {
-                    Record rc = new Record(new BooleanValue(resultSet.getBoolean(VALUE)),
-                            resultSet.getTimestamp("time").getTime(), Flag.VALID);
-                    records.add(rc);
-                }
-                else {
-                    Record rc = new Record(new DoubleValue(resultSet.getDouble(VALUE)),
-                            resultSet.getTimestamp("time").getTime(), Flag.VALID);
-                    records.add(rc);
+        streamRecords(sb, valuetype, records::add);
+        return records;
+    }
+
+    /**
+     * Passes the records of a query one by one to the consumer. The query runs in a read only transaction on a
+     * connection of the read pool with a limited fetch size, so PostgreSQL uses a server side cursor and only
+     * {@code fetch_size} rows are held in memory at a time, no matter how large the result is.
+     *
+     * @param sb
+     *            the query, selecting the columns time and "VALUE"
+     * @param valuetype
+     *            {@link ValueType} of the value column
+     * @param consumer
+     *            receives the records in the order of the query
+     * @return the number of records passed to the consumer
+     */
+    public int streamRecords(StringBuilder sb, ValueType valuetype, Consumer<Record> consumer) {
+        int numOfRecords = 0;
+        try (Connection connection = dbConnector.getReadConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(fetchSize);
+                try (ResultSet resultSet = statement.executeQuery(sb.toString())) {
+                    while (resultSet.next()) {
+                        consumer.accept(toRecord(resultSet, valuetype));
+                        numOfRecords++;
+                    }
                 }
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(autoCommit);
             }
         } catch (SQLException e) {
             String sql = sb.toString();
             logger.error(MessageFormat.format("Error executing SQL: \n{0}", sql), e.getMessage());
         }
+        return numOfRecords;
+    }
 
-        return records;
+    private static Record toRecord(ResultSet resultSet, ValueType valuetype) throws SQLException {
+        long timestamp = resultSet.getTimestamp("time").getTime();
+        switch (valuetype) {
+        case STRING:
+            return new Record(new StringValue(resultSet.getString(VALUE)), timestamp, Flag.VALID);
+        case BYTE_ARRAY:
+            return new Record(new ByteArrayValue(resultSet.getBytes(VALUE)), timestamp, Flag.VALID);
+        case BOOLEAN:
+            return new Record(new BooleanValue(resultSet.getBoolean(VALUE)), timestamp, Flag.VALID);
+        default:
+            return new Record(new DoubleValue(resultSet.getDouble(VALUE)), timestamp, Flag.VALID);
+        }
     }
 }
@@ -55,6 +55,10 @@ import org.slf4j.LoggerFactory;
 
 public class DbConnector {
 
+    private static final long MIN_RECONNECT_DELAY = 1000;
+    private static final long MAX_RECONNECT_DELAY = 60000;
+    private static final long READ_POOL_BORROW_TIMEOUT = 30000;
+
     private final Logger logger = LoggerFactory.getLogger(DbConnector.class);
     private final PrintWriter out = new PrintWriter(System.out, true);
     private final String url;
@@ -64,6 +68,9 @@ public class DbConnector {
     private boolean timescaleActive;
     private java.sql.Driver driver;
     private Server server;
+    private volatile ConnectionPool readPool;
+    private long reconnectDelay;
+    private long nextConnectAttempt;
 
     public DbConnector() {
         this.url = getUrlFromProperties();
@@ -77,7 +84,12 @@ public class DbConnector {
     }
 
     protected void initConnector() {
-        BundleContext context = FrameworkUtil.getBundle(DbConnector.class).getBundleContext();
+        Bundle bundle = FrameworkUtil.getBundle(DbConnector.class);
+        if (bundle == null) {
+            // not running in an OSGi framework, e.g. in benchmarks, see getDataSource
+            return;
+        }
+        BundleContext context = bundle.getBundleContext();
         ServiceReference<?> reference = context.getServiceReference(DataSourceFactory.class);
         dataSourceFactory = (DataSourceFactory) context.getService(reference);
     }
@@ -118,15 +130,67 @@ public class DbConnector {
         return connection.createStatement();
     }
 
+    /**
+     * @return the current write connection to the database, may be null or closed if there is no connection
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Borrows a connection of the read pool, so that queries don't have to wait for inserts on the write connection.
+     * The connection has to be closed to return it to the pool.
+     *
+     * @return a connection of the read pool
+     * @throws SQLException
+     *             if there is no connection to the database or no connection of the pool gets free
+     */
+    public Connection getReadConnection() throws SQLException {
+        ConnectionPool pool = readPool;
+        if (pool == null) {
+            getConnectionToDb();
+            pool = readPool;
+        }
+        if (pool == null) {
+            throw new SQLException("No connection to the database");
+        }
+        return pool.getConnection();
+    }
+
+    /**
+     * Closes the write connection after it has turned out to be broken, the next access reconnects.
+     */
+    public synchronized void invalidateConnection() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // ignore, the connection is broken anyway
+            }
+            connection = null;
+        }
+    }
+
+    /**
+     * @return the time in ms until the next connection attempt is allowed, 0 if connecting is possible right away
+     */
+    public synchronized long getReconnectDelay() {
+        return Math.max(0, nextConnectAttempt - System.currentTimeMillis());
+    }
+
     /**
      * Sets the proper dataSourceFactory, depending on the URL, using {@link #setDataSourceFactory()} and creates a
      * dataSource with it, creates a connection to the database and in case PostgreSQL is used it checks if timescale is
      * installed with {@link #checkIfTimescaleInstalled()} or needs to be updated with {@link #updateTimescale()}. If a
-     * H2 database is corrupted it renames it so a new one is created using {@link #renameCorruptedDb()}.
+     * H2 database is corrupted it renames it so a new one is created using {@link #renameCorruptedDb()}.<br>
+     * <br>
+     * Failed attempts are repeated with an exponential backoff, until then calls return without connecting.
      */
-    protected void getConnectionToDb() {
+    protected synchronized void getConnectionToDb() {
+        if (System.currentTimeMillis() < nextConnectAttempt) {
+            return;
+        }
         try {
-            logger.info("sql driver");
             if (connection == null || connection.isClosed()) {
                 logger.debug("CONNECTING");
                 Properties properties = setSqlProperties();
@@ -140,15 +204,23 @@ public class DbConnector {
                     dataSource.setLogWriter(out);
                 }
                 connection = dataSource.getConnection();
+                if (readPool == null) {
+                    PropertyHandler propertyHandler = PropertyHandlerProvider.getInstance().getPropertyHandler();
+                    readPool = new ConnectionPool(dataSource, "sql logger read pool",
+                            propertyHandler.getInt(Settings.READ_POOL_SIZE), READ_POOL_BORROW_TIMEOUT);
+                }
                 if (url.contains(POSTGRES)) {
                     checkIfTimescaleInstalled();
                 }
                 if (url.contains(POSTGRES) && timescaleActive) {
                     updateTimescale();
                 }
+                reconnectDelay = 0;
+                nextConnectAttempt = 0;
                 logger.debug("CONNECTED");
             }
         } catch (SQLException e) {
+            scheduleReconnect();
             if (e.getMessage().contains("The write format 1 is smaller than the supported format 2")) {
                 logger.error("Database is incompatible with H2 Database Engine version 2.0.206. "
                         + "To continue using it, it has to be migrated to the newer version. "
@@ -167,14 +239,26 @@ public class DbConnector {
 
             }
         } catch (Exception e) {
+            scheduleReconnect();
             logger.error("", e);
         }
     }
 
+    private void scheduleReconnect() {
+        reconnectDelay = Math.min(Math.max(reconnectDelay * 2, MIN_RECONNECT_DELAY), MAX_RECONNECT_DELAY);
+        nextConnectAttempt = System.currentTimeMillis() + reconnectDelay;
+        logger.warn("Connecting to the database failed, next attempt in {} ms", reconnectDelay);
+    }
+
     private synchronized DataSource getDataSource(DataSourceFactory dataSourceFactory, Properties properties)
             throws SQLException {
         if (dataSource == null) {
-            dataSource = dataSourceFactory.createDataSource(properties);
+            if (dataSourceFactory == null) {
+                dataSource = new DriverManagerDataSource(properties);
+            }
+            else {
+                dataSource = dataSourceFactory.createDataSource(properties);
+            }
         }
         return dataSource;
     }
@@ -208,7 +292,11 @@ public class DbConnector {
      */
     private void setDataSourceFactory()
             throws InstantiationException, IllegalAccessException, ClassNotFoundException, InvocationTargetException {
-        BundleContext bundleContext = FrameworkUtil.getBundle(SqlLoggerService.class).getBundleContext();
+        Bundle sqlBundle = FrameworkUtil.getBundle(SqlLoggerService.class);
+        if (sqlBundle == null) {
+            return;
+        }
+        BundleContext bundleContext = sqlBundle.getBundleContext();
         if (url.contains(POSTGRESQL)) {
             for (Bundle bundle : bundleContext.getBundles()) {
                 if (bundle.getSymbolicName() == null) {
@@ -323,6 +411,7 @@ public class DbConnector {
         boolean success = sqlDb.renameTo(sqlDbOld);
         if (success) {
             logger.info("Renaming successful, restarting sqlLogger");
+            nextConnectAttempt = 0;
             getConnectionToDb();
         }
         else {
@@ -330,7 +419,11 @@ public class DbConnector {
         }
     }
 
-    public void closeConnection() {
+    public synchronized void closeConnection() {
+        if (readPool != null) {
+            readPool.close();
+            readPool = null;
+        }
         if (connection != null) {
             try {
                 connection.close();
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import static org.openmuc.framework.datalogger.sql.utils.SqlValues.MYSQL;
+import static org.openmuc.framework.datalogger.sql.utils.SqlValues.POSTGRES;
+import static org.openmuc.framework.datalogger.sql.utils.SqlValues.POSTGRESQL;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.sql.utils.SqlValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Narrow database schema: the records of all channels are stored in the single table {@value #RECORD_TABLE} with one
+ * value column per kind of value type. Channels are identified by an integer id, which is assigned in the channel
+ * dictionary {@value #CHANNEL_TABLE}. Compared to one table per channel, all records of a logging interval are written
+ * with one batch and TimescaleDB chunks and compression span all channels.
+ */
+public class NarrowSchema {
+
+    public static final String CHANNEL_TABLE = "openmuc_channels";
+    public static final String RECORD_TABLE = "openmuc_records";
+    public static final String[] VALUE_COLUMNS = { "value_double", "value_long", "value_bool", "value_string",
+            "value_bytes" };
+    public static final String INSERT_COLUMNS = "channel,time,flag,value_double,value_long,value_bool,value_string,"
+            + "value_bytes";
+
+    private static final int DOUBLE_COLUMN = 0;
+    private static final int LONG_COLUMN = 1;
+    private static final int BOOLEAN_COLUMN = 2;
+    private static final int STRING_COLUMN = 3;
+    private static final int BYTES_COLUMN = 4;
+    private static final int[] VALUE_COLUMN_TYPES = { Types.DOUBLE, Types.BIGINT, Types.BOOLEAN, Types.VARCHAR,
+            Types.VARBINARY };
+
+    private final Logger logger = LoggerFactory.getLogger(NarrowSchema.class);
+    private final String url;
+    private final Map<String, Integer> channelIds = new ConcurrentHashMap<>();
+
+    /**
+     * @param url
+     *            URL of the database, used to choose the data types of the columns
+     */
+    public NarrowSchema(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Creates the channel dictionary and the record table if they don't exist and registers all channels in the
+     * dictionary.
+     *
+     * @param channels
+     *            channels to log
+     * @param dbAccess
+     *            access to the database
+     */
+    public void createTables(List<LogChannel> channels, DbAccess dbAccess) {
+        dbAccess.executeSQL(new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(CHANNEL_TABLE)
+                .append(" (id INTEGER NOT NULL PRIMARY KEY,channelid VARCHAR(255) NOT NULL UNIQUE,")
+                .append("valuetype VARCHAR(20));"));
+
+        StringBuilder sb = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(RECORD_TABLE)
+                .append(" (channel INTEGER NOT NULL,time ")
+                .append(url.contains(POSTGRES) ? "TIMESTAMPTZ" : "TIMESTAMP")
+                .append(" NOT NULL,flag SMALLINT NOT NULL,value_double DOUBLE PRECISION,value_long BIGINT,")
+                .append("value_bool BOOLEAN,value_string ")
+                .append(url.contains(MYSQL) ? "TEXT" : "VARCHAR")
+                .append(",value_bytes ");
+        if (url.contains(POSTGRESQL)) {
+            sb.append("BYTEA");
+        }
+        else if (url.contains(MYSQL)) {
+            sb.append("BLOB");
+        }
+        else {
+            sb.append("LONGVARBINARY");
+        }
+        sb.append(",PRIMARY KEY (channel,time));");
+        dbAccess.executeSQL(sb);
+
+        if (url.contains(POSTGRESQL) && dbAccess.timeScaleIsActive()) {
+            dbAccess.executeSQL(new StringBuilder(
+                    "SELECT create_hypertable('" + RECORD_TABLE + "', 'time', if_not_exists => TRUE);"));
+        }
+
+        registerChannels(channels, dbAccess);
+    }
+
+    private synchronized void registerChannels(List<LogChannel> channels, DbAccess dbAccess) {
+        int nextId = 1;
+        try (ResultSet resultSet = dbAccess
+                .executeQuery(new StringBuilder("SELECT id,channelid FROM " + CHANNEL_TABLE + ";"))) {
+            while (resultSet.next()) {
+                int id = resultSet.getInt(1);
+                channelIds.put(resultSet.getString(2), id);
+                nextId = Math.max(nextId, id + 1);
+            }
+        } catch (SQLException e) {
+            logger.error(MessageFormat.format("Unable to read channel dictionary: {0}", e.getMessage()));
+            return;
+        }
+
+        for (LogChannel channel : channels) {
+            if (channelIds.containsKey(channel.getId())) {
+                continue;
+            }
+            dbAccess.executeSQL(new StringBuilder("INSERT INTO ").append(CHANNEL_TABLE)
+                    .append(" (id,channelid,valuetype) VALUES (")
+                    .append(nextId)
+                    .append(",'")
+                    .append(channel.getId().replace("'", "''"))
+                    .append("','")
+                    .append(channel.getValueType())
+                    .append("');"));
+            channelIds.put(channel.getId(), nextId++);
+        }
+    }
+
+    /**
+     * @param channelId
+     *            ID of the channel
+     * @return the id of the channel in the dictionary or null if the channel is not registered
+     */
+    public Integer getChannelNumber(String channelId) {
+        return channelIds.get(channelId);
+    }
+
+    /**
+     * @return SQL of the prepared statement which inserts one record
+     */
+    public String getInsertSql() {
+        return "INSERT INTO " + RECORD_TABLE + " (" + INSERT_COLUMNS + ") VALUES (?,?,?,?,?,?,?,?)";
+    }
+
+    /**
+     * Sets the parameters of the statement returned by {@link #getInsertSql()}.
+     *
+     * @param statement
+     *            insert statement
+     * @param channelNumber
+     *            id of the channel in the dictionary
+     * @param record
+     *            record with value
+     * @throws SQLException
+     *             if a parameter can not be set
+     */
+    public void setInsertParameters(PreparedStatement statement, int channelNumber, Record record)
+            throws SQLException {
+        statement.setInt(1, channelNumber);
+        statement.setTimestamp(2, new Timestamp(record.getTimestamp()));
+        statement.setShort(3, record.getFlag().getCode());
+
+        Value value = record.getValue();
+        int valueColumn = getValueColumn(value);
+        for (int i = 0; i < VALUE_COLUMNS.length; i++) {
+            if (i == valueColumn) {
+                SqlValues.setValue(statement, 4 + i, value);
+            }
+            else {
+                statement.setNull(4 + i, VALUE_COLUMN_TYPES[i]);
+            }
+        }
+    }
+
+    /**
+     * @param value
+     *            the value to store
+     * @return index of the column in {@link #VALUE_COLUMNS} which stores the value
+     */
+    public static int getValueColumn(Value value) {
+        switch (value.getClass().getSimpleName()) {
+        case "BooleanValue":
+            return BOOLEAN_COLUMN;
+        case "ByteValue":
+        case "IntValue":
+        case "LongValue":
+        case "ShortValue":
+            return LONG_COLUMN;
+        case "ByteArrayValue":
+            return BYTES_COLUMN;
+        case "StringValue":
+            return STRING_COLUMN;
+        default:
+            return DOUBLE_COLUMN;
+        }
+    }
+
+    /**
+     * @param valueType
+     *            value type of a channel
+     * @return name of the column which stores values of this type
+     */
+    public static String getValueColumn(ValueType valueType) {
+        switch (valueType) {
+        case BOOLEAN:
+            return VALUE_COLUMNS[BOOLEAN_COLUMN];
+        case BYTE:
+        case INTEGER:
+        case LONG:
+        case SHORT:
+            return VALUE_COLUMNS[LONG_COLUMN];
+        case BYTE_ARRAY:
+            return VALUE_COLUMNS[BYTES_COLUMN];
+        case STRING:
+            return VALUE_COLUMNS[STRING_COLUMN];
+        default:
+            return VALUE_COLUMNS[DOUBLE_COLUMN];
+        }
+    }
+}
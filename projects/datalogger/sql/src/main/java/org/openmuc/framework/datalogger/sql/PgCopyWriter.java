@@ -0,0 +1,140 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.datalogger.sql.utils.SqlValues;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Writes records to PostgreSQL (and TimescaleDB) with COPY ... FROM STDIN in CSV format. Compared to batched inserts
+ * the rows are streamed to the server without any statement being parsed or planned per row.
+ */
+public class PgCopyWriter {
+
+    private PgCopyWriter() {
+    }
+
+    /**
+     * @param connection
+     *            the connection to check
+     * @return true if the connection is a PostgreSQL connection which supports the COPY API
+     */
+    public static boolean isSupported(Connection connection) {
+        try {
+            return connection.isWrapperFor(PGConnection.class);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Copies the records into the table of a channel.
+     *
+     * @param connection
+     *            PostgreSQL connection
+     * @param table
+     *            name of the table
+     * @param records
+     *            records with value
+     * @return the number of copied rows
+     * @throws SQLException
+     *             if the copy fails
+     */
+    public static long copyRecords(Connection connection, String table, List<Record> records) throws SQLException {
+        StringBuilder csv = new StringBuilder(records.size() * 48);
+        for (Record record : records) {
+            csv.append(Instant.ofEpochMilli(record.getTimestamp()))
+                    .append(',')
+                    .append(record.getFlag().getCode())
+                    .append(',');
+            SqlValues.appendCsvValue(csv, record.getValue());
+            csv.append('\n');
+        }
+        return copyIn(connection, table, "time,flag,\"VALUE\"", csv);
+    }
+
+    /**
+     * Copies the records of all channels into the record table of the narrow schema. Records of channels which are not
+     * registered in the channel dictionary are skipped.
+     *
+     * @param connection
+     *            PostgreSQL connection
+     * @param schema
+     *            the narrow schema
+     * @param recordsByChannel
+     *            records with value, mapped by the ID of their channel
+     * @return the number of copied rows
+     * @throws SQLException
+     *             if the copy fails
+     */
+    public static long copyRecords(Connection connection, NarrowSchema schema,
+            Map<String, List<Record>> recordsByChannel) throws SQLException {
+        StringBuilder csv = new StringBuilder();
+        for (Entry<String, List<Record>> entry : recordsByChannel.entrySet()) {
+            Integer channelNumber = schema.getChannelNumber(entry.getKey());
+            if (channelNumber == null) {
+                continue;
+            }
+            for (Record record : entry.getValue()) {
+                csv.append(channelNumber)
+                        .append(',')
+                        .append(Instant.ofEpochMilli(record.getTimestamp()))
+                        .append(',')
+                        .append(record.getFlag().getCode());
+                int valueColumn = NarrowSchema.getValueColumn(record.getValue());
+                for (int i = 0; i < NarrowSchema.VALUE_COLUMNS.length; i++) {
+                    csv.append(',');
+                    if (i == valueColumn) {
+                        SqlValues.appendCsvValue(csv, record.getValue());
+                    }
+                }
+                csv.append('\n');
+            }
+        }
+        if (csv.length() == 0) {
+            return 0;
+        }
+        return copyIn(connection, NarrowSchema.RECORD_TABLE, NarrowSchema.INSERT_COLUMNS, csv);
+    }
+
+    private static long copyIn(Connection connection, String table, String columns, StringBuilder csv)
+            throws SQLException {
+        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        try {
+            return copyManager.copyIn("COPY " + table + " (" + columns + ") FROM STDIN WITH (FORMAT csv)",
+                    new StringReader(csv.toString()));
+        } catch (IOException e) {
+            throw new SQLException("COPY into " + table + " failed", e);
+        }
+    }
+}
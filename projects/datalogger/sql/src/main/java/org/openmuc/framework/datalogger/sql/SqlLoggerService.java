@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
@@ -42,10 +43,11 @@ import org.slf4j.LoggerFactory;
 public class SqlLoggerService implements DataLoggerService, ManagedService {
 
     private static final Logger logger = LoggerFactory.getLogger(SqlLoggerService.class);
+    private static final long WRITER_SHUTDOWN_TIMEOUT = 10000;
     private final Settings settings;
     private final PropertyHandler propertyHandler;
     private final List<LoggingRecord> eventBuffer;
-    private SqlWriter writer;
+    private volatile SqlWriterThread writer;
     private SqlReader reader;
     private DbAccess dbAccess;
     private List<LogChannel> channels;
@@ -64,10 +66,12 @@ public class SqlLoggerService implements DataLoggerService, ManagedService {
 
     private void connect() {
         dbAccess = new DbAccess();
-        writer = new SqlWriter(dbAccess);
         reader = new SqlReader(dbAccess);
         writeMetaToDb();
-        writer.writeEventBasedContainerToDb(eventBuffer);
+        writer = new SqlWriterThread(new SqlWriter(dbAccess), dbAccess,
+                propertyHandler.getInt(Settings.WRITE_QUEUE_SIZE));
+        writer.start();
+        writer.logEvent(eventBuffer);
         eventBuffer.clear();
     }
 
@@ -80,11 +84,15 @@ public class SqlLoggerService implements DataLoggerService, ManagedService {
     }
 
     /**
-     * Closes the connection, stops the timer by calling its cancel Method and stops the h2 server, if the conditions
-     * for each are met, if a connection exists
+     * Stops the writer thread after the queued records are written, closes the connection and stops the h2 server, if
+     * the conditions for each are met, if a connection exists
      */
     public void shutdown() {
         logger.info("Deactivating SQL Logger");
+        if (writer != null) {
+            writer.shutdown(WRITER_SHUTDOWN_TIMEOUT);
+            writer = null;
+        }
         if (dbAccess != null) {
             dbAccess.closeConnection();
         }
@@ -95,6 +103,14 @@ public class SqlLoggerService implements DataLoggerService, ManagedService {
         return "sqllogger";
     }
 
+    /**
+     * @return number of logging intervals or events waiting to be written to the database
+     */
+    public int getWriteQueueLength() {
+        SqlWriterThread writer = this.writer;
+        return writer == null ? 0 : writer.getQueueLength();
+    }
+
     /**
      * Creates the metadata table to create the tables for each data type and to insert info about all the channel into
      * the metadata table
@@ -110,23 +126,25 @@ public class SqlLoggerService implements DataLoggerService, ManagedService {
 
     @Override
     public void log(List<LoggingRecord> containers, long timestamp) {
+        SqlWriterThread writer = this.writer;
         if (writer == null) {
             logger.warn("Sql connection not established!");
             return;
         }
 
-        writer.writeRecordContainerToDb(containers, timestamp);
+        writer.log(containers, timestamp);
     }
 
     @Override
     public void logEvent(List<LoggingRecord> containers, long timestamp) {
+        SqlWriterThread writer = this.writer;
         if (writer == null) {
             logger.debug("Sql connection not established!");
             eventBuffer.addAll(containers);
             return;
         }
 
-        writer.writeEventBasedContainerToDb(containers);
+        writer.logEvent(containers);
     }
 
     @Override
@@ -149,6 +167,47 @@ public class SqlLoggerService implements DataLoggerService, ManagedService {
         return records;
     }
 
+    /**
+     * Streams the logged records of a channel to the consumer without collecting them in a list, see
+     * {@link SqlReader#readRecords}.
+     *
+     * @return the number of records passed to the consumer
+     */
+    public int readRecords(String channelId, long startTime, long endTime, Consumer<Record> consumer) {
+        LogChannel channel = findChannel(channelId);
+        if (channel == null || reader == null) {
+            return 0;
+        }
+        return reader.readRecords(channelId, channel.getValueType(), startTime, endTime, consumer);
+    }
+
+    /**
+     * Streams the logged records of a channel aggregated by the database to time buckets, see
+     * {@link SqlReader#readAggregatedRecords}.
+     *
+     * @return the number of records passed to the consumer
+     */
+    public int readAggregatedRecords(String channelId, long startTime, long endTime, long bucketSize,
+            Aggregation aggregation, Consumer<Record> consumer) {
+        LogChannel channel = findChannel(channelId);
+        if (channel == null || reader == null) {
+            return 0;
+        }
+        return reader.readAggregatedRecords(channelId, channel.getValueType(), startTime, endTime, bucketSize,
+                aggregation, consumer);
+    }
+
+    private LogChannel findChannel(String channelId) {
+        if (channels != null) {
+            for (LogChannel channel : channels) {
+                if (channel.getId().equals(channelId)) {
+                    return channel;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Returns the Record with the highest timestamp available in all logged data for the channel with the given
      * <code>channelId</code>. If there are multiple Records with the same timestamp, results will not be consistent.
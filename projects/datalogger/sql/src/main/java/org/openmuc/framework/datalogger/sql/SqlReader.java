@@ -22,9 +22,13 @@
 package org.openmuc.framework.datalogger.sql;
 
 import static org.openmuc.framework.datalogger.sql.utils.SqlValues.AND;
+import static org.openmuc.framework.datalogger.sql.utils.SqlValues.MYSQL;
+import static org.openmuc.framework.datalogger.sql.utils.SqlValues.POSTGRES;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.ValueType;
@@ -32,18 +36,150 @@ import org.openmuc.framework.data.ValueType;
 public class SqlReader {
 
     private final DbAccess dbAccess;
+    private Boolean timescaleActive;
 
     public SqlReader(DbAccess dbAccess) {
         this.dbAccess = dbAccess;
     }
 
     public List<Record> readRecordListFromDb(String channelId, ValueType valuetype, long startTime, long endTime) {
+        List<Record> records = new ArrayList<>();
+        readRecords(channelId, valuetype, startTime, endTime, records::add);
+        return records;
+    }
+
+    /**
+     * Streams the records of a channel in the given time frame ordered by time to the consumer. The records are read
+     * with a database cursor, so the result doesn't have to fit into memory.
+     *
+     * @param channelId
+     *            ID of the channel
+     * @param valuetype
+     *            {@link ValueType} of the channel
+     * @param startTime
+     *            start of the time frame in ms, inclusive
+     * @param endTime
+     *            end of the time frame in ms, inclusive
+     * @param consumer
+     *            receives the records
+     * @return the number of records passed to the consumer
+     */
+    public int readRecords(String channelId, ValueType valuetype, long startTime, long endTime,
+            Consumer<Record> consumer) {
         Timestamp startTimestamp = new Timestamp(startTime);
         Timestamp endTimestamp = new Timestamp(endTime);
         StringBuilder sbTable = new StringBuilder();
-        selectFromTable(channelId, startTimestamp, endTimestamp, sbTable);
-        return dbAccess.queryRecords(sbTable, valuetype);
+        NarrowSchema narrowSchema = dbAccess.getNarrowSchema();
+        if (narrowSchema != null) {
+            Integer channelNumber = narrowSchema.getChannelNumber(channelId);
+            if (channelNumber == null) {
+                return 0;
+            }
+            selectFromRecordTable(channelNumber, valuetype, startTimestamp, endTimestamp, sbTable);
+        }
+        else {
+            selectFromTable(channelId, startTimestamp, endTimestamp, sbTable);
+        }
+        return dbAccess.streamRecords(sbTable, valuetype, consumer);
+    }
+
+    /**
+     * Streams the records of a channel aggregated to time buckets to the consumer. The aggregation is done by the
+     * database: with TimescaleDB using time_bucket, with other databases by grouping the time stamps rounded down to
+     * the bucket size. Each record has the start of its bucket as time stamp and a DoubleValue.
+     *
+     * @param channelId
+     *            ID of the channel
+     * @param valuetype
+     *            {@link ValueType} of the channel, must be numeric unless {@link Aggregation#COUNT} is used
+     * @param startTime
+     *            start of the time frame in ms, inclusive
+     * @param endTime
+     *            end of the time frame in ms, inclusive
+     * @param bucketSize
+     *            size of a time bucket in ms
+     * @param aggregation
+     *            aggregate function applied to the values of a bucket
+     * @param consumer
+     *            receives one record per non empty bucket ordered by time
+     * @return the number of records passed to the consumer
+     */
+    public int readAggregatedRecords(String channelId, ValueType valuetype, long startTime, long endTime,
+            long bucketSize, Aggregation aggregation, Consumer<Record> consumer) {
+        if (bucketSize <= 0) {
+            throw new IllegalArgumentException("Bucket size must be positive: " + bucketSize);
+        }
+        if (aggregation != Aggregation.COUNT && (valuetype == ValueType.BOOLEAN || valuetype == ValueType.STRING
+                || valuetype == ValueType.BYTE_ARRAY)) {
+            throw new IllegalArgumentException(aggregation + " is not supported for value type " + valuetype);
+        }
+
+        String table = channelId;
+        String valueColumn = "\"VALUE\"";
+        String channelCondition = "";
+        NarrowSchema narrowSchema = dbAccess.getNarrowSchema();
+        if (narrowSchema != null) {
+            Integer channelNumber = narrowSchema.getChannelNumber(channelId);
+            if (channelNumber == null) {
+                return 0;
+            }
+            table = NarrowSchema.RECORD_TABLE;
+            valueColumn = NarrowSchema.getValueColumn(valuetype);
+            channelCondition = "channel = " + channelNumber + " AND ";
+        }
 
+        StringBuilder sb = new StringBuilder("SELECT bucket AS time,").append(aggregation)
+                .append("(bucket_value) AS \"VALUE\" FROM (SELECT ");
+        appendTimeBucket(bucketSize, sb);
+        sb.append(" AS bucket,")
+                .append(valueColumn)
+                .append(" AS bucket_value FROM ")
+                .append(table)
+                .append(" WHERE ")
+                .append(channelCondition)
+                .append("time BETWEEN '")
+                .append(new Timestamp(startTime))
+                .append(AND)
+                .append(new Timestamp(endTime))
+                .append("') buckets GROUP BY bucket ORDER BY bucket;");
+        return dbAccess.streamRecords(sb, ValueType.DOUBLE, consumer);
+    }
+
+    /**
+     * Appends an expression which rounds the time column down to the start of its bucket
+     */
+    private void appendTimeBucket(long bucketSize, StringBuilder sb) {
+        String url = dbAccess.getUrl();
+        if (url.contains(POSTGRES)) {
+            if (timescaleActive == null) {
+                timescaleActive = dbAccess.timeScaleIsActive();
+            }
+            if (timescaleActive) {
+                sb.append("time_bucket(INTERVAL '").append(bucketSize).append(" milliseconds', time)");
+            }
+            else {
+                sb.append("to_timestamp(floor(extract(epoch FROM time) * 1000 / ")
+                        .append(bucketSize)
+                        .append(") * ")
+                        .append(bucketSize)
+                        .append(" / 1000.0)");
+            }
+        }
+        else if (url.contains(MYSQL)) {
+            sb.append("FROM_UNIXTIME(FLOOR(UNIX_TIMESTAMP(time) * 1000 / ")
+                    .append(bucketSize)
+                    .append(") * ")
+                    .append(bucketSize)
+                    .append(" / 1000)");
+        }
+        else {
+            // H2
+            sb.append("DATEADD('MILLISECOND', DATEDIFF('MILLISECOND', TIMESTAMP '1970-01-01 00:00:00', time) / ")
+                    .append(bucketSize)
+                    .append(" * ")
+                    .append(bucketSize)
+                    .append(", TIMESTAMP '1970-01-01 00:00:00')");
+        }
     }
 
     /**
@@ -57,7 +193,23 @@ public class SqlReader {
      */
     public Record readLatestRecordFromDb(String channelId, ValueType valuetype) {
         StringBuilder sb = new StringBuilder();
-        sb.append("SELECT time,\"VALUE\" FROM ").append(channelId).append(" ORDER BY time DESC LIMIT 1;");
+        NarrowSchema narrowSchema = dbAccess.getNarrowSchema();
+        if (narrowSchema != null) {
+            Integer channelNumber = narrowSchema.getChannelNumber(channelId);
+            if (channelNumber == null) {
+                return null;
+            }
+            sb.append("SELECT time,")
+                    .append(NarrowSchema.getValueColumn(valuetype))
+                    .append(" AS \"VALUE\" FROM ")
+                    .append(NarrowSchema.RECORD_TABLE)
+                    .append(" WHERE channel = ")
+                    .append(channelNumber)
+                    .append(" ORDER BY time DESC LIMIT 1;");
+        }
+        else {
+            sb.append("SELECT time,\"VALUE\" FROM ").append(channelId).append(" ORDER BY time DESC LIMIT 1;");
+        }
         List<Record> records = dbAccess.queryRecords(sb, valuetype);
         if (records.size() == 1) {
             return records.get(0);
@@ -97,6 +249,35 @@ public class SqlReader {
                 .append(startTimestamp)
                 .append(AND)
                 .append(endTimestamp)
-                .append("';");
+                .append("' ORDER BY time;");
+    }
+
+    /**
+     * Builds Select query for the record table of the narrow schema
+     *
+     * @param channelNumber
+     *            id of the channel in the channel dictionary
+     * @param valuetype
+     *            {@link ValueType} of the channel, selects the value column
+     * @param startTimestamp
+     *            Start of the timeframe to retrieve data from
+     * @param endTimestamp
+     *            End of the timeframe to retrieve data from
+     * @param sb
+     *            StringBuilder for the Query
+     */
+    private void selectFromRecordTable(int channelNumber, ValueType valuetype, Timestamp startTimestamp,
+            Timestamp endTimestamp, StringBuilder sb) {
+        sb.append("SELECT time,")
+                .append(NarrowSchema.getValueColumn(valuetype))
+                .append(" AS \"VALUE\" FROM ")
+                .append(NarrowSchema.RECORD_TABLE)
+                .append(" WHERE channel = ")
+                .append(channelNumber)
+                .append(" AND time BETWEEN '")
+                .append(startTimestamp)
+                .append(AND)
+                .append(endTimestamp)
+                .append("' ORDER BY time;");
     }
 }
@@ -21,108 +21,74 @@
 
 package org.openmuc.framework.datalogger.sql;
 
-import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
-import org.openmuc.framework.datalogger.sql.utils.SqlValues;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 public class SqlWriter {
 
-    private static final Logger logger = LoggerFactory.getLogger(SqlWriter.class);
     private final DbAccess dbAccess;
-    private final List<StringBuilder> tableListChannel;
 
     public SqlWriter(DbAccess dbAccess) {
         this.dbAccess = dbAccess;
-        tableListChannel = new ArrayList<>();
-
-    }
-
-    public void writeEventBasedContainerToDb(List<LoggingRecord> containers) {
-        synchronized (tableListChannel) {
-            writeAsTableList(containers);
-            tableListChannel.clear();
-        }
     }
 
-    private void writeAsTableList(List<LoggingRecord> containers) {
-        // createTableList();
-        addRecordsFromContainersToList(containers);
-
-        for (StringBuilder table : tableListChannel) {
-            if (table.toString().contains("),")) {
-                table.replace(table.length() - 1, table.length(), ";");
-                dbAccess.executeSQL(table);
-            }
-        }
-
-    }
+    /**
+     * Writes the records with their own time stamps. Records without time stamp are skipped.
+     *
+     * @param containers
+     *            the records to write
+     * @return false if the records could not be written because there is no connection to the database
+     */
+    public boolean writeEventBasedContainerToDb(List<LoggingRecord> containers) {
+        Map<String, List<Record>> recordsByTable = new LinkedHashMap<>();
 
-    private void addRecordsFromContainersToList(List<LoggingRecord> containers) {
         for (LoggingRecord logRecordContainer : containers) {
-            if (logRecordContainer.getRecord().getTimestamp() != null) {
-                long recordTs = logRecordContainer.getRecord().getTimestamp();
-                Timestamp sqlTimestamp = new Timestamp(recordTs);
-                addContainerToList(sqlTimestamp, logRecordContainer);
+            Record record = logRecordContainer.getRecord();
+            if (record.getTimestamp() != null) {
+                addRecordToTable(recordsByTable, logRecordContainer.getChannelId(), record);
             }
         }
+        return dbAccess.insertRecords(recordsByTable);
     }
 
-    public void writeRecordContainerToDb(List<LoggingRecord> containers, long timestamp) {
-        Timestamp sqlTimestamp = new Timestamp(timestamp);
-        // createTableList();
+    /**
+     * Writes the records of one logging interval, all with the time stamp of the interval.
+     *
+     * @param containers
+     *            the records to write
+     * @param timestamp
+     *            time stamp of the logging interval
+     * @return false if the records could not be written because there is no connection to the database
+     */
+    public boolean writeRecordContainerToDb(List<LoggingRecord> containers, long timestamp) {
+        Map<String, List<Record>> recordsByTable = new LinkedHashMap<>();
 
         for (LoggingRecord logRecordContainer : containers) {
-            addContainerToList(sqlTimestamp, logRecordContainer);
-        }
-
-        for (StringBuilder table : tableListChannel) {
-            if (table.toString().contains("),")) {
-                table.replace(table.length() - 1, table.length(), ";");
-                dbAccess.executeSQL(table);
-            }
+            Record record = logRecordContainer.getRecord();
+            addRecordToTable(recordsByTable, logRecordContainer.getChannelId(),
+                    new Record(record.getValue(), timestamp, record.getFlag()));
         }
-
+        return dbAccess.insertRecords(recordsByTable);
     }
 
     /**
-     * Continues building the insert query and calls {@link #addValue(Record, StringBuilder, Integer)} using the
-     * appropriate parameters for the records' value type
-     *
-     * @param sqlTimestamp
-     *            The current timestamp
-     * @param logRecordContainer
-     *            Container object for the record
+     * Adds the record to the list of its channels' table. Records without value are not logged.
      */
-    private void addContainerToList(Timestamp sqlTimestamp, LoggingRecord logRecordContainer) {
-        String channelId = logRecordContainer.getChannelId();
-        Record record = logRecordContainer.getRecord();
-
-        if (record.getValue() != null) {
-            StringBuilder sbChannel = new StringBuilder("INSERT INTO " + channelId + " (time,flag,\"VALUE\") VALUES ");
-            StringBuilder sbQuery2 = new StringBuilder();
-            sbQuery2.append("('")
-                    .append(sqlTimestamp)
-                    .append("',")
-                    .append(logRecordContainer.getRecord().getFlag().getCode())
-                    .append(',');
-
-            sbChannel.append(sbQuery2);
-            if (record.getValue() != null) {
-                SqlValues.appendValue(record.getValue(), sbChannel);
-            }
-            else {
-                sbChannel.append("NULL");
-            }
-            sbChannel.append("),");
-            Collections.addAll(tableListChannel, sbChannel);
+    private void addRecordToTable(Map<String, List<Record>> recordsByTable, String channelId, Record record) {
+        if (record.getValue() == null) {
+            return;
+        }
+        List<Record> records = recordsByTable.get(channelId);
+        if (records == null) {
+            records = new ArrayList<>();
+            recordsByTable.put(channelId, records);
         }
+        records.add(record);
     }
 
 }
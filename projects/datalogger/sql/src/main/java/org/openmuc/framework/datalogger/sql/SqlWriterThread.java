@@ -0,0 +1,181 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the records of the SQL logger in a dedicated thread, so that neither the data manager nor history queries
+ * wait for inserts. Records are handed over through a bounded queue, if the queue is full the records are dropped.
+ * While the database is not reachable, the oldest queued records are retried with the reconnect backoff of the
+ * {@link DbConnector}.
+ */
+public class SqlWriterThread extends Thread {
+
+    private static final long POLL_TIMEOUT = 100;
+    private static final long MIN_RETRY_DELAY = 100;
+
+    private final Logger logger = LoggerFactory.getLogger(SqlWriterThread.class);
+    private final SqlWriter writer;
+    private final DbAccess dbAccess;
+    private final BlockingQueue<WriteJob> queue;
+    private volatile boolean running = true;
+    private long droppedJobs;
+
+    /**
+     * @param writer
+     *            writer to insert the records with
+     * @param dbAccess
+     *            database access of the writer
+     * @param queueSize
+     *            maximum number of logging intervals or events waiting to be written
+     */
+    public SqlWriterThread(SqlWriter writer, DbAccess dbAccess, int queueSize) {
+        super("OpenMUC SQL Logger Writer");
+        this.writer = writer;
+        this.dbAccess = dbAccess;
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+    }
+
+    /**
+     * Queues the records of one logging interval.
+     *
+     * @param containers
+     *            the records to write
+     * @param timestamp
+     *            time stamp of the logging interval
+     * @return false if the queue is full and the records are dropped
+     */
+    public boolean log(List<LoggingRecord> containers, long timestamp) {
+        return enqueue(new WriteJob(new ArrayList<>(containers), timestamp, false));
+    }
+
+    /**
+     * Queues records to be written with their own time stamps.
+     *
+     * @param containers
+     *            the records to write
+     * @return false if the queue is full and the records are dropped
+     */
+    public boolean logEvent(List<LoggingRecord> containers) {
+        return enqueue(new WriteJob(new ArrayList<>(containers), 0, true));
+    }
+
+    private boolean enqueue(WriteJob job) {
+        if (queue.offer(job)) {
+            return true;
+        }
+        synchronized (this) {
+            if (droppedJobs++ % 100 == 0) {
+                logger.warn("Write queue is full, dropped {} records (total dropped: {})", job.containers.size(),
+                        droppedJobs);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of logging intervals or events waiting to be written
+     */
+    public int getQueueLength() {
+        return queue.size();
+    }
+
+    @Override
+    public void run() {
+        while (running || !queue.isEmpty()) {
+            WriteJob job;
+            try {
+                job = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (job != null) {
+                write(job);
+            }
+        }
+    }
+
+    private void write(WriteJob job) {
+        while (!job.writeTo(writer)) {
+            if (!running) {
+                logger.warn("No connection to the database, dropping {} records at shutdown", job.containers.size());
+                return;
+            }
+            try {
+                Thread.sleep(Math.max(MIN_RETRY_DELAY, dbAccess.getReconnectDelay()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops the thread after all queued records are written or the timeout has elapsed.
+     *
+     * @param timeout
+     *            maximum time in ms to wait for the queue to be written
+     */
+    public void shutdown(long timeout) {
+        running = false;
+        try {
+            join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (isAlive()) {
+            logger.warn("Writer did not finish within {} ms, {} queued logging intervals are lost", timeout,
+                    queue.size());
+            interrupt();
+        }
+    }
+
+    private static class WriteJob {
+
+        private final List<LoggingRecord> containers;
+        private final long timestamp;
+        private final boolean event;
+
+        WriteJob(List<LoggingRecord> containers, long timestamp, boolean event) {
+            this.containers = containers;
+            this.timestamp = timestamp;
+            this.event = event;
+        }
+
+        boolean writeTo(SqlWriter writer) {
+            if (event) {
+                return writer.writeEventBasedContainerToDb(containers);
+            }
+            return writer.writeRecordContainerToDb(containers, timestamp);
+        }
+    }
+}
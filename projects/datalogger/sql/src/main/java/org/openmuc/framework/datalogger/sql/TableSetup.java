@@ -82,10 +82,19 @@ public class TableSetup {
      * queries: {@link #appendTimestamp(StringBuilder)} to append the timestamp column to the query
      * <p>
      * This method further creates linked table using createLinkedTable() and inserts all data present in local db is
-     * set.
+     * set.<br>
+     * <br>
+     * If the {@link NarrowSchema} is configured, its tables are created and the channels are registered in its channel
+     * dictionary instead.
      */
     public void createOpenmucTables() {
 
+        NarrowSchema narrowSchema = dbAccess.getNarrowSchema();
+        if (narrowSchema != null) {
+            narrowSchema.createTables(channels, dbAccess);
+            return;
+        }
+
         boolean execute = true;
 
         for (LogChannel temp : this.channels) {
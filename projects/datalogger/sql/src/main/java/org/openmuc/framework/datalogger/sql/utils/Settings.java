@@ -34,6 +34,15 @@ public class Settings extends GenericSettings {
     public static String TCP_KEEP_ALIVE = "tcp_keep_alive";
     public static String PSQL_PASS = "psql_pass";
     public static String TIMEZONE = "timezone";
+    public static String INGESTION_MODE = "ingestion_mode";
+    public static final String INGESTION_MODE_INSERT = "insert";
+    public static final String INGESTION_MODE_COPY = "copy";
+    public static String SCHEMA = "schema";
+    public static final String SCHEMA_WIDE = "wide";
+    public static final String SCHEMA_NARROW = "narrow";
+    public static String READ_POOL_SIZE = "read_pool_size";
+    public static String WRITE_QUEUE_SIZE = "write_queue_size";
+    public static String FETCH_SIZE = "fetch_size";
 
     public Settings() {
         super();
@@ -47,5 +56,15 @@ public class Settings extends GenericSettings {
         properties.put(TCP_KEEP_ALIVE, new ServiceProperty(TCP_KEEP_ALIVE, "keep tcp connection alive", "true", false));
         properties.put(PSQL_PASS, new ServiceProperty(PSQL_PASS, "password for postgresql", "postgres", true));
         properties.put(TIMEZONE, new ServiceProperty(TIMEZONE, "local time zone", "Europe/Berlin", false));
+        properties.put(INGESTION_MODE, new ServiceProperty(INGESTION_MODE,
+                "insert: batched inserts, copy: COPY FROM STDIN (PostgreSQL only)", INGESTION_MODE_INSERT, false));
+        properties.put(SCHEMA, new ServiceProperty(SCHEMA,
+                "wide: one table per channel, narrow: one table for all channels", SCHEMA_WIDE, false));
+        properties.put(READ_POOL_SIZE,
+                new ServiceProperty(READ_POOL_SIZE, "maximum number of connections for queries", "4", false));
+        properties.put(WRITE_QUEUE_SIZE, new ServiceProperty(WRITE_QUEUE_SIZE,
+                "maximum number of logging intervals waiting to be written", "1000", false));
+        properties.put(FETCH_SIZE,
+                new ServiceProperty(FETCH_SIZE, "number of rows fetched at once by history queries", "1000", false));
     }
 }
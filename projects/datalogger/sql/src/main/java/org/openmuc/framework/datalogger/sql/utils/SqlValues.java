@@ -22,6 +22,9 @@
 package org.openmuc.framework.datalogger.sql.utils;
 
 import java.sql.JDBCType;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.util.Arrays;
 import java.util.List;
 
@@ -39,7 +42,8 @@ public class SqlValues {
     public static final String NULL = ") NULL,";
     public static final String AND = "' AND '";
     public static final String VALUE = "value";
-    private static final char[] hexArray = "0123456789ABCDEF".toCharArray();
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     private SqlValues() {
     }
@@ -69,49 +73,80 @@ public class SqlValues {
         }
     }
 
-    public static void appendValue(Value value, StringBuilder sb) {
+    /**
+     * Sets the value as parameter of a prepared statement, converted to the Java type matching the values' type
+     *
+     * @param statement
+     *            the prepared statement
+     * @param index
+     *            index of the parameter
+     * @param value
+     *            the value
+     * @throws SQLException
+     *             if the parameter can not be set
+     */
+    public static void setValue(PreparedStatement statement, int index, Value value) throws SQLException {
+        Object sqlValue = getSqlValue(value);
+        if (sqlValue == null) {
+            statement.setNull(index, Types.NULL);
+        }
+        else {
+            statement.setObject(index, sqlValue);
+        }
+    }
 
+    /**
+     * Appends the value as field of a CSV row as expected by PostgreSQL's COPY ... FROM STDIN WITH (FORMAT csv).
+     * Values are converted the same way as by {@link #setValue(PreparedStatement, int, Value)}.
+     *
+     * @param csv
+     *            the CSV row
+     * @param value
+     *            the value
+     */
+    public static void appendCsvValue(StringBuilder csv, Value value) {
+        Object sqlValue = getSqlValue(value);
+        if (sqlValue == null) {
+            // empty unquoted field is NULL
+            return;
+        }
+        if (sqlValue instanceof byte[]) {
+            csv.append("\\x");
+            for (byte b : (byte[]) sqlValue) {
+                csv.append(HEX_DIGITS[(b >> 4) & 0x0F]).append(HEX_DIGITS[b & 0x0F]);
+            }
+        }
+        else if (sqlValue instanceof String) {
+            csv.append('"').append(((String) sqlValue).replace("\"", "\"\"")).append('"');
+        }
+        else {
+            csv.append(sqlValue);
+        }
+    }
+
+    private static Object getSqlValue(Value value) {
         switch (value.getClass().getSimpleName()) {
         case "BooleanValue":
-            sb.append(value.asBoolean());
-            break;
+            return value.asBoolean();
         case "ByteValue":
-            sb.append(value.asByte());
-            break;
+            return (short) value.asByte();
         case "ByteArrayValue":
-            byteArrayToHexString(sb, value.asByteArray());
-            break;
+            return value.asByteArray();
         case "DoubleValue":
-            sb.append(value.asDouble());
-            break;
+            return value.asDouble();
         case "FloatValue":
-            sb.append(value.asFloat());
-            break;
+            return value.asFloat();
         case "IntValue":
-            sb.append(value.asInt());
-            break;
+            return value.asInt();
         case "LongValue":
-            sb.append(value.asLong());
-            break;
+            return value.asLong();
         case "ShortValue":
-            sb.append(value.asShort());
-            break;
+            return value.asShort();
         case "StringValue":
-            sb.append('\'').append(value.asString()).append('\'');
-            break;
+            return value.asString();
         default:
-            break;
-        }
-    }
-
-    private static void byteArrayToHexString(StringBuilder sb, byte[] byteArray) {
-        char[] hexChars = new char[byteArray.length * 2];
-        for (int j = 0; j < byteArray.length; j++) {
-            int v = byteArray[j] & 0xFF;
-            hexChars[j * 2] = hexArray[v >>> 4];
-            hexChars[j * 2 + 1] = hexArray[v & 0x0F];
+            return null;
         }
-        sb.append('\'').append(hexChars).append('\'');
     }
 
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setup() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:poolTest;DB_CLOSE_DELAY=-1");
+        pool = new ConnectionPool(dataSource, "test pool", 2, 50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void returnedConnectionIsReused() throws SQLException {
+        Connection first = pool.getConnection();
+        Connection physical = first.unwrap(Connection.class);
+        first.close();
+
+        assertEquals(1, pool.getIdleCount());
+        assertTrue(first.isClosed());
+
+        try (Connection second = pool.getConnection()) {
+            assertSame(physical, second.unwrap(Connection.class));
+        }
+    }
+
+    @Test
+    void borrowTimesOutWhenPoolIsExhausted() throws SQLException {
+        try (Connection first = pool.getConnection(); Connection second = pool.getConnection()) {
+            assertNotSame(first.unwrap(Connection.class), second.unwrap(Connection.class));
+            assertThrows(SQLException.class, () -> pool.getConnection());
+        }
+        pool.getConnection().close();
+    }
+
+    @Test
+    void brokenConnectionIsReplaced() throws SQLException {
+        Connection first = pool.getConnection();
+        Connection physical = first.unwrap(Connection.class);
+        first.close();
+        physical.close();
+
+        try (Connection second = pool.getConnection()) {
+            assertNotSame(physical, second.unwrap(Connection.class));
+            assertTrue(second.isValid(1));
+        }
+    }
+
+    @Test
+    void returnedConnectionCanNotBeUsed() throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.close();
+
+        assertThrows(SQLException.class, () -> connection.createStatement());
+    }
+}
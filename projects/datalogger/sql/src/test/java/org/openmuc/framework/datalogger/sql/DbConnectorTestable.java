@@ -48,6 +48,16 @@ public class DbConnectorTestable extends DbConnector {
         return testableConnection.createStatement();
     }
 
+    @Override
+    public Connection getConnection() {
+        return testableConnection;
+    }
+
+    @Override
+    public Connection getReadConnection() throws SQLException {
+        return TestConnectionHelper.getUnclosableConnection(testableConnection);
+    }
+
     @Override
     protected void initConnector() {
     }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+class NarrowSchemaTest {
+
+    private static final long TIMESTAMP = 1599569019000L;
+
+    private Connection connection;
+    private DbAccess dbAccess;
+    private SqlWriter sqlWriter;
+    private SqlReader sqlReader;
+
+    @BeforeEach
+    void setup() throws SQLException {
+        DbConnector dbConnector = new DbConnectorTestable(TestConnectionHelper.DB_CONNECTION);
+        connection = dbConnector.getConnection();
+
+        dbAccess = DbAccess.getTestInstance(dbConnector);
+        dbAccess.setNarrowSchema(new NarrowSchema(TestConnectionHelper.DB_CONNECTION));
+        dbAccess.getNarrowSchema()
+                .createTables(Arrays.asList(channel("power", ValueType.DOUBLE), channel("state", ValueType.BOOLEAN),
+                        channel("name", ValueType.STRING), channel("counter", ValueType.LONG)), dbAccess);
+
+        sqlWriter = new SqlWriter(dbAccess);
+        sqlReader = new SqlReader(dbAccess);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void recordsOfAllChannelsAreWrittenToOneTable() throws SQLException {
+        for (int i = 0; i < 3; i++) {
+            sqlWriter.writeRecordContainerToDb(tick(i), TIMESTAMP + i * 1000);
+        }
+
+        assertEquals(12, countRows(NarrowSchema.RECORD_TABLE));
+        assertEquals(4, countRows(NarrowSchema.CHANNEL_TABLE));
+
+        List<Record> power = sqlReader.readRecordListFromDb("power", ValueType.DOUBLE, TIMESTAMP + 1000,
+                TIMESTAMP + 2000);
+        assertEquals(2, power.size());
+        assertEquals(TIMESTAMP + 1000, power.get(0).getTimestamp());
+        assertEquals(1.5, power.get(0).getValue().asDouble(), 0);
+
+        assertEquals("name 2", sqlReader.readLatestRecordFromDb("name", ValueType.STRING).getValue().asString());
+        assertTrue(sqlReader.readLatestRecordFromDb("state", ValueType.BOOLEAN).getValue().asBoolean());
+        assertEquals(2, sqlReader.readLatestRecordFromDb("counter", ValueType.LONG).getValue().asLong());
+        assertNull(sqlReader.readLatestRecordFromDb("unknown", ValueType.DOUBLE));
+
+        List<Record> max = new ArrayList<>();
+        sqlReader.readAggregatedRecords("power", ValueType.DOUBLE, TIMESTAMP, TIMESTAMP + 2000, 3600_000,
+                Aggregation.MAX, max::add);
+        assertEquals(1, max.size());
+        assertEquals(3.0, max.get(0).getValue().asDouble(), 0);
+    }
+
+    @Test
+    void channelNumbersAreKeptWhenChannelsAreAdded() {
+        Integer power = dbAccess.getNarrowSchema().getChannelNumber("power");
+
+        NarrowSchema narrowSchema = new NarrowSchema(TestConnectionHelper.DB_CONNECTION);
+        narrowSchema.createTables(
+                Arrays.asList(channel("voltage", ValueType.DOUBLE), channel("power", ValueType.DOUBLE)), dbAccess);
+
+        assertEquals(power, narrowSchema.getChannelNumber("power"));
+        assertEquals(5, (int) narrowSchema.getChannelNumber("voltage"));
+    }
+
+    @Test
+    void recordsOfUnknownChannelsAreSkipped() throws SQLException {
+        List<LoggingRecord> records = new ArrayList<>(tick(0));
+        records.add(new LoggingRecord("unknown", new Record(new DoubleValue(1), TIMESTAMP, Flag.VALID)));
+
+        sqlWriter.writeEventBasedContainerToDb(records);
+
+        assertEquals(4, countRows(NarrowSchema.RECORD_TABLE));
+    }
+
+    private List<LoggingRecord> tick(int i) {
+        List<LoggingRecord> records = new ArrayList<>();
+        records.add(new LoggingRecord("power", new Record(new DoubleValue(i * 1.5), TIMESTAMP, Flag.VALID)));
+        records.add(new LoggingRecord("state", new Record(new BooleanValue(i % 2 == 0), TIMESTAMP, Flag.VALID)));
+        records.add(new LoggingRecord("name", new Record(new StringValue("name " + i), TIMESTAMP, Flag.VALID)));
+        records.add(new LoggingRecord("counter", new Record(new LongValue(i), TIMESTAMP, Flag.VALID)));
+        return records;
+    }
+
+    private static LogChannel channel(String id, ValueType valueType) {
+        LogChannel channel = mock(LogChannel.class);
+        when(channel.getId()).thenReturn(id);
+        when(channel.getValueType()).thenReturn(valueType);
+        return channel;
+    }
+
+    private int countRows(String table) throws SQLException {
+        ResultSet resultSet = TestConnectionHelper.executeQuery(connection, "SELECT COUNT(*) FROM " + table);
+        resultSet.next();
+        return resultSet.getInt(1);
+    }
+}
@@ -21,14 +21,16 @@
 
 package org.openmuc.framework.datalogger.sql;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -38,7 +40,7 @@ import org.openmuc.framework.data.ValueType;
 public class SqlReaderTest {
 
     private SqlReader sqlReader;
-    private DbAccess dbAccess, dbAccessSpy;
+    private DbAccess dbAccess;
     private DbConnector dbConnectorMock;
     private Connection connection;
 
@@ -50,15 +52,12 @@ public class SqlReaderTest {
         connection = TestConnectionHelper.getConnection();
 
         dbConnectorMock = mock(DbConnector.class);
-        dbAccess = DbAccess.getTestInstance(dbConnectorMock); // Real DbAccess with mock DbConnector to prevent null
-                                                              // pointer exception in queryRecords
-        dbAccessSpy = spy(dbAccess); // DbAccess with modified executeQuery
+        // pass any executed sql queries to the test connection
+        when(dbConnectorMock.getReadConnection())
+                .thenAnswer(invocation -> TestConnectionHelper.getUnclosableConnection(connection));
+        dbAccess = DbAccess.getTestInstance(dbConnectorMock); // Real DbAccess with mock DbConnector
 
-        doAnswer(invocation -> { // pass any executed sql queries to the test connection
-            return TestConnectionHelper.executeQuery(connection, invocation.getArgument(0).toString());
-        }).when(dbAccessSpy).executeQuery(any());
-
-        sqlReader = new SqlReader(dbAccessSpy);
+        sqlReader = new SqlReader(dbAccess);
     }
 
     @Test
@@ -71,6 +70,57 @@ public class SqlReaderTest {
         connection.close();
     }
 
+    @Test
+    void readRecordsStreamsInTimeOrder() throws SQLException {
+        writeTestRecords();
+
+        List<Record> records = new ArrayList<>();
+        int numOfRecords = sqlReader.readRecords(channelId, valueType, time("2020-01-01 00:00:00"),
+                time("2021-12-31 00:00:00"), records::add);
+
+        assertEquals(3, numOfRecords);
+        assertEquals(3, records.get(0).getValue().asDouble(), 0);
+        assertEquals(1, records.get(1).getValue().asDouble(), 0);
+        assertEquals(2, records.get(2).getValue().asDouble(), 0);
+
+        connection.close();
+    }
+
+    @Test
+    void readAggregatedRecords() throws SQLException {
+        TestConnectionHelper.executeSQL(connection,
+                String.format("CREATE TABLE %s (time TIMESTAMP NOT NULL, " + "\"VALUE\" DOUBLE)", channelId));
+        String[] times = { "2020-09-08 10:00:00", "2020-09-08 10:30:00", "2020-09-08 11:15:00",
+                "2020-09-08 13:59:59" };
+        for (int i = 0; i < times.length; i++) {
+            TestConnectionHelper.executeSQL(connection, String
+                    .format("INSERT INTO %s (time, \"VALUE\") VALUES ('%s', %d)", channelId, times[i], 2 * i + 1));
+        }
+
+        List<Record> records = new ArrayList<>();
+        sqlReader.readAggregatedRecords(channelId, valueType, time("2020-09-08 00:00:00"),
+                time("2020-09-09 00:00:00"), 3600_000, Aggregation.AVG, records::add);
+
+        assertEquals(3, records.size());
+        assertEquals(time("2020-09-08 10:00:00"), (long) records.get(0).getTimestamp());
+        assertEquals(2, records.get(0).getValue().asDouble(), 0);
+        assertEquals(time("2020-09-08 11:00:00"), (long) records.get(1).getTimestamp());
+        assertEquals(5, records.get(1).getValue().asDouble(), 0);
+        assertEquals(time("2020-09-08 13:00:00"), (long) records.get(2).getTimestamp());
+
+        List<Record> counts = new ArrayList<>();
+        sqlReader.readAggregatedRecords(channelId, valueType, time("2020-09-08 00:00:00"),
+                time("2020-09-09 00:00:00"), 24 * 3600_000, Aggregation.COUNT, counts::add);
+        assertEquals(1, counts.size());
+        assertEquals(4, counts.get(0).getValue().asInt());
+
+        connection.close();
+    }
+
+    private static long time(String timestamp) {
+        return Timestamp.valueOf(timestamp).getTime();
+    }
+
     void writeTestRecords() throws SQLException {
         TestConnectionHelper.executeSQL(connection,
                 String.format("CREATE TABLE %s (time TIMESTAMP NOT NULL, " + "\"VALUE\" DOUBLE)", channelId));
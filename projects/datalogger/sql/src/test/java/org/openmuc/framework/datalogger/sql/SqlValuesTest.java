@@ -0,0 +1,86 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.datalogger.sql.utils.SqlValues;
+
+class SqlValuesTest {
+
+    @Test
+    void csvValuesMatchStatementParameters() throws SQLException {
+        assertValue(new BooleanValue(true), true, "true");
+        assertValue(new ByteValue((byte) -3), (short) -3, "-3");
+        assertValue(new DoubleValue(1.5), 1.5, "1.5");
+        assertValue(new FloatValue(2.5f), 2.5f, "2.5");
+        assertValue(new IntValue(42), 42, "42");
+        assertValue(new LongValue(1L << 40), 1L << 40, "1099511627776");
+        assertValue(new ShortValue((short) 7), (short) 7, "7");
+        assertValue(new StringValue("a \"quoted\", text"), "a \"quoted\", text", "\"a \"\"quoted\"\", text\"");
+    }
+
+    @Test
+    void byteArrayIsHexEncoded() throws SQLException {
+        byte[] bytes = new byte[] { 0x00, 0x7f, (byte) 0xab };
+        assertValue(new ByteArrayValue(bytes), bytes, "\\x007fab");
+    }
+
+    @Test
+    void unknownValueIsNull() throws SQLException {
+        Value value = mock(Value.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        SqlValues.setValue(statement, 1, value);
+        verify(statement).setNull(1, Types.NULL);
+
+        StringBuilder csv = new StringBuilder();
+        SqlValues.appendCsvValue(csv, value);
+        assertEquals("", csv.toString());
+    }
+
+    private static void assertValue(Value value, Object parameter, String field) throws SQLException {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        SqlValues.setValue(statement, 3, value);
+        verify(statement).setObject(3, parameter);
+
+        StringBuilder csv = new StringBuilder();
+        SqlValues.appendCsvValue(csv, value);
+        assertEquals(field, csv.toString());
+    }
+}
@@ -21,43 +21,44 @@
 
 package org.openmuc.framework.datalogger.sql;
 
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.doAnswer;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.IntValue;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.data.Value;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
 
 class SqlWriterTest {
 
     private SqlWriter sqlWriter;
-    private DbAccess dbAccessMock;
+    private DbAccess dbAccess;
     private Connection connection;
 
     @BeforeEach
     void setup() throws SQLException {
-        connection = TestConnectionHelper.getConnection();
+        DbConnector dbConnector = new DbConnectorTestable(TestConnectionHelper.DB_CONNECTION);
+        connection = dbConnector.getConnection();
 
-        dbAccessMock = mock(DbAccess.class);
-
-        doAnswer(invocation -> { // pass any executed sql statements to the test connection
-            TestConnectionHelper.executeSQL(connection, invocation.getArgument(0).toString());
-            return null;
-        }).when(dbAccessMock).executeSQL(any());
+        dbAccess = DbAccess.getTestInstance(dbConnector);
+        sqlWriter = new SqlWriter(dbAccess);
+    }
 
-        sqlWriter = new SqlWriter(dbAccessMock);
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
     }
 
     @Test
@@ -70,9 +71,67 @@ class SqlWriterTest {
 
         sqlWriter.writeEventBasedContainerToDb(recordList);
 
-        verify(dbAccessMock, times(5)).executeSQL(any());
+        assertEquals(5, countRows("testChannel"));
+    }
 
-        connection.close();
+    @Test
+    void writeRecordContainerToDb() throws SQLException {
+        TestConnectionHelper.executeSQL(connection,
+                "CREATE TABLE intChannel (time TIMESTAMP NOT NULL, flag SMALLINT NOT NULL, \"VALUE\" INTEGER)");
+        TestConnectionHelper.executeSQL(connection,
+                "CREATE TABLE stringChannel (time TIMESTAMP NOT NULL, flag SMALLINT NOT NULL, \"VALUE\" VARCHAR(10))");
+
+        List<LoggingRecord> recordList = new ArrayList<>();
+        recordList.add(new LoggingRecord("intChannel", new Record(new IntValue(42), 1L, Flag.VALID)));
+        recordList.add(new LoggingRecord("stringChannel", new Record(new StringValue("it's"), 1L, Flag.VALID)));
+        recordList.add(new LoggingRecord("intChannel", new Record(Flag.DRIVER_ERROR_TIMEOUT)));
+
+        long timestamp = 1599569019000L;
+        sqlWriter.writeRecordContainerToDb(recordList, timestamp);
+        sqlWriter.writeRecordContainerToDb(recordList, timestamp + 1000);
+
+        assertEquals(2, countRows("intChannel"));
+        assertEquals(2, countRows("stringChannel"));
+
+        ResultSet resultSet = TestConnectionHelper.executeQuery(connection,
+                "SELECT time, \"VALUE\" FROM stringChannel ORDER BY time");
+        resultSet.next();
+        assertEquals(timestamp, resultSet.getTimestamp(1).getTime());
+        assertEquals("it's", resultSet.getString(2));
+    }
+
+    @Test
+    void failingRecordDoesNotDropOtherRecords() throws SQLException {
+        TestConnectionHelper.executeSQL(connection,
+                "CREATE TABLE testChannel (time TIMESTAMP NOT NULL, flag SMALLINT NOT NULL, \"VALUE\" DOUBLE,"
+                        + " PRIMARY KEY (time))");
+        TestConnectionHelper.executeSQL(connection,
+                "CREATE TABLE otherChannel (time TIMESTAMP NOT NULL, flag SMALLINT NOT NULL, \"VALUE\" DOUBLE)");
+
+        List<LoggingRecord> recordList = new ArrayList<>(buildLoggingRecordList(2)); // duplicate primary key
+        recordList.add(new LoggingRecord("otherChannel", new Record(new DoubleValue(1), 1L, Flag.VALID)));
+
+        sqlWriter.writeEventBasedContainerToDb(recordList);
+
+        assertEquals(1, countRows("testChannel"));
+        assertEquals(1, countRows("otherChannel"));
+    }
+
+    @Test
+    void copyModeFallsBackToBatchedInsertsWithoutPostgresql() throws SQLException {
+        TestConnectionHelper.executeSQL(connection,
+                "CREATE TABLE testChannel (time TIMESTAMP NOT NULL, flag SMALLINT NOT NULL, \"VALUE\" DOUBLE)");
+
+        dbAccess.setIngestionMode("copy");
+        sqlWriter.writeEventBasedContainerToDb(buildLoggingRecordList(3));
+
+        assertEquals(3, countRows("testChannel"));
+    }
+
+    private int countRows(String table) throws SQLException {
+        ResultSet resultSet = TestConnectionHelper.executeQuery(connection, "SELECT COUNT(*) FROM " + table);
+        resultSet.next();
+        return resultSet.getInt(1);
     }
 
     private List<LoggingRecord> buildLoggingRecordList(int numOfElements) {
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+class SqlWriterThreadTest {
+
+    private Connection connection;
+    private volatile boolean databaseReachable;
+    private SqlWriterThread writerThread;
+
+    @BeforeEach
+    void setup() throws SQLException {
+        databaseReachable = true;
+        DbConnector dbConnector = new DbConnectorTestable(TestConnectionHelper.DB_CONNECTION) {
+            @Override
+            public Connection getConnection() {
+                return databaseReachable ? super.getConnection() : null;
+            }
+        };
+        connection = dbConnector.getConnection();
+        TestConnectionHelper.executeSQL(connection,
+                "CREATE TABLE testChannel (time TIMESTAMP NOT NULL, flag SMALLINT NOT NULL, \"VALUE\" DOUBLE)");
+
+        DbAccess dbAccess = DbAccess.getTestInstance(dbConnector);
+        writerThread = new SqlWriterThread(new SqlWriter(dbAccess), dbAccess, 2);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void queuedRecordsAreWrittenAtShutdown() throws SQLException {
+        writerThread.start();
+        for (int i = 0; i < 2; i++) {
+            writerThread.log(records(), 1599569019000L + i * 1000);
+        }
+        writerThread.shutdown(5000);
+
+        assertEquals(2, countRows());
+    }
+
+    @Test
+    void recordsAreRetriedUntilDatabaseIsReachable() throws Exception {
+        databaseReachable = false;
+        writerThread.start();
+        writerThread.logEvent(records());
+        Thread.sleep(300);
+        assertEquals(0, countRows());
+
+        databaseReachable = true;
+        writerThread.shutdown(5000);
+
+        assertEquals(1, countRows());
+    }
+
+    @Test
+    void recordsAreDroppedIfQueueIsFull() {
+        assertTrue(writerThread.log(records(), 1000));
+        assertTrue(writerThread.log(records(), 2000));
+        assertFalse(writerThread.log(records(), 3000));
+        assertEquals(2, writerThread.getQueueLength());
+    }
+
+    private List<LoggingRecord> records() {
+        return Collections.singletonList(
+                new LoggingRecord("testChannel", new Record(new DoubleValue(5), 1599569019000L, Flag.VALID)));
+    }
+
+    private int countRows() throws SQLException {
+        ResultSet resultSet = TestConnectionHelper.executeQuery(connection, "SELECT COUNT(*) FROM testChannel");
+        resultSet.next();
+        return resultSet.getInt(1);
+    }
+}
@@ -21,6 +21,9 @@
 
 package org.openmuc.framework.datalogger.sql;
 
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.spy;
+
 import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
 import java.sql.ResultSet;
@@ -64,6 +67,20 @@ public class TestConnectionHelper {
         return dataSource.getConnection();
     }
 
+    /**
+     * The in-memory database only exists for the connection that created it, so pooled read connections are replaced by
+     * the test connection itself
+     *
+     * @param connection
+     * @return the connection, which ignores calls to close
+     * @throws SQLException
+     */
+    public static Connection getUnclosableConnection(Connection connection) throws SQLException {
+        Connection unclosable = spy(connection);
+        doNothing().when(unclosable).close();
+        return unclosable;
+    }
+
     /**
      * Executes the sql statement on the connection
      *
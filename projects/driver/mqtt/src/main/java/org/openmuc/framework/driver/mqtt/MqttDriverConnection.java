@@ -21,10 +21,12 @@
 
 package org.openmuc.framework.driver.mqtt;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openmuc.framework.config.ArgumentSyntaxException;
 import org.openmuc.framework.config.ChannelScanInfo;
@@ -33,7 +35,6 @@ import org.openmuc.framework.data.ByteArrayValue;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.ValueType;
-import org.openmuc.framework.dataaccess.Channel;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
 import org.openmuc.framework.driver.spi.ChannelRecordContainer;
 import org.openmuc.framework.driver.spi.ChannelValueContainer;
@@ -58,9 +59,14 @@ public class MqttDriverConnection implements Connection {
     private final MqttConnection mqttConnection;
     private final MqttWriter mqttWriter;
     private final MqttReader mqttReader;
-    private final Map<String, ParserService> parsers = new HashMap<>();
-    private final Map<String, Long> lastLoggedRecords = new HashMap<>();
-    private final List<ChannelRecordContainer> recordContainerList = new ArrayList<>();
+    // marks channels which did not receive a record with timestamp yet
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final Map<String, ParserService> parsers = new ConcurrentHashMap<>();
+    // timestamp of the last accepted record per channel id, kept when listening is restarted
+    private final Map<String, AtomicLong> lastTimestamps = new ConcurrentHashMap<>();
+    private volatile RecordBatcher<ChannelRecordContainer> batcher;
+    private ScheduledExecutorService batchScheduler;
     private final MqttDriverSettings settings;
 
     public MqttDriverConnection(String host, String settings) throws ArgumentSyntaxException {
@@ -92,69 +98,94 @@ public class MqttDriverConnection implements Connection {
     @Override
     public void startListening(List<ChannelRecordContainer> containers, RecordsReceivedListener listener)
             throws UnsupportedOperationException, ConnectionException {
-        List<String> topics = new ArrayList<>();
+        TopicMatcher<ChannelSubscription> topicMatcher = new TopicMatcher<>();
         for (ChannelRecordContainer container : containers) {
-            topics.add(container.getChannelAddress());
+            String channelId = container.getChannel().getId();
+            AtomicLong lastTimestamp = lastTimestamps.computeIfAbsent(channelId, id -> new AtomicLong(NO_TIMESTAMP));
+            try {
+                topicMatcher.add(container.getChannelAddress(), new ChannelSubscription(container, lastTimestamp));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Channel {} is not subscribed: {}", channelId, e.getMessage());
+            }
         }
 
+        // records collected for the previous subscriptions are passed on before they are replaced
+        flushRecords();
+
+        List<String> topics = topicMatcher.getTopicFilters();
         if (topics.isEmpty()) {
+            batcher = null;
             return;
         }
+
+        RecordBatcher<ChannelRecordContainer> newBatcher = new RecordBatcher<>(
+                records -> notifyListener(listener, records), settings.getRecordCollectionSize(),
+                settings.getRecordCollectionTime(), getBatchScheduler());
+        batcher = newBatcher;
+
         mqttReader.listen(topics, (topic, message) -> {
-            Channel channel = containers.get(topics.indexOf(topic)).getChannel();
-            Record record = getRecord(message, channel.getValueType());
+            Record record = null;
+            ValueType recordValueType = null;
+            for (ChannelSubscription subscription : topicMatcher.match(topic)) {
+                // channels of the same topic usually share the value type, the message is deserialized once then
+                if (record == null || subscription.valueType != recordValueType) {
+                    recordValueType = subscription.valueType;
+                    record = getRecord(message, recordValueType);
+                    if (record == null) {
+                        return;
+                    }
+                }
 
-            if (recordIsOld(channel.getId(), record)) {
-                logger.debug("Ignored message because it has a older or equal timestamp as the previous message");
-                return;
-            }
+                if (!subscription.isNewer(record)) {
+                    logger.debug("Ignored message because it has a older or equal timestamp as the previous message");
+                    continue;
+                }
 
-            addMessageToContainerList(record, containers.get(topics.indexOf(topic)));
-            if (recordContainerList.size() >= settings.getRecordCollectionSize()) {
-                notifyListenerAndPurgeList(listener);
+                ChannelRecordContainer copiedContainer = subscription.container.copy();
+                copiedContainer.setRecord(record);
+                newBatcher.add(copiedContainer);
             }
         });
     }
 
-    private void notifyListenerAndPurgeList(RecordsReceivedListener listener) {
-        logTraceNewRecord();
-        listener.newRecords(recordContainerList);
-        recordContainerList.clear();
-    }
-
-    private void addMessageToContainerList(Record record, ChannelRecordContainer container) {
-        ChannelRecordContainer copiedContainer = container.copy();
-        copiedContainer.setRecord(record);
-
-        recordContainerList.add(copiedContainer);
+    private void flushRecords() {
+        RecordBatcher<ChannelRecordContainer> currentBatcher = batcher;
+        if (currentBatcher != null) {
+            currentBatcher.flush();
+        }
     }
 
-    private boolean recordIsOld(String channelId, Record record) {
-        Long lastTimestamp = lastLoggedRecords.get(channelId);
-
-        if (lastTimestamp == null) {
-            lastLoggedRecords.put(channelId, record.getTimestamp());
-            return false;
+    private synchronized ScheduledExecutorService getBatchScheduler() {
+        if (settings.getRecordCollectionTime() <= 0) {
+            return null;
         }
-
-        if (record.getTimestamp() == null || record.getTimestamp() <= lastTimestamp) {
-            return true;
+        if (batchScheduler == null) {
+            batchScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "mqttdriver-batch-" + settings.getHost());
+                thread.setDaemon(true);
+                return thread;
+            });
         }
+        return batchScheduler;
+    }
 
-        lastLoggedRecords.put(channelId, record.getTimestamp());
-        return false;
+    private void notifyListener(RecordsReceivedListener listener, List<ChannelRecordContainer> records) {
+        logTraceNewRecords(records);
+        listener.newRecords(records);
     }
 
     private Record getRecord(byte[] message, ValueType valueType) {
-        Record record;
-        if (parsers.containsKey(settings.getParser())) {
-            record = parsers.get(settings.getParser()).deserialize(message, valueType);
-        }
-        else {
-            record = new Record(new ByteArrayValue(message), System.currentTimeMillis());
+        ParserService parser = parsers.get(settings.getParser());
+        if (parser == null) {
+            return new Record(new ByteArrayValue(message), System.currentTimeMillis());
         }
 
-        return record;
+        try {
+            return parser.deserialize(message, valueType);
+        } catch (RuntimeException e) {
+            logger.warn("Ignored message which could not be deserialized: {}", e.getMessage());
+            return null;
+        }
     }
 
     @Override
@@ -163,10 +194,11 @@ public class MqttDriverConnection implements Connection {
         for (ChannelValueContainer container : containers) {
             Record record = new Record(container.getValue(), System.currentTimeMillis());
             LoggingRecord loggingRecord = new LoggingRecord(container.getChannelAddress(), record);
-            if (parsers.containsKey(settings.getParser())) {
+            ParserService parser = parsers.get(settings.getParser());
+            if (parser != null) {
                 byte[] message;
                 try {
-                    message = parsers.get(settings.getParser()).serialize(loggingRecord);
+                    message = parser.serialize(loggingRecord);
                 } catch (SerializationException e) {
                     logger.error(e.getMessage());
                     continue;
@@ -184,6 +216,12 @@ public class MqttDriverConnection implements Connection {
 
     @Override
     public void disconnect() {
+        flushRecords();
+        synchronized (this) {
+            if (batchScheduler != null) {
+                batchScheduler.shutdown();
+            }
+        }
         mqttWriter.shutdown();
         mqttConnection.disconnect();
     }
@@ -196,11 +234,11 @@ public class MqttDriverConnection implements Connection {
         parsers.put(parserId, parser);
     }
 
-    private void logTraceNewRecord() {
+    private void logTraceNewRecords(List<ChannelRecordContainer> records) {
         if (logger.isTraceEnabled()) {
             StringBuilder sb = new StringBuilder();
             sb.append("new records");
-            for (ChannelRecordContainer container : recordContainerList) {
+            for (ChannelRecordContainer container : records) {
                 sb.append("\ntopic: ")
                         .append(container.getChannelAddress())
                         .append('\n')
@@ -225,4 +263,40 @@ public class MqttDriverConnection implements Connection {
     public MqttDriverSettings getSettings() {
         return settings;
     }
+
+    /**
+     * A channel subscribed to a topic filter, with the timestamp of the last record accepted for the channel.
+     */
+    private static class ChannelSubscription {
+        private final ChannelRecordContainer container;
+        private final ValueType valueType;
+        private final AtomicLong lastTimestamp;
+
+        private ChannelSubscription(ChannelRecordContainer container, AtomicLong lastTimestamp) {
+            this.container = container;
+            this.valueType = container.getChannel().getValueType();
+            this.lastTimestamp = lastTimestamp;
+        }
+
+        /**
+         * Accepts the first record of a channel and afterwards only records with a newer timestamp.
+         */
+        private boolean isNewer(Record record) {
+            Long timestamp = record.getTimestamp();
+            while (true) {
+                long last = lastTimestamp.get();
+                if (last == NO_TIMESTAMP) {
+                    if (timestamp == null || lastTimestamp.compareAndSet(last, timestamp)) {
+                        return true;
+                    }
+                }
+                else if (timestamp == null || timestamp <= last) {
+                    return false;
+                }
+                else if (lastTimestamp.compareAndSet(last, timestamp)) {
+                    return true;
+                }
+            }
+        }
+    }
 }
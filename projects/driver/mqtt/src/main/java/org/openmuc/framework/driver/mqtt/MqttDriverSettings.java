@@ -32,6 +32,11 @@ import org.openmuc.framework.lib.mqtt.MqttSettings;
  */
 public class MqttDriverSettings extends MqttSettings {
 
+    /**
+     * Default maximum time in milliseconds a received record waits for the record collection to become full.
+     */
+    public static final long DEFAULT_RECORD_COLLECTION_TIME = 1000;
+
     /**
      * This parameter makes it possible to optimize the performance of listening and logging huge amounts of records.
      * The driver waits until the configured number of records is collected, before returning the list to the data
@@ -39,6 +44,12 @@ public class MqttDriverSettings extends MqttSettings {
      */
     private final int recordCollectionSize;
 
+    /**
+     * Maximum time in milliseconds a received record waits for the record collection to become full. 0 waits until the
+     * configured number of records is collected.
+     */
+    private final long recordCollectionTime;
+
     public static MqttDriverSettings parse(String host, String settings) throws ArgumentSyntaxException {
         settings = settings.replaceAll(";", "\n");
         Properties mqttSettings = new Properties();
@@ -68,13 +79,15 @@ public class MqttDriverSettings extends MqttSettings {
         boolean webSocket = Boolean.parseBoolean(mqttSettings.getProperty("webSocket", "false"));
         boolean retainedMessages = Boolean.parseBoolean(mqttSettings.getProperty("retainedMessages", "false"));
         int recordCollectionSize = Integer.parseInt(mqttSettings.getProperty("recordCollectionSize", "1"));
+        long recordCollectionTime = Long.parseLong(
+                mqttSettings.getProperty("recordCollectionTime", String.valueOf(DEFAULT_RECORD_COLLECTION_TIME)));
         String proxy = mqttSettings.getProperty("proxyConfiguration", "");
         String parser = mqttSettings.getProperty("parser", "");
 
         return new MqttDriverSettings(host, port, localPort, localAddress, username, password, ssl, maxBufferSize,
                 maxFileSize, maxFileCount, connectionRetryInterval, connectionAliveInterval, persistenceDirectory,
                 lastWillTopic, lastWillPayload, lastWillAlways, firstWillTopic, firstWillPayload, 0, 0, webSocket,
-                retainedMessages, proxy, parser, recordCollectionSize);
+                retainedMessages, proxy, parser, recordCollectionSize, recordCollectionTime);
     }
 
     public MqttDriverSettings(String host, int port, int localPort, String localAddress, String username,
@@ -83,15 +96,32 @@ public class MqttDriverSettings extends MqttSettings {
             byte[] lastWillPayload, boolean lastWillAlways, String firstWillTopic, byte[] firstWillPayload,
             int recoveryChunkSize, int recoveryDelay, boolean webSocket, boolean retainedMessages,
             String httpProxyConfig, String parser, int recordCollectionSize) {
+        this(host, port, localPort, localAddress, username, password, ssl, maxBufferSize, maxFileSize, maxFileCount,
+                connectionRetryInterval, connectionAliveInterval, persistenceDirectory, lastWillTopic, lastWillPayload,
+                lastWillAlways, firstWillTopic, firstWillPayload, recoveryChunkSize, recoveryDelay, webSocket,
+                retainedMessages, httpProxyConfig, parser, recordCollectionSize, DEFAULT_RECORD_COLLECTION_TIME);
+    }
+
+    public MqttDriverSettings(String host, int port, int localPort, String localAddress, String username,
+            String password, boolean ssl, long maxBufferSize, long maxFileSize, int maxFileCount,
+            int connectionRetryInterval, int connectionAliveInterval, String persistenceDirectory, String lastWillTopic,
+            byte[] lastWillPayload, boolean lastWillAlways, String firstWillTopic, byte[] firstWillPayload,
+            int recoveryChunkSize, int recoveryDelay, boolean webSocket, boolean retainedMessages,
+            String httpProxyConfig, String parser, int recordCollectionSize, long recordCollectionTime) {
         super(host, port, localPort, localAddress, username, password, ssl, maxBufferSize, maxFileSize, maxFileCount,
                 connectionRetryInterval, connectionAliveInterval, persistenceDirectory, lastWillTopic, lastWillPayload,
                 lastWillAlways, firstWillTopic, firstWillPayload, recoveryChunkSize, recoveryDelay, webSocket,
                 retainedMessages, httpProxyConfig, parser);
         this.recordCollectionSize = recordCollectionSize;
+        this.recordCollectionTime = recordCollectionTime;
     }
 
     public int getRecordCollectionSize() {
         return recordCollectionSize;
     }
 
+    public long getRecordCollectionTime() {
+        return recordCollectionTime;
+    }
+
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.driver.mqtt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects received records and passes them on in batches. A batch is passed on as soon as it contains the maximum
+ * number of records or, if a maximum delay is set, when its first record waited for that long. Records are passed on
+ * outside of the lock, so the MQTT client threads are only blocked for adding a record.
+ *
+ * @param <T>
+ *            type of the collected records
+ */
+class RecordBatcher<T> {
+
+    private static final int INITIAL_CAPACITY_LIMIT = 256;
+
+    private final Consumer<List<T>> consumer;
+    private final int maxSize;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Object lock = new Object();
+    private final int initialCapacity;
+    private List<T> batch;
+
+    /**
+     * @param consumer
+     *            receives the batches
+     * @param maxSize
+     *            maximum number of records per batch
+     * @param maxDelayMillis
+     *            maximum time the first record of a batch waits, 0 to wait until the batch is full
+     * @param scheduler
+     *            executes the delayed flushes, may be null if maxDelayMillis is 0
+     */
+    RecordBatcher(Consumer<List<T>> consumer, int maxSize, long maxDelayMillis, ScheduledExecutorService scheduler) {
+        this.consumer = consumer;
+        this.maxSize = Math.max(1, maxSize);
+        this.maxDelayMillis = maxDelayMillis;
+        this.scheduler = scheduler;
+        this.initialCapacity = Math.min(this.maxSize, INITIAL_CAPACITY_LIMIT);
+        this.batch = new ArrayList<>(initialCapacity);
+    }
+
+    void add(T record) {
+        List<T> fullBatch = null;
+        boolean scheduleFlush = false;
+        synchronized (lock) {
+            batch.add(record);
+            if (batch.size() >= maxSize) {
+                fullBatch = takeBatch();
+            }
+            else if (batch.size() == 1 && maxDelayMillis > 0) {
+                scheduleFlush = true;
+            }
+        }
+        if (fullBatch != null) {
+            consumer.accept(fullBatch);
+        }
+        else if (scheduleFlush) {
+            // the flush may find a newer batch, which then is only passed on earlier
+            try {
+                scheduler.schedule(this::flush, maxDelayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // connection is shutting down
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Passes on the collected records immediately.
+     */
+    void flush() {
+        List<T> records;
+        synchronized (lock) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            records = takeBatch();
+        }
+        consumer.accept(records);
+    }
+
+    private List<T> takeBatch() {
+        List<T> records = batch;
+        batch = new ArrayList<>(initialCapacity);
+        return records;
+    }
+}
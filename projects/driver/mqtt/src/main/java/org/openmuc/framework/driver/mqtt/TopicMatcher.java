@@ -0,0 +1,161 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.driver.mqtt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the topic of an incoming message to the values subscribed with matching topic filters. Filters without
+ * wildcards are resolved with one hash lookup, filters with the MQTT wildcards + (one level) and # (any number of
+ * levels, including the parent level) are matched in a tree of topic levels. Like in MQTT, wildcards at the first level
+ * do not match topics starting with $.
+ * <p>
+ * The matcher is filled once and must not be modified afterwards, then it can be used by several threads.
+ *
+ * @param <T>
+ *            type of the subscribed values
+ */
+class TopicMatcher<T> {
+
+    private static final String SINGLE_LEVEL = "+";
+    private static final String MULTI_LEVEL = "#";
+
+    private final Map<String, List<T>> exactFilters = new HashMap<>();
+    private final Node<T> wildcardRoot = new Node<>();
+    private final Map<String, Boolean> filters = new LinkedHashMap<>();
+    private boolean hasWildcards = false;
+
+    /**
+     * @param topicFilter
+     *            topic or topic filter with wildcards
+     * @param value
+     *            value returned for matching topics
+     * @throws IllegalArgumentException
+     *             if the filter is empty or contains a wildcard at an invalid position
+     */
+    void add(String topicFilter, T value) {
+        String[] levels = topicFilter.split("/", -1);
+        if (topicFilter.isEmpty() || !isValid(levels)) {
+            throw new IllegalArgumentException("Invalid topic filter '" + topicFilter + "'");
+        }
+        filters.put(topicFilter, Boolean.TRUE);
+
+        if (!topicFilter.contains(SINGLE_LEVEL) && !topicFilter.contains(MULTI_LEVEL)) {
+            exactFilters.computeIfAbsent(topicFilter, filter -> new ArrayList<>(1)).add(value);
+            return;
+        }
+
+        hasWildcards = true;
+        Node<T> node = wildcardRoot;
+        for (String level : levels) {
+            if (MULTI_LEVEL.equals(level)) {
+                node.multiLevelValues.add(value);
+                return;
+            }
+            node = node.child(level);
+        }
+        node.values.add(value);
+    }
+
+    private static boolean isValid(String[] levels) {
+        for (int i = 0; i < levels.length; i++) {
+            String level = levels[i];
+            if ((level.contains(SINGLE_LEVEL) || level.contains(MULTI_LEVEL)) && level.length() > 1) {
+                return false;
+            }
+            if (MULTI_LEVEL.equals(level) && i != levels.length - 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return distinct topic filters in the order they were added
+     */
+    List<String> getTopicFilters() {
+        return new ArrayList<>(filters.keySet());
+    }
+
+    /**
+     * @param topic
+     *            topic of a received message, without wildcards
+     * @return values of all matching filters, the list must not be modified
+     */
+    List<T> match(String topic) {
+        List<T> exactValues = exactFilters.get(topic);
+        if (!hasWildcards) {
+            return exactValues == null ? Collections.emptyList() : exactValues;
+        }
+
+        List<T> result = new ArrayList<>();
+        if (exactValues != null) {
+            result.addAll(exactValues);
+        }
+        String[] levels = topic.split("/", -1);
+        boolean systemTopic = topic.startsWith("$");
+        collect(wildcardRoot, levels, 0, systemTopic, result);
+        return result;
+    }
+
+    private static <T> void collect(Node<T> node, String[] levels, int index, boolean systemTopic, List<T> result) {
+        boolean wildcardsAllowed = !(systemTopic && index == 0);
+        if (wildcardsAllowed) {
+            // # also matches the parent level, e.g. a/# matches a
+            result.addAll(node.multiLevelValues);
+        }
+        if (index == levels.length) {
+            result.addAll(node.values);
+            return;
+        }
+        if (node.children == null) {
+            return;
+        }
+        Node<T> child = node.children.get(levels[index]);
+        if (child != null) {
+            collect(child, levels, index + 1, systemTopic, result);
+        }
+        if (wildcardsAllowed) {
+            child = node.children.get(SINGLE_LEVEL);
+            if (child != null) {
+                collect(child, levels, index + 1, systemTopic, result);
+            }
+        }
+    }
+
+    private static class Node<T> {
+        private Map<String, Node<T>> children;
+        private final List<T> values = new ArrayList<>(1);
+        private final List<T> multiLevelValues = new ArrayList<>(1);
+
+        private Node<T> child(String level) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            return children.computeIfAbsent(level, l -> new Node<>());
+        }
+    }
+}
@@ -54,6 +54,7 @@ public class MqttDriverSettingsTest {
         Assertions.assertEquals("anakin", driverSettings.getUsername());
         Assertions.assertEquals("padme", driverSettings.getPassword());
         Assertions.assertEquals(123, driverSettings.getRecordCollectionSize());
+        Assertions.assertEquals(250, driverSettings.getRecordCollectionTime());
         Assertions.assertTrue(driverSettings.isSsl());
         Assertions.assertEquals(42, driverSettings.getMaxBufferSize());
         Assertions.assertEquals(1337, driverSettings.getMaxFileSize());
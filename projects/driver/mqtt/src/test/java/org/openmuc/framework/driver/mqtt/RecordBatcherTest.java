@@ -0,0 +1,72 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.driver.mqtt;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class RecordBatcherTest {
+
+    @Test
+    void fullBatchIsPassedOn() {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        RecordBatcher<String> batcher = new RecordBatcher<>(batches::add, 2, 0, null);
+
+        batcher.add("r1");
+        Assertions.assertTrue(batches.isEmpty());
+        batcher.add("r2");
+        batcher.add("r3");
+
+        Assertions.assertEquals(Arrays.asList(Arrays.asList("r1", "r2")), batches);
+        batcher.flush();
+        Assertions.assertEquals(Arrays.asList(Arrays.asList("r1", "r2"), Arrays.asList("r3")), batches);
+        batcher.flush();
+        Assertions.assertEquals(2, batches.size());
+    }
+
+    @Test
+    void batchIsPassedOnAfterMaxDelay() throws InterruptedException {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            RecordBatcher<String> batcher = new RecordBatcher<>(batches::add, 100, 50, scheduler);
+            batcher.add("r1");
+            batcher.add("r2");
+            Assertions.assertTrue(batches.isEmpty());
+
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+            while (batches.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assertions.assertEquals(Arrays.asList(Arrays.asList("r1", "r2")), batches);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.driver.mqtt;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TopicMatcherTest {
+
+    @Test
+    void exactTopicsAreMatched() {
+        TopicMatcher<String> matcher = new TopicMatcher<>();
+        matcher.add("a/b", "channel1");
+        matcher.add("a/b", "channel2");
+        matcher.add("a/c", "channel3");
+
+        Assertions.assertEquals(Arrays.asList("channel1", "channel2"), matcher.match("a/b"));
+        Assertions.assertEquals(Collections.singletonList("channel3"), matcher.match("a/c"));
+        Assertions.assertTrue(matcher.match("a").isEmpty());
+        Assertions.assertEquals(Arrays.asList("a/b", "a/c"), matcher.getTopicFilters());
+    }
+
+    @Test
+    void wildcardsAreMatched() {
+        TopicMatcher<String> matcher = new TopicMatcher<>();
+        matcher.add("sensor/+/temp", "single");
+        matcher.add("sensor/#", "multi");
+        matcher.add("sensor/1/temp", "exact");
+
+        Assertions.assertEquals(setOf("exact", "single", "multi"), new HashSet<>(matcher.match("sensor/1/temp")));
+        Assertions.assertEquals(Collections.singletonList("multi"), matcher.match("sensor/1/humidity"));
+        Assertions.assertEquals(Collections.singletonList("multi"), matcher.match("sensor"));
+        Assertions.assertTrue(matcher.match("actor/1/temp").isEmpty());
+    }
+
+    @Test
+    void wildcardsAtFirstLevelIgnoreSystemTopics() {
+        TopicMatcher<String> matcher = new TopicMatcher<>();
+        matcher.add("#", "all");
+        matcher.add("+/info", "info");
+        matcher.add("$SYS/#", "sys");
+
+        Assertions.assertEquals(Collections.singletonList("sys"), matcher.match("$SYS/info"));
+        Assertions.assertEquals(setOf("all", "info"), new HashSet<>(matcher.match("broker/info")));
+    }
+
+    @Test
+    void invalidFiltersAreRejected() {
+        TopicMatcher<String> matcher = new TopicMatcher<>();
+        for (String filter : Arrays.asList("", "a/#/b", "a/b#", "a+/b")) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> matcher.add(filter, "channel"), filter);
+        }
+        Assertions.assertTrue(matcher.getTopicFilters().isEmpty());
+    }
+
+    @Test
+    void manyTopicsAreMatched() {
+        TopicMatcher<String> matcher = new TopicMatcher<>();
+        for (int i = 0; i < 10_000; i++) {
+            matcher.add("device/" + i + "/value", "channel" + i);
+        }
+        matcher.add("device/+/status", "status");
+
+        Assertions.assertEquals(10_001, matcher.getTopicFilters().size());
+        Assertions.assertEquals(Collections.singletonList("channel9999"), matcher.match("device/9999/value"));
+        Assertions.assertEquals(Collections.singletonList("status"), matcher.match("device/42/status"));
+    }
+
+    private static Set<String> setOf(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+}
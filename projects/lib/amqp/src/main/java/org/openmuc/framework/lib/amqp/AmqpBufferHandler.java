@@ -22,10 +22,9 @@ package org.openmuc.framework.lib.amqp;
 
 import java.io.IOException;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Queue;
 
 import org.openmuc.framework.lib.filePersistence.FilePersistence;
+import org.openmuc.framework.lib.filePersistence.SpillingRamBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,12 +32,10 @@ public class AmqpBufferHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(AmqpBufferHandler.class);
 
-    private final Queue<AmqpMessageTuple> buffer = new LinkedList<>();
     private final long maxBufferSizeBytes;
     private final int maxFileCount;
     private final FilePersistence filePersistence;
-
-    private long currentBufferSize = 0L;
+    private final SpillingRamBuffer<AmqpMessageTuple> buffer;
 
     public AmqpBufferHandler(long maxBufferSize, int maxFileCount, long maxFileSize, String persistenceDir) {
         maxBufferSizeBytes = maxBufferSize * 1024;
@@ -49,6 +46,8 @@ public class AmqpBufferHandler {
         else {
             filePersistence = null;
         }
+        buffer = new SpillingRamBuffer<>("AmqpBuffer", maxBufferSizeBytes, filePersistence,
+                AmqpMessageTuple::getRoutingKey, AmqpMessageTuple::getMessage);
     }
 
     private boolean isFileBufferEnabled() {
@@ -56,63 +55,11 @@ public class AmqpBufferHandler {
     }
 
     public void add(String routingKey, byte[] message) {
-        if (isBufferTooFull(message)) {
-            handleFull(routingKey, message);
-        }
-        else {
-            synchronized (buffer) {
-                buffer.add(new AmqpMessageTuple(routingKey, message));
-                currentBufferSize += message.length;
-            }
-
-            if (logger.isTraceEnabled()) {
-                logger.trace("maxBufferSize = {} B, currentBufferSize = {} B, messageSize = {} B", maxBufferSizeBytes,
-                        currentBufferSize, message.length);
-            }
-        }
-    }
-
-    private boolean isBufferTooFull(byte[] message) {
-        return currentBufferSize + message.length > maxBufferSizeBytes;
-    }
-
-    private void handleFull(String routingKey, byte[] message) {
-        if (isFileBufferEnabled()) {
-            addToFilePersistence();
-            add(routingKey, message);
-        }
-        else if (message.length <= maxBufferSizeBytes) {
-            removeNextMessage();
-            add(routingKey, message);
-        }
+        buffer.add(new AmqpMessageTuple(routingKey, message));
     }
 
     public AmqpMessageTuple removeNextMessage() {
-        AmqpMessageTuple removedMessage;
-        synchronized (buffer) {
-            removedMessage = buffer.remove();
-            currentBufferSize -= removedMessage.getMessage().length;
-        }
-        return removedMessage;
-    }
-
-    private void addToFilePersistence() {
-        logger.debug("moving buffered messages from RAM to file");
-        while (!isEmpty()) {
-            AmqpMessageTuple messageTuple = removeNextMessage();
-            writeBufferToFile(messageTuple);
-        }
-        currentBufferSize = 0;
-    }
-
-    private void writeBufferToFile(AmqpMessageTuple messageTuple) {
-        try {
-            synchronized (filePersistence) {
-                filePersistence.writeBufferToFile(messageTuple.getRoutingKey(), messageTuple.getMessage());
-            }
-        } catch (IOException e) {
-            logger.error(e.getMessage());
-        }
+        return buffer.removeNextMessage();
     }
 
     public boolean isEmpty() {
@@ -122,6 +69,7 @@ public class AmqpBufferHandler {
     public String[] getBuffers() {
         String[] buffers;
         if (isFileBufferEnabled()) {
+            buffer.flush();
             buffers = filePersistence.getBuffers();
         }
         else {
@@ -136,13 +84,64 @@ public class AmqpBufferHandler {
 
     public void persist() {
         if (isFileBufferEnabled()) {
+            buffer.persist();
             try {
-                filePersistence.restructure();
-                addToFilePersistence();
+                synchronized (filePersistence) {
+                    filePersistence.restructure();
+                }
             } catch (IOException e) {
                 logger.error("Buffer file restructuring error: {}", e.getMessage());
                 e.printStackTrace();
             }
         }
     }
+
+    /**
+     * @return size of the messages kept in RAM in bytes
+     */
+    public long getBufferedBytes() {
+        return buffer.getBufferedBytes();
+    }
+
+    /**
+     * @return number of messages kept in RAM
+     */
+    public int getBufferedMessages() {
+        return buffer.getBufferedMessages();
+    }
+
+    /**
+     * @return size of the messages waiting to be moved from RAM to file in bytes
+     */
+    public long getPendingSpillBytes() {
+        return buffer.getPendingSpillBytes();
+    }
+
+    /**
+     * @return number of messages moved from RAM to file
+     */
+    public long getSpilledMessages() {
+        return buffer.getSpilledMessages();
+    }
+
+    /**
+     * @return size of the messages moved from RAM to file in bytes
+     */
+    public long getSpilledBytes() {
+        return buffer.getSpilledBytes();
+    }
+
+    /**
+     * @return number of batch moves from RAM to file
+     */
+    public long getSpillCount() {
+        return buffer.getSpillCount();
+    }
+
+    /**
+     * @return number of messages dropped because the RAM buffer was full and the file buffer is disabled
+     */
+    public long getDroppedMessages() {
+        return buffer.getDroppedMessages();
+    }
 }
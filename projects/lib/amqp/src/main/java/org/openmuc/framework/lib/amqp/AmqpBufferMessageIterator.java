@@ -20,14 +20,23 @@
  */
 package org.openmuc.framework.lib.amqp;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import org.openmuc.framework.lib.filePersistence.FilePersistence;
 
+/**
+ * Drains a file buffer. The messages are read in batches, each batch with a single update of the read offset.
+ */
 public class AmqpBufferMessageIterator implements Iterator<AmqpMessageTuple> {
 
+    private static final int BATCH_SIZE = 256;
+
     private final FilePersistence filePersistence;
     private final String buffer;
+    private final Deque<byte[]> batch = new ArrayDeque<>();
 
     public AmqpBufferMessageIterator(String buffer, FilePersistence filePersistence) {
         this.buffer = buffer;
@@ -36,15 +45,24 @@ public class AmqpBufferMessageIterator implements Iterator<AmqpMessageTuple> {
 
     @Override
     public boolean hasNext() {
-        return filePersistence.fileExistsFor(buffer);
+        if (!batch.isEmpty()) {
+            return true;
+        }
+        synchronized (filePersistence) {
+            return filePersistence.fileExistsFor(buffer);
+        }
     }
 
     @Override
     public AmqpMessageTuple next() {
-        byte[] message;
-        synchronized (filePersistence) {
-            message = filePersistence.getMessage(buffer);
+        if (batch.isEmpty()) {
+            synchronized (filePersistence) {
+                batch.addAll(filePersistence.getMessages(buffer, BATCH_SIZE));
+            }
+        }
+        if (batch.isEmpty()) {
+            throw new NoSuchElementException();
         }
-        return new AmqpMessageTuple(buffer, message);
+        return new AmqpMessageTuple(buffer, batch.poll());
     }
 }
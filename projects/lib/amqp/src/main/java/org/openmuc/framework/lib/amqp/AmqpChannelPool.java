@@ -0,0 +1,304 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.lib.amqp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+
+/**
+ * Fixed number of RabbitMQ channels in publisher confirm mode, each used by one publishing thread at a time.<br>
+ * <br>
+ * Every published message is kept in a map sorted by its publish sequence number until the broker confirms it. Acks
+ * remove the message (or all messages up to the sequence number if the ack is a multiple one), nacks hand it over to
+ * the failure handler. If a channel is closed, all its unconfirmed messages are handed over to the failure handler as
+ * well, they are not known to be delivered.
+ */
+class AmqpChannelPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(AmqpChannelPool.class);
+
+    private static final long BORROW_TIMEOUT_SECONDS = 10;
+
+    private final AmqpConnection connection;
+    private final Consumer<AmqpMessageTuple> failureHandler;
+    private final BlockingQueue<PooledChannel> idle;
+    private final List<PooledChannel> all = new ArrayList<>();
+
+    private final AtomicLong confirmed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean closed = false;
+
+    /**
+     * @param connection
+     *            connection to create the channels on
+     * @param size
+     *            number of channels
+     * @param failureHandler
+     *            receives nacked messages and messages which were unconfirmed when their channel was closed
+     */
+    AmqpChannelPool(AmqpConnection connection, int size, Consumer<AmqpMessageTuple> failureHandler) {
+        this.connection = connection;
+        this.failureHandler = failureHandler;
+        idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            PooledChannel channel = new PooledChannel();
+            all.add(channel);
+            idle.add(channel);
+        }
+    }
+
+    /**
+     * Takes a channel for exclusive use, (re)opens it if necessary. Must be given back with
+     * {@link #release(PooledChannel)}.
+     *
+     * @return the channel
+     * @throws IOException
+     *             if the pool is closed, no channel is available or it cannot be opened
+     */
+    PooledChannel borrow() throws IOException {
+        if (closed) {
+            throw new IOException("channel pool is closed");
+        }
+        PooledChannel channel;
+        try {
+            channel = idle.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for a channel");
+        }
+        if (channel == null) {
+            throw new IOException("no channel available within " + BORROW_TIMEOUT_SECONDS + " s");
+        }
+        if (closed) {
+            idle.add(channel);
+            throw new IOException("channel pool is closed");
+        }
+        try {
+            channel.ensureOpen();
+        } catch (IOException e) {
+            idle.add(channel);
+            throw e;
+        }
+        return channel;
+    }
+
+    void release(PooledChannel channel) {
+        idle.add(channel);
+    }
+
+    /**
+     * Stops lending channels, waits until the borrowed channels are given back and for the outstanding confirms, then
+     * closes all channels. Messages still unconfirmed are handed over to the failure handler.
+     *
+     * @param timeoutMillis
+     *            maximum time to wait for the borrowed channels and for the confirms of each channel
+     */
+    void close(long timeoutMillis) {
+        closed = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (int returned = 0; returned < all.size(); returned++) {
+            PooledChannel channel;
+            try {
+                channel = idle.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                channel = null;
+            }
+            if (channel == null) {
+                logger.warn("closing channel pool while {} channel(s) are still in use", all.size() - returned);
+                break;
+            }
+        }
+
+        for (PooledChannel channel : all) {
+            channel.close(timeoutMillis);
+        }
+    }
+
+    /**
+     * @return number of messages published and not yet confirmed
+     */
+    long getUnconfirmedCount() {
+        long count = 0;
+        for (PooledChannel channel : all) {
+            count += channel.unconfirmed.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return number of messages acked by the broker
+     */
+    long getConfirmedCount() {
+        return confirmed.get();
+    }
+
+    /**
+     * @return number of messages nacked by the broker or unconfirmed when their channel was closed
+     */
+    long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * A channel in confirm mode with its unconfirmed messages.
+     */
+    class PooledChannel implements ConfirmListener, ShutdownListener {
+
+        private final NavigableMap<Long, AmqpMessageTuple> unconfirmed = new ConcurrentSkipListMap<>();
+        private Channel channel;
+
+        private void ensureOpen() throws IOException {
+            if (channel != null && channel.isOpen()) {
+                return;
+            }
+            discard(channel);
+            channel = connection.createChannel();
+            channel.confirmSelect();
+            channel.addConfirmListener(this);
+            channel.addShutdownListener(this);
+        }
+
+        /**
+         * Publishes a message, its delivery is confirmed asynchronously.
+         *
+         * @throws IOException
+         *             if the message could not be published, it is not tracked then
+         */
+        void publish(String exchange, AmqpMessageTuple messageTuple) throws IOException {
+            long sequenceNumber = channel.getNextPublishSeqNo();
+            unconfirmed.put(sequenceNumber, messageTuple);
+            try {
+                channel.basicPublish(exchange, messageTuple.getRoutingKey(), false, null, messageTuple.getMessage());
+            } catch (IOException | RuntimeException e) {
+                unconfirmed.remove(sequenceNumber);
+                throw e;
+            }
+        }
+
+        @Override
+        public void handleAck(long deliveryTag, boolean multiple) {
+            confirmed.addAndGet(remove(deliveryTag, multiple).size());
+        }
+
+        @Override
+        public void handleNack(long deliveryTag, boolean multiple) {
+            List<AmqpMessageTuple> nacked = remove(deliveryTag, multiple);
+            if (nacked.isEmpty()) {
+                return;
+            }
+            logger.warn("{} message(s) nacked by the broker, buffering them", nacked.size());
+            fail(nacked);
+        }
+
+        private List<AmqpMessageTuple> remove(long deliveryTag, boolean multiple) {
+            List<AmqpMessageTuple> removed = new ArrayList<>();
+            if (multiple) {
+                Map<Long, AmqpMessageTuple> confirmedMessages = unconfirmed.headMap(deliveryTag, true);
+                removed.addAll(confirmedMessages.values());
+                confirmedMessages.clear();
+            }
+            else {
+                AmqpMessageTuple messageTuple = unconfirmed.remove(deliveryTag);
+                if (messageTuple != null) {
+                    removed.add(messageTuple);
+                }
+            }
+            return removed;
+        }
+
+        @Override
+        public void shutdownCompleted(ShutdownSignalException cause) {
+            // sequence numbers start again on a new or recovered channel, so the outstanding ones can't be confirmed
+            failAllUnconfirmed();
+        }
+
+        private void failAllUnconfirmed() {
+            List<AmqpMessageTuple> outstanding = new ArrayList<>();
+            Map.Entry<Long, AmqpMessageTuple> entry;
+            while ((entry = unconfirmed.pollFirstEntry()) != null) {
+                outstanding.add(entry.getValue());
+            }
+            if (!outstanding.isEmpty()) {
+                logger.warn("channel closed with {} unconfirmed message(s), buffering them", outstanding.size());
+                fail(outstanding);
+            }
+        }
+
+        private void fail(List<AmqpMessageTuple> messages) {
+            failed.addAndGet(messages.size());
+            for (AmqpMessageTuple messageTuple : messages) {
+                failureHandler.accept(messageTuple);
+            }
+        }
+
+        private void discard(Channel oldChannel) {
+            if (oldChannel == null) {
+                return;
+            }
+            oldChannel.removeConfirmListener(this);
+            oldChannel.removeShutdownListener(this);
+            failAllUnconfirmed();
+            if (oldChannel.isOpen()) {
+                try {
+                    oldChannel.close();
+                } catch (IOException | TimeoutException | ShutdownSignalException e) {
+                    logger.debug("failed to close channel: {}", e.getMessage());
+                }
+            }
+        }
+
+        private void close(long timeoutMillis) {
+            if (channel == null) {
+                return;
+            }
+            if (channel.isOpen() && !unconfirmed.isEmpty()) {
+                try {
+                    channel.waitForConfirms(timeoutMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (TimeoutException | IllegalStateException | ShutdownSignalException e) {
+                    logger.debug("not all messages confirmed before closing the channel: {}", e.getMessage());
+                }
+            }
+            discard(channel);
+            channel = null;
+        }
+    }
+}
@@ -193,7 +193,7 @@ public class AmqpConnection {
      * @throws IOException
      *             if an I/O problem is encountered
      */
-    public void declareQueue(String queue) throws IOException {
+    public synchronized void declareQueue(String queue) throws IOException {
         if (!DECLARED_QUEUES.contains(queue)) {
             try {
                 channel.queueDeclarePassive(queue);
@@ -277,6 +277,25 @@ public class AmqpConnection {
         return channel;
     }
 
+    /**
+     * Opens an additional channel on the current connection, e.g. for publishing.
+     *
+     * @return the new channel
+     * @throws IOException
+     *             if there is no connection or the channel could not be opened
+     */
+    Channel createChannel() throws IOException {
+        Connection currentConnection = connection;
+        if (currentConnection == null || !currentConnection.isOpen()) {
+            throw new IOException("not connected");
+        }
+        Channel newChannel = currentConnection.createChannel();
+        if (newChannel == null) {
+            throw new IOException("no channel available on the connection");
+        }
+        return newChannel;
+    }
+
     AmqpSettings getSettings() {
         return settings;
     }
@@ -21,7 +21,10 @@
 
 package org.openmuc.framework.lib.amqp;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,12 +33,18 @@ import com.rabbitmq.client.Recoverable;
 import com.rabbitmq.client.RecoveryListener;
 
 /**
- * Sends (writes) messages to an AmqpConnection
+ * Sends (writes) messages to an AmqpConnection. Messages are published on a pool of channels in publisher confirm
+ * mode, see {@link AmqpChannelPool}.
  */
 public class AmqpWriter {
     private static final Logger logger = LoggerFactory.getLogger(AmqpWriter.class);
 
+    private static final int CHANNEL_POOL_SIZE = 4;
+    private static final int RESEND_BATCH_SIZE = 256;
+    private static final long SHUTDOWN_CONFIRM_TIMEOUT_MILLIS = 5000;
+
     private final AmqpBufferHandler bufferHandler;
+    private final AmqpChannelPool channelPool;
     private final AmqpConnection connection;
     private final String pid;
 
@@ -52,6 +61,8 @@ public class AmqpWriter {
         AmqpSettings s = connection.getSettings();
         bufferHandler = new AmqpBufferHandler(s.getMaxBufferSize(), s.getMaxFileCount(), s.getMaxFileSize(),
                 s.getPersistenceDirectory());
+        channelPool = new AmqpChannelPool(connection, CHANNEL_POOL_SIZE,
+                messageTuple -> bufferHandler.add(messageTuple.getRoutingKey(), messageTuple.getMessage()));
 
         connection.addRecoveryListener(new RecoveryListener() {
             @Override
@@ -77,6 +88,7 @@ public class AmqpWriter {
         if (buffers.length == 0) {
             logger.debug("[{}] File buffer already empty.", pid);
         }
+        List<AmqpMessageTuple> batch = new ArrayList<>(RESEND_BATCH_SIZE);
         for (String buffer : buffers) {
             Iterator<AmqpMessageTuple> iterator = bufferHandler.getMessageIterator(buffer);
             while (iterator.hasNext()) {
@@ -84,9 +96,14 @@ public class AmqpWriter {
                 if (logger.isTraceEnabled()) {
                     logger.trace("[{}] Resend from file: {}", pid, new String(messageTuple.getMessage()));
                 }
-                write(messageTuple.getRoutingKey(), messageTuple.getMessage());
+                batch.add(messageTuple);
+                if (batch.size() == RESEND_BATCH_SIZE) {
+                    write(batch);
+                    batch.clear();
+                }
             }
         }
+        write(batch);
         logger.debug("[{}] File buffer cleared.", pid);
     }
 
@@ -95,13 +112,19 @@ public class AmqpWriter {
         if (bufferHandler.isEmpty()) {
             logger.debug("[{}] RAM buffer already empty.", pid);
         }
+        List<AmqpMessageTuple> batch = new ArrayList<>(RESEND_BATCH_SIZE);
         while (!bufferHandler.isEmpty()) {
             AmqpMessageTuple messageTuple = bufferHandler.removeNextMessage();
             if (logger.isTraceEnabled()) {
                 logger.trace("[{}] Resend from memory: {}", pid, new String(messageTuple.getMessage()));
             }
-            write(messageTuple.getRoutingKey(), messageTuple.getMessage());
+            batch.add(messageTuple);
+            if (batch.size() == RESEND_BATCH_SIZE) {
+                write(batch);
+                batch.clear();
+            }
         }
+        write(batch);
         logger.debug("[{}] RAM buffer cleared.", pid);
     }
 
@@ -114,29 +137,75 @@ public class AmqpWriter {
      *            byte array containing the message to be published
      */
     public void write(String routingKey, byte[] message) {
-        connection.ensureConnected(false);
-        if (!publish(routingKey, message)) {
-            bufferHandler.add(routingKey, message);
-        }
+        write(Collections.singletonList(new AmqpMessageTuple(routingKey, message)));
     }
 
-    private boolean publish(String routingKey, byte[] message) {
+    /**
+     * Publishes messages in order on one channel of the pool, e.g. all messages of one logging interval. The call does
+     * not wait for the broker: the delivery is confirmed asynchronously and messages which are nacked or can't be
+     * published are buffered and republished on recovery.
+     *
+     * @param messages
+     *            the messages to publish
+     */
+    public void write(List<AmqpMessageTuple> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        connection.ensureConnected(false);
+
+        int published = 0;
+        AmqpChannelPool.PooledChannel channel = null;
         try {
-            connection.declareQueue(routingKey);
-            connection.getRabbitMqChannel().basicPublish(connection.getExchange(), routingKey, false, null, message);
+            channel = channelPool.borrow();
+            String exchange = connection.getExchange();
+            for (AmqpMessageTuple messageTuple : messages) {
+                connection.declareQueue(messageTuple.getRoutingKey());
+                channel.publish(exchange, messageTuple);
+                published++;
+                if (logger.isTraceEnabled()) {
+                    logger.trace("[{}] published with routingKey {}, payload: {}", pid, messageTuple.getRoutingKey(),
+                            new String(messageTuple.getMessage()));
+                }
+            }
         } catch (Exception e) {
-            logger.error("[{}] Could not publish message: {}", pid, e.getMessage());
+            logger.error("[{}] Could not publish {} message(s): {}", pid, messages.size() - published,
+                    e.getMessage());
+            for (AmqpMessageTuple messageTuple : messages.subList(published, messages.size())) {
+                bufferHandler.add(messageTuple.getRoutingKey(), messageTuple.getMessage());
+            }
             connection.ensureConnected(true);
-            return false;
+        } finally {
+            if (channel != null) {
+                channelPool.release(channel);
+            }
         }
+    }
 
-        if (logger.isTraceEnabled()) {
-            logger.trace("[{}] published with routingKey {}, payload: {}", pid, routingKey, new String(message));
-        }
-        return true;
+    /**
+     * @return number of messages published and not yet confirmed by the broker
+     */
+    public long getUnconfirmedCount() {
+        return channelPool.getUnconfirmedCount();
+    }
+
+    /**
+     * @return number of messages confirmed by the broker
+     */
+    public long getConfirmedCount() {
+        return channelPool.getConfirmedCount();
+    }
+
+    /**
+     * @return number of published messages which were nacked or lost their channel and were buffered again
+     */
+    public long getReroutedCount() {
+        return channelPool.getFailedCount();
     }
 
     public void shutdown() {
+        logger.debug("[{}] Waiting for publisher confirms.", pid);
+        channelPool.close(SHUTDOWN_CONFIRM_TIMEOUT_MILLIS);
         logger.debug("[{}] Saving buffers.", pid);
         bufferHandler.persist();
     }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.lib.amqp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.lib.amqp.AmqpChannelPool.PooledChannel;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
+
+public class AmqpChannelPoolTest {
+
+    private final List<String> failed = new ArrayList<>();
+    private AmqpChannelPool pool;
+    private Channel channel;
+
+    @BeforeEach
+    void setup() throws IOException {
+        AmqpConnection connection = mock(AmqpConnection.class);
+        channel = mock(Channel.class);
+        when(connection.createChannel()).thenReturn(channel);
+        when(channel.isOpen()).thenReturn(true);
+        when(channel.getNextPublishSeqNo()).thenReturn(1L, 2L, 3L, 4L, 5L);
+
+        failed.clear();
+        pool = new AmqpChannelPool(connection, 1, messageTuple -> failed.add(messageTuple.getRoutingKey()));
+    }
+
+    @Test
+    void multipleAckRemovesHead() throws IOException {
+        PooledChannel pooledChannel = publish(5);
+
+        pooledChannel.handleAck(3, true);
+        assertEquals(3, pool.getConfirmedCount());
+        assertEquals(2, pool.getUnconfirmedCount());
+
+        // sequence number 4 stays unconfirmed
+        pooledChannel.handleAck(5, false);
+        assertEquals(4, pool.getConfirmedCount());
+        assertEquals(1, pool.getUnconfirmedCount());
+        assertEquals(0, pool.getFailedCount());
+        assertEquals(0, failed.size());
+    }
+
+    @Test
+    void nackedMessagesAreHandedToFailureHandler() throws IOException {
+        PooledChannel pooledChannel = publish(4);
+
+        pooledChannel.handleNack(2, true);
+
+        assertEquals(Arrays.asList("message1", "message2"), failed);
+        assertEquals(2, pool.getFailedCount());
+        assertEquals(2, pool.getUnconfirmedCount());
+    }
+
+    @Test
+    void unconfirmedMessagesAreHandedToFailureHandlerOnShutdown() throws IOException {
+        PooledChannel pooledChannel = publish(4);
+        pooledChannel.handleAck(1, false);
+
+        pooledChannel.shutdownCompleted(new ShutdownSignalException(false, false, null, channel));
+
+        assertEquals(Arrays.asList("message2", "message3", "message4"), failed);
+        assertEquals(3, pool.getFailedCount());
+        assertEquals(0, pool.getUnconfirmedCount());
+    }
+
+    @Test
+    void borrowFailsAfterClose() throws IOException {
+        pool.release(pool.borrow());
+
+        pool.close(100);
+
+        assertThrows(IOException.class, () -> pool.borrow());
+    }
+
+    /**
+     * Publishes messages with the sequence numbers 1 to count, their routing key is "message" and the sequence number.
+     */
+    private PooledChannel publish(int count) throws IOException {
+        PooledChannel pooledChannel = pool.borrow();
+        for (int i = 1; i <= count; i++) {
+            pooledChannel.publish("exchange", new AmqpMessageTuple("message" + i, new byte[] { (byte) i }));
+        }
+        pool.release(pooledChannel);
+        return pooledChannel;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.lib.filePersistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded lock-free FIFO queue for any number of producers and consumers, limited by the number of slots and by the
+ * sum of the item sizes.<br>
+ * <br>
+ * The slots form a ring with a sequence number per slot (D. Vyukov's bounded MPMC queue): producers and consumers claim
+ * a position with a compare-and-set on the tail resp. head counter and publish the slot by advancing its sequence
+ * number, so neither side ever waits for a lock. The byte budget is reserved with a compare-and-set before a slot is
+ * claimed and given back when the item is taken.
+ */
+class ByteBudgetRing<T> {
+
+    private final AtomicReferenceArray<T> items;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final long maxBytes;
+    private final ToIntFunction<T> sizeOf;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * @param capacity
+     *            number of slots, rounded up to a power of two
+     * @param maxBytes
+     *            maximum sum of the item sizes
+     * @param sizeOf
+     *            returns the size of an item in bytes
+     */
+    ByteBudgetRing(int capacity, long maxBytes, ToIntFunction<T> sizeOf) {
+        int slots = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        items = new AtomicReferenceArray<>(slots);
+        sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; ++i) {
+            sequences.set(i, i);
+        }
+        mask = slots - 1;
+        this.maxBytes = maxBytes;
+        this.sizeOf = sizeOf;
+    }
+
+    /**
+     * Adds an item at the tail.
+     *
+     * @param item
+     *            the item
+     * @return false if there is no free slot or the item exceeds the byte budget
+     */
+    boolean offer(T item) {
+
+        int size = sizeOf.applyAsInt(item);
+        long reserved;
+        do {
+            reserved = bytes.get();
+            if (reserved + size > maxBytes) {
+                return false;
+            }
+        } while (!bytes.compareAndSet(reserved, reserved + size));
+
+        long position = tail.get();
+        int index;
+        while (true) {
+            index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            }
+            else if (difference < 0) {
+                bytes.addAndGet(-size);
+                return false;
+            }
+            else {
+                position = tail.get();
+            }
+        }
+
+        items.set(index, item);
+        sequences.set(index, position + 1);
+        count.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Takes the item at the head.
+     *
+     * @return the oldest item or {@code null} if the ring is empty
+     */
+    T poll() {
+
+        long position = head.get();
+        int index;
+        while (true) {
+            index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = head.get();
+            }
+            else if (difference < 0) {
+                return null;
+            }
+            else {
+                position = head.get();
+            }
+        }
+
+        T item = items.get(index);
+        items.set(index, null);
+        sequences.set(index, position + mask + 1);
+        count.decrementAndGet();
+        bytes.addAndGet(-sizeOf.applyAsInt(item));
+        return item;
+    }
+
+    /**
+     * Takes all items currently in the ring.
+     *
+     * @return the items, oldest first
+     */
+    List<T> drain() {
+        List<T> drained = new ArrayList<>(Math.max(count.get(), 0));
+        T item;
+        while ((item = poll()) != null) {
+            drained.add(item);
+        }
+        return drained;
+    }
+
+    boolean isEmpty() {
+        return count.get() <= 0;
+    }
+
+    int size() {
+        return Math.max(count.get(), 0);
+    }
+
+    long getBytes() {
+        return bytes.get();
+    }
+}
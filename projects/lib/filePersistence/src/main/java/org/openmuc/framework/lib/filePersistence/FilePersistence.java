@@ -22,17 +22,14 @@
 package org.openmuc.framework.lib.filePersistence;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,15 +38,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Provides configurable RAM friendly file persistence functionality
+ * Provides configurable RAM friendly file persistence functionality.<br>
+ * <br>
+ * Every buffer is stored in its own directory as a segmented, length-prefixed log (see {@link SegmentedLog}). The
+ * read offset is stored next to the segments, so messages survive a restart without being read twice. Buffers written
+ * by older versions as newline separated files are converted on first access.
  */
 public class FilePersistence {
     private static final Logger logger = LoggerFactory.getLogger(FilePersistence.class);
     private final Path DIRECTORY;
     private int maxFileCount;
     private final long MAX_FILE_SIZE_BYTES;
-    private final Map<String, Integer> nextFile = new HashMap<>();
-    private final Map<String, Long> readBytes = new HashMap<>();
+    private final Map<String, SegmentedLog> logs = new HashMap<>();
     private static final List<String> BUFFERS = new ArrayList<>();
     public static final String DEFAULT_FILENAME = "buffer.0.log";
     public static final String DEFAULT_FILE_PREFIX = "buffer";
@@ -100,14 +100,58 @@ public class FilePersistence {
 
         checkPayLoadSize(payload.length);
         registerBuffer(buffer);
-        Path filePath = Paths.get(DIRECTORY.toString(), buffer, DEFAULT_FILENAME);
-        File file = createFileIfNotExist(filePath);
-        if (isFileFull(file.length(), payload.length)) {
-            handleFullFile(buffer, payload, file);
+        getLog(buffer, true).append(payload);
+    }
+
+    /**
+     * Writes several messages of one buffer at once. Messages fitting into the current file are written with a single
+     * write, which is much faster than writing message by message.
+     *
+     * @param buffer
+     *            directory without file name. Filename is automatically added by FilePersistence
+     * @param payloads
+     *            the messages in the order they should be read. each needs to be smaller than MAX_FILE_SIZE
+     * @throws IOException
+     *             when writing fails or when messages were skipped because they are bigger than MAX_FILE_SIZE, all
+     *             other messages are written in this case
+     */
+    public void writeBuffersToFile(String buffer, List<byte[]> payloads) throws IOException {
+
+        List<byte[]> fitting = new ArrayList<>(payloads.size());
+        IOException tooBig = null;
+        for (byte[] payload : payloads) {
+            try {
+                checkPayLoadSize(payload.length);
+                fitting.add(payload);
+            } catch (IOException e) {
+                tooBig = e;
+            }
         }
-        else {
-            appendToFile(file, payload);
+
+        if (!fitting.isEmpty()) {
+            registerBuffer(buffer);
+            getLog(buffer, true).append(fitting);
+        }
+        if (tooBig != null) {
+            throw new IOException((payloads.size() - fitting.size()) + " message(s) skipped. " + tooBig.getMessage());
+        }
+    }
+
+    private SegmentedLog getLog(String buffer, boolean create) throws IOException {
+        SegmentedLog log = logs.get(buffer);
+        if (log == null) {
+            Path bufferPath = Paths.get(DIRECTORY.toString(), buffer);
+            if (!bufferPath.toFile().exists()) {
+                if (!create) {
+                    return null;
+                }
+                logger.info("create new buffer directory: {}", bufferPath.toAbsolutePath());
+                Files.createDirectories(bufferPath);
+            }
+            log = new SegmentedLog(bufferPath, maxFileCount, MAX_FILE_SIZE_BYTES);
+            logs.put(buffer, log);
         }
+        return log;
     }
 
     private void registerBuffer(String buffer) throws IOException {
@@ -149,62 +193,8 @@ public class FilePersistence {
         return BUFFERS.toArray(new String[0]);
     }
 
-    private File createFileIfNotExist(Path filePath) throws IOException {
-        File file = filePath.toFile();
-        if (!file.exists()) {
-            logger.info("create new file: {}", file.getAbsolutePath());
-            Path storagePath = Paths.get(file.getAbsolutePath());
-            Files.createDirectories(storagePath.getParent());
-            Files.createFile(storagePath);
-        }
-        return file;
-    }
-
-    private void appendToFile(File file, byte[] payload) throws IOException {
-        FileOutputStream fileStream = new FileOutputStream(file, true);
-        fileStream.write(payload);
-        fileStream.write("\n".getBytes());
-        fileStream.close();
-    }
-
-    private void handleFullFile(String filePath, byte[] payload, File file) throws IOException {
-        if (maxFileCount > 1) {
-            handleMultipleFiles(filePath, payload, file);
-
-        }
-        else {
-            handleSingleFile(filePath, payload, file);
-        }
-    }
-
-    private void handleSingleFile(String filePath, byte[] payload, File file) {
-        throw new UnsupportedOperationException("right now only maxFileCount >= 2 supported");
-    }
-
-    private void handleMultipleFiles(String buffer, byte[] payload, File file) throws IOException {
-
-        int nextFile = this.nextFile.getOrDefault(buffer, 1);
-        String newFileName = DEFAULT_FILE_PREFIX + '.' + nextFile + '.' + DEFAULT_FILE_SUFFIX;
-        if (++nextFile == maxFileCount) {
-            nextFile = 1;
-        }
-        this.nextFile.put(buffer, nextFile);
-        Path path = Paths.get(DIRECTORY.toString(), buffer, DEFAULT_FILENAME);
-        Path newPath = Paths.get(DIRECTORY.toString(), buffer, newFileName);
-        Files.move(path, newPath, StandardCopyOption.REPLACE_EXISTING);
-
-        logger.info("move file from: {} to {}", path, newPath);
-
-        Files.createFile(path);
-        appendToFile(path.toFile(), payload);
-    }
-
-    private boolean isFileFull(long fileLength, int payloadLength) {
-        return fileLength + payloadLength + 1 > MAX_FILE_SIZE_BYTES;
-    }
-
     private void checkPayLoadSize(int payloadLength) throws IOException {
-        if (payloadLength >= MAX_FILE_SIZE_BYTES) {
+        if (SegmentedLog.SEGMENT_HEADER_SIZE + SegmentedLog.RECORD_HEADER_SIZE + payloadLength > MAX_FILE_SIZE_BYTES) {
             throw new IOException("Payload is bigger than maxFileSize. Current maxFileSize is "
                     + (MAX_FILE_SIZE_BYTES / 1024) + "kB");
         }
@@ -213,128 +203,75 @@ public class FilePersistence {
     /**
      * @param buffer
      *            the name of the buffer (e.g. the topic or queue name)
-     * @return if a file buffer exists
+     * @return if the buffer contains messages which have not been read yet
      */
     public boolean fileExistsFor(String buffer) {
-        String fileName = DEFAULT_FILE_PREFIX + ".0." + DEFAULT_FILE_SUFFIX;
-        return Paths.get(DIRECTORY.toString(), buffer, fileName).toFile().exists();
-    }
-
-    public byte[] getMessage(String buffer) {
-        Path filePath = getOldestFilePath(buffer);
-        Long position = getFilePosition(filePath.toString());
-        String message = "";
         try {
-            message = readLine(buffer, filePath.toFile(), position);
+            SegmentedLog log = getLog(buffer, false);
+            return log != null && log.hasNext();
         } catch (IOException e) {
             logger.error("An error occurred while reading the buffer {}. Error message: {}", buffer, e.getMessage());
+            return false;
         }
-
-        return message.getBytes();
-    }
-
-    private String readLine(String buffer, File file, Long position) throws IOException {
-        FileInputStream fileStream = new FileInputStream(file);
-        StringBuilder lineBuilder = new StringBuilder();
-        fileStream.skip(position);
-
-        int nextChar = fileStream.read();
-        position++;
-        while (nextChar != -1 && nextChar != '\n') {
-            lineBuilder.appendCodePoint(nextChar);
-            nextChar = fileStream.read();
-            position++;
-        }
-        fileStream.close();
-
-        setFilePosition(file.toString(), position);
-        deleteIfEmpty(file, position);
-        removeBufferIfEmpty(buffer);
-
-        return lineBuilder.toString();
     }
 
-    private void deleteIfEmpty(File file, Long position) throws IOException {
-        FileInputStream fileStream = new FileInputStream(file);
-        fileStream.skip(position);
-        int nextChar = fileStream.read();
-        fileStream.close();
-        if (nextChar == -1) {
-            boolean deleted = file.delete();
-            if (!deleted) {
-                throw new IOException("Empty file could not be deleted!");
-            }
-            else {
-                setFilePosition(file.toString(), 0L);
-            }
-        }
-    }
-
-    private void setFilePosition(String filePathString, Long position) {
-        readBytes.put(filePathString, position);
-    }
-
-    private Long getFilePosition(String filePathString) {
-        Long position = readBytes.get(filePathString);
-        if (position == null) {
-            position = 0L;
-        }
-        return position;
-    }
-
-    private Path getOldestFilePath(String buffer) {
-        Path directoryPath = Paths.get(DIRECTORY.toString(), buffer);
-        String[] bufferFiles = directoryPath.toFile().list((file, s) -> s.endsWith(".log"));
-        String oldestFile = DEFAULT_FILENAME;
-        if (bufferFiles.length > 1) {
-            oldestFile = findOldestFile(buffer);
-        }
-        return Paths.get(directoryPath.toString(), oldestFile);
+    /**
+     * Reads the next message of a buffer.
+     *
+     * @param buffer
+     *            the name of the buffer (e.g. the topic or queue name)
+     * @return the message or an empty array if the buffer is empty
+     */
+    public byte[] getMessage(String buffer) {
+        List<byte[]> messages = getMessages(buffer, 1);
+        return messages.isEmpty() ? new byte[0] : messages.get(0);
     }
 
-    private String findOldestFile(String buffer) {
-        String oldestFile = DEFAULT_FILENAME;
-        int nextFile = this.nextFile.getOrDefault(buffer, 1);
-        for (int i = 0; i < maxFileCount; i++) {
-            String fileName = DEFAULT_FILE_PREFIX + '.' + nextFile + '.' + DEFAULT_FILE_SUFFIX;
-            if (Paths.get(DIRECTORY.toString(), buffer, fileName).toFile().exists()) {
-                oldestFile = fileName;
-                break;
-            }
-            if (++nextFile == maxFileCount) {
-                nextFile = 1;
+    /**
+     * Reads the next messages of a buffer at once. The read offset is stored once for all of them, which makes draining
+     * a buffer much faster than reading message by message.
+     *
+     * @param buffer
+     *            the name of the buffer (e.g. the topic or queue name)
+     * @param maxMessages
+     *            maximum number of messages to read
+     * @return the messages in the order they were written, empty if the buffer is empty
+     */
+    public List<byte[]> getMessages(String buffer, int maxMessages) {
+        try {
+            SegmentedLog log = getLog(buffer, false);
+            if (log == null) {
+                return Collections.emptyList();
             }
+            List<byte[]> messages = log.next(maxMessages);
+            removeBufferIfEmpty(buffer);
+            return messages;
+        } catch (IOException e) {
+            logger.error("An error occurred while reading the buffer {}. Error message: {}", buffer, e.getMessage());
+            return Collections.emptyList();
         }
-        return oldestFile;
     }
 
+    /**
+     * Stores the read offsets, forces the written messages to the storage device and closes all open files. Called
+     * before shutdown, the files are opened again on demand.
+     *
+     * @throws IOException
+     *             if an I/O error occurs
+     */
     public void restructure() throws IOException {
-        for (String buffer : getBuffers()) {
-            Path bufferPath = getOldestFilePath(buffer);
-            Long position = getFilePosition(bufferPath.toString());
-            if (position.equals(0L)) {
-                continue;
-            }
-            Path temp = bufferPath.getParent();
-            temp = Paths.get(temp.toString(), "temp");
+        IOException exception = null;
+        for (SegmentedLog log : logs.values()) {
             try {
-                Files.move(bufferPath, temp, StandardCopyOption.REPLACE_EXISTING);
-            } catch (DirectoryNotEmptyException e) {
-                logger.error(bufferPath.toString() + " -> " + temp.toString());
+                log.sync();
+                log.close();
+            } catch (IOException e) {
+                exception = e;
             }
-            Files.createFile(bufferPath);
-            FileInputStream inputStream = new FileInputStream(temp.toFile());
-            inputStream.skip(position);
-            FileOutputStream outputStream = new FileOutputStream(bufferPath.toFile(), true);
-            int nextChar = inputStream.read();
-            while (nextChar != -1) {
-                outputStream.write(nextChar);
-                nextChar = inputStream.read();
-            }
-            inputStream.close();
-            outputStream.close();
-            temp.toFile().delete();
-            setFilePosition(bufferPath.toString(), 0L);
+        }
+        logs.clear();
+        if (exception != null) {
+            throw exception;
         }
     }
 }
@@ -0,0 +1,637 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.filePersistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only log of one buffer, split into segment files of limited size in the directory of the buffer. Records are
+ * written to the newest segment, framed by their length and a CRC32 of length and payload, so any binary payload can be
+ * stored. When the maximum number of segments is reached, the oldest segment is deleted to make room for a new one.<br>
+ * <br>
+ * A write torn by a power loss leaves an incomplete or corrupted record at the end of the newest segment. It is found
+ * by the CRC when the log is opened and cut off, new records are appended behind the last valid one.<br>
+ * <br>
+ * The read offset (segment and position) is stored in an offset file after every read, so already read messages are
+ * not read again after a restart. Fully read segments are deleted.<br>
+ * <br>
+ * Layout:
+ *
+ * <pre>
+ * buffer.&lt;sequence number&gt;.seg: int magic, int version, records: int length, int crc, bytes payload
+ * buffer.offset:                 long sequence number of the segment, long position in the segment
+ * </pre>
+ */
+class SegmentedLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedLog.class);
+
+    static final String SEGMENT_SUFFIX = "seg";
+    static final String OFFSET_FILENAME = FilePersistence.DEFAULT_FILE_PREFIX + ".offset";
+
+    private static final int MAGIC = 0x4F4D4650; // "OMFP"
+    private static final int VERSION = 2;
+    private static final int INVALID_VERSION = 0;
+    static final int SEGMENT_HEADER_SIZE = 4 + 4;
+    static final int RECORD_HEADER_SIZE = 4 + 4;
+    private static final int OFFSET_SIZE = 8 + 8;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final int maxSegmentCount;
+    private final long maxSegmentSize;
+
+    // sequence numbers of the existing segments, the last one is written
+    private final TreeSet<Long> segments = new TreeSet<>();
+    private FileChannel writeChannel;
+    private long writeSize;
+
+    private long readSegment;
+    private long readPosition;
+    private FileChannel readChannel;
+    private long readChannelSegment = -1;
+    private int readChannelVersion;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private long readBufferStart;
+    private FileChannel offsetChannel;
+
+    SegmentedLog(Path directory, int maxSegmentCount, long maxSegmentSize) throws IOException {
+        this.directory = directory;
+        this.maxSegmentCount = maxSegmentCount;
+        this.maxSegmentSize = maxSegmentSize;
+        readBuffer.limit(0);
+        open();
+    }
+
+    private void open() throws IOException {
+
+        String[] files = directory.toFile().list();
+        if (files != null) {
+            for (String file : files) {
+                long sequenceNumber = parseSequenceNumber(file);
+                if (sequenceNumber >= 0) {
+                    segments.add(sequenceNumber);
+                }
+            }
+        }
+
+        readSegment = segments.isEmpty() ? 0 : segments.first();
+        readPosition = SEGMENT_HEADER_SIZE;
+        readOffset();
+        recoverTail();
+
+        migrateLegacyFiles();
+    }
+
+    private static long parseSequenceNumber(String filename) {
+        String prefix = FilePersistence.DEFAULT_FILE_PREFIX + '.';
+        String suffix = '.' + SEGMENT_SUFFIX;
+        if (!filename.startsWith(prefix) || !filename.endsWith(suffix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(filename.substring(prefix.length(), filename.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Path getSegmentPath(long sequenceNumber) {
+        return directory.resolve(FilePersistence.DEFAULT_FILE_PREFIX + '.' + sequenceNumber + '.' + SEGMENT_SUFFIX);
+    }
+
+    private void readOffset() throws IOException {
+
+        Path offsetPath = directory.resolve(OFFSET_FILENAME);
+        if (segments.isEmpty() || !offsetPath.toFile().exists()) {
+            return;
+        }
+
+        ByteBuffer offset = ByteBuffer.allocate(OFFSET_SIZE);
+        try (FileChannel channel = FileChannel.open(offsetPath, StandardOpenOption.READ)) {
+            while (offset.hasRemaining() && channel.read(offset) > 0) {
+            }
+        }
+        if (offset.hasRemaining()) {
+            logger.warn("Incomplete offset file {}, reading buffer from the start", offsetPath);
+            return;
+        }
+
+        long segment = offset.getLong(0);
+        long position = offset.getLong(8);
+        if (segments.contains(segment) && position >= SEGMENT_HEADER_SIZE) {
+            readSegment = segment;
+            readPosition = position;
+        }
+    }
+
+    /**
+     * Cuts off an incomplete or corrupted record at the end of the newest segment, e.g. after a power loss.
+     */
+    private void recoverTail() throws IOException {
+
+        if (segments.isEmpty()) {
+            return;
+        }
+
+        long last = segments.last();
+        int version = getReadVersion(last);
+        if (version == INVALID_VERSION) {
+            logger.warn("invalid header of {}, delete segment", getSegmentPath(last));
+            deleteSegment(last);
+            if (readSegment == last) {
+                readSegment = segments.isEmpty() ? 0 : segments.first();
+                readPosition = SEGMENT_HEADER_SIZE;
+            }
+            return;
+        }
+
+        long size = readChannel.size();
+        long position = readSegment == last ? readPosition : SEGMENT_HEADER_SIZE;
+        while (position < size) {
+            byte[] record = readValidRecord(position, size);
+            if (record == null) {
+                break;
+            }
+            position += RECORD_HEADER_SIZE + record.length;
+        }
+
+        if (position < size) {
+            logger.warn("recover torn write at the end of {}, drop {} bytes", getSegmentPath(last), size - position);
+            truncate(last, position);
+        }
+    }
+
+    /**
+     * Converts the newline separated files of older versions (buffer.&lt;n&gt;.log) to records, oldest file first.
+     */
+    private void migrateLegacyFiles() throws IOException {
+
+        File[] legacyFiles = directory.toFile()
+                .listFiles((dir, name) -> name.startsWith(FilePersistence.DEFAULT_FILE_PREFIX + '.')
+                        && name.endsWith('.' + FilePersistence.DEFAULT_FILE_SUFFIX));
+        if (legacyFiles == null || legacyFiles.length == 0) {
+            return;
+        }
+
+        // the rotated files are older than the current file buffer.0.log
+        List<File> files = new ArrayList<>();
+        File currentFile = null;
+        for (File file : legacyFiles) {
+            if (file.getName().equals(FilePersistence.DEFAULT_FILENAME)) {
+                currentFile = file;
+            }
+            else {
+                files.add(file);
+            }
+        }
+        files.sort(Comparator.comparingLong(File::lastModified));
+        if (currentFile != null) {
+            files.add(currentFile);
+        }
+
+        for (File file : files) {
+            logger.info("migrate file buffer {} to segments", file.getAbsolutePath());
+            int count = 0;
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+                ByteArrayOutputStream line = new ByteArrayOutputStream();
+                int b;
+                while ((b = in.read()) != -1) {
+                    if (b == '\n') {
+                        append(line.toByteArray());
+                        line.reset();
+                        ++count;
+                    }
+                    else {
+                        line.write(b);
+                    }
+                }
+                if (line.size() > 0) {
+                    append(line.toByteArray());
+                    ++count;
+                }
+            }
+            Files.delete(file.toPath());
+            logger.info("migrated {} messages of {}", count, file.getName());
+        }
+    }
+
+    /**
+     * Appends a record. Starts a new segment if the record does not fit into the current one.
+     *
+     * @param payload
+     *            the record
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    void append(byte[] payload) throws IOException {
+        append(Collections.singletonList(payload));
+    }
+
+    /**
+     * Appends records in order. All records fitting into the current segment are written with one gathering write,
+     * further records start new segments.
+     *
+     * @param payloads
+     *            the records
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    void append(List<byte[]> payloads) throws IOException {
+
+        int next = 0;
+        while (next < payloads.size()) {
+            long recordSize = RECORD_HEADER_SIZE + payloads.get(next).length;
+            if (writeChannel == null && !segments.isEmpty()) {
+                openWriteChannel();
+            }
+            if (writeChannel == null || writeSize + recordSize > maxSegmentSize) {
+                startSegment();
+            }
+
+            List<ByteBuffer> records = new ArrayList<>();
+            long size = writeSize;
+            while (next < payloads.size()) {
+                byte[] payload = payloads.get(next);
+                recordSize = RECORD_HEADER_SIZE + payload.length;
+                if (!records.isEmpty() && size + recordSize > maxSegmentSize) {
+                    break;
+                }
+                ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+                header.putInt(payload.length);
+                header.putInt(crc(header.array(), payload));
+                header.flip();
+                records.add(header);
+                records.add(ByteBuffer.wrap(payload));
+                size += recordSize;
+                ++next;
+            }
+
+            ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                writeChannel.write(buffers);
+            }
+            writeSize = size;
+        }
+    }
+
+    private void openWriteChannel() throws IOException {
+        // segments with an invalid header are not continued
+        if (getReadVersion(segments.last()) != VERSION) {
+            return;
+        }
+        writeChannel = FileChannel.open(getSegmentPath(segments.last()), StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        writeSize = writeChannel.size();
+    }
+
+    /**
+     * @return CRC32 of the length, the first four bytes of the record header, and the payload
+     */
+    private static int crc(byte[] recordHeader, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(recordHeader, 0, 4);
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private void startSegment() throws IOException {
+
+        closeWriteChannel();
+        long sequenceNumber = segments.isEmpty() ? readSegment : segments.last() + 1;
+
+        while (segments.size() >= maxSegmentCount) {
+            long oldest = segments.first();
+            logger.info("buffer {} is full, delete oldest segment {}", directory, getSegmentPath(oldest));
+            deleteSegment(oldest);
+            if (readSegment == oldest) {
+                readSegment = segments.isEmpty() ? sequenceNumber : segments.first();
+                readPosition = SEGMENT_HEADER_SIZE;
+            }
+        }
+
+        writeChannel = FileChannel.open(getSegmentPath(sequenceNumber), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.flip();
+        while (header.hasRemaining()) {
+            writeChannel.write(header);
+        }
+        writeSize = SEGMENT_HEADER_SIZE;
+        segments.add(sequenceNumber);
+    }
+
+    /**
+     * @return true if there are records which have not been read yet
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    boolean hasNext() throws IOException {
+        if (segments.isEmpty()) {
+            return false;
+        }
+        return readSegment < segments.last() || readPosition < getSegmentSize(readSegment);
+    }
+
+    /**
+     * Reads up to maxCount records and stores the new read offset.
+     *
+     * @param maxCount
+     *            maximum number of records
+     * @return the records, empty if all records have been read
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    List<byte[]> next(int maxCount) throws IOException {
+
+        List<byte[]> records = new ArrayList<>(Math.min(maxCount, 1024));
+        while (records.size() < maxCount) {
+            byte[] record = readRecord();
+            if (record == null) {
+                break;
+            }
+            records.add(record);
+        }
+
+        if (!hasNext()) {
+            clear();
+        }
+        else if (!records.isEmpty()) {
+            writeOffset();
+        }
+        return records;
+    }
+
+    private byte[] readRecord() throws IOException {
+
+        while (!segments.isEmpty()) {
+            long segmentSize = getSegmentSize(readSegment);
+            int version = getReadVersion(readSegment);
+
+            if (version != INVALID_VERSION && readPosition < segmentSize) {
+                byte[] record = readValidRecord(readPosition, segmentSize);
+                if (record != null) {
+                    readPosition += RECORD_HEADER_SIZE + record.length;
+                    return record;
+                }
+                logger.warn("invalid record in {} at position {}, skip rest of segment", getSegmentPath(readSegment),
+                        readPosition);
+                if (readSegment == segments.last()) {
+                    // drop the invalid part, new records are appended behind the last valid one
+                    truncate(readSegment, readPosition);
+                    return null;
+                }
+            }
+            else if (version == INVALID_VERSION) {
+                logger.warn("invalid header of {}, skip segment", getSegmentPath(readSegment));
+            }
+
+            if (readSegment == segments.last()) {
+                if (version == INVALID_VERSION) {
+                    deleteSegment(readSegment);
+                }
+                return null;
+            }
+            // segment fully read
+            deleteSegment(readSegment);
+            readSegment = segments.ceiling(readSegment);
+            readPosition = SEGMENT_HEADER_SIZE;
+        }
+        return null;
+    }
+
+    /**
+     * Reads the record at the given position of the segment of the open read channel.
+     *
+     * @return the payload or null if the record is incomplete or corrupted
+     */
+    private byte[] readValidRecord(long position, long segmentSize) throws IOException {
+
+        if (position + RECORD_HEADER_SIZE > segmentSize) {
+            return null;
+        }
+        fill(position, RECORD_HEADER_SIZE);
+        int index = (int) (position - readBufferStart);
+        int length = readBuffer.getInt(index);
+        if (length < 0 || position + RECORD_HEADER_SIZE + length > segmentSize) {
+            return null;
+        }
+        int crc = readBuffer.getInt(index + 4);
+
+        byte[] payload = new byte[length];
+        read(payload, position + RECORD_HEADER_SIZE);
+        ByteBuffer lengthBytes = ByteBuffer.allocate(4);
+        lengthBytes.putInt(length);
+        return crc(lengthBytes.array(), payload) == crc ? payload : null;
+    }
+
+    private void truncate(long sequenceNumber, long size) throws IOException {
+        closeWriteChannel();
+        try (FileChannel channel = FileChannel.open(getSegmentPath(sequenceNumber), StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+        closeReadChannel();
+    }
+
+    private long getSegmentSize(long sequenceNumber) throws IOException {
+        if (writeChannel != null && sequenceNumber == segments.last()) {
+            return writeSize;
+        }
+        return getReadChannel(sequenceNumber).size();
+    }
+
+    private FileChannel getReadChannel(long sequenceNumber) throws IOException {
+        if (readChannelSegment != sequenceNumber) {
+            closeReadChannel();
+            readChannel = FileChannel.open(getSegmentPath(sequenceNumber), StandardOpenOption.READ);
+            readChannelSegment = sequenceNumber;
+            readChannelVersion = readVersion(readChannel);
+        }
+        return readChannel;
+    }
+
+    /**
+     * @return the version of the segment or {@value #INVALID_VERSION} if its header is invalid
+     */
+    private int getReadVersion(long sequenceNumber) throws IOException {
+        getReadChannel(sequenceNumber);
+        return readChannelVersion;
+    }
+
+    private static int readVersion(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+        }
+        if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+            return INVALID_VERSION;
+        }
+        int version = header.getInt(4);
+        return version == VERSION ? version : INVALID_VERSION;
+    }
+
+    private void read(byte[] record, long position) throws IOException {
+        if (record.length > readBuffer.capacity()) {
+            ByteBuffer bb = ByteBuffer.wrap(record);
+            while (bb.hasRemaining()) {
+                int read = readChannel.read(bb, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file.");
+                }
+                position += read;
+            }
+            return;
+        }
+        fill(position, record.length);
+        readBuffer.position((int) (position - readBufferStart));
+        readBuffer.get(record);
+    }
+
+    /**
+     * Makes sure the read buffer contains the given number of bytes of the open read channel from the given position.
+     */
+    private void fill(long position, int length) throws IOException {
+
+        boolean buffered = position >= readBufferStart && position + length <= readBufferStart + readBuffer.limit();
+        if (buffered) {
+            return;
+        }
+
+        readBuffer.clear();
+        readBufferStart = position;
+        while (readBuffer.position() < length) {
+            int read = readChannel.read(readBuffer, readBufferStart + readBuffer.position());
+            if (read < 0) {
+                readBuffer.flip();
+                throw new IOException("Unexpected end of file.");
+            }
+        }
+        readBuffer.flip();
+    }
+
+    private void writeOffset() throws IOException {
+
+        if (offsetChannel == null) {
+            offsetChannel = FileChannel.open(directory.resolve(OFFSET_FILENAME), StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE);
+        }
+        ByteBuffer offset = ByteBuffer.allocate(OFFSET_SIZE);
+        offset.putLong(readSegment);
+        offset.putLong(readPosition);
+        offset.flip();
+        long position = 0;
+        while (offset.hasRemaining()) {
+            position += offsetChannel.write(offset, position);
+        }
+    }
+
+    private void deleteSegment(long sequenceNumber) throws IOException {
+        if (sequenceNumber == readChannelSegment) {
+            closeReadChannel();
+        }
+        if (sequenceNumber == segments.last()) {
+            closeWriteChannel();
+        }
+        segments.remove(sequenceNumber);
+        Files.deleteIfExists(getSegmentPath(sequenceNumber));
+    }
+
+    /**
+     * Deletes all segments and the offset file, all records have been read.
+     */
+    private void clear() throws IOException {
+        close();
+        for (long sequenceNumber : new ArrayList<>(segments)) {
+            deleteSegment(sequenceNumber);
+        }
+        Files.deleteIfExists(directory.resolve(OFFSET_FILENAME));
+        readSegment = 0;
+        readPosition = SEGMENT_HEADER_SIZE;
+    }
+
+    /**
+     * Stores the read offset and forces all written records to the storage device.
+     *
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    void sync() throws IOException {
+        if (!segments.isEmpty()) {
+            writeOffset();
+            offsetChannel.force(false);
+        }
+        if (writeChannel != null) {
+            writeChannel.force(false);
+        }
+    }
+
+    /**
+     * Closes all open files, they are opened again on demand.
+     *
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    void close() throws IOException {
+        closeWriteChannel();
+        closeReadChannel();
+        if (offsetChannel != null) {
+            offsetChannel.close();
+            offsetChannel = null;
+        }
+    }
+
+    private void closeWriteChannel() throws IOException {
+        if (writeChannel != null) {
+            writeChannel.close();
+            writeChannel = null;
+        }
+    }
+
+    private void closeReadChannel() throws IOException {
+        readBuffer.clear();
+        readBuffer.limit(0);
+        if (readChannel != null) {
+            readChannel.close();
+            readChannel = null;
+        }
+        readChannelSegment = -1;
+    }
+}
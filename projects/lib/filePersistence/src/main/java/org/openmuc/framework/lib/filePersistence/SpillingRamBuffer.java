@@ -0,0 +1,335 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.lib.filePersistence;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded RAM buffer in front of a {@link FilePersistence}, shared by the MQTT and AMQP buffer handlers.<br>
+ * <br>
+ * Messages are kept in a lock-free ring limited by a byte budget. When a message does not fit anymore, the producer
+ * takes all messages out of the ring and hands them over to a background spill thread as one batch, then adds its
+ * message to the emptied ring. Only the spill thread writes to disk, grouped by buffer and with one write per file, so
+ * producers never wait for the disk. Without file persistence the oldest messages are dropped instead.<br>
+ * <br>
+ * Occupancy and spill statistics are available through the getters and are logged with every spill on debug level.
+ *
+ * @param <T>
+ *            type of the buffered messages
+ */
+public class SpillingRamBuffer<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpillingRamBuffer.class);
+
+    // the ring has one slot per 64 bytes of budget, within these bounds
+    private static final int MIN_SLOTS = 16;
+    private static final int MAX_SLOTS = 64 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String name;
+    private final long maxBytes;
+    private final FilePersistence filePersistence;
+    private final Function<T, String> bufferOf;
+    private final Function<T, byte[]> payloadOf;
+    private final ByteBudgetRing<T> ring;
+
+    private final Queue<List<T>> pendingBatches = new ConcurrentLinkedQueue<>();
+    private final Object spillLock = new Object();
+    private volatile Thread spillThread;
+    private volatile boolean running = true;
+
+    private final AtomicLong spillRequests = new AtomicLong();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicLong spilledMessages = new AtomicLong();
+    private final AtomicLong spilledBytes = new AtomicLong();
+    private final AtomicLong spillCount = new AtomicLong();
+    private final AtomicLong droppedMessages = new AtomicLong();
+
+    /**
+     * @param name
+     *            name used for the spill thread and in log messages
+     * @param maxBytes
+     *            maximum size of the messages kept in RAM
+     * @param filePersistence
+     *            file persistence to spill to, {@code null} to drop the oldest messages when the buffer is full
+     * @param bufferOf
+     *            returns the file buffer of a message (e.g. the topic)
+     * @param payloadOf
+     *            returns the payload of a message, its length is counted against the byte budget
+     */
+    public SpillingRamBuffer(String name, long maxBytes, FilePersistence filePersistence, Function<T, String> bufferOf,
+            Function<T, byte[]> payloadOf) {
+        this.name = name;
+        this.maxBytes = maxBytes;
+        this.filePersistence = filePersistence;
+        this.bufferOf = bufferOf;
+        this.payloadOf = payloadOf;
+        int slots = (int) Math.max(MIN_SLOTS, Math.min(MAX_SLOTS, maxBytes / 64));
+        ring = new ByteBudgetRing<>(slots, maxBytes, message -> payloadOf.apply(message).length);
+    }
+
+    /**
+     * Adds a message. Never blocks on disk I/O.
+     *
+     * @param message
+     *            the message
+     */
+    public void add(T message) {
+
+        boolean fitsIntoRam = payloadOf.apply(message).length <= maxBytes;
+
+        while (!fitsIntoRam || !ring.offer(message)) {
+            if (filePersistence != null) {
+                List<T> batch = ring.drain();
+                if (!fitsIntoRam) {
+                    batch.add(message);
+                }
+                handOver(batch);
+                if (!fitsIntoRam) {
+                    return;
+                }
+            }
+            else if (!fitsIntoRam) {
+                droppedMessages.incrementAndGet();
+                return;
+            }
+            else if (ring.poll() != null) {
+                droppedMessages.incrementAndGet();
+            }
+        }
+
+        if (logger.isTraceEnabled()) {
+            logger.trace("[{}] maxBufferSize = {} B, currentBufferSize = {} B, messageSize = {} B", name, maxBytes,
+                    ring.getBytes(), payloadOf.apply(message).length);
+        }
+    }
+
+    /**
+     * Takes the oldest message kept in RAM.
+     *
+     * @return the message
+     * @throws NoSuchElementException
+     *             if no message is kept in RAM
+     */
+    public T removeNextMessage() {
+        T message = ring.poll();
+        if (message == null) {
+            throw new NoSuchElementException("RAM buffer is empty");
+        }
+        return message;
+    }
+
+    /**
+     * @return true if no message is kept in RAM. Messages handed over to the spill thread are not counted.
+     */
+    public boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    private void handOver(List<T> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long bytes = 0;
+        for (T message : batch) {
+            bytes += payloadOf.apply(message).length;
+        }
+        pendingBytes.addAndGet(bytes);
+        pendingBatches.add(batch);
+        spillRequests.incrementAndGet();
+
+        Thread thread = spillThread;
+        if (thread == null) {
+            thread = startSpillThread();
+        }
+        LockSupport.unpark(thread);
+    }
+
+    private synchronized Thread startSpillThread() {
+        if (spillThread == null) {
+            Thread thread = new Thread(this::runSpillThread, name + "-spill");
+            thread.setDaemon(true);
+            thread.start();
+            spillThread = thread;
+        }
+        return spillThread;
+    }
+
+    private void runSpillThread() {
+        while (running) {
+            spill();
+            if (pendingBatches.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Writes all batches handed over to the spill thread so far on the calling thread. Called before the file buffers
+     * are read, so they contain every message which left the RAM buffer.
+     */
+    public void flush() {
+        spill();
+    }
+
+    private void spill() {
+        if (filePersistence == null) {
+            return;
+        }
+
+        synchronized (spillLock) {
+            List<T> batch = pendingBatches.poll();
+            if (batch == null) {
+                return;
+            }
+
+            // merge everything pending into one write per buffer
+            Map<String, List<byte[]>> payloadsByBuffer = new LinkedHashMap<>();
+            int messageCount = 0;
+            long bytes = 0;
+            while (batch != null) {
+                for (T message : batch) {
+                    byte[] payload = payloadOf.apply(message);
+                    payloadsByBuffer.computeIfAbsent(bufferOf.apply(message), buffer -> new ArrayList<>())
+                            .add(payload);
+                    ++messageCount;
+                    bytes += payload.length;
+                }
+                batch = pendingBatches.poll();
+            }
+
+            long start = System.nanoTime();
+            synchronized (filePersistence) {
+                for (Map.Entry<String, List<byte[]>> entry : payloadsByBuffer.entrySet()) {
+                    try {
+                        filePersistence.writeBuffersToFile(entry.getKey(), entry.getValue());
+                    } catch (IOException e) {
+                        logger.error("[{}] {}", name, e.getMessage());
+                    }
+                }
+            }
+            long nanos = Math.max(System.nanoTime() - start, 1);
+
+            pendingBytes.addAndGet(-bytes);
+            spilledMessages.addAndGet(messageCount);
+            spilledBytes.addAndGet(bytes);
+            spillCount.incrementAndGet();
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("[{}] moved {} messages ({} B) from RAM to file in {} ms ({} kB/s)", name, messageCount,
+                        bytes, TimeUnit.NANOSECONDS.toMillis(nanos), bytes * 1_000_000L / nanos);
+            }
+        }
+    }
+
+    /**
+     * Stops the spill thread and moves all messages, including those kept in RAM, to the file persistence. Does
+     * nothing without file persistence.
+     */
+    public void persist() {
+        if (filePersistence == null) {
+            return;
+        }
+        running = false;
+        Thread thread = spillThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.NANOSECONDS.toMillis(IDLE_PARK_NANOS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        handOver(ring.drain());
+        spill();
+    }
+
+    /**
+     * @return size of the messages kept in RAM in bytes
+     */
+    public long getBufferedBytes() {
+        return ring.getBytes();
+    }
+
+    /**
+     * @return number of messages kept in RAM
+     */
+    public int getBufferedMessages() {
+        return ring.size();
+    }
+
+    /**
+     * @return number of batches handed over to the spill thread. Changes whenever messages left the RAM buffer for the
+     *         file buffer.
+     */
+    public long getSpillRequests() {
+        return spillRequests.get();
+    }
+
+    /**
+     * @return size of the messages handed over to the spill thread and not yet written in bytes
+     */
+    public long getPendingSpillBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * @return number of messages written to the file persistence
+     */
+    public long getSpilledMessages() {
+        return spilledMessages.get();
+    }
+
+    /**
+     * @return size of the messages written to the file persistence in bytes
+     */
+    public long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+
+    /**
+     * @return number of batch writes to the file persistence
+     */
+    public long getSpillCount() {
+        return spillCount.get();
+    }
+
+    /**
+     * @return number of messages dropped because the RAM buffer was full and no file persistence is configured
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+}
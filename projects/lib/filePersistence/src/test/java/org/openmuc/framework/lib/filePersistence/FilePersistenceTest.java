@@ -23,7 +23,13 @@ package org.openmuc.framework.lib.filePersistence;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -57,18 +63,26 @@ class FilePersistenceTest {
         return new FilePersistence(DIRECTORY, 2, 1);
     }
 
+    // a file has an 8 byte header, every message an 8 byte header with length and CRC
+
     private void write512Byte(FilePersistence filePersistence, String buffer) throws IOException {
-        filePersistence.writeBufferToFile(buffer, LOREM_IPSUM_1_KB.substring(513).getBytes());
+        // 500 B + 8 B = 508 B, two of them fit into a file
+        filePersistence.writeBufferToFile(buffer, LOREM_IPSUM_1_KB.substring(524).getBytes());
     }
 
     private void write512ByteUnique(FilePersistence filePersistence, String buffer, int id) throws IOException {
-        String message = LOREM_IPSUM_1_KB.substring(514);
+        String message = LOREM_IPSUM_1_KB.substring(525);
         message += id;
         filePersistence.writeBufferToFile(buffer, message.getBytes());
     }
 
     private void write1KB(FilePersistence filePersistence, String buffer) throws IOException {
-        filePersistence.writeBufferToFile(buffer, LOREM_IPSUM_1_KB.substring(1).getBytes());
+        // 8 B + 8 B + 1008 B = 1024 B fills a file
+        filePersistence.writeBufferToFile(buffer, LOREM_IPSUM_1_KB.substring(16).getBytes());
+    }
+
+    private File getSegment(String buffer, int sequenceNumber) {
+        return FileSystems.getDefault().getPath(DIRECTORY, buffer, "buffer." + sequenceNumber + ".seg").toFile();
     }
 
     @Test
@@ -81,7 +95,7 @@ class FilePersistenceTest {
     @Test
     void writeWithTooBigPayload() {
         FilePersistence filePersistence = getFilePersistence();
-        // maxFileSize is 1024 Bytes, payload + newline char = 1025 Bytes
+        // maxFileSize is 1024 Bytes, header + record header + payload = 1040 Bytes
         Assertions.assertThrows(IOException.class,
                 () -> filePersistence.writeBufferToFile("test", LOREM_IPSUM_1_KB.getBytes()));
     }
@@ -100,19 +114,19 @@ class FilePersistenceTest {
     void writeBufferToFile() throws IOException {
         FilePersistence filePersistence = getFilePersistence();
         String buffer = "test";
-        File file1 = FileSystems.getDefault().getPath(DIRECTORY, buffer, "buffer.0.log").toFile();
-        File file2 = FileSystems.getDefault().getPath(DIRECTORY, buffer, "buffer.1.log").toFile();
-        File file3 = FileSystems.getDefault().getPath(DIRECTORY, buffer, "buffer.2.log").toFile();
-        write512Byte(filePersistence, buffer); // 512 B
+        File file1 = getSegment(buffer, 0);
+        File file2 = getSegment(buffer, 1);
+        File file3 = getSegment(buffer, 2);
+        write512Byte(filePersistence, buffer); // 516 B
         Assertions.assertTrue(file1.exists() && !file2.exists() && !file3.exists());
-        write512Byte(filePersistence, buffer); // 512 B + 512 B = 1024 B
+        write512Byte(filePersistence, buffer); // 516 B + 508 B = 1024 B
         // File not full
         Assertions.assertTrue(file1.exists() && !file2.exists() && !file3.exists());
-        write512Byte(filePersistence, buffer); // 1024 B + 512 B > 1024 B -> new file 512 B
-        Assertions.assertTrue(file1.exists() && file2.exists() && !file3.exists());
-        // maxFileCount = 2 recognized -> no new file (rotation)
-        write1KB(filePersistence, buffer); // 512 B + 1024 B > 1024 B -> override file
+        write512Byte(filePersistence, buffer); // 1024 B + 508 B > 1024 B -> new file 516 B
         Assertions.assertTrue(file1.exists() && file2.exists() && !file3.exists());
+        // maxFileCount = 2 recognized -> oldest file is deleted (rotation)
+        write1KB(filePersistence, buffer); // 516 B + 1016 B > 1024 B -> new file, oldest deleted
+        Assertions.assertTrue(!file1.exists() && file2.exists() && file3.exists());
     }
 
     @Test
@@ -122,22 +136,21 @@ class FilePersistenceTest {
         write512Byte(filePersistence, buffer);
         write1KB(filePersistence, buffer);
 
-        // Newline is not part of message so length is 1 Byte less
-        Assertions.assertEquals(511, filePersistence.getMessage(buffer).length);
-        Assertions.assertEquals(1023, filePersistence.getMessage(buffer).length);
+        Assertions.assertEquals(500, filePersistence.getMessage(buffer).length);
+        Assertions.assertEquals(1008, filePersistence.getMessage(buffer).length);
         // buffer empty
         Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
 
         write1KB(filePersistence, buffer); // new file 1024 B
-        write512ByteUnique(filePersistence, buffer, 1); // new file 512 B
-        write512ByteUnique(filePersistence, buffer, 2); // 512 B + 512 B = 1024 B
+        write512ByteUnique(filePersistence, buffer, 1); // new file 516 B
+        write512ByteUnique(filePersistence, buffer, 2); // 516 B + 508 B = 1024 B
         write512ByteUnique(filePersistence, buffer, 3); // > 1024 B message is overriden
         write512ByteUnique(filePersistence, buffer, 4); // 1024 B
         write512ByteUnique(filePersistence, buffer, 5); // > 1024 B message is overriden
 
-        Assertions.assertEquals('3', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('4', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('5', filePersistence.getMessage(buffer)[510]);
+        Assertions.assertEquals('3', filePersistence.getMessage(buffer)[499]);
+        Assertions.assertEquals('4', filePersistence.getMessage(buffer)[499]);
+        Assertions.assertEquals('5', filePersistence.getMessage(buffer)[499]);
         Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
     }
 
@@ -148,26 +161,182 @@ class FilePersistenceTest {
         write512Byte(filePersistence, buffer);
         write1KB(filePersistence, buffer);
 
-        // Newline is not part of message so length is 1 Byte less
-        Assertions.assertEquals(511, filePersistence.getMessage(buffer).length);
-        Assertions.assertEquals(1023, filePersistence.getMessage(buffer).length);
+        Assertions.assertEquals(500, filePersistence.getMessage(buffer).length);
+        Assertions.assertEquals(1008, filePersistence.getMessage(buffer).length);
         // buffer empty
         Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
 
         write1KB(filePersistence, buffer); // new file 1024 B
-        write512ByteUnique(filePersistence, buffer, 1); // new file 512 B
-        write512ByteUnique(filePersistence, buffer, 2); // 512 B + 512 B = 1024 B
+        write512ByteUnique(filePersistence, buffer, 1); // new file 516 B
+        write512ByteUnique(filePersistence, buffer, 2); // 516 B + 508 B = 1024 B
         write512ByteUnique(filePersistence, buffer, 3); // > 1024 B message is new file
         write512ByteUnique(filePersistence, buffer, 4); // 1024 B
         write512ByteUnique(filePersistence, buffer, 5); // > 1024 B message is overriden
         write512ByteUnique(filePersistence, buffer, 6); // 1024 B
         write512ByteUnique(filePersistence, buffer, 7); // > 1024 B message is overriden
 
-        Assertions.assertEquals('3', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('4', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('5', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('6', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('7', filePersistence.getMessage(buffer)[510]);
+        Assertions.assertEquals('3', filePersistence.getMessage(buffer)[499]);
+        Assertions.assertEquals('4', filePersistence.getMessage(buffer)[499]);
+        Assertions.assertEquals('5', filePersistence.getMessage(buffer)[499]);
+        Assertions.assertEquals('6', filePersistence.getMessage(buffer)[499]);
+        Assertions.assertEquals('7', filePersistence.getMessage(buffer)[499]);
+        Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
+    }
+
+    @Test
+    void readOffsetIsPersisted() throws IOException {
+        FilePersistence filePersistence = getFilePersistence();
+        String buffer = "test";
+        for (int i = 0; i < 3; i++) {
+            filePersistence.writeBufferToFile(buffer, ("message" + i).getBytes());
+        }
+        Assertions.assertEquals("message0", new String(filePersistence.getMessage(buffer)));
+        filePersistence.restructure();
+
+        // e.g. after a restart
+        filePersistence = getFilePersistence();
+        Assertions.assertTrue(filePersistence.fileExistsFor(buffer));
+        Assertions.assertEquals("message1", new String(filePersistence.getMessage(buffer)));
+        Assertions.assertEquals("message2", new String(filePersistence.getMessage(buffer)));
+        Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
+    }
+
+    @Test
+    void getMessagesInBulk() throws IOException {
+        FilePersistence filePersistence = new FilePersistence(DIRECTORY, 10, 1);
+        String buffer = "test";
+        for (int i = 0; i < 100; i++) {
+            filePersistence.writeBufferToFile(buffer, ("message" + i).getBytes());
+        }
+
+        List<byte[]> messages = filePersistence.getMessages(buffer, 60);
+        Assertions.assertEquals(60, messages.size());
+        Assertions.assertEquals("message0", new String(messages.get(0)));
+        Assertions.assertEquals("message59", new String(messages.get(59)));
+
+        // the messages span several files
+        messages = filePersistence.getMessages(buffer, 60);
+        Assertions.assertEquals(40, messages.size());
+        Assertions.assertEquals("message99", new String(messages.get(39)));
+        Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
+        Assertions.assertTrue(filePersistence.getMessages(buffer, 60).isEmpty());
+    }
+
+    @Test
+    void migrateNewlineFiles() throws IOException {
+        Path bufferPath = FileSystems.getDefault().getPath(DIRECTORY, "legacy");
+        Files.createDirectories(bufferPath);
+        File rotatedFile = bufferPath.resolve("buffer.1.log").toFile();
+        File currentFile = bufferPath.resolve("buffer.0.log").toFile();
+        Files.write(rotatedFile.toPath(), "first\nsecond\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(currentFile.toPath(), "third\n".getBytes(StandardCharsets.UTF_8));
+
+        FilePersistence filePersistence = getFilePersistence();
+        Assertions.assertTrue(filePersistence.fileExistsFor("legacy"));
+        Assertions.assertFalse(rotatedFile.exists() || currentFile.exists());
+
+        List<byte[]> messages = filePersistence.getMessages("legacy", 10);
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertEquals("first", new String(messages.get(0)));
+        Assertions.assertEquals("second", new String(messages.get(1)));
+        Assertions.assertEquals("third", new String(messages.get(2)));
+    }
+
+    @Test
+    void binaryPayload() throws IOException {
+        FilePersistence filePersistence = getFilePersistence();
+        byte[] payload = new byte[256];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        filePersistence.writeBufferToFile("test", payload);
+        filePersistence.writeBufferToFile("test", "\n\n".getBytes());
+
+        Assertions.assertArrayEquals(payload, filePersistence.getMessage("test"));
+        Assertions.assertArrayEquals("\n\n".getBytes(), filePersistence.getMessage("test"));
+    }
+
+    @Test
+    void recoverTornWrite() throws IOException {
+        FilePersistence filePersistence = new FilePersistence(DIRECTORY, 2, 4);
+        String buffer = "test";
+        for (int i = 0; i < 3; i++) {
+            filePersistence.writeBufferToFile(buffer, ("message" + i).getBytes());
+        }
+        filePersistence.restructure();
+
+        // power loss while the last message was written
+        Path segment = getSegment(buffer, 0).toPath();
+        byte[] content = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(content, content.length - 3));
+
+        filePersistence = new FilePersistence(DIRECTORY, 2, 4);
+        filePersistence.writeBufferToFile(buffer, "message3".getBytes());
+        List<byte[]> messages = filePersistence.getMessages(buffer, 10);
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertEquals("message1", new String(messages.get(1)));
+        Assertions.assertEquals("message3", new String(messages.get(2)));
+    }
+
+    @Test
+    void corruptedTailIsDropped() throws IOException {
+        FilePersistence filePersistence = new FilePersistence(DIRECTORY, 2, 4);
+        String buffer = "test";
+        for (int i = 0; i < 3; i++) {
+            filePersistence.writeBufferToFile(buffer, ("message" + i).getBytes());
+        }
+        filePersistence.restructure();
+
+        // the last message is complete, but its last payload byte is flipped, so the CRC doesn't match
+        Path segment = getSegment(buffer, 0).toPath();
+        byte[] content = Files.readAllBytes(segment);
+        content[content.length - 1] ^= 0xFF;
+        Files.write(segment, content);
+
+        filePersistence = new FilePersistence(DIRECTORY, 2, 4);
+        List<byte[]> messages = filePersistence.getMessages(buffer, 10);
+        Assertions.assertEquals(2, messages.size());
+        Assertions.assertEquals("message0", new String(messages.get(0)));
+        Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
+    }
+
+    @Test
+    void truncatedTailIsDropped() throws IOException {
+        FilePersistence filePersistence = new FilePersistence(DIRECTORY, 2, 4);
+        String buffer = "test";
+        for (int i = 0; i < 3; i++) {
+            filePersistence.writeBufferToFile(buffer, ("message" + i).getBytes());
+        }
+        filePersistence.restructure();
+
+        // only the first two bytes of the header of the last message were written
+        Path segment = getSegment(buffer, 0).toPath();
+        byte[] content = Files.readAllBytes(segment);
+        int recordSize = SegmentedLog.RECORD_HEADER_SIZE + "message2".length();
+        Files.write(segment, Arrays.copyOf(content, content.length - recordSize + 2));
+
+        filePersistence = new FilePersistence(DIRECTORY, 2, 4);
+        List<byte[]> messages = filePersistence.getMessages(buffer, 10);
+        Assertions.assertEquals(2, messages.size());
+        Assertions.assertEquals("message1", new String(messages.get(1)));
+        Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
+    }
+
+    @Test
+    void segmentOfUnknownVersionIsDropped() throws IOException {
+        FilePersistence filePersistence = new FilePersistence(DIRECTORY, 2, 4);
+        String buffer = "test";
+        filePersistence.writeBufferToFile(buffer, "message".getBytes());
+        filePersistence.restructure();
+
+        // version 1, records without CRC
+        Path segment = getSegment(buffer, 0).toPath();
+        byte[] content = Files.readAllBytes(segment);
+        ByteBuffer.wrap(content).putInt(4, 1);
+        Files.write(segment, content);
+
+        filePersistence = new FilePersistence(DIRECTORY, 2, 4);
+        Assertions.assertTrue(filePersistence.getMessages(buffer, 10).isEmpty());
         Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
     }
 }
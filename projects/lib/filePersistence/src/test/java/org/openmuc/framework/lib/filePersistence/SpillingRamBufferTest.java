@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.lib.filePersistence;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SpillingRamBufferTest {
+    private static final String DIRECTORY = "/tmp/openmuc/spilling_ram_buffer";
+    private static final String BUFFER = "spill";
+
+    @AfterEach
+    void cleanUp() {
+        deleteDirectory(FileSystems.getDefault().getPath(DIRECTORY).toFile());
+    }
+
+    private void deleteDirectory(File directory) {
+        if (!directory.exists()) {
+            return;
+        }
+        for (File child : directory.listFiles()) {
+            if (child.isDirectory()) {
+                deleteDirectory(child);
+            }
+            else {
+                child.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static SpillingRamBuffer<String> newBuffer(long maxBytes, FilePersistence filePersistence) {
+        return new SpillingRamBuffer<>("test", maxBytes, filePersistence, message -> BUFFER,
+                message -> message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String message(int id, int length) {
+        StringBuilder sb = new StringBuilder(String.valueOf(id));
+        while (sb.length() < length) {
+            sb.append('.');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void fullRamIsSpilledAsOneBatch() {
+        FilePersistence filePersistence = new FilePersistence(DIRECTORY, 2, 4);
+        SpillingRamBuffer<String> buffer = newBuffer(1024, filePersistence);
+
+        for (int i = 0; i < 4; i++) {
+            buffer.add(message(i, 300));
+        }
+        buffer.flush();
+
+        // the first three messages were moved to file at once, the newest one stays in RAM
+        Assertions.assertEquals(1, buffer.getSpillCount());
+        Assertions.assertEquals(3, buffer.getSpilledMessages());
+        Assertions.assertEquals(900, buffer.getSpilledBytes());
+        Assertions.assertEquals(0, buffer.getPendingSpillBytes());
+        Assertions.assertEquals(1, buffer.getBufferedMessages());
+        Assertions.assertEquals(300, buffer.getBufferedBytes());
+
+        List<byte[]> messages = filePersistence.getMessages(BUFFER, 10);
+        Assertions.assertEquals(3, messages.size());
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(message(i, 300), new String(messages.get(i), StandardCharsets.UTF_8));
+        }
+        Assertions.assertEquals(message(3, 300), buffer.removeNextMessage());
+        Assertions.assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void oldestMessagesAreDroppedWithoutFilePersistence() {
+        SpillingRamBuffer<String> buffer = newBuffer(1024, null);
+
+        for (int i = 0; i < 5; i++) {
+            buffer.add(message(i, 300));
+        }
+        buffer.add(message(5, 2000));
+
+        Assertions.assertEquals(3, buffer.getDroppedMessages());
+        Assertions.assertEquals(message(2, 300), buffer.removeNextMessage());
+        Assertions.assertEquals(message(3, 300), buffer.removeNextMessage());
+        Assertions.assertEquals(message(4, 300), buffer.removeNextMessage());
+        Assertions.assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void concurrentProducersLoseNoMessage() throws InterruptedException {
+        FilePersistence filePersistence = new FilePersistence(DIRECTORY, 4, 1024);
+        SpillingRamBuffer<String> buffer = newBuffer(4096, filePersistence);
+
+        int producerCount = 4;
+        int messagesPerProducer = 2000;
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < producerCount; p++) {
+            int first = p * messagesPerProducer;
+            Thread producer = new Thread(() -> {
+                for (int i = first; i < first + messagesPerProducer; i++) {
+                    buffer.add(message(i, 50));
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        buffer.persist();
+
+        Assertions.assertTrue(buffer.isEmpty());
+        Set<String> read = new HashSet<>();
+        for (byte[] message : filePersistence.getMessages(BUFFER, producerCount * messagesPerProducer + 1)) {
+            read.add(new String(message, StandardCharsets.UTF_8));
+        }
+        Assertions.assertEquals(producerCount * messagesPerProducer, read.size());
+        Assertions.assertEquals(read.size(), buffer.getSpilledMessages());
+    }
+}
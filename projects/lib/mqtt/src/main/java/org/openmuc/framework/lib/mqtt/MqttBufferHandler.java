@@ -22,26 +22,27 @@
 package org.openmuc.framework.lib.mqtt;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.List;
 
 import org.openmuc.framework.lib.filePersistence.FilePersistence;
+import org.openmuc.framework.lib.filePersistence.SpillingRamBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Buffer handler with RAM buffer and managed {@link FilePersistence}
+ * Buffer handler with RAM buffer and managed {@link FilePersistence}. Full RAM buffers are moved to the file buffer by
+ * a background thread, see {@link SpillingRamBuffer}.
  */
 public class MqttBufferHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(MqttBufferHandler.class);
 
-    private final Queue<MessageTuple> buffer = new LinkedList<>();
     private final long maxBufferSizeBytes;
-    private long currentBufferSize = 0L;
     private final int maxFileCount;
     private final FilePersistence filePersistence;
+    private final SpillingRamBuffer<MessageTuple> buffer;
 
     /**
      * Initializes buffers with specified properties.
@@ -134,6 +135,8 @@ public class MqttBufferHandler {
         else {
             filePersistence = null;
         }
+        buffer = new SpillingRamBuffer<>("MqttBuffer", maxBufferSizeBytes, filePersistence,
+                messageTuple -> messageTuple.topic, messageTuple -> messageTuple.message);
     }
 
     private boolean isFileBufferEnabled() {
@@ -141,56 +144,7 @@ public class MqttBufferHandler {
     }
 
     public void add(String topic, byte[] message) {
-
-        if (isBufferTooFull(message)) {
-            handleFull(topic, message);
-        }
-        else {
-            synchronized (buffer) {
-                buffer.add(new MessageTuple(topic, message));
-                currentBufferSize += message.length;
-            }
-
-            if (logger.isTraceEnabled()) {
-                logger.trace("maxBufferSize = {}, currentBufferSize = {}, messageSize = {}", maxBufferSizeBytes,
-                        currentBufferSize, message.length);
-            }
-        }
-
-    }
-
-    private boolean isBufferTooFull(byte[] message) {
-        return currentBufferSize + message.length > maxBufferSizeBytes;
-    }
-
-    private void handleFull(String topic, byte[] message) {
-        if (isFileBufferEnabled()) {
-            addToFilePersistence();
-            add(topic, message);
-        }
-        else if (message.length <= maxBufferSizeBytes) {
-            removeNextMessage();
-            add(topic, message);
-        }
-    }
-
-    private void addToFilePersistence() {
-        logger.debug("move buffered messages from RAM to file");
-        while (!buffer.isEmpty()) {
-            MessageTuple messageTuple = removeNextMessage();
-            writeBufferToFile(messageTuple);
-        }
-        currentBufferSize = 0;
-    }
-
-    private void writeBufferToFile(MessageTuple messageTuple) {
-        try {
-            synchronized (filePersistence) {
-                filePersistence.writeBufferToFile(messageTuple.topic, messageTuple.message);
-            }
-        } catch (IOException e) {
-            logger.error(e.getMessage());
-        }
+        buffer.add(new MessageTuple(topic, message));
     }
 
     public boolean isEmpty() {
@@ -198,17 +152,13 @@ public class MqttBufferHandler {
     }
 
     public MessageTuple removeNextMessage() {
-        MessageTuple removedMessage;
-        synchronized (buffer) {
-            removedMessage = buffer.remove();
-            currentBufferSize -= removedMessage.message.length;
-        }
-        return removedMessage;
+        return buffer.removeNextMessage();
     }
 
     public String[] getBuffers() {
         String[] buffers;
         if (isFileBufferEnabled()) {
+            buffer.flush();
             buffers = filePersistence.getBuffers();
         }
         else {
@@ -217,19 +167,112 @@ public class MqttBufferHandler {
         return buffers;
     }
 
+    /**
+     * Reads the next messages of a file buffer at once.
+     *
+     * @param buffer
+     *            the file buffer (topic)
+     * @param maxMessages
+     *            maximum number of messages to read
+     * @return the messages, oldest first, empty if the file buffer is empty or disabled
+     */
+    public List<MessageTuple> getMessages(String buffer, int maxMessages) {
+        List<MessageTuple> messages = new ArrayList<>();
+        if (isFileBufferEnabled()) {
+            synchronized (filePersistence) {
+                for (byte[] message : filePersistence.getMessages(buffer, maxMessages)) {
+                    messages.add(new MessageTuple(buffer, message));
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * @return true if no file buffer contains unread messages
+     */
+    public boolean isFileBufferEmpty() {
+        for (String buffer : getBuffers()) {
+            synchronized (filePersistence) {
+                if (filePersistence.fileExistsFor(buffer)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     public Iterator<MessageTuple> getMessageIterator(String buffer) {
         return new MqttBufferMessageIterator(buffer, filePersistence);
     }
 
     public void persist() {
         if (isFileBufferEnabled()) {
+            buffer.persist();
             try {
-                filePersistence.restructure();
-                addToFilePersistence();
+                synchronized (filePersistence) {
+                    filePersistence.restructure();
+                }
             } catch (IOException e) {
                 logger.error("Buffer file restructuring error: {}", e.getMessage());
                 e.printStackTrace();
             }
         }
     }
+
+    /**
+     * @return size of the messages kept in RAM in bytes
+     */
+    public long getBufferedBytes() {
+        return buffer.getBufferedBytes();
+    }
+
+    /**
+     * @return number of messages kept in RAM
+     */
+    public int getBufferedMessages() {
+        return buffer.getBufferedMessages();
+    }
+
+    /**
+     * @return number of batch moves from RAM to file requested so far, including those not yet written
+     */
+    public long getSpillRequests() {
+        return buffer.getSpillRequests();
+    }
+
+    /**
+     * @return size of the messages waiting to be moved from RAM to file in bytes
+     */
+    public long getPendingSpillBytes() {
+        return buffer.getPendingSpillBytes();
+    }
+
+    /**
+     * @return number of messages moved from RAM to file
+     */
+    public long getSpilledMessages() {
+        return buffer.getSpilledMessages();
+    }
+
+    /**
+     * @return size of the messages moved from RAM to file in bytes
+     */
+    public long getSpilledBytes() {
+        return buffer.getSpilledBytes();
+    }
+
+    /**
+     * @return number of batch moves from RAM to file
+     */
+    public long getSpillCount() {
+        return buffer.getSpillCount();
+    }
+
+    /**
+     * @return number of messages dropped because the RAM buffer was full and the file buffer is disabled
+     */
+    public long getDroppedMessages() {
+        return buffer.getDroppedMessages();
+    }
 }
@@ -21,14 +21,23 @@
 
 package org.openmuc.framework.lib.mqtt;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import org.openmuc.framework.lib.filePersistence.FilePersistence;
 
+/**
+ * Drains a file buffer. The messages are read in batches, each batch with a single update of the read offset.
+ */
 public class MqttBufferMessageIterator implements Iterator<MessageTuple> {
 
+    private static final int BATCH_SIZE = 256;
+
     private final FilePersistence filePersistence;
     private final String buffer;
+    private final Deque<byte[]> batch = new ArrayDeque<>();
 
     public MqttBufferMessageIterator(String buffer, FilePersistence filePersistence) {
         this.buffer = buffer;
@@ -37,15 +46,24 @@ public class MqttBufferMessageIterator implements Iterator<MessageTuple> {
 
     @Override
     public boolean hasNext() {
-        return filePersistence.fileExistsFor(buffer);
+        if (!batch.isEmpty()) {
+            return true;
+        }
+        synchronized (filePersistence) {
+            return filePersistence.fileExistsFor(buffer);
+        }
     }
 
     @Override
     public MessageTuple next() {
-        byte[] message;
-        synchronized (filePersistence) {
-            message = filePersistence.getMessage(buffer);
+        if (batch.isEmpty()) {
+            synchronized (filePersistence) {
+                batch.addAll(filePersistence.getMessages(buffer, BATCH_SIZE));
+            }
+        }
+        if (batch.isEmpty()) {
+            throw new NoSuchElementException();
         }
-        return new MessageTuple(buffer, message);
+        return new MessageTuple(buffer, batch.poll());
     }
 }
@@ -247,6 +247,8 @@ public class MqttConnection {
      * Disconnect from the MQTT broker
      */
     public void disconnect() {
+        // otherwise the connection watch starts a new client after the disconnect
+        connectionWatch.cancel();
         if (settings.isLastWillAlways()) {
             client.publishWith()
                     .topic(settings.getLastWillTopic())
@@ -25,12 +25,20 @@ import java.text.SimpleDateFormat;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.SortedMap;
 import java.util.TimeZone;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,8 +49,13 @@ import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
 public class MqttWriter {
     private static final Logger logger = LoggerFactory.getLogger(MqttWriter.class);
 
+    private static final int RECOVERY_WINDOW = 64;
+    private static final int RECOVERY_BATCH_SIZE = 256;
+    private static final long PROGRESS_LOG_INTERVAL_MS = 10_000;
+    private static final long PERMIT_POLL_INTERVAL_MS = 100;
+
     private final MqttConnection connection;
-    private boolean connected = false;
+    private volatile boolean connected = false;
     private final AtomicBoolean cancelReconnect = new AtomicBoolean(false);
     private LocalDateTime timeOfConnectionLoss;
     private final SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
@@ -50,6 +63,14 @@ public class MqttWriter {
     private final MqttBufferHandler buffer;
     private final String pid;
 
+    private final Object recoveryLock = new Object();
+    private volatile boolean recovering = false;
+    private final AtomicInteger recoveryGeneration = new AtomicInteger();
+    private final AtomicLong recoverySequence = new AtomicLong();
+    private final AtomicLong recoveredMessages = new AtomicLong();
+    private final SortedMap<Long, MessageTuple> redeliveries = new TreeMap<>();
+    private Thread recoveryThread;
+
     public MqttWriter(MqttConnection connection, String pid) {
         this.connection = connection;
         addConnectedListener();
@@ -60,43 +81,6 @@ public class MqttWriter {
         this.pid = pid;
     }
 
-    private void emptyFileBuffer() {
-
-        log("Clearing file buffer.");
-        String[] buffers = buffer.getBuffers();
-        if (buffers.length == 0) {
-            log("File buffer already empty.");
-        }
-        int messageCount = 0;
-        int chunkSize = connection.getSettings().getRecoveryChunkSize();
-        int delay = connection.getSettings().getRecoveryDelay();
-        for (String buffer : buffers) {
-            Iterator<MessageTuple> iterator = this.buffer.getMessageIterator(buffer);
-            while (iterator.hasNext()) {
-                if (!connected) {
-                    warn("Recovery from file buffer interrupted by connection loss.");
-                    return;
-                }
-                MessageTuple messageTuple = iterator.next();
-                if (logger.isTraceEnabled()) {
-                    trace("Resend from file: {}", new String(messageTuple.message));
-                }
-                write(messageTuple.topic, messageTuple.message);
-                messageCount++;
-                if (connection.getSettings().isRecoveryLimitSet() && messageCount == chunkSize) {
-                    messageCount = 0;
-                    try {
-                        Thread.sleep(delay);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-        }
-
-        log("Empty file buffer done.");
-    }
-
     private void addConnectedListener() {
         connection.addConnectedListener(context -> {
 
@@ -110,50 +94,276 @@ public class MqttWriter {
             }
 
             log("connected to broker {}:{}", serverHost, serverPort);
+
+            // new messages are queued behind the buffered ones until the recovery is done
+            int generation;
+            synchronized (recoveryLock) {
+                recovering = true;
+                generation = recoveryGeneration.incrementAndGet();
+            }
             connected = true;
 
             MqttSettings settings = connection.getSettings();
             if (settings.isFirstWillSet()) {
-                write(settings.getFirstWillTopic(), settings.getFirstWillPayload());
+                startPublishing(settings.getFirstWillTopic(), settings.getFirstWillPayload());
             }
 
-            Thread recovery = new Thread(this::emptyBuffer, "MqttRecovery");
-            recovery.start();
+            // an interrupted recovery may still be putting its messages back for redelivery
+            Thread interruptedRecovery = recoveryThread;
+            recoveryThread = new Thread(() -> {
+                if (awaitTermination(interruptedRecovery)) {
+                    recover(generation);
+                }
+            }, "MqttRecovery");
+            recoveryThread.start();
 
         });
     }
 
-    private void emptyBuffer() {
-        log("Clearing memory (RAM) buffer.");
-        if (buffer.isEmpty()) {
-            log("Memory buffer already empty.");
+    /**
+     * Resends all buffered messages, oldest first: messages of an interrupted recovery, then the file buffer and then
+     * the RAM buffer. Up to {@value #RECOVERY_WINDOW} messages are in flight at the same time, the rate is limited by
+     * a token bucket if a recovery limit is configured. New messages are added to the RAM buffer while the recovery is
+     * running, so they are sent after the buffered ones of the same topic.
+     */
+    private void recover(int generation) {
+
+        log("Recovering buffered messages.");
+        MqttSettings settings = connection.getSettings();
+        TokenBucket rateLimiter = null;
+        if (settings.isRecoveryLimitSet()) {
+            rateLimiter = new TokenBucket(settings.getRecoveryChunkSize(),
+                    settings.getRecoveryChunkSize() * 1000.0 / settings.getRecoveryDelay());
         }
-        int messageCount = 0;
-        int chunkSize = connection.getSettings().getRecoveryChunkSize();
-        int delay = connection.getSettings().getRecoveryDelay();
-        while (!buffer.isEmpty()) {
-            if (!connected) {
-                warn("Recovery from memory buffer interrupted by connection loss.");
+        RecoveryWindow window = new RecoveryWindow(generation, rateLimiter);
+
+        while (true) {
+            long spillRequests = buffer.getSpillRequests();
+            long acknowledged = window.acknowledged.get();
+            if (!resendRedeliveries(window) || !resendFileBuffer(window) || !resendRamBuffer(window, spillRequests)
+                    || !window.awaitAcknowledgements()) {
+                warn("Recovery interrupted by connection loss. Resent {} messages.", window.acknowledged.get());
                 return;
             }
-            MessageTuple messageTuple = buffer.removeNextMessage();
-            if (logger.isTraceEnabled()) {
-                trace("Resend from memory: {}", new String(messageTuple.message));
+
+            synchronized (recoveryLock) {
+                if (generation != recoveryGeneration.get()) {
+                    return;
+                }
+                boolean drained;
+                synchronized (redeliveries) {
+                    drained = redeliveries.isEmpty();
+                }
+                if (drained && buffer.isEmpty() && buffer.getSpillRequests() == spillRequests
+                        && buffer.isFileBufferEmpty()) {
+                    recovering = false;
+                    break;
+                }
             }
-            write(messageTuple.topic, messageTuple.message);
-            messageCount++;
-            if (connection.getSettings().isRecoveryLimitSet() && messageCount == chunkSize) {
-                messageCount = 0;
+
+            if (window.acknowledged.get() == acknowledged) {
+                // nothing got through, e.g. the broker rejects the messages, do not retry at full speed
                 try {
-                    Thread.sleep(delay);
+                    Thread.sleep(PERMIT_POLL_INTERVAL_MS);
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    Thread.currentThread().interrupt();
+                    return;
                 }
             }
+        }
+
+        window.logProgress();
+        log("Recovery done.");
+    }
 
+    private static boolean awaitTermination(Thread thread) {
+        if (thread == null) {
+            return true;
+        }
+        try {
+            thread.join();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean resendRedeliveries(RecoveryWindow window) {
+        List<MessageTuple> messages;
+        synchronized (redeliveries) {
+            messages = new ArrayList<>(redeliveries.values());
+            redeliveries.clear();
+        }
+        return resendAll(window, messages);
+    }
+
+    private boolean resendFileBuffer(RecoveryWindow window) {
+        for (String topic : buffer.getBuffers()) {
+            List<MessageTuple> messages;
+            while (!(messages = buffer.getMessages(topic, RECOVERY_BATCH_SIZE)).isEmpty()) {
+                if (!resendAll(window, messages)) {
+                    return false;
+                }
+            }
         }
-        log("Empty memory buffer done.");
-        emptyFileBuffer();
+        return true;
+    }
+
+    /**
+     * @return false if the recovery was interrupted, the messages not sent are kept for the next recovery then
+     */
+    private boolean resendAll(RecoveryWindow window, List<MessageTuple> messages) {
+        Iterator<MessageTuple> iterator = messages.iterator();
+        while (iterator.hasNext()) {
+            if (!window.resend(iterator.next())) {
+                while (iterator.hasNext()) {
+                    redeliver(recoverySequence.incrementAndGet(), iterator.next());
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean resendRamBuffer(RecoveryWindow window, long spillRequests) {
+        while (true) {
+            MessageTuple messageTuple;
+            synchronized (recoveryLock) {
+                // older messages were moved to file in the meantime, they have to be sent first
+                if (buffer.isEmpty() || buffer.getSpillRequests() != spillRequests) {
+                    return true;
+                }
+                messageTuple = buffer.removeNextMessage();
+            }
+            if (!window.resend(messageTuple)) {
+                return false;
+            }
+        }
+    }
+
+    private boolean isRecoveryActive(int generation) {
+        return connected && generation == recoveryGeneration.get();
+    }
+
+    /**
+     * Keeps track of the messages in flight of one recovery run.
+     */
+    private class RecoveryWindow {
+
+        private final int generation;
+        private final TokenBucket rateLimiter;
+        private final Semaphore inFlight = new Semaphore(RECOVERY_WINDOW);
+        private final AtomicLong acknowledged = new AtomicLong();
+        private final long start = System.currentTimeMillis();
+        private long nextProgressLog = start + PROGRESS_LOG_INTERVAL_MS;
+
+        RecoveryWindow(int generation, TokenBucket rateLimiter) {
+            this.generation = generation;
+            this.rateLimiter = rateLimiter;
+        }
+
+        /**
+         * Publishes a buffered message as soon as the window and the rate limit allow it. If the recovery is
+         * interrupted, the message is kept for the next recovery.
+         *
+         * @return false if the recovery was interrupted
+         */
+        boolean resend(MessageTuple messageTuple) {
+            long sequenceNumber = recoverySequence.incrementAndGet();
+            if (!acquirePermit() || (rateLimiter != null && !rateLimiter.acquire(() -> !isRecoveryActive(generation)))) {
+                redeliver(sequenceNumber, messageTuple);
+                return false;
+            }
+            if (logger.isTraceEnabled()) {
+                trace("Resend: {}", new String(messageTuple.message));
+            }
+
+            publish(messageTuple.topic, messageTuple.message).whenComplete((publish, exception) -> {
+                if (exception != null) {
+                    redeliver(sequenceNumber, messageTuple);
+                }
+                else {
+                    acknowledged.incrementAndGet();
+                    recoveredMessages.incrementAndGet();
+                }
+                inFlight.release();
+            });
+
+            long now = System.currentTimeMillis();
+            if (now >= nextProgressLog) {
+                nextProgressLog = now + PROGRESS_LOG_INTERVAL_MS;
+                logProgress();
+            }
+            return true;
+        }
+
+        private boolean acquirePermit() {
+            try {
+                while (!inFlight.tryAcquire(PERMIT_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                    if (!isRecoveryActive(generation)) {
+                        return false;
+                    }
+                }
+                if (!isRecoveryActive(generation)) {
+                    inFlight.release();
+                    return false;
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * @return false if the recovery was interrupted before all messages in flight were acknowledged
+         */
+        boolean awaitAcknowledgements() {
+            try {
+                while (!inFlight.tryAcquire(RECOVERY_WINDOW, PERMIT_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                    if (!isRecoveryActive(generation)) {
+                        return false;
+                    }
+                }
+                inFlight.release(RECOVERY_WINDOW);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        void logProgress() {
+            long seconds = Math.max((System.currentTimeMillis() - start) / 1000, 1);
+            log("Recovery: {} messages resent ({} msg/s), {} in flight, {} B in RAM buffer.", acknowledged.get(),
+                    acknowledged.get() / seconds, RECOVERY_WINDOW - inFlight.availablePermits(),
+                    buffer.getBufferedBytes());
+        }
+    }
+
+    /**
+     * Keeps a message which could not be resent. It is sent first on the next recovery, in the order it was taken from
+     * the buffer.
+     */
+    private void redeliver(long sequenceNumber, MessageTuple messageTuple) {
+        synchronized (redeliveries) {
+            redeliveries.put(sequenceNumber, messageTuple);
+        }
+    }
+
+    /**
+     * @return true while buffered messages are resent after a reconnect
+     */
+    public boolean isRecovering() {
+        return recovering;
+    }
+
+    /**
+     * @return number of buffered messages resent and acknowledged since this writer was created
+     */
+    public long getRecoveredMessageCount() {
+        return recoveredMessages.get();
     }
 
     /**
@@ -213,6 +423,14 @@ public class MqttWriter {
      */
     public void write(String topic, byte[] message) {
         if (connected) {
+            if (recovering) {
+                synchronized (recoveryLock) {
+                    if (recovering) {
+                        buffer.add(topic, message);
+                        return;
+                    }
+                }
+            }
             startPublishing(topic, message);
         }
         else {
@@ -281,6 +499,13 @@ public class MqttWriter {
         cancelReconnect.set(true);
         logger.info("shutting down ");
         log("Saving buffers.");
+        // messages of an interrupted recovery are older than the buffered ones, but the buffer can only be appended to
+        synchronized (redeliveries) {
+            for (MessageTuple messageTuple : redeliveries.values()) {
+                buffer.add(messageTuple.topic, messageTuple.message);
+            }
+            redeliveries.clear();
+        }
         buffer.persist();
     }
 }
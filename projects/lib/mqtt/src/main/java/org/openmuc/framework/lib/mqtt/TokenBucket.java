@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.lib.mqtt;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Token bucket rate limiter. Tokens are refilled continuously at a fixed rate up to the capacity, so short bursts up to
+ * the capacity are sent at once while the long-term rate is limited. Not thread safe, used by a single recovery thread.
+ */
+class TokenBucket {
+
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param capacity
+     *            maximum number of tokens, i.e. the burst size
+     * @param tokensPerSecond
+     *            refill rate
+     */
+    TokenBucket(int capacity, double tokensPerSecond) {
+        this.capacity = Math.max(capacity, 1);
+        tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        tokens = this.capacity;
+        lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes a token, waits until one is available.
+     *
+     * @param cancelled
+     *            checked while waiting, the wait is aborted if it returns true
+     * @return true if a token was taken, false if the wait was cancelled
+     */
+    boolean acquire(BooleanSupplier cancelled) {
+        while (true) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            if (cancelled.getAsBoolean()) {
+                return false;
+            }
+            long waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+            LockSupport.parkNanos(this, Math.min(waitNanos, MAX_WAIT_NANOS));
+        }
+    }
+}
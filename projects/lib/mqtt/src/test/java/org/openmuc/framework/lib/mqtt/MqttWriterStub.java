@@ -21,14 +21,23 @@
 
 package org.openmuc.framework.lib.mqtt;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
 
 /**
- * MqttWriter stub that simulates successful publishes when connection is simulated as connected
+ * MqttWriter stub that simulates successful publishes when connection is simulated as connected. Publishes can be held
+ * back to complete or fail them later, e.g. to simulate a connection loss while messages are in flight.
  */
 public class MqttWriterStub extends MqttWriter {
+    private final List<String> published = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> heldMessages = new ArrayList<>();
+    private final List<CompletableFuture<Mqtt3Publish>> heldFutures = new ArrayList<>();
+    private volatile boolean holdPublishes = false;
+
     public MqttWriterStub(MqttConnection connection) {
         super(connection, "test");
     }
@@ -36,7 +45,71 @@ public class MqttWriterStub extends MqttWriter {
     @Override
     CompletableFuture<Mqtt3Publish> publish(String topic, byte[] message) {
         CompletableFuture<Mqtt3Publish> future = new CompletableFuture<>();
+        synchronized (heldFutures) {
+            if (holdPublishes) {
+                heldMessages.add(new String(message));
+                heldFutures.add(future);
+                return future;
+            }
+        }
+        published.add(new String(message));
         future.complete(Mqtt3Publish.builder().topic("test").build());
         return future;
     }
+
+    /**
+     * @param hold
+     *            true to keep the futures of the following publishes pending until they are completed or failed
+     */
+    void holdPublishes(boolean hold) {
+        holdPublishes = hold;
+    }
+
+    /**
+     * @return payloads of the pending publishes in the order they were sent
+     */
+    List<String> getHeld() {
+        synchronized (heldFutures) {
+            return new ArrayList<>(heldMessages);
+        }
+    }
+
+    /**
+     * Completes the pending publishes successfully.
+     */
+    void completeHeld() {
+        for (CompletableFuture<Mqtt3Publish> future : takeHeld(true)) {
+            future.complete(Mqtt3Publish.builder().topic("test").build());
+        }
+    }
+
+    /**
+     * Fails the pending publishes like the client does when the connection is lost.
+     */
+    void failHeld() {
+        for (CompletableFuture<Mqtt3Publish> future : takeHeld(false)) {
+            future.completeExceptionally(new IllegalStateException("connection lost"));
+        }
+    }
+
+    private List<CompletableFuture<Mqtt3Publish>> takeHeld(boolean delivered) {
+        synchronized (heldFutures) {
+            if (delivered) {
+                published.addAll(heldMessages);
+            }
+            List<CompletableFuture<Mqtt3Publish>> futures = new ArrayList<>(heldFutures);
+            heldMessages.clear();
+            heldFutures.clear();
+            return futures;
+        }
+    }
+
+    /**
+     * @return payloads of all simulated publishes in the order they were sent
+     */
+    List<String> getPublished() {
+        synchronized (published) {
+            return new ArrayList<>(published);
+        }
+    }
 }
@@ -21,6 +21,7 @@
 
 package org.openmuc.framework.lib.mqtt;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -31,6 +32,8 @@ import static org.mockito.Mockito.when;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileSystems;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -98,24 +101,12 @@ public class MqttWriterTest {
 
     @Test
     void testWriteWithReconnectionAndSimulatedDisconnection() throws IOException, InterruptedException {
-        MqttClientDisconnectedContext disconnectedContext = mock(MqttClientDisconnectedContext.class);
-        MqttClientReconnector reconnector = mock(MqttClientReconnector.class);
-        when(reconnector.isReconnect()).thenReturn(true);
-        MqttClientConfig config = mock(MqttClientConfig.class);
-        when(config.getServerHost()).thenReturn("test");
-        Throwable cause = mock(Throwable.class);
-        when(cause.getMessage()).thenReturn("test");
-        MqttDisconnectSource source = MqttDisconnectSource.USER;
-        when(disconnectedContext.getReconnector()).thenReturn(reconnector);
-        when(disconnectedContext.getClientConfig()).thenReturn(config);
-        when(disconnectedContext.getCause()).thenReturn(cause);
-        when(disconnectedContext.getSource()).thenReturn(source);
-        disconnectedListener.onDisconnected(disconnectedContext);
+        simulateDisconnect();
 
         String topic = "topic1";
 
-        File file = FileSystems.getDefault().getPath(DIRECTORY, "topic1", "buffer.0.log").toFile();
-        File file1 = FileSystems.getDefault().getPath(DIRECTORY, "topic1", "buffer.1.log").toFile();
+        File file = FileSystems.getDefault().getPath(DIRECTORY, "topic1", "buffer.0.seg").toFile();
+        File file1 = FileSystems.getDefault().getPath(DIRECTORY, "topic1", "buffer.1.seg").toFile();
 
         String message300bytes = "Lorem ipsum dolor sit amet, consectetuer adipiscing elit. Aenean commodo ligula "
                 + "eget dolor. Aenean massa. Cum sociis natoque penatibus et magnis dis parturient montes, nascetur "
@@ -128,13 +119,15 @@ public class MqttWriterTest {
         // buffer limit not yet reached
         // assertFalse(file.exists() || file1.exists());
         mqttWriter.write(topic, message300bytes.getBytes()); // 1200 > 1024 write to file => 0
-        // buffer limit reached, first file written
+        // buffer limit reached, first file written by the spill thread
+        awaitFile(file);
         assertTrue(file.exists() && !file1.exists());
         mqttWriter.write(topic, message300bytes.getBytes()); // 300
         mqttWriter.write(topic, message300bytes.getBytes()); // 600
         mqttWriter.write(topic, message300bytes.getBytes()); // 900
         mqttWriter.write(topic, message300bytes.getBytes()); // 1200 > 1024 write to file
-        // buffer limit reached, second file written
+        // buffer limit reached, second file written by the spill thread
+        awaitFile(file1);
         assertTrue(file.exists() && file1.exists());
 
         // simulate connection
@@ -146,4 +139,117 @@ public class MqttWriterTest {
         // files should be emptied and therefore removed
         assertFalse(file.exists() || file1.exists());
     }
+
+    @Test
+    void testRecoveryResendsOldestFirst() throws InterruptedException {
+        simulateDisconnect();
+
+        // 10 messages of 200 bytes overflow the 1 kB RAM buffer, the oldest five end up in the file buffer
+        List<String> expected = writeMessages("topic2", 0, 10);
+
+        connectedListener.onConnected(() -> null);
+        awaitRecovery();
+
+        assertFalse(mqttWriter.isRecovering());
+        assertEquals(expected, ((MqttWriterStub) mqttWriter).getPublished());
+        assertEquals(10, mqttWriter.getRecoveredMessageCount());
+    }
+
+    @Test
+    void testFailedResendsAreRetriedInOrder() throws InterruptedException {
+        MqttWriterStub stub = (MqttWriterStub) mqttWriter;
+        simulateDisconnect();
+        List<String> expected = writeMessages("topic3", 0, 10);
+
+        stub.holdPublishes(true);
+        connectedListener.onConnected(() -> null);
+        awaitHeld(stub, 10);
+        stub.failHeld();
+
+        // the recovery retries the failed messages in the order they were taken from the buffer
+        awaitHeld(stub, 10);
+        assertEquals(expected, stub.getHeld());
+        stub.holdPublishes(false);
+        stub.completeHeld();
+        awaitRecovery();
+
+        assertFalse(mqttWriter.isRecovering());
+        assertEquals(expected, stub.getPublished());
+    }
+
+    @Test
+    void testConnectionLossDuringRecovery() throws InterruptedException {
+        MqttWriterStub stub = (MqttWriterStub) mqttWriter;
+        simulateDisconnect();
+        List<String> expected = writeMessages("topic4", 0, 10);
+
+        stub.holdPublishes(true);
+        connectedListener.onConnected(() -> null);
+        awaitHeld(stub, 10);
+        simulateDisconnect();
+        stub.failHeld();
+        stub.holdPublishes(false);
+
+        // newer messages are buffered in RAM and file, the failed ones are redelivered before them
+        expected.addAll(writeMessages("topic4", 10, 10));
+        connectedListener.onConnected(() -> null);
+        awaitRecovery();
+
+        assertFalse(mqttWriter.isRecovering());
+        assertEquals(expected, stub.getPublished());
+        assertEquals(20, mqttWriter.getRecoveredMessageCount());
+    }
+
+    /**
+     * Writes messages of 200 bytes, numbered from first on.
+     *
+     * @return the messages in the order they were written
+     */
+    private List<String> writeMessages(String topic, int first, int count) {
+        List<String> messages = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            String message = String.format("%03d", i);
+            while (message.length() < 200) {
+                message += '.';
+            }
+            messages.add(message);
+            mqttWriter.write(topic, message.getBytes());
+        }
+        return messages;
+    }
+
+    private void awaitRecovery() throws InterruptedException {
+        for (int i = 0; i < 100 && mqttWriter.isRecovering(); i++) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static void awaitHeld(MqttWriterStub stub, int count) throws InterruptedException {
+        for (int i = 0; i < 100 && stub.getHeld().size() < count; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(count, stub.getHeld().size());
+    }
+
+    private void simulateDisconnect() {
+        MqttClientDisconnectedContext disconnectedContext = mock(MqttClientDisconnectedContext.class);
+        MqttClientReconnector reconnector = mock(MqttClientReconnector.class);
+        when(reconnector.isReconnect()).thenReturn(true);
+        MqttClientConfig config = mock(MqttClientConfig.class);
+        when(config.getServerHost()).thenReturn("test");
+        Throwable cause = mock(Throwable.class);
+        when(cause.getMessage()).thenReturn("test");
+        MqttDisconnectSource source = MqttDisconnectSource.USER;
+        when(disconnectedContext.getReconnector()).thenReturn(reconnector);
+        when(disconnectedContext.getClientConfig()).thenReturn(config);
+        when(disconnectedContext.getCause()).thenReturn(cause);
+        when(disconnectedContext.getSource()).thenReturn(source);
+        disconnectedListener.onDisconnected(disconnectedContext);
+    }
+
+    private static void awaitFile(File file) throws InterruptedException {
+        for (int i = 0; i < 100 && !file.exists(); i++) {
+            Thread.sleep(20);
+        }
+    }
 }
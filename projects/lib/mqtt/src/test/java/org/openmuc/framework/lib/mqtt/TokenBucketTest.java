@@ -0,0 +1,83 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.mqtt;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class TokenBucketTest {
+
+    @Test
+    void burstUpToCapacityIsNotDelayed() {
+        TokenBucket tokenBucket = new TokenBucket(10, 1);
+
+        // a cancelled wait returns false, so every token has to be available at once
+        for (int i = 0; i < 10; i++) {
+            assertTrue(tokenBucket.acquire(() -> true));
+        }
+        assertFalse(tokenBucket.acquire(() -> true));
+    }
+
+    @Test
+    void refillRateLimitsThroughput() {
+        TokenBucket tokenBucket = new TokenBucket(5, 50);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 25; i++) {
+            assertTrue(tokenBucket.acquire(() -> false));
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 5 tokens of the burst, 20 refilled at 50 tokens/s
+        assertTrue(elapsedMs >= 350, "took " + elapsedMs + " ms");
+        assertTrue(elapsedMs < 3000, "took " + elapsedMs + " ms");
+    }
+
+    @Test
+    void refillStopsAtCapacity() throws InterruptedException {
+        TokenBucket tokenBucket = new TokenBucket(3, 20);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(tokenBucket.acquire(() -> true));
+        }
+
+        // refills 10 tokens at 20 tokens/s, but only 3 fit into the bucket
+        Thread.sleep(500);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(tokenBucket.acquire(() -> true));
+        }
+        assertFalse(tokenBucket.acquire(() -> true));
+    }
+
+    @Test
+    void cancelledWaitReturnsFalse() {
+        TokenBucket tokenBucket = new TokenBucket(1, 0.1);
+        assertTrue(tokenBucket.acquire(() -> false));
+
+        long start = System.nanoTime();
+        assertFalse(tokenBucket.acquire(() -> true));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.binary;
+
+/**
+ * Constants of the binary record format described at {@link BinaryParserServiceImpl}.
+ */
+final class BinaryFormat {
+
+    static final int VERSION = 1;
+
+    // bit of the record header set if a timestamp follows the flag
+    static final int TIMESTAMP_PRESENT = 0x80;
+    static final int TAG_MASK = 0x0F;
+
+    static final int TAG_NONE = 0;
+    static final int TAG_FALSE = 1;
+    static final int TAG_TRUE = 2;
+    static final int TAG_BYTE = 3;
+    static final int TAG_SHORT = 4;
+    static final int TAG_INTEGER = 5;
+    static final int TAG_LONG = 6;
+    static final int TAG_FLOAT = 7;
+    static final int TAG_DOUBLE = 8;
+    static final int TAG_BYTE_ARRAY = 9;
+    static final int TAG_STRING = 10;
+
+    private BinaryFormat() {
+    }
+
+    /**
+     * Maps signed to unsigned values so that numbers of small magnitude get short varints: 0, -1, 1, -2, ... become
+     * 0, 1, 2, 3, ...
+     */
+    static long zigZag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    static long unZigZag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.binary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.openmuc.framework.parser.spi.ParserService;
+
+/**
+ * Parser implementation with a compact binary encoding for OpenMUC to OpenMUC communication over links where the
+ * message size matters, e.g. cellular connections. It is registered with the parserID "binary".
+ * <p>
+ * A message starts with the format version (one byte, currently 1) and the number of records as varint. Each record
+ * consists of:
+ * <ul>
+ * <li>a header byte, bit 7 is set if a timestamp is present and bits 0-3 contain the value tag</li>
+ * <li>the flag code (one byte)</li>
+ * <li>the timestamp if present, as zigzag varint of the difference to the previous timestamp of the message, the
+ * first timestamp is stored as difference to 0</li>
+ * <li>the value depending on the tag: none (0), false (1), true (2), byte (3, one byte), short, integer and long (4,
+ * 5, 6, zigzag varint), float (7, 4 bytes), double (8, 8 bytes), byte array and UTF-8 string (9, 10, varint length
+ * followed by the bytes)</li>
+ * </ul>
+ * Varints are unsigned LEB128, fixed size numbers are big endian. Like the JSON parser, only valid records contain a
+ * value.
+ * <p>
+ * Every thread reuses its own write buffer, so the parser is used concurrently without locking.
+ */
+public class BinaryParserServiceImpl implements ParserService {
+
+    public static final String PARSER_ID = "binary";
+
+    private static final ThreadLocal<BinaryRecordWriter> WRITERS = ThreadLocal.withInitial(BinaryRecordWriter::new);
+
+    @Override
+    public byte[] serialize(LoggingRecord openMucRecord) {
+        BinaryRecordWriter writer = WRITERS.get();
+        writer.begin(1);
+        writer.writeRecord(openMucRecord.getRecord());
+        return writer.toByteArray();
+    }
+
+    @Override
+    public byte[] serialize(List<LoggingRecord> openMucRecords) {
+        BinaryRecordWriter writer = WRITERS.get();
+        writer.begin(openMucRecords.size());
+        for (LoggingRecord openMucRecord : openMucRecords) {
+            writer.writeRecord(openMucRecord.getRecord());
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Deserializes a message with a single record. The value is converted to the given value type if it was serialized
+     * with another one. Messages with multiple records, which may belong to different channels, are read with
+     * {@link #deserializeAll(byte[], ValueType)}.
+     *
+     * @throws IllegalArgumentException
+     *             if the message is malformed or does not contain exactly one record
+     */
+    @Override
+    public Record deserialize(byte[] byteArray, ValueType valueType) {
+        BinaryRecordReader reader = new BinaryRecordReader(byteArray);
+        if (!reader.hasNext()) {
+            throw new IllegalArgumentException("Message contains no record");
+        }
+        Record record = reader.next();
+        if (reader.hasNext()) {
+            throw new IllegalArgumentException("Message contains multiple records");
+        }
+        return convert(record, valueType);
+    }
+
+    /**
+     * Deserializes all records of a message.
+     *
+     * @param byteArray
+     *            message created by {@link #serialize(List)} or {@link #serialize(LoggingRecord)}
+     * @param valueType
+     *            type of the values
+     * @return records in the order they were serialized
+     * @throws IllegalArgumentException
+     *             if the message is malformed
+     */
+    public List<Record> deserializeAll(byte[] byteArray, ValueType valueType) {
+        BinaryRecordReader reader = new BinaryRecordReader(byteArray);
+        List<Record> records = new ArrayList<>();
+        while (reader.hasNext()) {
+            records.add(convert(reader.next(), valueType));
+        }
+        return records;
+    }
+
+    private static Record convert(Record record, ValueType valueType) {
+        Value value = record.getValue();
+        if (value == null || valueType == null || value.getValueType() == valueType) {
+            return record;
+        }
+        return new Record(convert(value, valueType), record.getTimestamp(), record.getFlag());
+    }
+
+    private static Value convert(Value value, ValueType valueType) {
+        switch (valueType) {
+        case BOOLEAN:
+            return new BooleanValue(value.asBoolean());
+        case BYTE:
+            return new ByteValue(value.asByte());
+        case SHORT:
+            return new ShortValue(value.asShort());
+        case INTEGER:
+            return new IntValue(value.asInt());
+        case LONG:
+            return new LongValue(value.asLong());
+        case FLOAT:
+            return new FloatValue(value.asFloat());
+        case DOUBLE:
+            return new DoubleValue(value.asDouble());
+        case BYTE_ARRAY:
+            return new ByteArrayValue(value.asByteArray());
+        case STRING:
+            return new StringValue(value.asString());
+        default:
+            return value;
+        }
+    }
+}
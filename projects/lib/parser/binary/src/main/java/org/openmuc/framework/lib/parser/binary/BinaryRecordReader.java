@@ -0,0 +1,160 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.binary;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
+
+/**
+ * Reads records in the binary format described at {@link BinaryParserServiceImpl}.
+ */
+class BinaryRecordReader {
+
+    private final byte[] message;
+    private int position;
+    private long previousTimestamp;
+    private int remaining;
+
+    /**
+     * @param message
+     *            serialized records
+     * @throws IllegalArgumentException
+     *             if the message has an unknown version
+     */
+    BinaryRecordReader(byte[] message) {
+        this.message = message;
+        int version = readByte() & 0xFF;
+        if (version != BinaryFormat.VERSION) {
+            throw new IllegalArgumentException("Unsupported binary record format version " + version);
+        }
+        long count = readVarLong();
+        if (count < 0 || count > message.length) {
+            throw new IllegalArgumentException("Invalid record count " + count);
+        }
+        remaining = (int) count;
+    }
+
+    boolean hasNext() {
+        return remaining > 0;
+    }
+
+    /**
+     * @return the next record
+     * @throws IllegalArgumentException
+     *             if the message is malformed
+     */
+    Record next() {
+        if (remaining == 0) {
+            throw new IllegalArgumentException("No more records in message");
+        }
+        remaining--;
+
+        int header = readByte() & 0xFF;
+        Flag flag = Flag.newFlag(readByte());
+        Long timestamp = null;
+        if ((header & BinaryFormat.TIMESTAMP_PRESENT) != 0) {
+            previousTimestamp += BinaryFormat.unZigZag(readVarLong());
+            timestamp = previousTimestamp;
+        }
+        Value value = readValue(header & BinaryFormat.TAG_MASK);
+        return new Record(value, timestamp, flag);
+    }
+
+    private Value readValue(int tag) {
+        switch (tag) {
+        case BinaryFormat.TAG_NONE:
+            return null;
+        case BinaryFormat.TAG_FALSE:
+            return new BooleanValue(false);
+        case BinaryFormat.TAG_TRUE:
+            return new BooleanValue(true);
+        case BinaryFormat.TAG_BYTE:
+            return new ByteValue(readByte());
+        case BinaryFormat.TAG_SHORT:
+            return new ShortValue((short) BinaryFormat.unZigZag(readVarLong()));
+        case BinaryFormat.TAG_INTEGER:
+            return new IntValue((int) BinaryFormat.unZigZag(readVarLong()));
+        case BinaryFormat.TAG_LONG:
+            return new LongValue(BinaryFormat.unZigZag(readVarLong()));
+        case BinaryFormat.TAG_FLOAT:
+            return new FloatValue(Float.intBitsToFloat((int) readFixed(Integer.BYTES)));
+        case BinaryFormat.TAG_DOUBLE:
+            return new DoubleValue(Double.longBitsToDouble(readFixed(Long.BYTES)));
+        case BinaryFormat.TAG_BYTE_ARRAY:
+            return new ByteArrayValue(readBytes());
+        case BinaryFormat.TAG_STRING:
+            return new StringValue(new String(readBytes(), StandardCharsets.UTF_8));
+        default:
+            throw new IllegalArgumentException("Unknown value tag " + tag);
+        }
+    }
+
+    private byte[] readBytes() {
+        long length = readVarLong();
+        if (length < 0 || length > message.length - position) {
+            throw new IllegalArgumentException("Invalid length " + length + " at position " + position);
+        }
+        byte[] bytes = Arrays.copyOfRange(message, position, position + (int) length);
+        position += (int) length;
+        return bytes;
+    }
+
+    private long readFixed(int length) {
+        long bits = 0;
+        for (int i = 0; i < length; i++) {
+            bits = bits << 8 | readByte() & 0xFF;
+        }
+        return bits;
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at position " + position);
+    }
+
+    private byte readByte() {
+        if (position >= message.length) {
+            throw new IllegalArgumentException("Unexpected end of message at position " + position);
+        }
+        return message[position++];
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.binary;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.Value;
+
+/**
+ * Writes records in the binary format described at {@link BinaryParserServiceImpl} into a growing byte buffer. The
+ * writer is not thread safe, one instance is reused per thread.
+ */
+class BinaryRecordWriter {
+
+    private static final int INITIAL_CAPACITY = 256;
+    // larger buffers are not kept between two calls
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int count;
+    private long previousTimestamp;
+
+    /**
+     * Starts a new message.
+     *
+     * @param recordCount
+     *            number of records the message will contain
+     */
+    void begin(int recordCount) {
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+        count = 0;
+        previousTimestamp = 0;
+        writeByte(BinaryFormat.VERSION);
+        writeVarLong(recordCount);
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    void writeRecord(Record record) {
+        Long timestamp = record.getTimestamp();
+        Value value = record.getValue();
+        if (value == null || record.getFlag() != Flag.VALID) {
+            value = null;
+        }
+
+        int tag = value == null ? BinaryFormat.TAG_NONE : tagOf(value);
+        writeByte(timestamp == null ? tag : tag | BinaryFormat.TIMESTAMP_PRESENT);
+        writeByte(record.getFlag().getCode());
+        if (timestamp != null) {
+            writeVarLong(BinaryFormat.zigZag(timestamp - previousTimestamp));
+            previousTimestamp = timestamp;
+        }
+        if (value != null) {
+            writeValue(tag, value);
+        }
+    }
+
+    private static int tagOf(Value value) {
+        switch (value.getValueType()) {
+        case BOOLEAN:
+            return value.asBoolean() ? BinaryFormat.TAG_TRUE : BinaryFormat.TAG_FALSE;
+        case BYTE:
+            return BinaryFormat.TAG_BYTE;
+        case SHORT:
+            return BinaryFormat.TAG_SHORT;
+        case INTEGER:
+            return BinaryFormat.TAG_INTEGER;
+        case LONG:
+            return BinaryFormat.TAG_LONG;
+        case FLOAT:
+            return BinaryFormat.TAG_FLOAT;
+        case DOUBLE:
+            return BinaryFormat.TAG_DOUBLE;
+        case BYTE_ARRAY:
+            return value.asByteArray() == null ? BinaryFormat.TAG_NONE : BinaryFormat.TAG_BYTE_ARRAY;
+        case STRING:
+            return value.asString() == null ? BinaryFormat.TAG_NONE : BinaryFormat.TAG_STRING;
+        default:
+            return BinaryFormat.TAG_NONE;
+        }
+    }
+
+    private void writeValue(int tag, Value value) {
+        switch (tag) {
+        case BinaryFormat.TAG_BYTE:
+            writeByte(value.asByte());
+            break;
+        case BinaryFormat.TAG_SHORT:
+        case BinaryFormat.TAG_INTEGER:
+        case BinaryFormat.TAG_LONG:
+            writeVarLong(BinaryFormat.zigZag(value.asLong()));
+            break;
+        case BinaryFormat.TAG_FLOAT:
+            writeFixed(Float.floatToIntBits(value.asFloat()), Integer.BYTES);
+            break;
+        case BinaryFormat.TAG_DOUBLE:
+            writeFixed(Double.doubleToLongBits(value.asDouble()), Long.BYTES);
+            break;
+        case BinaryFormat.TAG_BYTE_ARRAY:
+            writeBytes(value.asByteArray());
+            break;
+        case BinaryFormat.TAG_STRING:
+            writeBytes(value.asString().getBytes(StandardCharsets.UTF_8));
+            break;
+        default:
+            // booleans are part of the tag
+            break;
+        }
+    }
+
+    private void writeBytes(byte[] bytes) {
+        writeVarLong(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    /**
+     * Writes the given number of low order bytes, the most significant first.
+     */
+    private void writeFixed(long bits, int length) {
+        ensureCapacity(length);
+        for (int shift = (length - 1) * 8; shift >= 0; shift -= 8) {
+            buffer[count++] = (byte) (bits >>> shift);
+        }
+    }
+
+    /**
+     * Writes an unsigned LEB128 varint, 7 bits per byte with the least significant group first.
+     */
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[count++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[count++] = (byte) value;
+    }
+
+    private void writeByte(int b) {
+        ensureCapacity(1);
+        buffer[count++] = (byte) b;
+    }
+
+    private void ensureCapacity(int additional) {
+        int required = count + additional;
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.binary;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+class BinaryParserServiceImplTest {
+
+    private static final long TIMESTAMP = 1704067200000L;
+
+    private BinaryParserServiceImpl parserService;
+
+    @BeforeEach
+    void setupService() {
+        parserService = new BinaryParserServiceImpl();
+    }
+
+    @Test
+    void serializeAndDeserializeAllValueTypes() {
+        List<Value> values = Arrays.asList(new BooleanValue(true), new BooleanValue(false), new ByteValue((byte) -7),
+                new ShortValue(Short.MIN_VALUE), new IntValue(Integer.MAX_VALUE), new LongValue(Long.MIN_VALUE),
+                new FloatValue(Float.NaN), new DoubleValue(-1.25e-10), new StringValue("\u00e4\ud83d\ude00"),
+                new ByteArrayValue(new byte[] { 0, -1, 2 }));
+
+        for (Value value : values) {
+            Record record = new Record(value, TIMESTAMP, Flag.VALID);
+            byte[] serializedRecord = parserService.serialize(new LoggingRecord("test", record));
+            Record recordDes = parserService.deserialize(serializedRecord, value.getValueType());
+
+            assertEquals(record.getTimestamp(), recordDes.getTimestamp());
+            assertEquals(Flag.VALID, recordDes.getFlag());
+            assertEquals(value.getValueType(), recordDes.getValue().getValueType());
+            if (value.getValueType() == ValueType.BYTE_ARRAY) {
+                assertArrayEquals(value.asByteArray(), recordDes.getValue().asByteArray());
+            }
+            else {
+                assertEquals(value.asString(), recordDes.getValue().asString());
+            }
+        }
+    }
+
+    @Test
+    void serializeInvalidRecordWithoutTimestamp() {
+        Record record = new Record(new DoubleValue(3.0), null, Flag.DRIVER_ERROR_TIMEOUT);
+
+        byte[] serializedRecord = parserService.serialize(new LoggingRecord("test", record));
+        // version, count, header and flag code
+        assertEquals(4, serializedRecord.length);
+
+        Record recordDes = parserService.deserialize(serializedRecord, ValueType.DOUBLE);
+        assertEquals(Flag.DRIVER_ERROR_TIMEOUT, recordDes.getFlag());
+        assertNull(recordDes.getTimestamp());
+        assertNull(recordDes.getValue());
+    }
+
+    @Test
+    void serializeMultipleRecordsWithTimestampDeltas() {
+        List<LoggingRecord> records = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Record record = new Record(new DoubleValue(i * 0.5), TIMESTAMP + i * 1000L, Flag.VALID);
+            records.add(new LoggingRecord("channel" + i, record));
+        }
+
+        byte[] serializedRecords = parserService.serialize(records);
+        // the first record contains the full timestamp, the following ones need 2 bytes for the delta
+        assertEquals(2 + 16 + 9 * 12, serializedRecords.length);
+
+        List<Record> recordsDes = parserService.deserializeAll(serializedRecords, ValueType.DOUBLE);
+        assertEquals(records.size(), recordsDes.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(records.get(i).getRecord().getTimestamp(), recordsDes.get(i).getTimestamp());
+            assertEquals(records.get(i).getRecord().getValue().asDouble(), recordsDes.get(i).getValue().asDouble());
+        }
+
+        // the records of a message may belong to different channels
+        assertThrows(IllegalArgumentException.class,
+                () -> parserService.deserialize(serializedRecords, ValueType.DOUBLE));
+    }
+
+    @Test
+    void deserializeConvertsToRequestedValueType() {
+        Record record = new Record(new IntValue(42), TIMESTAMP, Flag.VALID);
+        byte[] serializedRecord = parserService.serialize(new LoggingRecord("test", record));
+
+        Record recordDes = parserService.deserialize(serializedRecord, ValueType.DOUBLE);
+        assertEquals(ValueType.DOUBLE, recordDes.getValue().getValueType());
+        assertEquals(42.0, recordDes.getValue().asDouble());
+    }
+
+    @Test
+    void deserializeMalformedMessage() {
+        Record record = new Record(new StringValue("test"), TIMESTAMP, Flag.VALID);
+        byte[] serializedRecord = parserService.serialize(new LoggingRecord("test", record));
+
+        byte[] truncated = Arrays.copyOf(serializedRecord, serializedRecord.length - 1);
+        assertThrows(IllegalArgumentException.class, () -> parserService.deserialize(truncated, ValueType.STRING));
+
+        byte[] unknownVersion = serializedRecord.clone();
+        unknownVersion[0] = 2;
+        assertThrows(IllegalArgumentException.class, () -> parserService.deserialize(unknownVersion, ValueType.STRING));
+
+        byte[] empty = { 1, 0 };
+        assertThrows(IllegalArgumentException.class, () -> parserService.deserialize(empty, ValueType.STRING));
+    }
+}
@@ -0,0 +1,460 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.openmuc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+
+/**
+ * Reads a record directly from the JSON bytes written by {@link JsonRecordWriter}. Only strict JSON objects with the
+ * fields timestamp, flag and value are read, for every other input {@link #read(byte[], ValueType)} returns null and
+ * the caller falls back to the lenient Gson based parser. This keeps the accepted input and the resulting records the
+ * same as before.
+ */
+class JsonRecordReader {
+
+    private static final byte[] TIMESTAMP = ascii("timestamp");
+    private static final byte[] FLAG = ascii("flag");
+    private static final byte[] VALUE = ascii("value");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] NULL = ascii("null");
+    private static final Flag[] FLAGS = Flag.values();
+    private static final byte[][] FLAG_NAMES = new byte[FLAGS.length][];
+
+    static {
+        for (int i = 0; i < FLAGS.length; i++) {
+            FLAG_NAMES[i] = ascii(FLAGS[i].name());
+        }
+    }
+
+    private final byte[] json;
+    private final ValueType valueType;
+    private int position;
+    // bounds of the last string or number token
+    private int tokenStart;
+    private int tokenEnd;
+    private boolean tokenEscaped;
+
+    private JsonRecordReader(byte[] json, ValueType valueType) {
+        this.json = json;
+        this.valueType = valueType;
+    }
+
+    /**
+     * @param json
+     *            serialized record
+     * @param valueType
+     *            type of the value
+     * @return the record or null if the input is not in the strict format and has to be read by the lenient parser
+     */
+    static Record read(byte[] json, ValueType valueType) {
+        if (valueType == null) {
+            return null;
+        }
+        return new JsonRecordReader(json, valueType).readRecord();
+    }
+
+    private Record readRecord() {
+        Long timestamp = null;
+        Flag flag = Flag.DISABLED;
+        Value value = null;
+
+        skipWhitespace();
+        if (!consume('{')) {
+            return null;
+        }
+        skipWhitespace();
+        if (!consume('}')) {
+            do {
+                skipWhitespace();
+                if (!readString() || tokenEscaped) {
+                    return null;
+                }
+                int keyStart = tokenStart;
+                int keyEnd = tokenEnd;
+                skipWhitespace();
+                if (!consume(':')) {
+                    return null;
+                }
+                skipWhitespace();
+
+                if (tokenEquals(keyStart, keyEnd, TIMESTAMP)) {
+                    if (!readNumber() || !isInteger()) {
+                        return null;
+                    }
+                    timestamp = parseLong();
+                    if (timestamp == null) {
+                        return null;
+                    }
+                }
+                else if (tokenEquals(keyStart, keyEnd, FLAG)) {
+                    if (!readString() || tokenEscaped) {
+                        return null;
+                    }
+                    flag = findFlag();
+                    if (flag == null) {
+                        return null;
+                    }
+                }
+                else if (tokenEquals(keyStart, keyEnd, VALUE)) {
+                    if (consumeLiteral(NULL)) {
+                        value = null;
+                    }
+                    else {
+                        value = readValue();
+                        if (value == null) {
+                            return null;
+                        }
+                    }
+                }
+                else {
+                    return null;
+                }
+                skipWhitespace();
+            } while (consume(','));
+
+            if (!consume('}')) {
+                return null;
+            }
+        }
+        skipWhitespace();
+        if (position != json.length) {
+            return null;
+        }
+        if (value == null && flag == Flag.VALID) {
+            return null;
+        }
+        return new Record(value, timestamp, flag);
+    }
+
+    private Value readValue() {
+        switch (valueType) {
+        case BOOLEAN:
+            if (consumeLiteral(TRUE)) {
+                return new BooleanValue(true);
+            }
+            if (consumeLiteral(FALSE)) {
+                return new BooleanValue(false);
+            }
+            return null;
+        case BYTE_ARRAY:
+            if (!readString() || tokenEscaped) {
+                return null;
+            }
+            return new ByteArrayValue(Base64.getDecoder().decode(Arrays.copyOfRange(json, tokenStart, tokenEnd)));
+        case STRING:
+            if (!readString()) {
+                return null;
+            }
+            return new StringValue(decodeString());
+        case DOUBLE:
+            if (!readNumber()) {
+                return null;
+            }
+            return new DoubleValue(Double.parseDouble(tokenAscii()));
+        case FLOAT:
+            if (!readNumber()) {
+                return null;
+            }
+            return new FloatValue(Float.parseFloat(tokenAscii()));
+        case BYTE:
+        case SHORT:
+        case INTEGER:
+        case LONG:
+            if (!readNumber() || !isInteger()) {
+                return null;
+            }
+            Long number = parseLong();
+            if (number == null) {
+                return null;
+            }
+            return newIntegerValue(number);
+        default:
+            return null;
+        }
+    }
+
+    private Value newIntegerValue(long number) {
+        // values out of range are narrowed like Gson did
+        switch (valueType) {
+        case BYTE:
+            return new ByteValue((byte) number);
+        case SHORT:
+            return new ShortValue((short) number);
+        case INTEGER:
+            return new IntValue((int) number);
+        default:
+            return new LongValue(number);
+        }
+    }
+
+    private boolean readString() {
+        if (!consume('"')) {
+            return false;
+        }
+        tokenStart = position;
+        tokenEscaped = false;
+        while (position < json.length) {
+            byte b = json[position];
+            if (b == '"') {
+                tokenEnd = position++;
+                return true;
+            }
+            if (b == '\\') {
+                tokenEscaped = true;
+                if (!skipEscape()) {
+                    return false;
+                }
+            }
+            else if (b >= 0 && b < 0x20) {
+                // control characters have to be escaped in strict JSON
+                return false;
+            }
+            else {
+                position++;
+            }
+        }
+        return false;
+    }
+
+    private boolean skipEscape() {
+        if (position + 1 >= json.length) {
+            return false;
+        }
+        switch (json[position + 1]) {
+        case '"':
+        case '\\':
+        case '/':
+        case 'b':
+        case 'f':
+        case 'n':
+        case 'r':
+        case 't':
+            position += 2;
+            return true;
+        case 'u':
+            if (position + 6 > json.length) {
+                return false;
+            }
+            for (int i = position + 2; i < position + 6; i++) {
+                if (Character.digit(json[i], 16) < 0) {
+                    return false;
+                }
+            }
+            position += 6;
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private String decodeString() {
+        if (!tokenEscaped) {
+            return new String(json, tokenStart, tokenEnd - tokenStart, StandardCharsets.UTF_8);
+        }
+        StringBuilder sb = new StringBuilder(tokenEnd - tokenStart);
+        int start = tokenStart;
+        int i = tokenStart;
+        while (i < tokenEnd) {
+            if (json[i] != '\\') {
+                i++;
+                continue;
+            }
+            sb.append(new String(json, start, i - start, StandardCharsets.UTF_8));
+            char escaped = (char) json[i + 1];
+            i += 2;
+            switch (escaped) {
+            case 'b':
+                sb.append('\b');
+                break;
+            case 'f':
+                sb.append('\f');
+                break;
+            case 'n':
+                sb.append('\n');
+                break;
+            case 'r':
+                sb.append('\r');
+                break;
+            case 't':
+                sb.append('\t');
+                break;
+            case 'u':
+                sb.append((char) Integer.parseInt(new String(json, i, 4, StandardCharsets.US_ASCII), 16));
+                i += 4;
+                break;
+            default:
+                sb.append(escaped);
+                break;
+            }
+            start = i;
+        }
+        sb.append(new String(json, start, tokenEnd - start, StandardCharsets.UTF_8));
+        return sb.toString();
+    }
+
+    /**
+     * Reads a number in strict JSON syntax: -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+     */
+    private boolean readNumber() {
+        tokenStart = position;
+        consume('-');
+        if (consume('0')) {
+            if (isDigit()) {
+                return false;
+            }
+        }
+        else if (!consumeDigits()) {
+            return false;
+        }
+        if (consume('.') && !consumeDigits()) {
+            return false;
+        }
+        if (consume('e') || consume('E')) {
+            if (!consume('+')) {
+                consume('-');
+            }
+            if (!consumeDigits()) {
+                return false;
+            }
+        }
+        tokenEnd = position;
+        return true;
+    }
+
+    private boolean isInteger() {
+        for (int i = tokenStart; i < tokenEnd; i++) {
+            byte b = json[i];
+            if (b == '.' || b == 'e' || b == 'E') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Long parseLong() {
+        int i = tokenStart;
+        boolean negative = json[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long result = 0;
+        for (; i < tokenEnd; i++) {
+            int digit = json[i] - '0';
+            // accumulate negatively to cover Long.MIN_VALUE
+            if (result < (Long.MIN_VALUE + digit) / 10) {
+                return null;
+            }
+            result = result * 10 - digit;
+        }
+        if (!negative) {
+            if (result == Long.MIN_VALUE) {
+                return null;
+            }
+            result = -result;
+        }
+        return result;
+    }
+
+    private Flag findFlag() {
+        for (int i = 0; i < FLAGS.length; i++) {
+            if (tokenEquals(tokenStart, tokenEnd, FLAG_NAMES[i])) {
+                return FLAGS[i];
+            }
+        }
+        return null;
+    }
+
+    private String tokenAscii() {
+        return new String(json, tokenStart, tokenEnd - tokenStart, StandardCharsets.US_ASCII);
+    }
+
+    private boolean tokenEquals(int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (json[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean consumeLiteral(byte[] literal) {
+        if (position + literal.length > json.length || !tokenEquals(position, position + literal.length, literal)) {
+            return false;
+        }
+        position += literal.length;
+        return true;
+    }
+
+    private boolean consumeDigits() {
+        int start = position;
+        while (isDigit()) {
+            position++;
+        }
+        return position > start;
+    }
+
+    private boolean isDigit() {
+        return position < json.length && json[position] >= '0' && json[position] <= '9';
+    }
+
+    private boolean consume(char c) {
+        if (position < json.length && json[position] == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (position < json.length) {
+            byte b = json[position];
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private static byte[] ascii(String string) {
+        return string.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.openmuc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.Value;
+
+/**
+ * Writes records as JSON into a growing byte buffer. The output is identical to the one of the former Gson based
+ * serializer: the fields timestamp, flag and value in this order, absent fields are omitted, no HTML escaping and
+ * non-finite numbers as NaN or Infinity. The writer is not thread safe, one instance is reused per thread.
+ */
+class JsonRecordWriter {
+
+    private static final int INITIAL_CAPACITY = 256;
+    // larger buffers are not kept between two calls
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP = "{\"timestamp\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FLAG = "\"flag\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALUE = ",\"value\":".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int count;
+
+    void reset() {
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+        count = 0;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    void writeRecord(Record record) {
+        Long timestamp = record.getTimestamp();
+        if (timestamp != null) {
+            write(TIMESTAMP);
+            writeLong(timestamp);
+            write((byte) ',');
+        }
+        else {
+            write((byte) '{');
+        }
+        write(FLAG);
+        writeAscii(record.getFlag().toString());
+        write((byte) '"');
+
+        Value value = record.getValue();
+        if (value != null && record.getFlag() == Flag.VALID) {
+            writeValue(value);
+        }
+        write((byte) '}');
+    }
+
+    void write(byte b) {
+        ensureCapacity(1);
+        buffer[count++] = b;
+    }
+
+    private void writeValue(Value value) {
+        switch (value.getValueType()) {
+        case BOOLEAN:
+            write(VALUE);
+            writeAscii(value.asBoolean() ? "true" : "false");
+            break;
+        case BYTE:
+            write(VALUE);
+            writeLong(value.asByte());
+            break;
+        case BYTE_ARRAY:
+            write(VALUE);
+            write((byte) '"');
+            write(Base64.getEncoder().encode(value.asByteArray()));
+            write((byte) '"');
+            break;
+        case DOUBLE:
+            write(VALUE);
+            writeAscii(Double.toString(value.asDouble()));
+            break;
+        case FLOAT:
+            write(VALUE);
+            writeAscii(Float.toString(value.asFloat()));
+            break;
+        case INTEGER:
+            write(VALUE);
+            writeLong(value.asInt());
+            break;
+        case LONG:
+            write(VALUE);
+            writeLong(value.asLong());
+            break;
+        case SHORT:
+            write(VALUE);
+            writeLong(value.asShort());
+            break;
+        case STRING:
+            String string = value.asString();
+            // null values are omitted like all absent fields
+            if (string != null) {
+                write(VALUE);
+                writeString(string);
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int position = count + digits;
+        do {
+            buffer[--position] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        count += digits;
+    }
+
+    private void writeString(String string) {
+        write((byte) '"');
+        // worst case are 3 bytes per char or 6 bytes per escaped control char
+        ensureCapacity(string.length() * 6 + 1);
+        byte[] buf = buffer;
+        int position = count;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    buf[position++] = (byte) c;
+                }
+                else {
+                    position = writeEscaped(buf, position, c);
+                }
+            }
+            else if (c < 0x800) {
+                buf[position++] = (byte) (0xc0 | c >> 6);
+                buf[position++] = (byte) (0x80 | c & 0x3f);
+            }
+            else if (c == '\u2028' || c == '\u2029') {
+                position = writeUnicodeEscape(buf, position, c);
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < string.length()
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                buf[position++] = (byte) (0xf0 | codePoint >> 18);
+                buf[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                buf[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buf[position++] = (byte) (0x80 | codePoint & 0x3f);
+            }
+            else if (Character.isSurrogate(c)) {
+                // unpaired surrogates are replaced like String.getBytes does
+                buf[position++] = '?';
+            }
+            else {
+                buf[position++] = (byte) (0xe0 | c >> 12);
+                buf[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buf[position++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        buf[position++] = '"';
+        count = position;
+    }
+
+    private static int writeEscaped(byte[] buf, int position, char c) {
+        char shortEscape;
+        switch (c) {
+        case '"':
+            shortEscape = '"';
+            break;
+        case '\\':
+            shortEscape = '\\';
+            break;
+        case '\t':
+            shortEscape = 't';
+            break;
+        case '\b':
+            shortEscape = 'b';
+            break;
+        case '\n':
+            shortEscape = 'n';
+            break;
+        case '\r':
+            shortEscape = 'r';
+            break;
+        case '\f':
+            shortEscape = 'f';
+            break;
+        default:
+            return writeUnicodeEscape(buf, position, c);
+        }
+        buf[position++] = '\\';
+        buf[position++] = (byte) shortEscape;
+        return position;
+    }
+
+    private static int writeUnicodeEscape(byte[] buf, int position, char c) {
+        buf[position++] = '\\';
+        buf[position++] = 'u';
+        buf[position++] = HEX[c >> 12 & 0xf];
+        buf[position++] = HEX[c >> 8 & 0xf];
+        buf[position++] = HEX[c >> 4 & 0xf];
+        buf[position++] = HEX[c & 0xf];
+        return position;
+    }
+
+    private void writeAscii(String string) {
+        int length = string.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[count++] = (byte) string.charAt(i);
+        }
+    }
+
+    private void write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void ensureCapacity(int additional) {
+        int required = count + additional;
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+        }
+    }
+}
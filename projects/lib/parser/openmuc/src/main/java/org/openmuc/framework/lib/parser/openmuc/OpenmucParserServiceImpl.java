@@ -22,6 +22,7 @@
 package org.openmuc.framework.lib.parser.openmuc;
 
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.List;
 
@@ -50,54 +51,58 @@ import com.google.gson.InstanceCreator;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
 
 /**
  * Parser implementation for OpenMUC to OpenMUC communication e.g. for the AMQP driver.
+ * <p>
+ * Records are written and read by a streaming JSON encoder and decoder without intermediate JSON trees or strings.
+ * Every thread reuses its own write buffer, so the parser is used concurrently without locking. Input which is not
+ * strict JSON is read by the former lenient Gson parser.
  */
 public class OpenmucParserServiceImpl implements ParserService {
 
-    private final Logger logger = LoggerFactory.getLogger(OpenmucParserServiceImpl.class);
+    private static final Logger logger = LoggerFactory.getLogger(OpenmucParserServiceImpl.class);
 
-    private final Gson gson;
-    private ValueType valueType;
-
-    public OpenmucParserServiceImpl() {
-        GsonBuilder gsonBuilder = new GsonBuilder();
-        gsonBuilder.registerTypeAdapter(Record.class, new RecordInstanceCreator());
-        gsonBuilder.registerTypeAdapter(Value.class, new ValueDeserializer());
-        gsonBuilder.registerTypeAdapter(Record.class, new RecordAdapter());
-        gsonBuilder.disableHtmlEscaping();
-        gson = gsonBuilder.create();
-    }
+    private static final ThreadLocal<JsonRecordWriter> WRITERS = ThreadLocal.withInitial(JsonRecordWriter::new);
 
     @Override
-    public synchronized byte[] serialize(LoggingRecord openMucRecord) {
-        String serializedString = gson.toJson(openMucRecord.getRecord());
-
-        return serializedString.getBytes();
+    public byte[] serialize(LoggingRecord openMucRecord) {
+        JsonRecordWriter writer = WRITERS.get();
+        writer.reset();
+        writer.writeRecord(openMucRecord.getRecord());
+        return writer.toByteArray();
     }
 
     @Override
-    public synchronized byte[] serialize(List<LoggingRecord> openMucRecords) throws SerializationException {
-        StringBuilder sb = new StringBuilder();
+    public byte[] serialize(List<LoggingRecord> openMucRecords) throws SerializationException {
+        JsonRecordWriter writer = WRITERS.get();
+        writer.reset();
         for (LoggingRecord openMucRecord : openMucRecords) {
-            sb.append(new String(serialize(openMucRecord)));
-            sb.append('\n');
+            writer.writeRecord(openMucRecord.getRecord());
+            writer.write((byte) '\n');
         }
-        return sb.toString().getBytes();
+        return writer.toByteArray();
     }
 
     @Override
-    public synchronized Record deserialize(byte[] byteArray, ValueType valueType) {
-        this.valueType = valueType;
-        return gson.fromJson(new String(byteArray), Record.class);
+    public Record deserialize(byte[] byteArray, ValueType valueType) {
+        Record record = JsonRecordReader.read(byteArray, valueType);
+        if (record != null) {
+            return record;
+        }
+        return deserializeLenient(byteArray, valueType);
+    }
+
+    private static Record deserializeLenient(byte[] byteArray, ValueType valueType) {
+        GsonBuilder gsonBuilder = new GsonBuilder();
+        gsonBuilder.registerTypeAdapter(Record.class, new RecordInstanceCreator());
+        gsonBuilder.registerTypeAdapter(Value.class, new ValueDeserializer(valueType));
+        Gson gson = gsonBuilder.create();
+        return gson.fromJson(new String(byteArray, StandardCharsets.UTF_8), Record.class);
     }
 
-    private class RecordInstanceCreator implements InstanceCreator<Record> {
+    private static class RecordInstanceCreator implements InstanceCreator<Record> {
 
         @Override
         public Record createInstance(Type type) {
@@ -105,55 +110,14 @@ public class OpenmucParserServiceImpl implements ParserService {
         }
     }
 
-    private class RecordAdapter implements JsonSerializer<Record> {
+    private static class ValueDeserializer implements JsonDeserializer<Value> {
 
-        @Override
-        public JsonElement serialize(Record record, Type typeOfSrc, JsonSerializationContext context) {
-            JsonObject obj = new JsonObject();
-            Value value = record.getValue();
-            obj.addProperty("timestamp", record.getTimestamp());
-            obj.addProperty("flag", record.getFlag().toString());
-
-            if (value != null && record.getFlag() == Flag.VALID) {
-                String valueString = "value";
-
-                switch (value.getValueType()) {
-                case BOOLEAN:
-                    obj.addProperty(valueString, record.getValue().asBoolean());
-                    break;
-                case BYTE:
-                    obj.addProperty(valueString, record.getValue().asByte());
-                    break;
-                case BYTE_ARRAY:
-                    obj.addProperty(valueString, Base64.getEncoder().encodeToString(record.getValue().asByteArray()));
-                    break;
-                case DOUBLE:
-                    obj.addProperty(valueString, record.getValue().asDouble());
-                    break;
-                case FLOAT:
-                    obj.addProperty(valueString, record.getValue().asFloat());
-                    break;
-                case INTEGER:
-                    obj.addProperty(valueString, record.getValue().asInt());
-                    break;
-                case LONG:
-                    obj.addProperty(valueString, record.getValue().asLong());
-                    break;
-                case SHORT:
-                    obj.addProperty(valueString, record.getValue().asShort());
-                    break;
-                case STRING:
-                    obj.addProperty(valueString, record.getValue().asString());
-                    break;
-                default:
-                    break;
-                }
-            }
-            return obj;
+        private final ValueType valueType;
+
+        ValueDeserializer(ValueType valueType) {
+            this.valueType = valueType;
         }
-    }
 
-    private class ValueDeserializer implements JsonDeserializer<Value> {
         @Override
         public Value deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
                 throws JsonParseException {
@@ -21,12 +21,15 @@
 
 package org.openmuc.framework.lib.parser.openmuc;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -35,10 +38,16 @@ import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.BooleanValue;
 import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
 import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
 import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.data.Value;
 import org.openmuc.framework.data.ValueType;
@@ -157,6 +166,77 @@ class OpenmucParserServiceImplTest {
         assertEquals("VALID", recordDes.getFlag().name());
     }
 
+    @Test
+    void serializeEscapedStringValue() throws SerializationException {
+        String controlString = "{\"timestamp\":1,\"flag\":\"VALID\",\"value\":\"a\\\"b\\\\c\\n\\u0001<&>\u00e4\\u2028\"}";
+        Record record = new Record(new StringValue("a\"b\\c\n\u0001<&>\u00e4\u2028"), 1L, Flag.VALID);
+
+        byte[] serializedRecord = parserService.serialize(new LoggingRecord("test", record));
+        assertEquals(controlString, new String(serializedRecord, StandardCharsets.UTF_8));
+        assertEquals(record.getValue().asString(),
+                parserService.deserialize(serializedRecord, ValueType.STRING).getValue().asString());
+    }
+
+    @Test
+    void serializeInvalidRecordWithoutTimestamp() throws SerializationException {
+        Record record = new Record(new DoubleValue(3.0), null, Flag.DRIVER_ERROR_TIMEOUT);
+
+        byte[] serializedRecord = parserService.serialize(new LoggingRecord("test", record));
+        assertEquals("{\"flag\":\"DRIVER_ERROR_TIMEOUT\"}", new String(serializedRecord));
+        Record recordDes = parserService.deserialize(serializedRecord, ValueType.DOUBLE);
+        assertEquals(Flag.DRIVER_ERROR_TIMEOUT, recordDes.getFlag());
+        assertNull(recordDes.getTimestamp());
+        assertNull(recordDes.getValue());
+    }
+
+    @Test
+    void serializeNonFiniteDouble() throws SerializationException {
+        Record record = new Record(new DoubleValue(Double.NaN), 1L, Flag.VALID);
+
+        byte[] serializedRecord = parserService.serialize(new LoggingRecord("test", record));
+        assertEquals("{\"timestamp\":1,\"flag\":\"VALID\",\"value\":NaN}", new String(serializedRecord));
+        assertTrue(Double.isNaN(parserService.deserialize(serializedRecord, ValueType.DOUBLE).getValue().asDouble()));
+    }
+
+    @Test
+    void serializeAndDeserializeAllValueTypes() throws SerializationException {
+        List<Value> values = Arrays.asList(new BooleanValue(true), new ByteValue((byte) -7), new ShortValue((short) 300),
+                new IntValue(Integer.MIN_VALUE), new LongValue(Long.MAX_VALUE), new FloatValue(1.5f),
+                new DoubleValue(-1.25e-10), new StringValue("\ud83d\ude00"), new ByteArrayValue(new byte[] { 0, -1, 2 }));
+
+        for (Value value : values) {
+            Record record = new Record(value, -1582722316L, Flag.VALID);
+            byte[] serializedRecord = parserService.serialize(new LoggingRecord("test", record));
+            Record recordDes = parserService.deserialize(serializedRecord, value.getValueType());
+
+            assertEquals(record.getTimestamp(), recordDes.getTimestamp());
+            assertEquals(Flag.VALID, recordDes.getFlag());
+            if (value.getValueType() == ValueType.BYTE_ARRAY) {
+                assertArrayEquals(value.asByteArray(), recordDes.getValue().asByteArray());
+            }
+            else {
+                assertEquals(value.asString(), recordDes.getValue().asString());
+            }
+        }
+    }
+
+    @Test
+    void deserializeLenientInput() {
+        String inputString = " { 'timestamp' : 1582722316, flag: VALID, \"value\": \"3.5\" } ";
+
+        Record recordDes = parserService.deserialize(inputString.getBytes(), ValueType.DOUBLE);
+        assertEquals(3.5, recordDes.getValue().asDouble());
+        assertEquals(1582722316, recordDes.getTimestamp().longValue());
+    }
+
+    @Test
+    void deserializeNarrowsIntegerValues() {
+        String inputString = "{\"timestamp\":1,\"flag\":\"VALID\",\"value\":300}";
+
+        Record recordDes = parserService.deserialize(inputString.getBytes(), ValueType.BYTE);
+        assertEquals((byte) 300, recordDes.getValue().asByte());
+    }
+
     @Test
     void serialisationAndDeserialisationAreThreadSafe() {
         // this is pretty hard to test (at least I (dwerner) could not figure out how to in 1h, so I'm giving up now)